@@ -32,15 +32,29 @@ import java.io.DataInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Arrays;
+import java.util.Deque;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Class for reading and querying BAM files.
  */
 public class BAMFileReader extends SamReader.ReaderImplementation {
+    /**
+     * Approximate number of bytes of encoded records handed to a decoding thread at a time.
+     */
+    private static final int DECODE_BATCH_BYTES = 512 * 1024;
+
+    private static final ExecutorService decodePool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
     // True if reading from a File rather than an InputStream
     private boolean mIsSeekable = false;
 
@@ -56,6 +70,8 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
     private SeekableStream mIndexStream = null;
 
     private BAMIndex mIndex = null;
+    // Whether mIndex is shared with other readers, and so is not closed with this one
+    private boolean mIndexShared = false;
     private long mFirstRecordPointer = 0;
     // If non-null, there is an unclosed iterator extant.
     private CloseableIterator<SAMRecord> mCurrentIterator = null;
@@ -63,6 +79,9 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
     // If true, all SAMRecords are fully decoded as they are read.
     private boolean eagerDecode;
 
+    // If greater than 1, the number of batches of SAMRecords to decode concurrently.
+    private int decodeThreads = 0;
+
     // For error-checking.
     private ValidationStringency mValidationStringency;
 
@@ -124,9 +143,37 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
             throws IOException {
+        this(stream, indexFile, eagerDecode, useAsynchronousIO, validationStringency, samRecordFactory, inflaterFactory, 0);
+    }
+
+    /**
+     * Prepare to read BAM from a stream (not seekable)
+     * @param stream source of bytes.
+     * @param indexFile BAM index file
+     * @param eagerDecode if true, decode all BAM fields as reading rather than lazily.
+     * @param useAsynchronousIO if true, use asynchronous I/O
+     * @param validationStringency Controls how to handle invalidate reads or header lines.
+     * @param samRecordFactory SAM record factory
+     * @param inflaterFactory InflaterFactory used by BlockCompressedInputStream
+     * @param inflateThreads if greater than 1, the number of BGZF blocks to decompress concurrently
+     * @throws IOException
+     */
+    BAMFileReader(final InputStream stream,
+                  final File indexFile,
+                  final boolean eagerDecode,
+                  final boolean useAsynchronousIO,
+                  final ValidationStringency validationStringency,
+                  final SAMRecordFactory samRecordFactory,
+                  final InflaterFactory inflaterFactory,
+                  final int inflateThreads)
+            throws IOException {
         mIndexFile = indexFile;
         mIsSeekable = false;
-        mCompressedInputStream = useAsynchronousIO ? new AsyncBlockCompressedInputStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
+        if (inflateThreads > 1) {
+            mCompressedInputStream = new ParallelBlockCompressedInputStream(stream, inflaterFactory, inflateThreads);
+        } else {
+            mCompressedInputStream = useAsynchronousIO ? new AsyncBlockCompressedInputStream(stream, inflaterFactory) : new BlockCompressedInputStream(stream, inflaterFactory);
+        }
         mStream = new BinaryCodec(new DataInputStream(mCompressedInputStream));
         this.eagerDecode = eagerDecode;
         this.mValidationStringency = validationStringency;
@@ -173,7 +220,31 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(file, inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory),
+        this(file, indexFile, eagerDecode, useAsynchronousIO, validationStringency, samRecordFactory, inflaterFactory, 0);
+    }
+
+    /**
+     * Prepare to read BAM from a file (seekable)
+     * @param file source of bytes.
+     * @param indexFile BAM index file
+     * @param eagerDecode if true, decode all BAM fields as reading rather than lazily.
+     * @param useAsynchronousIO if true, use asynchronous I/O
+     * @param validationStringency Controls how to handle invalidate reads or header lines.
+     * @param samRecordFactory SAM record factory
+     * @param inflaterFactory InflaterFactory used by BlockCompressedInputStream
+     * @param inflateThreads if greater than 1, the number of BGZF blocks to decompress concurrently
+     * @throws IOException
+     */
+    BAMFileReader(final File file,
+                  final File indexFile,
+                  final boolean eagerDecode,
+                  final boolean useAsynchronousIO,
+                  final ValidationStringency validationStringency,
+                  final SAMRecordFactory samRecordFactory,
+                  final InflaterFactory inflaterFactory,
+                  final int inflateThreads)
+        throws IOException {
+        this(makeCompressedInputStream(file, useAsynchronousIO, inflaterFactory, inflateThreads),
                 indexFile!=null ? indexFile : SamFiles.findIndex(file), eagerDecode, useAsynchronousIO, file.getAbsolutePath(), validationStringency, samRecordFactory);
         if (mIndexFile != null && mIndexFile.lastModified() < file.lastModified()) {
             System.err.println("WARNING: BAM index file " + mIndexFile.getAbsolutePath() +
@@ -222,7 +293,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(makeCompressedInputStream(strm, useAsynchronousIO, inflaterFactory, 0),
                 indexFile, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
@@ -265,10 +336,54 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
                   final SAMRecordFactory samRecordFactory,
                   final InflaterFactory inflaterFactory)
         throws IOException {
-        this(useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory),
+        this(strm, indexStream, eagerDecode, useAsynchronousIO, validationStringency, samRecordFactory, inflaterFactory, 0);
+    }
+
+    /**
+     * Prepare to read BAM from a stream (seekable)
+     * @param strm source of bytes
+     * @param indexStream BAM index stream
+     * @param eagerDecode if true, decode all BAM fields as reading rather than lazily.
+     * @param useAsynchronousIO if true, use asynchronous I/O
+     * @param validationStringency Controls how to handle invalidate reads or header lines.
+     * @param samRecordFactory SAM record factory
+     * @param inflaterFactory InflaterFactory used by BlockCompressedInputStream
+     * @param inflateThreads if greater than 1, the number of BGZF blocks to decompress concurrently
+     * @throws IOException
+     */
+    BAMFileReader(final SeekableStream strm,
+                  final SeekableStream indexStream,
+                  final boolean eagerDecode,
+                  final boolean useAsynchronousIO,
+                  final ValidationStringency validationStringency,
+                  final SAMRecordFactory samRecordFactory,
+                  final InflaterFactory inflaterFactory,
+                  final int inflateThreads)
+        throws IOException {
+        this(makeCompressedInputStream(strm, useAsynchronousIO, inflaterFactory, inflateThreads),
                 indexStream, eagerDecode, useAsynchronousIO, strm.getSource(), validationStringency, samRecordFactory);
     }
 
+    private static BlockCompressedInputStream makeCompressedInputStream(final File file,
+                                                                        final boolean useAsynchronousIO,
+                                                                        final InflaterFactory inflaterFactory,
+                                                                        final int inflateThreads) throws IOException {
+        if (inflateThreads > 1) {
+            return new ParallelBlockCompressedInputStream(file, inflaterFactory, inflateThreads);
+        }
+        return useAsynchronousIO ? new AsyncBlockCompressedInputStream(file, inflaterFactory) : new BlockCompressedInputStream(file, inflaterFactory);
+    }
+
+    private static BlockCompressedInputStream makeCompressedInputStream(final SeekableStream strm,
+                                                                        final boolean useAsynchronousIO,
+                                                                        final InflaterFactory inflaterFactory,
+                                                                        final int inflateThreads) {
+        if (inflateThreads > 1) {
+            return new ParallelBlockCompressedInputStream(strm, inflaterFactory, inflateThreads);
+        }
+        return useAsynchronousIO ? new AsyncBlockCompressedInputStream(strm, inflaterFactory) : new BlockCompressedInputStream(strm, inflaterFactory);
+    }
+
     /**
      * Prepare to read BAM from a compressed stream (seekable)
      * @param compressedInputStream source of bytes
@@ -422,11 +537,38 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             } else {
                 throw new SAMFormatException("Unsupported BAM index file: " + mIndexFile.getName());
             }
+            if (Defaults.COMPACT_BAM_INDEX) {
+                mIndex = new CompactBAMFileIndex((AbstractBAMFileIndex) mIndex);
+            }
         }
 
         return mIndex;
     }
 
+    /**
+     * @return the index of this file as a {@link CompactBAMFileIndex}, which is thread safe, so that it can be given to
+     * other readers of the same file with {@link #setSharedIndex(BAMIndex)}
+     */
+    CompactBAMFileIndex getCompactIndex() {
+        final BAMIndex index = getIndex();
+        if (!(index instanceof CompactBAMFileIndex)) {
+            mIndex = new CompactBAMFileIndex((AbstractBAMFileIndex) index);
+        }
+        return (CompactBAMFileIndex) mIndex;
+    }
+
+    /**
+     * Use an index shared with other readers of the same file in place of this reader's own index, which is closed.
+     * The shared index must be thread safe, and is not closed when this reader is.
+     */
+    void setSharedIndex(final BAMIndex index) {
+        if (mIndex != null && mIndex != index && !mIndexShared) {
+            mIndex.close();
+        }
+        mIndex = index;
+        mIndexShared = true;
+    }
+
     /**
      * Return the type of the BAM index, BAI or CSI.
      * @return one of {@link SamIndexes#BAI} or {@link SamIndexes#CSI} or null
@@ -447,6 +589,21 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
     public void setEagerDecode(final boolean desired) { this.eagerDecode = desired; }
 
+    /**
+     * Set the number of threads used to decode records for iterators created after this call.
+     * If greater than 1, records are read ahead in batches, and decoded, validated and (if eager decoding is enabled)
+     * fully decoded on a shared pool of background threads. Records are still returned in file order.
+     * Note that for a stream that is not seekable, records that have been read ahead when an iterator is
+     * closed are not returned by the next iterator.
+     * @param decodeThreads number of batches of records to decode concurrently; 0 or 1 to decode on the calling thread.
+     */
+    public void setDecodeThreads(final int decodeThreads) {
+        if (decodeThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decode threads: " + decodeThreads);
+        }
+        this.decodeThreads = decodeThreads;
+    }
+
     @Override
     public void close() {
         if (mCompressedInputStream != null) {
@@ -459,7 +616,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         if (mStream != null) {
             mStream.close();
         }
-        if (mIndex != null) {
+        if (mIndex != null && !mIndexShared) {
             mIndex.close();
         }
         mStream = null;
@@ -804,6 +961,12 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         private final BAMRecordCodec bamRecordCodec;
         private long samRecordIndex = 0; // Records at what position (counted in records) we are at in the file
 
+        // Batches of records (in file order) being decoded on background threads. Null if decoding on this thread.
+        private final Deque<Future<RecordBatch>> pendingBatches;
+        private final int maxPendingBatches;
+        private RecordBatch currentBatch = null;
+        private boolean lastBatchRead = false;
+
         BAMFileIterator() {
             this(true);
         }
@@ -815,6 +978,15 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             this.bamRecordCodec = new BAMRecordCodec(getFileHeader(), samRecordFactory);
             this.bamRecordCodec.setInputStream(BAMFileReader.this.mStream.getInputStream(),
                     BAMFileReader.this.mStream.getInputFileName());
+            if (decodeThreads > 1) {
+                this.pendingBatches = new ArrayDeque<>();
+                // read twice as many batches as can be decoded at once, so that the decoding threads stay busy
+                // while the consumer works through the batches that are already decoded
+                this.maxPendingBatches = 2 * decodeThreads;
+            } else {
+                this.pendingBatches = null;
+                this.maxPendingBatches = 0;
+            }
 
             if (advance) {
                 advance();
@@ -835,7 +1007,21 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             return result;
         }
 
+        @Override
+        public void close() {
+            if (pendingBatches != null) {
+                // decoding threads do not use the stream, so there is no need to wait for them
+                pendingBatches.forEach(batch -> batch.cancel(false));
+                pendingBatches.clear();
+            }
+            super.close();
+        }
+
         void advance() {
+            if (pendingBatches != null) {
+                advanceDecoded();
+                return;
+            }
             try {
                 mNextRecord = getNextRecord();
 
@@ -858,10 +1044,83 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
             }
         }
 
+        /**
+         * Take the next record from the batches decoded on background threads, reading more batches as required.
+         */
+        private void advanceDecoded() {
+            while (currentBatch == null || currentBatch.nextIndex == currentBatch.size) {
+                if (currentBatch != null && currentBatch.error != null) {
+                    final RuntimeException error = currentBatch.error;
+                    currentBatch.error = null;
+                    throw error;
+                }
+                while (!lastBatchRead && pendingBatches.size() < maxPendingBatches) {
+                    pendingBatches.add(decodePool.submit(readBatch()));
+                }
+                if (pendingBatches.isEmpty()) {
+                    mNextRecord = null;
+                    return;
+                }
+                currentBatch = waitFor(pendingBatches.poll());
+            }
+            final int i = currentBatch.nextIndex++;
+            mNextRecord = currentBatch.records[i];
+            currentBatch.records[i] = null;
+            ++this.samRecordIndex;
+            final List<SAMValidationError> validationErrors = currentBatch.validationErrors.get(i);
+            if (validationErrors != null) {
+                SAMUtils.processValidationErrors(validationErrors,
+                        this.samRecordIndex, BAMFileReader.this.getValidationStringency());
+            }
+        }
+
+        /**
+         * Read the next batch of records from the input stream, without decoding them.
+         * Any exception is deferred until the records before it have been returned.
+         */
+        private RecordBatch readBatch() {
+            final RecordBatch batch = new RecordBatch(bamRecordCodec);
+            try {
+                while (batch.bytes < DECODE_BATCH_BYTES) {
+                    if (!seekToNextRecord()) {
+                        lastBatchRead = true;
+                        break;
+                    }
+                    final long startCoordinate = mCompressedInputStream.getFilePointer();
+                    final int recordLength = bamRecordCodec.readEncodedRecordLength();
+                    if (recordLength < 0) {
+                        lastBatchRead = true;
+                        break;
+                    }
+                    batch.ensureCapacity(recordLength);
+                    bamRecordCodec.readEncodedRecord(batch.encodedRecords, batch.bytes, recordLength);
+                    batch.add(recordLength, startCoordinate, mCompressedInputStream.getFilePointer());
+                }
+            } catch (final IOException exc) {
+                batch.error = new RuntimeIOException(exc.getMessage(), exc);
+                lastBatchRead = true;
+            } catch (final RuntimeException exc) {
+                batch.error = exc;
+                lastBatchRead = true;
+            }
+            return batch;
+        }
+
+        /**
+         * Position the input stream at the start of the next record to be read.
+         * @return false if there are no more records to be read.
+         */
+        boolean seekToNextRecord() throws IOException {
+            return true;
+        }
+
         /**
          * Read the next record from the input stream.
          */
         SAMRecord getNextRecord() throws IOException {
+            if (!seekToNextRecord()) {
+                return null;
+            }
             final long startCoordinate = mCompressedInputStream.getFilePointer();
             final SAMRecord next = bamRecordCodec.decode();
             final long stopCoordinate = mCompressedInputStream.getFilePointer();
@@ -880,6 +1139,102 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         }
     }
 
+    private static RecordBatch waitFor(final Future<RecordBatch> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for decoding thread", e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException("Exception decoding records", e.getCause());
+        }
+    }
+
+    /**
+     * Records read from the input stream, to be decoded and validated on a background thread
+     * in the same way as {@link BAMFileIterator#advance()} does for a single record.
+     */
+    private class RecordBatch implements Callable<RecordBatch> {
+        private final BAMRecordCodec bamRecordCodec;
+        // the records, one after another, each without its length prefix
+        private byte[] encodedRecords = new byte[64 * 1024];
+        // offset of each record in encodedRecords, followed by the offset just past the last record
+        private int[] offsets = new int[257];
+        // start and stop virtual file pointers of each record
+        private long[] coordinates = new long[512];
+        private int bytes = 0;
+        private int numEncodedRecords = 0;
+        private int size = 0;
+        private int nextIndex = 0;
+        private SAMRecord[] records;
+        private List<List<SAMValidationError>> validationErrors;
+        /**
+         * Exception to be thrown once the records before it have been returned.
+         */
+        private RuntimeException error;
+
+        private RecordBatch(final BAMRecordCodec bamRecordCodec) {
+            this.bamRecordCodec = bamRecordCodec;
+        }
+
+        /**
+         * Make room in encodedRecords for a record of the given length, which may take the batch past
+         * DECODE_BATCH_BYTES.
+         */
+        private void ensureCapacity(final int recordLength) {
+            if (bytes + recordLength > encodedRecords.length) {
+                encodedRecords = Arrays.copyOf(encodedRecords, Math.max(2 * encodedRecords.length, bytes + recordLength));
+            }
+        }
+
+        /**
+         * Add the record of the given length that has just been read into encodedRecords at offset bytes.
+         */
+        private void add(final int recordLength, final long startCoordinate, final long stopCoordinate) {
+            final int i = numEncodedRecords++;
+            if (i + 1 >= offsets.length) {
+                offsets = Arrays.copyOf(offsets, 2 * offsets.length);
+            }
+            if (2 * i + 1 >= coordinates.length) {
+                coordinates = Arrays.copyOf(coordinates, 2 * coordinates.length);
+            }
+            coordinates[2 * i] = startCoordinate;
+            coordinates[2 * i + 1] = stopCoordinate;
+            offsets[i] = bytes;
+            bytes += recordLength;
+            offsets[i + 1] = bytes;
+        }
+
+        @Override
+        public RecordBatch call() {
+            records = new SAMRecord[numEncodedRecords];
+            validationErrors = new ArrayList<>(Collections.nCopies(numEncodedRecords, null));
+            try {
+                for (int i = 0; i < numEncodedRecords; i++) {
+                    final SAMRecord record = bamRecordCodec.decode(encodedRecords, offsets[i], offsets[i + 1] - offsets[i]);
+                    if (mReader != null) {
+                        record.setFileSource(new SAMFileSource(mReader,
+                                new BAMFileSpan(new Chunk(coordinates[2 * i], coordinates[2 * i + 1]))));
+                    }
+                    // Because some decoding is done lazily, the record needs to remember the validation stringency.
+                    record.setValidationStringency(mValidationStringency);
+                    if (mValidationStringency != ValidationStringency.SILENT) {
+                        validationErrors.set(i, record.isValid(mValidationStringency == ValidationStringency.STRICT));
+                    }
+                    if (eagerDecode) {
+                        record.eagerDecode();
+                    }
+                    records[i] = record;
+                    size = i + 1;
+                }
+            } catch (final RuntimeException e) {
+                // the records before this one are still returned
+                error = e;
+            }
+            encodedRecords = null;
+            return this;
+        }
+    }
+
     /**
      * Prepare to iterate through SAMRecords in the given reference that start exactly at the given start coordinate.
      * @param referenceIndex Desired reference sequence.
@@ -908,15 +1263,42 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
      * @return file pointer pairs corresponding to chunk boundaries
      */
     public static BAMFileSpan getFileSpan(QueryInterval[] intervals, BAMIndex fileIndex) {
+        return getFileSpan(intervals, fileIndex, 0);
+    }
+
+    /**
+     * Use the index to determine the chunk boundaries for the required intervals, coalescing chunks that are close
+     * together in the file.
+     * @param intervals the intervals to restrict reads to
+     * @param fileIndex the BAM index to use
+     * @param maxGap largest gap, in bytes of the compressed file, between chunks to read through rather than seek over;
+     *               0 to coalesce only overlapping or adjacent chunks
+     * @return file pointer pairs corresponding to chunk boundaries
+     */
+    public static BAMFileSpan getFileSpan(QueryInterval[] intervals, BAMIndex fileIndex, long maxGap) {
+        if (fileIndex instanceof CompactBAMFileIndex) {
+            if (intervals.length == 0) {
+                return null;
+            }
+            final List<Chunk> chunks = ((CompactBAMFileIndex) fileIndex).getChunksOverlapping(intervals);
+            return new BAMFileSpan(Chunk.coalesceChunkList(chunks, maxGap));
+        }
+        if (fileIndex instanceof CachingBAMFileIndex || fileIndex instanceof DiskBasedBAMFileIndex) {
+            // plan all the intervals in one pass over the bins of each reference
+            return BAMQueryPlanner.getFileSpan(intervals, (AbstractBAMFileIndex) fileIndex, maxGap);
+        }
         final BAMFileSpan[] inputSpans = new BAMFileSpan[intervals.length];
         for (int i = 0; i < intervals.length; ++i) {
             final QueryInterval interval = intervals[i];
             final BAMFileSpan span = fileIndex.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end);
             inputSpans[i] = span;
         }
-        final BAMFileSpan span;
+        BAMFileSpan span;
         if (inputSpans.length > 0) {
             span = BAMFileSpan.merge(inputSpans);
+            if (maxGap > 0) {
+                span = new BAMFileSpan(Chunk.coalesceChunkList(span.getChunks(), maxGap));
+            }
         } else {
             span = null;
         }
@@ -928,7 +1310,7 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
 
         QueryInterval.assertIntervalsOptimized(intervals);
 
-        BAMFileSpan span = getFileSpan(intervals, getIndex());
+        BAMFileSpan span = getFileSpan(intervals, getIndex(), Defaults.BAM_QUERY_CHUNK_MERGE_GAP);
 
         // Create an iterator over the above chunk boundaries.
         final BAMFileIndexIterator iterator = new BAMFileIndexIterator(span == null ? null : span.toCoordinateArray());
@@ -988,21 +1370,20 @@ public class BAMFileReader extends SamReader.ReaderImplementation {
         }
 
         @Override
-        SAMRecord getNextRecord()
+        boolean seekToNextRecord()
             throws IOException {
             // Advance to next file block if necessary
             while (mCompressedInputStream.getFilePointer() >= mFilePointerLimit) {
                 if (mFilePointers == null ||
                         mFilePointerIndex >= mFilePointers.length) {
-                    return null;
+                    return false;
                 }
                 final long startOffset = mFilePointers[mFilePointerIndex++];
                 final long endOffset = mFilePointers[mFilePointerIndex++];
                 mCompressedInputStream.seek(startOffset);
                 mFilePointerLimit = endOffset;
             }
-            // Pull next record from stream
-            return super.getNextRecord();
+            return true;
         }
     }
 
@@ -37,6 +37,8 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * Concrete implementation of SAMFileWriter for writing gzipped BAM files.
@@ -47,6 +49,8 @@ public class BAMFileWriter extends SAMFileWriterImpl {
     private BAMRecordCodec bamRecordCodec = null;
     private final BlockCompressedOutputStream blockCompressedOutputStream;
     private BAMIndexer bamIndexer = null;
+    // Records whose index information waits on the addresses of blocks still being deflated in the background
+    private final Deque<PendingIndexRecord> pendingIndexRecords = new ArrayDeque<>();
 
     protected BAMFileWriter(final File path) {
         blockCompressedOutputStream = new BlockCompressedOutputStream(path);
@@ -84,6 +88,13 @@ public class BAMFileWriter extends SAMFileWriterImpl {
       outputBinaryCodec.setOutputFileName(absoluteFilename);
     }
 
+    protected BAMFileWriter(final OutputStream os, final String absoluteFilename, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                            final int compressionThreads) {
+        blockCompressedOutputStream = new BlockCompressedOutputStream(os, (Path)null, compressionLevel, deflaterFactory, compressionThreads);
+        outputBinaryCodec = new BinaryCodec(blockCompressedOutputStream);
+        outputBinaryCodec.setOutputFileName(absoluteFilename);
+    }
+
   private void prepareToWriteAlignments() {
         if (bamRecordCodec == null) {
             bamRecordCodec = new BAMRecordCodec(getFileHeader());
@@ -130,12 +141,12 @@ public class BAMFileWriter extends SAMFileWriterImpl {
 
         if (bamIndexer != null) {
             try {
-                final long startOffset = blockCompressedOutputStream.getFilePointer();
+                // Use provisional offsets so that indexing doesn't wait on blocks being deflated in the background
+                final long startOffset = blockCompressedOutputStream.getProvisionalFilePointer();
                 bamRecordCodec.encode(alignment);
-                final long stopOffset = blockCompressedOutputStream.getFilePointer();
-                // set the alignment's SourceInfo and then prepare its index information
-                alignment.setFileSource(new SAMFileSource(null, new BAMFileSpan(new Chunk(startOffset, stopOffset))));
-                bamIndexer.processAlignment(alignment);
+                final long stopOffset = blockCompressedOutputStream.getProvisionalFilePointer();
+                pendingIndexRecords.add(new PendingIndexRecord(alignment, startOffset, stopOffset));
+                processPendingIndexRecords();
             } catch (Exception e) {
                 bamIndexer = null;
                 throw new SAMException("Exception when processing alignment for BAM index " + alignment, e);
@@ -145,6 +156,55 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         }
     }
 
+    /**
+     * Adds to the index every pending record whose offsets are now known, in the order the records were written.
+     */
+    private void processPendingIndexRecords() {
+        while (!pendingIndexRecords.isEmpty()) {
+            final PendingIndexRecord pending = pendingIndexRecords.peek();
+            final long startOffset = blockCompressedOutputStream.resolveProvisionalFilePointer(pending.startOffset);
+            final long stopOffset = startOffset == -1 ? -1 :
+                    blockCompressedOutputStream.resolveProvisionalFilePointer(pending.stopOffset);
+            if (stopOffset == -1) {
+                return;
+            }
+            pendingIndexRecords.poll();
+            bamIndexer.processAlignment(pending.readName, pending.referenceIndex, pending.alignmentStart,
+                    pending.alignmentEnd, pending.indexingBin, pending.readUnmapped, new Chunk(startOffset, stopOffset));
+        }
+    }
+
+    /**
+     * What the indexer needs of a record, taken when the record is written, since the caller may reuse or change the
+     * record before the addresses of its blocks are known.
+     */
+    private static final class PendingIndexRecord {
+        private final String readName;
+        private final int referenceIndex;
+        private final int alignmentStart;
+        private final int alignmentEnd;
+        private final int indexingBin;
+        private final boolean readUnmapped;
+        private final long startOffset;
+        private final long stopOffset;
+
+        private PendingIndexRecord(final SAMRecord alignment, final long startOffset, final long stopOffset) {
+            this.readName = alignment.getReadName();
+            this.referenceIndex = alignment.getReferenceIndex();
+            this.alignmentStart = alignment.getAlignmentStart();
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                this.alignmentEnd = alignmentStart;
+                this.indexingBin = 0;
+            } else {
+                this.alignmentEnd = alignment.getAlignmentEnd();
+                this.indexingBin = alignment.computeIndexingBin();
+            }
+            this.readUnmapped = alignment.getReadUnmappedFlag();
+            this.startOffset = startOffset;
+            this.stopOffset = stopOffset;
+        }
+    }
+
     @Override
     protected void writeHeader(final String textHeader) {
         writeHeader(outputBinaryCodec, getFileHeader(), textHeader);
@@ -155,6 +215,8 @@ public class BAMFileWriter extends SAMFileWriterImpl {
         outputBinaryCodec.close();
             try {
                 if (bamIndexer != null) {
+                    // all blocks have been written by now, so every pending offset can be resolved
+                    processPendingIndexRecords();
                     bamIndexer.finish();
                 }
             } catch (Exception e) {
@@ -136,11 +136,18 @@ public class BAMIndexMetaData {
         if (rec.getFileSource() == null) {
             throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
         }
-        final Chunk newChunk = ((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk();
+        recordMetaData(((BAMFileSpan) rec.getFileSource().getFilePointer()).getSingleChunk(), rec.getReadUnmappedFlag());
+    }
+
+    /**
+     * Extract relevant metadata from a record with an alignment start, given its file offsets and unmapped flag
+     * rather than the record itself, which the caller may no longer have.
+     */
+    void recordMetaData(final Chunk newChunk, final boolean readUnmapped) {
         final long start = newChunk.getChunkStart();
         final long end = newChunk.getChunkEnd();
 
-        if (rec.getReadUnmappedFlag()) {
+        if (readUnmapped) {
             unAlignedRecords++;
         } else {
             alignedRecords++;
@@ -267,9 +274,10 @@ public class BAMIndexMetaData {
      */
     static public BAMIndexMetaData[] getIndexStats(final BAMFileReader bam) {
 
-        AbstractBAMFileIndex index = (AbstractBAMFileIndex) bam.getIndex();
+        final BAMIndex index = bam.getIndex();
         // read through all the bins of every reference.
-        int nRefs = index.getNumberOfReferences();
+        int nRefs = index instanceof CompactBAMFileIndex ?
+                ((CompactBAMFileIndex) index).getNumberOfReferences() : ((AbstractBAMFileIndex) index).getNumberOfReferences();
         BAMIndexMetaData[] result = new BAMIndexMetaData[nRefs == 0 ? 1 : nRefs];
         for (int i = 0; i < nRefs; i++) {
             result[i] = index.getMetaData(i);
@@ -278,7 +286,8 @@ public class BAMIndexMetaData {
         if (result[0] == null) {
             result[0] = new BAMIndexMetaData();
         }
-        final Long noCoordCount = index.getNoCoordinateCount();
+        final Long noCoordCount = index instanceof CompactBAMFileIndex ?
+                ((CompactBAMFileIndex) index).getNoCoordinateCount() : ((AbstractBAMFileIndex) index).getNoCoordinateCount();
         if (noCoordCount != null)  // null in old index files without metadata
             result[0].setNoCoordinateRecordCount(noCoordCount);
 
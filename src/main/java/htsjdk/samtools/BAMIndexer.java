@@ -133,6 +133,31 @@ public class BAMIndexer {
         }
     }
 
+    /**
+     * Record the index information of a BAM record from values taken from the record when it was written, for
+     * callers that learn the file offsets of a record only after the caller may have reused or changed it.
+     *
+     * @param readName the read name of the record, for error messages
+     * @param reference the reference index of the record
+     * @param alignmentStart the alignment start of the record, or {@link SAMRecord#NO_ALIGNMENT_START}
+     * @param alignmentEnd the alignment end of the record
+     * @param indexingBin the indexing bin of the record, see {@link SAMRecord#computeIndexingBin()}
+     * @param readUnmapped the unmapped flag of the record
+     * @param chunk the file offsets of the record
+     */
+    void processAlignment(final String readName, final int reference, final int alignmentStart, final int alignmentEnd,
+                          final int indexingBin, final boolean readUnmapped, final Chunk chunk) {
+        try {
+            if (reference != SAMRecord.NO_ALIGNMENT_REFERENCE_INDEX && reference != currentReference) {
+                // process any completed references
+                advanceToReference(reference);
+            }
+            indexBuilder.processAlignment(reference, alignmentStart, alignmentEnd, indexingBin, readUnmapped, chunk);
+        } catch (final Exception e) {
+            throw new SAMException("Exception creating BAM index for record " + readName, e);
+        }
+    }
+
     /**
      * After all the alignment records have been processed, finish is called.
      * Writes any final information and closes the output file.
@@ -220,45 +245,58 @@ public class BAMIndexer {
          * @param rec The BAM record. Requires rec.getFileSource() is non-null.
          */
         public void processAlignment(final SAMRecord rec) {
+            final int alignmentStart = rec.getAlignmentStart();
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                processAlignment(rec.getReferenceIndex(), alignmentStart, alignmentStart, 0, rec.getReadUnmappedFlag(), null);
+                return;
+            }
+            final SAMFileSource source = rec.getFileSource();
+            if (source == null) {
+                throw new SAMException("BAM cannot be indexed without setting a fileSource for record " + rec);
+            }
+            processAlignment(rec.getReferenceIndex(), alignmentStart, rec.getAlignmentEnd(), rec.computeIndexingBin(),
+                    rec.getReadUnmappedFlag(), ((BAMFileSpan) source.getFilePointer()).getSingleChunk());
+        }
 
-            // metadata
-            indexStats.recordMetaData(rec);
+        /**
+         * Record any index information for a BAM record, given values taken from it
+         *
+         * @see BAMIndexer#processAlignment(String, int, int, int, int, boolean, Chunk)
+         */
+        public void processAlignment(final int reference, final int alignmentStart, final int alignmentEnd,
+                                     final int indexingBin, final boolean readUnmapped, final Chunk chunk) {
 
-            if (rec.getAlignmentStart() == SAMRecord.NO_ALIGNMENT_START) {
+            // metadata
+            if (alignmentStart == SAMRecord.NO_ALIGNMENT_START) {
+                indexStats.incrementNoCoordinateRecordCount();
                 return; // do nothing for records without coordinates, but count them
             }
+            indexStats.recordMetaData(chunk, readUnmapped);
 
-            // various checks
-            final int reference = rec.getReferenceIndex();
             if (reference != currentReference) {
                 throw new SAMException("Unexpected reference " + reference +
-                        " when constructing index for " + currentReference + " for record " + rec);
+                        " when constructing index for " + currentReference);
             }
 
             binningIndexBuilder.processFeature(new BinningIndexBuilder.FeatureToBeIndexed() {
                 @Override
                 public int getStart() {
-                    return rec.getAlignmentStart();
+                    return alignmentStart;
                 }
 
                 @Override
                 public int getEnd() {
-                    return rec.getAlignmentEnd();
+                    return alignmentEnd;
                 }
 
                 @Override
-                public Integer getIndexingBin() { return rec.computeIndexingBin(); }
+                public Integer getIndexingBin() { return indexingBin; }
 
                 @Override
                 public Chunk getChunk() {
-                    final SAMFileSource source = rec.getFileSource();
-                    if (source == null) {
-                        throw new SAMException("No source (virtual file offsets); needed for indexing on BAM Record " + rec);
-                    }
-                    return ((BAMFileSpan) source.getFilePointer()).getSingleChunk();
+                    return chunk;
                 }
             });
-
         }
 
         /**
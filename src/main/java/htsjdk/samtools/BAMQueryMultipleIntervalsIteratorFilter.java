@@ -40,19 +40,24 @@ public class BAMQueryMultipleIntervalsIteratorFilter implements BAMIteratorFilte
     public static IntervalComparison compareIntervalToRecord(final QueryInterval interval, final SAMRecord record) {
         // interval.end <= 0 implies the end of the reference sequence.
         final int intervalEnd = (interval.end <= 0? Integer.MAX_VALUE: interval.end);
+        final int referenceIndex = record.getReferenceIndex();
+        if (interval.referenceIndex < referenceIndex) return IntervalComparison.BEFORE;
+        else if (interval.referenceIndex > referenceIndex) return IntervalComparison.AFTER;
+
+        final int alignmentStart = record.getAlignmentStart();
+        if (intervalEnd < alignmentStart) return IntervalComparison.BEFORE;
+
+        // Only now compute the alignment end, which decodes the cigar of a BAM record.
         final int alignmentEnd;
-        if (record.getReadUnmappedFlag() && record.getAlignmentStart() != SAMRecord.NO_ALIGNMENT_START) {
+        if (record.getReadUnmappedFlag() && alignmentStart != SAMRecord.NO_ALIGNMENT_START) {
             // Unmapped read with coordinate of mate.
-            alignmentEnd = record.getAlignmentStart();
+            alignmentEnd = alignmentStart;
         } else {
             alignmentEnd = record.getAlignmentEnd();
         }
 
-        if (interval.referenceIndex < record.getReferenceIndex()) return IntervalComparison.BEFORE;
-        else if (interval.referenceIndex > record.getReferenceIndex()) return IntervalComparison.AFTER;
-        else if (intervalEnd < record.getAlignmentStart()) return IntervalComparison.BEFORE;
-        else if (alignmentEnd < interval.start) return IntervalComparison.AFTER;
-        else if (CoordMath.encloses(interval.start, intervalEnd, record.getAlignmentStart(), alignmentEnd)) {
+        if (alignmentEnd < interval.start) return IntervalComparison.AFTER;
+        else if (CoordMath.encloses(interval.start, intervalEnd, alignmentStart, alignmentEnd)) {
             return IntervalComparison.CONTAINED;
         } else return IntervalComparison.OVERLAPPING;
     }
@@ -0,0 +1,109 @@
+package htsjdk.samtools;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Computes the chunks of a BAM file to read for a query of many intervals, with one pass over the intervals and one
+ * over the bins of each reference, instead of a set of bins and a sorted chunk list for every interval which are then
+ * merged.
+ *
+ * The chunks are the same as those of {@link BAMFileSpan#merge(BAMFileSpan[])} applied to the span of each interval:
+ * a chunk is kept if it belongs to a bin overlapped by an interval, and ends after the linear index offset of the
+ * start of one of the intervals overlapping that bin.
+ *
+ * Not thread safe.
+ */
+final class BAMQueryPlanner {
+    private static final int MAX_POS = 0x1FFFFFFF;
+    // first bin and bin width (as a shift) of each level of the BAI binning scheme, see GenomicIndexUtil.regionToBins
+    private static final int[] LEVEL_FIRST_BIN = {0, 1, 9, 73, 585, 4681};
+    private static final int[] LEVEL_SHIFT = {29, 26, 23, 20, 17, 14};
+
+    private final BitSet overlappedBins = new BitSet(GenomicIndexUtil.MAX_BINS);
+    // for each bin in overlappedBins, the smallest linear index offset of the intervals overlapping it
+    private final long[] minimumOffsets = new long[GenomicIndexUtil.MAX_BINS];
+
+    /**
+     * @param intervals the intervals to restrict reads to, in any order
+     * @param index the BAI index of the BAM file, a {@link CachingBAMFileIndex} or a {@link DiskBasedBAMFileIndex}
+     * @param maxGap largest gap, in bytes of the compressed file, between chunks to read through rather than seek over;
+     *               see {@link Chunk#coalesceChunkList(List, long)}
+     * @return file span of the intervals, or null if there are no intervals
+     */
+    static BAMFileSpan getFileSpan(final QueryInterval[] intervals, final AbstractBAMFileIndex index, final long maxGap) {
+        if (intervals.length == 0) {
+            return null;
+        }
+        final BAMQueryPlanner planner = new BAMQueryPlanner();
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        int from = 0;
+        while (from < intervals.length) {
+            final int referenceIndex = intervals[from].referenceIndex;
+            int to = from + 1;
+            while (to < intervals.length && intervals[to].referenceIndex == referenceIndex) {
+                to++;
+            }
+            final BAMIndexContent content = getReferenceContent(index, referenceIndex);
+            if (content != null) {
+                planner.addChunksOverlapping(content, intervals, from, to, chunks);
+            }
+            from = to;
+        }
+        return new BAMFileSpan(Chunk.coalesceChunkList(Chunk.optimizeChunkList(chunks, 0), maxGap));
+    }
+
+    /**
+     * @return the bins and linear index of a whole reference, read once for all the intervals on it
+     */
+    private static BAMIndexContent getReferenceContent(final AbstractBAMFileIndex index, final int referenceIndex) {
+        if (index instanceof CachingBAMFileIndex) {
+            return ((CachingBAMFileIndex) index).getQueryResults(referenceIndex);
+        }
+        return index.query(referenceIndex, 1, -1);
+    }
+
+    /**
+     * Add to chunks copies of the chunks of content that may hold records overlapping intervals[from] to
+     * intervals[to - 1], which must all be on the reference of content.
+     */
+    private void addChunksOverlapping(final BinningIndexContent content, final QueryInterval[] intervals,
+                                      final int from, final int to, final List<Chunk> chunks) {
+        final LinearIndex linearIndex = content.getLinearIndex();
+        for (int i = from; i < to; i++) {
+            final QueryInterval interval = intervals[i];
+            final int start = (interval.start <= 0) ? 0 : (interval.start - 1) & MAX_POS;
+            final int end = (interval.end <= 0) ? MAX_POS : (interval.end - 1) & MAX_POS;
+            if (start > end) {
+                continue;
+            }
+            final long minimumOffset = linearIndex.getMinimumOffset(interval.start);
+            for (int level = 0; level < LEVEL_FIRST_BIN.length; level++) {
+                final int lastBin = LEVEL_FIRST_BIN[level] + (end >> LEVEL_SHIFT[level]);
+                for (int bin = LEVEL_FIRST_BIN[level] + (start >> LEVEL_SHIFT[level]); bin <= lastBin; bin++) {
+                    if (!overlappedBins.get(bin)) {
+                        overlappedBins.set(bin);
+                        minimumOffsets[bin] = minimumOffset;
+                    } else if (minimumOffset < minimumOffsets[bin]) {
+                        minimumOffsets[bin] = minimumOffset;
+                    }
+                }
+            }
+        }
+
+        final BinningIndexContent.BinList bins = content.getBins();
+        for (int binNumber = overlappedBins.nextSetBit(0); binNumber >= 0; binNumber = overlappedBins.nextSetBit(binNumber + 1)) {
+            final Bin bin = bins.getBin(binNumber);
+            if (bin == null || bin.getChunkList() == null) {
+                continue;
+            }
+            for (final Chunk chunk : bin.getChunkList()) {
+                if (chunk.getChunkEnd() > minimumOffsets[binNumber]) {
+                    chunks.add(chunk.clone());
+                }
+            }
+        }
+        overlappedBins.clear();
+    }
+}
@@ -159,6 +159,51 @@ public class BAMRecord extends SAMRecord {
         return mRestOfBinaryData;
     }
 
+    // The following return the variable-length data held by this record, without decoding any of it, so that
+    // SAMRecordSizeEstimator can count both the binary block and any fields that have been decoded from it.
+
+    /**
+     * @return the variable-length part of the binary record, even if it is stale, or null if it has been discarded
+     */
+    byte[] getRestOfBinaryData() {
+        return mRestOfBinaryData;
+    }
+
+    /**
+     * @return the read name if it has been decoded or set, otherwise null
+     */
+    String getDecodedReadName() {
+        return super.getReadName();
+    }
+
+    /**
+     * @return the cigar if it has been decoded or set, otherwise null
+     */
+    Cigar getDecodedCigar() {
+        return mCigarDecoded ? super.getCigar() : null;
+    }
+
+    /**
+     * @return the read bases if they have been decoded or set, otherwise null
+     */
+    byte[] getDecodedReadBases() {
+        return super.getReadBases();
+    }
+
+    /**
+     * @return the base qualities if they have been decoded or set, otherwise null
+     */
+    byte[] getDecodedBaseQualities() {
+        return super.getBaseQualities();
+    }
+
+    /**
+     * @return the attributes if they have been decoded or set, otherwise null
+     */
+    SAMBinaryTagAndValue getDecodedAttributes() {
+        return mAttributesDecoded ? super.getBinaryAttributes() : null;
+    }
+
     /**
      * Depending on the concrete implementation, the binary file size of attributes may be known without
      * computing them all.
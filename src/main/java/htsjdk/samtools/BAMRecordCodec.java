@@ -30,6 +30,8 @@ import htsjdk.samtools.util.SortingCollection;
 
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.util.Arrays;
 
 import static htsjdk.samtools.SAMTag.CG;
@@ -44,6 +46,8 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
     private final BinaryCodec binaryCodec = new BinaryCodec();
     private final BinaryTagCodec binaryTagCodec = new BinaryTagCodec(binaryCodec);
     private final SAMRecordFactory samRecordFactory;
+    // the fixed-length fields of the record being read by decode()
+    private final byte[] fixedFields = new byte[BAMFileConstants.FIXED_BLOCK_SIZE];
 
     private boolean isReferenceSizeWarningShowed = false;
 
@@ -256,30 +260,106 @@ public class BAMRecordCodec implements SortingCollection.Codec<SAMRecord> {
      */
     @Override
     public SAMRecord decode() {
+        final int recordLength = readEncodedRecordLength();
+        if (recordLength < 0) {
+            return null;
+        }
+        this.binaryCodec.readBytes(fixedFields);
+        final byte[] restOfRecord = new byte[recordLength - BAMFileConstants.FIXED_BLOCK_SIZE];
+        this.binaryCodec.readBytes(restOfRecord);
+        return decode(fixedFields, 0, restOfRecord);
+    }
+
+    /**
+     * Read the length of the next record from the input stream, to be followed by
+     * {@link #readEncodedRecord(byte[], int, int)}.
+     *
+     * @return the length of the record, not including its length prefix, or -1 if there are no more records in the
+     * stream.
+     */
+    public int readEncodedRecordLength() {
         final int recordLength;
         try {
             recordLength = this.binaryCodec.readInt();
         } catch (final RuntimeEOFException e) {
-            return null;
+            return -1;
         }
 
         if (recordLength < BAMFileConstants.FIXED_BLOCK_SIZE) {
             throw new SAMFormatException("Invalid record length: " + recordLength);
         }
+        return recordLength;
+    }
 
-        final int referenceID = this.binaryCodec.readInt();
-        final int coordinate = this.binaryCodec.readInt() + 1;
-        final short readNameLength = this.binaryCodec.readUByte();
-        final short mappingQuality = this.binaryCodec.readUByte();
-        final int bin = this.binaryCodec.readUShort();
-        final int cigarLen = this.binaryCodec.readUShort();
-        final int flags = this.binaryCodec.readUShort();
-        final int readLen = this.binaryCodec.readInt();
-        final int mateReferenceID = this.binaryCodec.readInt();
-        final int mateCoordinate = this.binaryCodec.readInt() + 1;
-        final int insertSize = this.binaryCodec.readInt();
-        final byte[] restOfRecord = new byte[recordLength - BAMFileConstants.FIXED_BLOCK_SIZE];
-        this.binaryCodec.readBytes(restOfRecord);
+    /**
+     * Read a record whose length was returned by {@link #readEncodedRecordLength()} from the input stream without
+     * decoding it, so that it can be decoded later, possibly on another thread, by
+     * {@link #decode(byte[], int, int)}.
+     *
+     * @param buffer buffer to read the record into
+     * @param offset offset in buffer at which to read the record
+     * @param length the length of the record
+     */
+    public void readEncodedRecord(final byte[] buffer, final int offset, final int length) {
+        this.binaryCodec.readBytes(buffer, offset, length);
+    }
+
+    /**
+     * Read the next record from the input stream without decoding it, so that it can be decoded later, possibly
+     * on another thread, by {@link #decode(byte[])}.
+     *
+     * @return the record, not including its length prefix, or null if there are no more records in the stream.
+     */
+    public byte[] readEncodedRecord() {
+        final int recordLength = readEncodedRecordLength();
+        if (recordLength < 0) {
+            return null;
+        }
+        final byte[] encodedRecord = new byte[recordLength];
+        readEncodedRecord(encodedRecord, 0, recordLength);
+        return encodedRecord;
+    }
+
+    /**
+     * Create a SAMRecord from a record returned by {@link #readEncodedRecord()}.
+     * This does not use the input stream, so may be called concurrently from multiple threads.
+     *
+     * @param encodedRecord the record, not including its length prefix.
+     * @return the decoded record.
+     */
+    public SAMRecord decode(final byte[] encodedRecord) {
+        return decode(encodedRecord, 0, encodedRecord.length);
+    }
+
+    /**
+     * Create a SAMRecord from a record read by {@link #readEncodedRecord(byte[], int, int)}.
+     * This does not use the input stream, so may be called concurrently from multiple threads.
+     *
+     * @param buffer buffer holding the record, not including its length prefix.
+     * @param offset offset of the record in buffer
+     * @param length length of the record
+     * @return the decoded record.
+     */
+    public SAMRecord decode(final byte[] buffer, final int offset, final int length) {
+        return decode(buffer, offset, Arrays.copyOfRange(buffer, offset + BAMFileConstants.FIXED_BLOCK_SIZE, offset + length));
+    }
+
+    /**
+     * Create a SAMRecord from its fixed-length fields, at offset in fixedFields, and the rest of the record.
+     */
+    private SAMRecord decode(final byte[] fixedFields, final int offset, final byte[] restOfRecord) {
+        final ByteBuffer buffer = ByteBuffer.wrap(fixedFields, offset, BAMFileConstants.FIXED_BLOCK_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        final int referenceID = buffer.getInt();
+        final int coordinate = buffer.getInt() + 1;
+        final short readNameLength = (short) Byte.toUnsignedInt(buffer.get());
+        final short mappingQuality = (short) Byte.toUnsignedInt(buffer.get());
+        final int bin = Short.toUnsignedInt(buffer.getShort());
+        final int cigarLen = Short.toUnsignedInt(buffer.getShort());
+        final int flags = Short.toUnsignedInt(buffer.getShort());
+        final int readLen = buffer.getInt();
+        final int mateReferenceID = buffer.getInt();
+        final int mateCoordinate = buffer.getInt() + 1;
+        final int insertSize = buffer.getInt();
         final BAMRecord ret = this.samRecordFactory.createBAMRecord(
                 header, referenceID, coordinate, readNameLength, mappingQuality,
                 bin, cigarLen, flags, readLen, mateReferenceID, mateCoordinate, insertSize, restOfRecord);
@@ -0,0 +1,511 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.CloserUtil;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.TempStreamFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sorts SAMRecords into the order defined by {@link SAMRecordCoordinateComparator}, holding them in their BAM
+ * encoding rather than as objects.  This is a coordinate-specific alternative to a
+ * {@link htsjdk.samtools.util.SortingCollection} of SAMRecords.
+ * <p>
+ * Records are encoded with {@link BAMRecordCodec} into large byte arrays as they are added.  Each record is sorted by
+ * a long key packing its reference index, alignment start and strand, using a radix sort, and only records whose keys
+ * are equal are compared field by field, directly from their encoding.  When maxRecordsInRam records have been added
+ * they are written, still encoded, to a temporary file, and on iteration these files are merged by comparing encoded
+ * records.  Records are only decoded as they are returned.
+ * <p>
+ * Records that compare equal are returned in the order in which they were added.
+ */
+public class BAMRecordCoordinateSorter implements Iterable<SAMRecord> {
+    /** Size of the first array that encoded records are copied into.  Later arrays double in size up to MAX_CHUNK_SIZE. */
+    private static final int INITIAL_CHUNK_SIZE = 1024 * 1024;
+    private static final int MAX_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int INITIAL_RECORDS_SIZE = 1024;
+
+    /** Equal-key ranges no longer than this are sorted by insertion sort rather than merge sort. */
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    /** Offsets of fields within a BAM record, not including its length prefix. */
+    private static final int REFERENCE_INDEX_OFFSET = 0;
+    private static final int POSITION_OFFSET = 4;
+    private static final int READ_NAME_LENGTH_OFFSET = 8;
+    private static final int MAPPING_QUALITY_OFFSET = 9;
+    private static final int FLAGS_OFFSET = 14;
+    private static final int MATE_REFERENCE_INDEX_OFFSET = 20;
+    private static final int MATE_POSITION_OFFSET = 24;
+    private static final int INSERT_SIZE_OFFSET = 28;
+    private static final int READ_NAME_OFFSET = BAMFileConstants.FIXED_BLOCK_SIZE;
+
+    private final BAMRecordCodec codec;
+    private final EncodingBuffer encodingBuffer = new EncodingBuffer();
+    private final int maxRecordsInRam;
+    private final Path[] tmpDirs;
+    private final TempStreamFactory tempStreamFactory = new TempStreamFactory();
+
+    /**
+     * Arrays that encoded records, including their length prefixes, are copied into.  These are reused after
+     * records are spilled.
+     */
+    private final List<byte[]> chunks = new ArrayList<>();
+    private int currentChunk = -1;
+    private int chunkOffset = 0;
+
+    /**
+     * The sort key of each record in memory, and the location of its encoding, as the index of its chunk in the
+     * high 32 bits and its offset within the chunk in the low 32 bits.
+     */
+    private long[] keys;
+    private long[] locations;
+    private int numRecordsInRam = 0;
+    private boolean sorted = false;
+
+    /** Files of sorted, encoded records, in the order in which their records were added. */
+    private final List<Path> files = new ArrayList<>();
+    private boolean iterationStarted = false;
+    private boolean cleanedUp = false;
+
+    /**
+     * Prepare to accumulate records to be sorted
+     *
+     * @param header          header of the records to be sorted, used to encode them
+     * @param maxRecordsInRam how many records to accumulate before spilling to disk
+     * @param tmpDirs         Where to write files of records that will not fit in RAM
+     */
+    public BAMRecordCoordinateSorter(final SAMFileHeader header, final int maxRecordsInRam, final Path... tmpDirs) {
+        if (maxRecordsInRam <= 0) {
+            throw new IllegalArgumentException("maxRecordsInRam must be > 0");
+        }
+        if (tmpDirs == null || tmpDirs.length == 0) {
+            throw new IllegalArgumentException("At least one temp directory must be provided.");
+        }
+        this.codec = new BAMRecordCodec(header);
+        this.codec.setOutputStream(encodingBuffer);
+        this.maxRecordsInRam = maxRecordsInRam;
+        this.tmpDirs = tmpDirs;
+        this.keys = new long[Math.min(maxRecordsInRam, INITIAL_RECORDS_SIZE)];
+        this.locations = new long[keys.length];
+    }
+
+    /**
+     * Encode a record and add it to the records to be sorted.  The record must have a header from which its
+     * reference indices can be resolved.
+     */
+    public void add(final SAMRecord rec) {
+        if (iterationStarted) {
+            throw new IllegalStateException("Cannot add after calling iterator()");
+        }
+        if (numRecordsInRam == maxRecordsInRam) {
+            spillToDisk();
+        }
+        encodingBuffer.reset();
+        codec.encode(rec);
+        final int length = encodingBuffer.size();
+        final byte[] chunk = reserve(length);
+        final int offset = chunkOffset;
+        System.arraycopy(encodingBuffer.array(), 0, chunk, offset, length);
+        chunkOffset += length;
+
+        if (numRecordsInRam == keys.length) {
+            final int newLength = (int) Math.min(maxRecordsInRam, 2L * keys.length);
+            keys = Arrays.copyOf(keys, newLength);
+            locations = Arrays.copyOf(locations, newLength);
+        }
+        keys[numRecordsInRam] = coordinateKey(chunk, offset + 4);
+        locations[numRecordsInRam] = ((long) currentChunk << 32) | offset;
+        numRecordsInRam++;
+        sorted = false;
+    }
+
+    /**
+     * @return the chunk that the next record, of the given encoded length, should be copied into at chunkOffset
+     */
+    private byte[] reserve(final int length) {
+        if (currentChunk >= 0 && chunkOffset + length <= chunks.get(currentChunk).length) {
+            return chunks.get(currentChunk);
+        }
+        currentChunk++;
+        chunkOffset = 0;
+        if (currentChunk == chunks.size()) {
+            final int size = currentChunk == 0 ? INITIAL_CHUNK_SIZE : Math.min(MAX_CHUNK_SIZE, 2 * chunks.get(currentChunk - 1).length);
+            chunks.add(new byte[Math.max(size, length)]);
+        } else if (chunks.get(currentChunk).length < length) {
+            chunks.set(currentChunk, new byte[length]);
+        }
+        return chunks.get(currentChunk);
+    }
+
+    /**
+     * Sort the records in memory, write them to a file, and clear the records in memory.
+     */
+    public void spillToDisk() {
+        if (numRecordsInRam == 0) {
+            return;
+        }
+        sortRecordsInRam();
+        try {
+            final Path f = IOUtil.newTempPath("sortingcollection.", ".tmp", this.tmpDirs, IOUtil.FIVE_GBS);
+            try (OutputStream os = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
+                for (int i = 0; i < numRecordsInRam; i++) {
+                    final byte[] chunk = chunks.get((int) (locations[i] >>> 32));
+                    final int offset = (int) locations[i];
+                    os.write(chunk, offset, 4 + readInt(chunk, offset));
+                }
+                os.flush();
+            } catch (IOException ex) {
+                throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
+                        ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+            }
+            files.add(f);
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+        numRecordsInRam = 0;
+        currentChunk = -1;
+        chunkOffset = 0;
+    }
+
+    /**
+     * Prepare to iterate through the records in order.  This method may be called more than once,
+     * but add() may not be called after this method has been called.
+     */
+    @Override
+    public CloseableIterator<SAMRecord> iterator() {
+        if (cleanedUp) {
+            throw new IllegalStateException("Cannot call iterator() after cleanup() was called.");
+        }
+        iterationStarted = true;
+        if (files.isEmpty()) {
+            sortRecordsInRam();
+            return new InMemoryIterator();
+        }
+        spillToDisk();
+        chunks.clear();
+        return new MergingIterator();
+    }
+
+    /**
+     * Delete any temporary files.  After this method is called, iterator() may not be called.
+     */
+    public void cleanup() {
+        iterationStarted = true;
+        cleanedUp = true;
+        chunks.clear();
+        IOUtil.deletePaths(files);
+    }
+
+    private void sortRecordsInRam() {
+        if (sorted) {
+            return;
+        }
+        final long[] keyScratch = new long[numRecordsInRam];
+        final long[] locationScratch = new long[numRecordsInRam];
+        radixSort(keys, locations, numRecordsInRam, keyScratch, locationScratch);
+
+        // the radix sort is stable, so only ranges of records with equal keys remain to be ordered
+        int start = 0;
+        for (int i = 1; i <= numRecordsInRam; i++) {
+            if (i == numRecordsInRam || keys[i] != keys[start]) {
+                if (i - start > 1) {
+                    mergeSort(locations, locationScratch, start, i);
+                }
+                start = i;
+            }
+        }
+        sorted = true;
+    }
+
+    /**
+     * Stable least-significant-byte-first radix sort of keys[0, n), treated as unsigned, carrying values along.
+     * Bytes that are the same in every key are skipped.
+     */
+    private static void radixSort(final long[] keys, final long[] values, final int n, final long[] keyScratch, final long[] valueScratch) {
+        long[] srcKeys = keys, srcValues = values, dstKeys = keyScratch, dstValues = valueScratch;
+        final int[] counts = new int[257];
+        for (int shift = 0; shift < Long.SIZE; shift += 8) {
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < n; i++) {
+                counts[(int) ((srcKeys[i] >>> shift) & 0xFF) + 1]++;
+            }
+            if (n == 0 || counts[(int) ((srcKeys[0] >>> shift) & 0xFF) + 1] == n) {
+                continue;
+            }
+            for (int b = 1; b < counts.length; b++) {
+                counts[b] += counts[b - 1];
+            }
+            for (int i = 0; i < n; i++) {
+                final int dst = counts[(int) ((srcKeys[i] >>> shift) & 0xFF)]++;
+                dstKeys[dst] = srcKeys[i];
+                dstValues[dst] = srcValues[i];
+            }
+            long[] tmp = srcKeys; srcKeys = dstKeys; dstKeys = tmp;
+            tmp = srcValues; srcValues = dstValues; dstValues = tmp;
+        }
+        if (srcKeys != keys) {
+            System.arraycopy(srcKeys, 0, keys, 0, n);
+            System.arraycopy(srcValues, 0, values, 0, n);
+        }
+    }
+
+    /**
+     * Stable sort of the records at locations[from, to) by {@link #compareFields}.
+     */
+    private void mergeSort(final long[] locations, final long[] scratch, final int from, final int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final long location = locations[i];
+                int j = i;
+                while (j > from && compareLocations(locations[j - 1], location) > 0) {
+                    locations[j] = locations[j - 1];
+                    j--;
+                }
+                locations[j] = location;
+            }
+            return;
+        }
+        final int mid = (from + to) >>> 1;
+        mergeSort(locations, scratch, from, mid);
+        mergeSort(locations, scratch, mid, to);
+        if (compareLocations(locations[mid - 1], locations[mid]) <= 0) {
+            return;
+        }
+        System.arraycopy(locations, from, scratch, from, to - from);
+        int left = from, right = mid;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < mid && compareLocations(scratch[left], scratch[right]) <= 0)) {
+                locations[i] = scratch[left++];
+            } else {
+                locations[i] = scratch[right++];
+            }
+        }
+    }
+
+    private int compareLocations(final long location1, final long location2) {
+        return compareFields(chunks.get((int) (location1 >>> 32)), (int) location1 + 4,
+                chunks.get((int) (location2 >>> 32)), (int) location2 + 4);
+    }
+
+    /**
+     * Pack the fields compared by {@link SAMRecordCoordinateComparator#fileOrderCompare} and the strand into a key
+     * whose unsigned order is the order of the records.  Records without a reference sort last, regardless of
+     * alignment start.
+     *
+     * @param record an encoded record
+     * @param offset the offset of the record in the array, after its length prefix
+     */
+    static long coordinateKey(final byte[] record, final int offset) {
+        final int referenceIndex = readInt(record, offset + REFERENCE_INDEX_OFFSET);
+        final long strand = (readUShort(record, offset + FLAGS_OFFSET) & SAMFlag.READ_REVERSE_STRAND.intValue()) != 0 ? 1 : 0;
+        if (referenceIndex < 0) {
+            return (-1L << 32) | strand;
+        }
+        // 0-based start, so -1 when there is no alignment start
+        final long position = readInt(record, offset + POSITION_OFFSET) + 1L;
+        return ((long) referenceIndex << 32) | (position << 1) | strand;
+    }
+
+    /**
+     * Compare two encoded records in the order defined by {@link SAMRecordCoordinateComparator}.
+     *
+     * @param offset1 the offset of the first record in record1, after its length prefix
+     * @param offset2 the offset of the second record in record2, after its length prefix
+     */
+    static int compare(final byte[] record1, final int offset1, final byte[] record2, final int offset2) {
+        final int cmp = Long.compareUnsigned(coordinateKey(record1, offset1), coordinateKey(record2, offset2));
+        return cmp != 0 ? cmp : compareFields(record1, offset1, record2, offset2);
+    }
+
+    /**
+     * Compare two encoded records with equal {@link #coordinateKey}s by the fields that
+     * {@link SAMRecordCoordinateComparator} compares after the coordinate and strand.
+     */
+    private static int compareFields(final byte[] record1, final int offset1, final byte[] record2, final int offset2) {
+        // read name, not including its null terminator.  Names are decoded one character per byte, so comparing
+        // unsigned bytes matches comparing the decoded names.
+        final int nameLength1 = (record1[offset1 + READ_NAME_LENGTH_OFFSET] & 0xFF) - 1;
+        final int nameLength2 = (record2[offset2 + READ_NAME_LENGTH_OFFSET] & 0xFF) - 1;
+        final int nameStart1 = offset1 + READ_NAME_OFFSET;
+        final int nameStart2 = offset2 + READ_NAME_OFFSET;
+        final int commonLength = Math.min(nameLength1, nameLength2);
+        for (int i = 0; i < commonLength; i++) {
+            final int cmp = (record1[nameStart1 + i] & 0xFF) - (record2[nameStart2 + i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        if (nameLength1 != nameLength2) return nameLength1 - nameLength2;
+        int fieldCmp = Integer.compare(readUShort(record1, offset1 + FLAGS_OFFSET), readUShort(record2, offset2 + FLAGS_OFFSET));
+        if (fieldCmp != 0) return fieldCmp;
+        fieldCmp = Integer.compare(record1[offset1 + MAPPING_QUALITY_OFFSET] & 0xFF, record2[offset2 + MAPPING_QUALITY_OFFSET] & 0xFF);
+        if (fieldCmp != 0) return fieldCmp;
+        fieldCmp = Integer.compare(readInt(record1, offset1 + MATE_REFERENCE_INDEX_OFFSET), readInt(record2, offset2 + MATE_REFERENCE_INDEX_OFFSET));
+        if (fieldCmp != 0) return fieldCmp;
+        fieldCmp = Integer.compare(readInt(record1, offset1 + MATE_POSITION_OFFSET), readInt(record2, offset2 + MATE_POSITION_OFFSET));
+        if (fieldCmp != 0) return fieldCmp;
+        return Integer.compare(readInt(record1, offset1 + INSERT_SIZE_OFFSET), readInt(record2, offset2 + INSERT_SIZE_OFFSET));
+    }
+
+    private static int readInt(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) |
+                ((buffer[offset + 1] & 0xFF) << 8) |
+                ((buffer[offset + 2] & 0xFF) << 16) |
+                (buffer[offset + 3] << 24);
+    }
+
+    private static int readUShort(final byte[] buffer, final int offset) {
+        return (buffer[offset] & 0xFF) | ((buffer[offset + 1] & 0xFF) << 8);
+    }
+
+    /**
+     * Gives access to the encoding of the most recent record without copying it.
+     */
+    private static final class EncodingBuffer extends ByteArrayOutputStream {
+        private byte[] array() {
+            return buf;
+        }
+    }
+
+    /**
+     * For iteration when number of records added is less than the threshold for spilling to disk.
+     */
+    private class InMemoryIterator implements CloseableIterator<SAMRecord> {
+        private int iterationIndex = 0;
+
+        @Override
+        public void close() {
+            // nothing to do
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterationIndex < numRecordsInRam;
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final long location = locations[iterationIndex++];
+            final byte[] chunk = chunks.get((int) (location >>> 32));
+            final int offset = (int) location + 4;
+            return codec.decode(chunk, offset, readInt(chunk, offset - 4));
+        }
+    }
+
+    /**
+     * For iteration when spilling to disk has occurred.  Merges the files of encoded records, decoding each record
+     * only as it is returned.  This iterator automatically closes when it iterates to the end, but if not iterating
+     * to the end it is a good idea to call close().
+     */
+    private class MergingIterator implements CloseableIterator<SAMRecord> {
+        private final PriorityQueue<FileRecordIterator> queue = new PriorityQueue<>(Math.max(1, files.size()), (lhs, rhs) -> {
+            final int cmp = compare(lhs.current, 0, rhs.current, 0);
+            return cmp != 0 ? cmp : Integer.compare(lhs.n, rhs.n);
+        });
+
+        private MergingIterator() {
+            int n = 0;
+            for (final Path f : files) {
+                final FileRecordIterator it = new FileRecordIterator(f, n++);
+                if (it.current != null) {
+                    queue.add(it);
+                } else {
+                    it.close();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public SAMRecord next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            final FileRecordIterator it = queue.poll();
+            final byte[] ret = it.current;
+            it.advance();
+            if (it.current != null) {
+                queue.add(it);
+            } else {
+                it.close();
+            }
+            return codec.decode(ret);
+        }
+
+        @Override
+        public void close() {
+            while (!queue.isEmpty()) {
+                queue.poll().close();
+            }
+        }
+    }
+
+    /**
+     * Reads a file of encoded records without decoding them.
+     */
+    private class FileRecordIterator {
+        private final int n; // A serial number used for tie-breaking in the merge
+        private final InputStream is;
+        private final BAMRecordCodec fileCodec = codec.clone();
+        private byte[] current;
+
+        private FileRecordIterator(final Path file, final int n) {
+            this.n = n;
+            try {
+                this.is = tempStreamFactory.wrapTempInputStream(Files.newInputStream(file), Defaults.BUFFER_SIZE);
+            } catch (IOException e) {
+                throw new RuntimeIOException(e);
+            }
+            fileCodec.setInputStream(is);
+            advance();
+        }
+
+        private void advance() {
+            current = fileCodec.readEncodedRecord();
+        }
+
+        private void close() {
+            CloserUtil.close(is);
+        }
+    }
+}
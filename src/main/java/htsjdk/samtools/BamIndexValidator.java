@@ -42,11 +42,11 @@ public class BamIndexValidator {
     public static int exhaustivelyTestIndex(final SamReader reader) { // throws Exception {
         // look at all chunk offsets in a linear index to make sure they are valid
 
-        if (reader.indexing().hasBrowseableIndex()) {
+        if (reader.indexing().hasBrowseableIndex() && getFileIndex(reader) instanceof BrowseableBAMIndex) {
             if (SamIndexes.BAI.fileNameSuffix.endsWith(reader.type().indexExtension())) {
 
                 // content is from an existing bai file
-                final CachingBAMFileIndex existingIndex = (CachingBAMFileIndex) reader.indexing().getBrowseableIndex(); // new CachingBAMFileIndex(inputBai, null);
+                final CachingBAMFileIndex existingIndex = (CachingBAMFileIndex) getFileIndex(reader); // new CachingBAMFileIndex(inputBai, null);
                 final int numRefs = existingIndex.getNumberOfReferences();
 
                 int chunkCount = 0;
@@ -88,7 +88,7 @@ public class BamIndexValidator {
                 // " linearIndex positions = " + indexCount);
             } else if (SamIndexes.CSI.fileNameSuffix.endsWith(reader.type().indexExtension())) {
 
-                final CSIIndex existingIndex = (CSIIndex) reader.indexing().getBrowseableIndex(); // new CachingBAMFileIndex(inputBai, null);
+                final CSIIndex existingIndex = (CSIIndex) getFileIndex(reader); // new CachingBAMFileIndex(inputBai, null);
                 final int numRefs = existingIndex.getNumberOfReferences();
 
                 int chunkCount = 0;
@@ -123,11 +123,11 @@ public class BamIndexValidator {
      */
     public static int lessExhaustivelyTestIndex(final SamReader reader) {
         // look at all chunk offsets in a linear index to make sure they are valid
-        if (reader.indexing().hasBrowseableIndex()) {
+        if (reader.indexing().hasBrowseableIndex() && getFileIndex(reader) instanceof BrowseableBAMIndex) {
             if (SamIndexes.BAI.fileNameSuffix.endsWith(reader.type().indexExtension())) {
 
                 // content is from an existing bai file
-                final CachingBAMFileIndex existingIndex = (CachingBAMFileIndex) reader.indexing().getBrowseableIndex();
+                final CachingBAMFileIndex existingIndex = (CachingBAMFileIndex) getFileIndex(reader);
                 final int numRefs = existingIndex.getNumberOfReferences();
 
                 int chunkCount = 0;
@@ -171,7 +171,7 @@ public class BamIndexValidator {
                 return chunkCount;
             } else if (SamIndexes.CSI.fileNameSuffix.endsWith(reader.type().indexExtension())) {
 
-                final CSIIndex existingIndex = (CSIIndex) reader.indexing().getBrowseableIndex(); // new CachingBAMFileIndex(inputBai, null);
+                final CSIIndex existingIndex = (CSIIndex) getFileIndex(reader); // new CachingBAMFileIndex(inputBai, null);
                 final int numRefs = existingIndex.getNumberOfReferences();
 
                 int chunkCount = 0;
@@ -201,4 +201,14 @@ public class BamIndexValidator {
         // else it's not a bam file with a browseable index
         return 0;
     }
+
+    /**
+     * The index read from the file, from which the content of each reference is walked, even if the reader queries
+     * it through a {@link CompactBAMFileIndex} (see {@link Defaults#COMPACT_BAM_INDEX}), which is browseable whether
+     * or not the index it was loaded from is.
+     */
+    private static AbstractBAMFileIndex getFileIndex(final SamReader reader) {
+        final BrowseableBAMIndex index = reader.indexing().getBrowseableIndex();
+        return index instanceof CompactBAMFileIndex ? ((CompactBAMFileIndex) index).getFileIndex() : (AbstractBAMFileIndex) index;
+    }
 }
@@ -2,7 +2,7 @@ package htsjdk.samtools;
 
 import htsjdk.samtools.cram.build.ContainerFactory;
 import htsjdk.samtools.cram.build.CramIO;
-import htsjdk.samtools.cram.common.CramVersions;
+import htsjdk.samtools.cram.common.CRAMVersion;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.structure.*;
 import htsjdk.samtools.util.RuntimeIOException;
@@ -19,6 +19,7 @@ public class CRAMContainerStreamWriter {
     private final SAMFileHeader samFileHeader;
     private final ContainerFactory containerFactory;
     private final CRAMIndexer cramIndexer;
+    private final CRAMVersion cramVersion;
 
     private long streamOffset = 0;
 
@@ -88,7 +89,25 @@ public class CRAMContainerStreamWriter {
         this.outputStream = outputStream;
         this.cramIndexer = indexer;
         this.outputStreamIdentifier = outputIdentifier;
+        this.cramVersion = encodingStrategy.getCRAMVersion();
         this.containerFactory = new ContainerFactory(samFileHeader, encodingStrategy, referenceSource);
+        this.containerFactory.setCompressionThreads(Defaults.COMPRESSION_THREADS);
+    }
+
+    /**
+     * Set the number of threads used to build and compress containers. 0 or 1 means containers are built on the
+     * writing thread. Otherwise containers are built on background threads while records for subsequent
+     * containers are accumulated, and are written out in order. Ignored if the encoding strategy uses a custom
+     * compression header encoding map.
+     *
+     * @param compressionThreads the number of containers to build concurrently
+     */
+    public void setCompressionThreads(final int compressionThreads) {
+        containerFactory.setCompressionThreads(compressionThreads);
+    }
+
+    public int getCompressionThreads() {
+        return containerFactory.getCompressionThreads();
     }
 
     /**
@@ -107,7 +126,7 @@ public class CRAMContainerStreamWriter {
      */
     // TODO: retained for backward compatibility for disq in order to run GATK tests (remove before merging this branch)
     public void writeHeader(final SAMFileHeader requestedSAMFileHeader) {
-        final CramHeader cramHeader = new CramHeader(CramVersions.DEFAULT_CRAM_VERSION, outputStreamIdentifier);
+        final CramHeader cramHeader = new CramHeader(cramVersion, outputStreamIdentifier);
         streamOffset = CramIO.writeCramHeader(cramHeader, outputStream);
         streamOffset += Container.writeSAMFileHeaderContainer(cramHeader.getCRAMVersion(), requestedSAMFileHeader, outputStream);
     }
@@ -126,12 +145,12 @@ public class CRAMContainerStreamWriter {
      */
     public void finish(final boolean writeEOFContainer) {
         try {
-            final Container container = containerFactory.getFinalContainer(streamOffset);
-            if (container != null) {
+            Container container;
+            while ((container = containerFactory.getFinalContainer(streamOffset)) != null) {
                 writeContainer(container);
             }
             if (writeEOFContainer) {
-                CramIO.writeCramEOF(CramVersions.DEFAULT_CRAM_VERSION, outputStream);
+                CramIO.writeCramEOF(cramVersion, outputStream);
             }
             outputStream.flush();
             if (cramIndexer != null) {
@@ -144,7 +163,7 @@ public class CRAMContainerStreamWriter {
     }
 
     protected void writeContainer(final Container container) {
-        streamOffset += container.write(CramVersions.DEFAULT_CRAM_VERSION, outputStream);
+        streamOffset += container.write(cramVersion, outputStream);
         if (cramIndexer != null) {
             // using silent validation here because the reads have been through validation already or
             // they have been generated somehow through the htsjdk
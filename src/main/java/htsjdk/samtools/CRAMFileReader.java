@@ -47,6 +47,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
     private boolean mEnableIndexMemoryMapping;
 
     private ValidationStringency validationStringency;
+    private int decodeThreads = 0;
 
     private final static Log log = Log.getInstance(CRAMFileReader.class);
 
@@ -293,7 +294,9 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
 
         // create an input stream that reads the source cram stream only within the coordinate pairs:
         final SeekableStream seekableStream = getSeekableStreamOrFailWithRTE();
-        return new CRAMIterator(seekableStream, referenceSource, validationStringency, null, coordinateArray);
+        final CRAMIterator spanIterator = new CRAMIterator(seekableStream, referenceSource, validationStringency, null, coordinateArray);
+        spanIterator.setDecodeThreads(decodeThreads);
+        return spanIterator;
     }
 
     @Override
@@ -310,6 +313,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
             } else {
                 iterator = new CRAMIterator(inputStream, referenceSource, validationStringency);
             }
+            iterator.setDecodeThreads(decodeThreads);
             return iterator;
         } catch (final IOException e) {
             throw new RuntimeIOException(e);
@@ -374,6 +378,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         try {
             seekableStream.seek(0);
             iterator = new CRAMIterator(seekableStream, referenceSource, validationStringency);
+            iterator.setDecodeThreads(decodeThreads);
             seekableStream.seek(startOfLastLinearBin >>> 16);
             boolean atAlignments;
             do {
@@ -481,6 +486,18 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
         return validationStringency;
     }
 
+    /**
+     * Set the number of containers that iterators created by this reader decode concurrently.
+     * @param decodeThreads number of containers to decode concurrently; 0 or 1 to decode on the calling thread
+     * @see CRAMIterator#setDecodeThreads(int)
+     */
+    public void setDecodeThreads(final int decodeThreads) {
+        this.decodeThreads = decodeThreads;
+        if (iterator != null) {
+            iterator.setDecodeThreads(decodeThreads);
+        }
+    }
+
     @Override
     public CloseableIterator<SAMRecord> query(final QueryInterval[] intervals,
                                               final boolean contained) {
@@ -559,6 +576,7 @@ public class CRAMFileReader extends SamReader.ReaderImplementation implements Sa
                         queryIntervals,
                         coordinates
                 );
+                unfilteredIterator.setDecodeThreads(decodeThreads);
                 getNextRecord(); // advance to the first record that matches the filter criteria
             }
         }
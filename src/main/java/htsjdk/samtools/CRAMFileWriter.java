@@ -131,6 +131,17 @@ public class CRAMFileWriter extends SAMFileWriterImpl {
         setHeader(samFileHeader);
     }
 
+    /**
+     * Set the number of threads used to build and compress containers. 0 or 1 means containers are built on the
+     * writing thread.
+     *
+     * @param compressionThreads the number of containers to build concurrently
+     * @see CRAMContainerStreamWriter#setCompressionThreads(int)
+     */
+    public void setCompressionThreads(final int compressionThreads) {
+        cramContainerStream.setCompressionThreads(compressionThreads);
+    }
+
     /**
      * Write an alignment record.
      * @param alignment must not be null and must have a valid SAMFileHeader.
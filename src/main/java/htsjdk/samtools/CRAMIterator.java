@@ -27,10 +27,16 @@ import htsjdk.samtools.seekablestream.SeekableStream;
 import java.io.Closeable;
 import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
 
 public class CRAMIterator implements SAMRecordIterator, Closeable {
+    private static final ExecutorService decodePool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
     private final CountingInputStream countingInputStream;
     private final CramContainerIterator containerIterator;
     private final CramHeader cramHeader;
@@ -49,6 +55,14 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
     // allocates ~256k small objects every time its instantiated.
     private final CompressorCache compressorCache = new CompressorCache();
 
+    // If greater than 1, the number of containers to decode concurrently.
+    private int decodeThreads = 0;
+    // Containers (in stream order) that have been read ahead, and are being decoded on background threads
+    private final Deque<PendingContainer> pendingContainers = new ArrayDeque<>();
+    // Compressor caches that are not in use by a background thread
+    private final Deque<CompressorCache> freeCompressorCaches = new ArrayDeque<>();
+    private boolean lastContainerRead = false;
+
     /**
      * `samRecordIndex` only used when validation is not `SILENT`
      * (for identification by the validator which records are invalid)
@@ -88,24 +102,35 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         this.queryIntervals = queryIntervals;
     }
 
-    private BAMIteratorFilter.FilteringIteratorState nextContainer() {
+    /**
+     * Read the next container from the stream.
+     * @return the next container, which may be the EOF container, or null if there are no more containers
+     */
+    private Container readContainer() {
         if (containerIterator != null) {
             if (!containerIterator.hasNext()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
-            }
-            container = containerIterator.next();
-            if (container.isEOF()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+                return null;
             }
+            return containerIterator.next();
         } else {
             final long containerByteOffset = countingInputStream.getCount();
-            container = new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
-            if (container.isEOF()) {
-                samRecords.clear();
-                return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
-            }
+            return new Container(cramHeader.getCRAMVersion(), countingInputStream, containerByteOffset);
+        }
+    }
+
+    private BAMIteratorFilter.FilteringIteratorState nextContainer() {
+        if (decodeThreads > 1 || !pendingContainers.isEmpty()) {
+            return nextDecodedContainer();
+        }
+        final Container nextContainer = readContainer();
+        if (nextContainer == null) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        container = nextContainer;
+        if (container.isEOF()) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
         }
 
         if (containerMatchesQuery(container)) {
@@ -121,6 +146,131 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         }
     }
 
+    /**
+     * Take the next matching container from those read ahead, reading more containers as required.
+     * Only containers that match the query are read ahead, so this never returns CONTINUE_ITERATION.
+     */
+    private BAMIteratorFilter.FilteringIteratorState nextDecodedContainer() {
+        while (!lastContainerRead && pendingContainers.size() < 2 * decodeThreads) {
+            readAheadContainer();
+        }
+        final PendingContainer next = pendingContainers.poll();
+        if (next != null && next.error != null) {
+            samRecords.clear();
+            throw next.error;
+        }
+        if (next == null || next.container == null) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        container = next.container;
+        if (container.isEOF()) {
+            samRecords.clear();
+            return BAMIteratorFilter.FilteringIteratorState.STOP_ITERATION;
+        }
+        samRecords = next.getSAMRecords();
+        samRecordIterator = samRecords.iterator();
+        return BAMIteratorFilter.FilteringIteratorState.MATCHES_FILTER;
+    }
+
+    /**
+     * Read the next container that matches the query, and start decoding it on a background thread.
+     * Errors are deferred until the containers before them have been returned.
+     */
+    private void readAheadContainer() {
+        try {
+            Container nextContainer;
+            do {
+                nextContainer = readContainer();
+            } while (nextContainer != null && !nextContainer.isEOF() && !containerMatchesQuery(nextContainer));
+
+            if (nextContainer == null || nextContainer.isEOF()) {
+                lastContainerRead = true;
+                pendingContainers.add(new PendingContainer(nextContainer));
+            } else if (nextContainer.getCompressionHeader().isReferenceRequired() &&
+                    nextContainer.getAlignmentContext().getReferenceContext().isMultiRef()) {
+                // the slices may need bases from any number of references, so decode these on this thread, using
+                // (and updating) the cached reference region, when the container is reached
+                pendingContainers.add(new PendingContainer(nextContainer));
+            } else {
+                if (nextContainer.getCompressionHeader().isReferenceRequired() &&
+                        nextContainer.getAlignmentContext().getReferenceContext().isMappedSingleRef()) {
+                    // fetch the reference bases on this thread, since reference sources are not necessarily
+                    // thread-safe; the background thread works on a copy of the region with these bases cached
+                    cramReferenceState.getReferenceBases(
+                            nextContainer.getAlignmentContext().getReferenceContext().getReferenceSequenceID());
+                }
+                pendingContainers.add(new PendingContainer(nextContainer, new CRAMReferenceRegion(cramReferenceState)));
+            }
+        } catch (final RuntimeException e) {
+            lastContainerRead = true;
+            pendingContainers.add(new PendingContainer(e));
+        }
+    }
+
+    /**
+     * A container that has been read ahead, and its records, once decoded.
+     */
+    private final class PendingContainer {
+        private final Container container;
+        private final RuntimeException error;
+        private final CompressorCache containerCompressorCache;
+        private final Future<List<SAMRecord>> decodedRecords;
+
+        /**
+         * A container to be decoded on this thread when it is reached.
+         * @param container the container, or null if there are no more containers
+         */
+        private PendingContainer(final Container container) {
+            this.container = container;
+            this.error = null;
+            this.containerCompressorCache = null;
+            this.decodedRecords = null;
+        }
+
+        /**
+         * An error to be thrown when it is reached.
+         */
+        private PendingContainer(final RuntimeException error) {
+            this.container = null;
+            this.error = error;
+            this.containerCompressorCache = null;
+            this.decodedRecords = null;
+        }
+
+        /**
+         * A container to be decoded on a background thread.
+         * @param container the container
+         * @param referenceRegion a reference region for the exclusive use of the background thread
+         */
+        private PendingContainer(final Container container, final CRAMReferenceRegion referenceRegion) {
+            this.container = container;
+            this.error = null;
+            this.containerCompressorCache = freeCompressorCaches.isEmpty() ? new CompressorCache() : freeCompressorCaches.pop();
+            final ValidationStringency stringency = validationStringency;
+            this.decodedRecords = decodePool.submit(() ->
+                    container.getSAMRecords(stringency, referenceRegion, containerCompressorCache, getSAMFileHeader()));
+        }
+
+        private List<SAMRecord> getSAMRecords() {
+            if (decodedRecords == null) {
+                return container.getSAMRecords(validationStringency, cramReferenceState, compressorCache, getSAMFileHeader());
+            }
+            try {
+                final List<SAMRecord> records = decodedRecords.get();
+                freeCompressorCaches.push(containerCompressorCache);
+                return records;
+            } catch (final InterruptedException e) {
+                throw new RuntimeException("Interrupted waiting for decoding thread", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Exception decoding container", e.getCause());
+            }
+        }
+    }
+
     private boolean containerMatchesQuery(final Container container) {
         if (queryIntervals == null) {
             return true;
@@ -230,6 +380,12 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
     @Override
     public void close() {
         samRecords.clear();
+        for (final PendingContainer pendingContainer : pendingContainers) {
+            if (pendingContainer.decodedRecords != null) {
+                pendingContainer.decodedRecords.cancel(false);
+            }
+        }
+        pendingContainers.clear();
         try {
             if (countingInputStream != null) {
                 countingInputStream.close();
@@ -258,6 +414,23 @@ public class CRAMIterator implements SAMRecordIterator, Closeable {
         this.validationStringency = validationStringency;
     }
 
+    /**
+     * Set the number of containers that are decoded concurrently on background threads, while the records of
+     * preceding containers are returned. Containers are read ahead of the current one on the calling thread.
+     * Records are still returned in order.
+     * @param decodeThreads number of containers to decode concurrently; 0 or 1 to decode on the calling thread
+     */
+    public void setDecodeThreads(final int decodeThreads) {
+        if (decodeThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decode threads: " + decodeThreads);
+        }
+        this.decodeThreads = decodeThreads;
+    }
+
+    public int getDecodeThreads() {
+        return decodeThreads;
+    }
+
     public SamReader getFileSource() {
         return mReader;
     }
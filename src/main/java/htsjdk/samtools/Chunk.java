@@ -181,4 +181,32 @@ public class Chunk implements Cloneable, Serializable,Comparable<Chunk> {
         }
         return result;
     }
+
+    /**
+     * Coalesce chunks separated by small gaps, so that the gap between them is read through instead of seeked over.
+     * @param chunks sorted, coalesced chunks, as returned by {@link #optimizeChunkList(List, long)}.  Modified in place.
+     * @param maxGap Largest gap, in bytes of the compressed file, between the block of the end of one chunk and the
+     *               block of the start of the next for them to be coalesced.  If &lt;= 0 the chunks are returned as they are.
+     * @return sorted list of chunks in which chunks no more than maxGap apart are coalesced.
+     */
+    public static List<Chunk> coalesceChunkList(final List<Chunk> chunks, final long maxGap) {
+        if (maxGap <= 0 || chunks.size() < 2) {
+            return chunks;
+        }
+        final List<Chunk> result = new ArrayList<Chunk>();
+        Chunk lastChunk = null;
+        for (final Chunk chunk : chunks) {
+            if (lastChunk != null &&
+                    BlockCompressedFilePointerUtil.getBlockAddress(chunk.getChunkStart()) -
+                    BlockCompressedFilePointerUtil.getBlockAddress(lastChunk.getChunkEnd()) <= maxGap) {
+                if (chunk.getChunkEnd() > lastChunk.getChunkEnd()) {
+                    lastChunk.setChunkEnd(chunk.getChunkEnd());
+                }
+            } else {
+                result.add(chunk);
+                lastChunk = chunk;
+            }
+        }
+        return result;
+    }
 }
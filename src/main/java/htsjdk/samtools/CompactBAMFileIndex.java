@@ -0,0 +1,349 @@
+package htsjdk.samtools;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A BAM index that holds the bins, chunks and linear index of each reference in a few primitive arrays, instead of
+ * {@link Bin}, {@link Chunk} and {@link LinearIndex} objects.  The arrays of a reference are loaded from the BAI or CSI
+ * index file the first time the reference is queried, and kept for the life of the index, so that a query never reads
+ * the file again for a reference it has seen, and the index of a file of which only a few references are queried
+ * stays small.
+ *
+ * Thread safe: the underlying file index is only read under its own lock, and a loaded reference is immutable, so one
+ * index can serve queries from many threads.  The spans returned are the same as those of the index read from the
+ * file, and the bins the same as those of a {@link CachingBAMFileIndex} or {@link CSIIndex}.
+ */
+final class CompactBAMFileIndex implements BrowseableBAMIndex {
+    private final AbstractBAMFileIndex fileIndex;
+    private final CSIIndex csiIndex;
+    private final int minShift;
+    private final int binDepth;
+    private final AtomicReferenceArray<PackedReference> references;
+    private volatile Long startOfLastLinearBin;
+
+    /**
+     * @param fileIndex index to read the references from, BAI (any {@link AbstractBAMFileIndex} other than a
+     *                  {@link CSIIndex}) or a {@link CSIIndex}.  Owned by this index from now on, and closed with it.
+     */
+    CompactBAMFileIndex(final AbstractBAMFileIndex fileIndex) {
+        this.fileIndex = fileIndex;
+        if (fileIndex instanceof CSIIndex) {
+            csiIndex = (CSIIndex) fileIndex;
+            minShift = csiIndex.getMinShift();
+            binDepth = csiIndex.getBinDepth();
+        } else {
+            csiIndex = null;
+            minShift = LinearIndex.BAM_LIDX_SHIFT;
+            binDepth = GenomicIndexUtil.LEVEL_STARTS.length;
+        }
+        synchronized (fileIndex) {
+            references = new AtomicReferenceArray<>(fileIndex.getNumberOfReferences());
+        }
+    }
+
+    /**
+     * @return the number of references in the index
+     */
+    public int getNumberOfReferences() {
+        return references.length();
+    }
+
+    /**
+     * @see AbstractBAMFileIndex#getNoCoordinateCount()
+     */
+    public Long getNoCoordinateCount() {
+        synchronized (fileIndex) {
+            return fileIndex.getNoCoordinateCount();
+        }
+    }
+
+    /**
+     * @return the index read from the file, which is not thread safe, for callers that walk its content rather than
+     * query it, such as {@link BamIndexValidator}
+     */
+    AbstractBAMFileIndex getFileIndex() {
+        return fileIndex;
+    }
+
+    /**
+     * @return the references loaded so far
+     */
+    int getNumberOfLoadedReferences() {
+        int loaded = 0;
+        for (int i = 0; i < references.length(); i++) {
+            if (references.get(i) != null) {
+                loaded++;
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public BAMFileSpan getSpanOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        if (!addChunksOverlapping(referenceIndex, startPos, endPos, chunks)) {
+            return null;
+        }
+        final List<Chunk> chunkList = Chunk.optimizeChunkList(chunks, 0);
+        return chunkList.isEmpty() ? null : new BAMFileSpan(chunkList);
+    }
+
+    /**
+     * Get the chunks of many intervals at once, without a span for each of them to merge.
+     * @param intervals the intervals to restrict reads to
+     * @return the same chunks as {@link BAMFileSpan#merge(BAMFileSpan[])} of the span of each interval
+     */
+    List<Chunk> getChunksOverlapping(final QueryInterval[] intervals) {
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        for (final QueryInterval interval : intervals) {
+            addChunksOverlapping(interval.referenceIndex, interval.start, interval.end, chunks);
+        }
+        return Chunk.optimizeChunkList(chunks, 0);
+    }
+
+    @Override
+    public int getLevelSize(final int levelNumber) {
+        return fileIndex.getLevelSize(levelNumber);
+    }
+
+    @Override
+    public int getLevelForBin(final Bin bin) {
+        return fileIndex.getLevelForBin(bin);
+    }
+
+    @Override
+    public int getFirstLocusInBin(final Bin bin) {
+        return fileIndex.getFirstLocusInBin(bin);
+    }
+
+    @Override
+    public int getLastLocusInBin(final Bin bin) {
+        return fileIndex.getLastLocusInBin(bin);
+    }
+
+    @Override
+    public BinList getBinsOverlapping(final int referenceIndex, final int startPos, final int endPos) {
+        final BitSet regionBins = csiIndex == null ? GenomicIndexUtil.regionToBins(startPos, endPos) :
+                GenomicIndexUtil.regionToBins(startPos, endPos, minShift, binDepth);
+        return regionBins == null ? null : new BinList(referenceIndex, regionBins);
+    }
+
+    /**
+     * The chunks of bin and of the bins above it that contain its first locus, less those that end before the minimum
+     * offset of that locus, as {@link CachingBAMFileIndex#getSpanOverlapping(Bin)} and
+     * {@link CSIIndex#getSpanOverlapping(Bin)}.
+     */
+    @Override
+    public BAMFileSpan getSpanOverlapping(final Bin bin) {
+        if (bin == null) {
+            return null;
+        }
+        final PackedReference reference = getReference(bin.getReferenceSequence());
+        if (reference == null) {
+            return null;
+        }
+        final int binLevel = getLevelForBin(bin);
+        final int firstLocusInBin = getFirstLocusInBin(bin);
+
+        final List<Chunk> chunks = new ArrayList<Chunk>();
+        addChunksOfBin(reference, bin.getBinNumber(), chunks);
+        int firstBinOnLevel = 0;
+        for (int level = 0; level < binLevel; level++) {
+            final int shift = minShift + 3 * (binDepth - 1 - level);
+            addChunksOfBin(reference, firstBinOnLevel + ((firstLocusInBin - 1) >> shift), chunks);
+            firstBinOnLevel += 1 << (3 * level);
+        }
+
+        final long minimumOffset;
+        if (csiIndex == null) {
+            minimumOffset = reference.getLinearIndexOffset(firstLocusInBin);
+        } else {
+            minimumOffset = bin instanceof BinWithOffset ? ((BinWithOffset) bin).getlOffset() : 0L;
+        }
+        return new BAMFileSpan(Chunk.optimizeChunkList(chunks, minimumOffset));
+    }
+
+    private static void addChunksOfBin(final PackedReference reference, final int binNumber, final List<Chunk> chunks) {
+        final int index = reference.indexOfBin(binNumber);
+        if (index >= 0) {
+            for (int c = reference.firstChunks[index]; c < reference.firstChunks[index + 1]; c++) {
+                chunks.add(new Chunk(reference.chunkStarts[c], reference.chunkEnds[c]));
+            }
+        }
+    }
+
+    /**
+     * Add to chunks copies of the chunks that may hold records overlapping the region, less those that end before the
+     * minimum offset of its start.
+     * @return false if the reference is not in the index or the region is empty
+     */
+    private boolean addChunksOverlapping(final int referenceIndex, final int startPos, final int endPos, final List<Chunk> chunks) {
+        final PackedReference reference = getReference(referenceIndex);
+        if (reference == null) {
+            return false;
+        }
+        final long maxPos = (1L << (minShift + 3 * (binDepth - 1))) - 1;
+        final long start = (startPos <= 0) ? 0 : ((long) startPos - 1L) & maxPos;
+        final long end = (endPos <= 0) ? maxPos : ((long) endPos - 1L) & maxPos;
+        if (start > end) {
+            return false;
+        }
+        final long minimumOffset = csiIndex == null ?
+                reference.getLinearIndexOffset(startPos) : getCSIMinimumOffset(reference, startPos);
+
+        int firstBinOnLevel = 0;
+        int shift = minShift + 3 * (binDepth - 1);
+        for (int level = 0; level < binDepth; level++) {
+            final int lastBin = firstBinOnLevel + (int) (end >> shift);
+            int index = reference.indexOfBin(firstBinOnLevel + (int) (start >> shift));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            for (; index < reference.bins.length && reference.bins[index] <= lastBin; index++) {
+                for (int c = reference.firstChunks[index]; c < reference.firstChunks[index + 1]; c++) {
+                    if (reference.chunkEnds[c] > minimumOffset) {
+                        chunks.add(new Chunk(reference.chunkStarts[c], reference.chunkEnds[c]));
+                    }
+                }
+            }
+            firstBinOnLevel += 1 << (3 * level);
+            shift -= 3;
+        }
+        return true;
+    }
+
+    /**
+     * The offset in the lowest level bin that contains startPos or, if that bin is not in the index, in the nearest
+     * bin to its left with the same parent, or else in its parent, as {@link CSIIndex#getSpanOverlapping(int, int, int)}.
+     */
+    private long getCSIMinimumOffset(final PackedReference reference, final int startPos) {
+        int binNumber = csiIndex.getFirstBinInLevelForCSI(binDepth - 1) + (startPos - 1 >> minShift);
+        do {
+            final int index = reference.indexOfBin(binNumber);
+            if (index >= 0) {
+                return reference.binOffsets[index];
+            }
+            final int firstSibling = (csiIndex.getParentBinNumber(binNumber) << 3) + 1;
+            binNumber = binNumber > firstSibling ? binNumber - 1 : csiIndex.getParentBinNumber(binNumber);
+        } while (binNumber != 0);
+        final int index = reference.indexOfBin(0);
+        return index >= 0 ? reference.binOffsets[index] : 0L;
+    }
+
+    @Override
+    public long getStartOfLastLinearBin() {
+        if (startOfLastLinearBin == null) {
+            synchronized (fileIndex) {
+                startOfLastLinearBin = fileIndex.getStartOfLastLinearBin();
+            }
+        }
+        return startOfLastLinearBin;
+    }
+
+    @Override
+    public BAMIndexMetaData getMetaData(final int reference) {
+        final PackedReference packed = getReference(reference);
+        return packed == null ? null : packed.metaData;
+    }
+
+    @Override
+    public void close() {
+        synchronized (fileIndex) {
+            fileIndex.close();
+        }
+    }
+
+    private PackedReference getReference(final int referenceIndex) {
+        if (referenceIndex < 0 || referenceIndex >= references.length()) {
+            return null;
+        }
+        PackedReference reference = references.get(referenceIndex);
+        if (reference == null) {
+            synchronized (fileIndex) {
+                reference = references.get(referenceIndex);
+                if (reference == null) {
+                    reference = new PackedReference(fileIndex.query(referenceIndex, 1, -1));
+                    references.set(referenceIndex, reference);
+                }
+            }
+        }
+        return reference;
+    }
+
+    /**
+     * The index of one reference: its bins in order, with the chunks of bin i at firstChunks[i] up to firstChunks[i + 1],
+     * and either its linear index (BAI) or the offset of each bin (CSI).
+     */
+    private static final class PackedReference {
+        final int[] bins;
+        final int[] firstChunks;
+        final long[] chunkStarts;
+        final long[] chunkEnds;
+        final long[] binOffsets;
+        final long[] linearIndex;
+        final int linearIndexStart;
+        final BAMIndexMetaData metaData;
+
+        PackedReference(final BAMIndexContent content) {
+            final List<Bin> binList = new ArrayList<Bin>();
+            int nChunks = 0;
+            if (content != null) {
+                for (final Bin bin : content.getBins()) {
+                    binList.add(bin);
+                    nChunks += bin.getChunkList().size();
+                }
+            }
+            binList.sort(null);
+
+            bins = new int[binList.size()];
+            firstChunks = new int[binList.size() + 1];
+            chunkStarts = new long[nChunks];
+            chunkEnds = new long[nChunks];
+            binOffsets = content != null && content.getLinearIndex() == null ? new long[binList.size()] : null;
+            int c = 0;
+            for (int i = 0; i < bins.length; i++) {
+                final Bin bin = binList.get(i);
+                bins[i] = bin.getBinNumber();
+                firstChunks[i] = c;
+                for (final Chunk chunk : bin.getChunkList()) {
+                    chunkStarts[c] = chunk.getChunkStart();
+                    chunkEnds[c] = chunk.getChunkEnd();
+                    c++;
+                }
+                if (binOffsets != null && bin instanceof BinWithOffset) {
+                    binOffsets[i] = ((BinWithOffset) bin).getlOffset();
+                }
+            }
+            firstChunks[bins.length] = c;
+
+            if (content != null && content.getLinearIndex() != null) {
+                linearIndex = content.getLinearIndex().getIndexEntries();
+                linearIndexStart = content.getLinearIndex().getIndexStart();
+            } else {
+                linearIndex = new long[0];
+                linearIndexStart = 0;
+            }
+            metaData = content != null ? content.getMetaData() : null;
+        }
+
+        /**
+         * @return the index of binNumber in bins, or (-(insertion point) - 1) if it is not there
+         */
+        int indexOfBin(final int binNumber) {
+            return Arrays.binarySearch(bins, binNumber);
+        }
+
+        /**
+         * @see LinearIndex#getMinimumOffset(int)
+         */
+        long getLinearIndexOffset(final int startPos) {
+            final int start = (startPos <= 0) ? 0 : startPos - 1;
+            final int index = (start >> LinearIndex.BAM_LIDX_SHIFT) - linearIndexStart;
+            return index < linearIndex.length ? linearIndex[index] : 0;
+        }
+    }
+}
@@ -28,6 +28,18 @@ public class Defaults {
      */
     public static final boolean USE_ASYNC_IO_READ_FOR_SAMTOOLS;
 
+    /**
+     * Number of BGZF blocks to decompress concurrently when reading BAM files sequentially.
+     * 0 or 1 means blocks are decompressed one at a time.  Default = 0.
+     */
+    public static final int INFLATE_THREADS;
+
+    /**
+     * Number of threads used to decode records when iterating over BAM, CRAM and VCF files.
+     * 0 or 1 means records are decoded on the reading thread.  Default = 0.
+     */
+    public static final int DECODE_THREADS;
+
     /** Should asynchronous write I/O be used where supported by the samtools package (one thread per file).
      *  Default = false.
      */
@@ -41,6 +53,43 @@ public class Defaults {
     /** Compression level to be used for writing BAM and other block-compressed outputs.  Default = 5. */
     public static final int COMPRESSION_LEVEL;
 
+    /**
+     * Number of threads used to deflate blocks when writing BAM and other block-compressed outputs, and to build
+     * containers when writing CRAM. 0 or 1 means blocks and containers are compressed on the writing thread.  Default = 0.
+     */
+    public static final int COMPRESSION_THREADS;
+
+    /**
+     * Number of full buffers of records that a SortingCollection may sort and write to disk on background threads
+     * while more records are added.  0 means records are spilled on the adding thread.  Default = 0.
+     */
+    public static final int SORTING_COLLECTION_SPILL_BUFFERS;
+
+    /**
+     * Maximum number of temporary files that a SortingCollection merges at once.  Groups of this many files are merged
+     * into larger files in the background as records are spilled.  0 means all files are merged at once when the
+     * collection is iterated.  Default = 0.
+     */
+    public static final int SORTING_COLLECTION_MERGE_FAN_IN;
+
+    /**
+     * Should SAM writers that sort records into coordinate order hold them in their BAM encoding, sorted by a packed
+     * coordinate key, rather than as SAMRecord objects in a SortingCollection.  Default = false.
+     */
+    public static final boolean SERIALIZED_COORDINATE_SORT;
+
+    /**
+     * Should VCF and BCF codecs decode genotypes into primitive columns, presented as one lightweight view per sample,
+     * rather than into a Genotype object with its own attribute map and allele list per sample.  Default = false.
+     */
+    public static final boolean COLUMNAR_GENOTYPES;
+
+    /**
+     * Should the BCF2 codec keep the raw blocks of each record, so that records written unchanged to a BCF file with
+     * the same header dictionaries are copied verbatim rather than encoded again.  Default = false.
+     */
+    public static final boolean BCF_RETAIN_RAW_RECORDS;
+
     /** Buffer size, in bytes, used whenever reading/writing files or streams.  Default = 128k. */
     public static final int BUFFER_SIZE;
 
@@ -93,6 +142,49 @@ public class Defaults {
      */
     public static final String EBI_REFERENCE_SERVICE_URL_MASK;
 
+    /**
+     * Size, in megabytes, of the reference bases that the cache shared by all CRAM readers and writers holds by strong
+     * references, which adds up to this much to the heap in use.  Bases beyond it, and all bases when this is 0, are
+     * held by soft references, which the garbage collector clears when memory is short.  Default = 0.
+     */
+    public static final int CRAM_REFERENCE_CACHE_SIZE_MB;
+
+    /**
+     * Number of fixed-size blocks of a file read over HTTP to keep in an LRU cache, so that nearby reads share one
+     * ranged request.  0 means every read is a ranged request of its own.  Default = 0.
+     */
+    public static final int HTTP_CACHE_BLOCKS;
+
+    /** Size, in bytes, of the blocks cached for files read over HTTP.  Default = 64k. */
+    public static final int HTTP_BLOCK_SIZE;
+
+    /**
+     * Number of blocks ahead of the current one to fetch concurrently, when blocks of a file read over HTTP are read
+     * in sequence.  Only used when blocks are cached.  Default = 0.
+     */
+    public static final int HTTP_PREFETCH_BLOCKS;
+
+    /**
+     * Number of data blocks of an htsget response to download concurrently.  When greater than 1, the ticket for the
+     * next interval of a multi-interval htsget query is also requested while the current interval is read.
+     * 1 means blocks and tickets are requested one after another as they are read.  Default = 1.
+     */
+    public static final int HTSGET_CONCURRENT_BLOCKS;
+
+    /**
+     * Largest gap, in bytes of the compressed file, between the chunks of a multi-interval BAM query that is read
+     * through rather than seeked over.  Larger values trade extra bytes read for fewer seeks, which pays off when
+     * seeks are expensive, as over HTTP.  0 means only overlapping or adjacent chunks are merged.  Default = 0.
+     */
+    public static final int BAM_QUERY_CHUNK_MERGE_GAP;
+
+    /**
+     * Should BAI and CSI indexes of BAM files be held in packed arrays, loaded one reference at a time as it is first
+     * queried, rather than as objects or read from the file for each query?  The packed index is thread safe.
+     * Default = false.
+     */
+    public static final boolean COMPACT_BAM_INDEX;
+
     /**
      * Boolean describing whether downloading of SRA native libraries is allowed,
      * in case such native libraries are not found locally.  Default = false.
@@ -116,9 +208,17 @@ public class Defaults {
         CREATE_INDEX = getBooleanProperty("create_index", false);
         CREATE_MD5 = getBooleanProperty("create_md5", false);
         USE_ASYNC_IO_READ_FOR_SAMTOOLS = getBooleanProperty("use_async_io_read_samtools", false);
+        INFLATE_THREADS = getIntProperty("inflate_threads", 0);
+        DECODE_THREADS = getIntProperty("decode_threads", 0);
         USE_ASYNC_IO_WRITE_FOR_SAMTOOLS = getBooleanProperty("use_async_io_write_samtools", false);
         USE_ASYNC_IO_WRITE_FOR_TRIBBLE = getBooleanProperty("use_async_io_write_tribble", false);
         COMPRESSION_LEVEL = getIntProperty("compression_level", 5);
+        COMPRESSION_THREADS = getIntProperty("compression_threads", 0);
+        SORTING_COLLECTION_SPILL_BUFFERS = getIntProperty("sorting_collection_spill_buffers", 0);
+        SORTING_COLLECTION_MERGE_FAN_IN = getIntProperty("sorting_collection_merge_fan_in", 0);
+        SERIALIZED_COORDINATE_SORT = getBooleanProperty("serialized_coordinate_sort", false);
+        COLUMNAR_GENOTYPES = getBooleanProperty("columnar_genotypes", false);
+        BCF_RETAIN_RAW_RECORDS = getBooleanProperty("bcf_retain_raw_records", false);
         DEFAULT_SAM_EXTENSION = getStringProperty("default_sam_type", "bam");
         DEFAULT_VCF_EXTENSION = getStringProperty("default_vcf_type", "vcf");
         BUFFER_SIZE = getIntProperty("buffer_size", 1024 * 128);
@@ -130,6 +230,13 @@ public class Defaults {
         REFERENCE_FASTA = getFileProperty("reference_fasta", null);
         USE_CRAM_REF_DOWNLOAD = getBooleanProperty("use_cram_ref_download", false);
         EBI_REFERENCE_SERVICE_URL_MASK = "https://www.ebi.ac.uk/ena/cram/md5/%s";
+        CRAM_REFERENCE_CACHE_SIZE_MB = getIntProperty("cram_reference_cache_size_mb", 0);
+        HTTP_CACHE_BLOCKS = getIntProperty("http_cache_blocks", 0);
+        HTTP_BLOCK_SIZE = getIntProperty("http_block_size", 64 * 1024);
+        HTTP_PREFETCH_BLOCKS = getIntProperty("http_prefetch_blocks", 0);
+        HTSGET_CONCURRENT_BLOCKS = getIntProperty("htsget_concurrent_blocks", 1);
+        BAM_QUERY_CHUNK_MERGE_GAP = getIntProperty("bam_query_chunk_merge_gap", 0);
+        COMPACT_BAM_INDEX = getBooleanProperty("compact_bam_index", false);
         CUSTOM_READER_FACTORY = getStringProperty("custom_reader", "");
         SAM_FLAG_FIELD_FORMAT = SamFlagField.valueOf(getStringProperty("sam_flag_field_format", SamFlagField.DECIMAL.name()));
         SRA_LIBRARIES_DOWNLOAD = getBooleanProperty("sra_libraries_download", false);
@@ -146,14 +253,29 @@ public class Defaults {
         result.put("CREATE_INDEX", CREATE_INDEX);
         result.put("CREATE_MD5", CREATE_MD5);
         result.put("USE_ASYNC_IO_READ_FOR_SAMTOOLS", USE_ASYNC_IO_READ_FOR_SAMTOOLS);
+        result.put("INFLATE_THREADS", INFLATE_THREADS);
+        result.put("DECODE_THREADS", DECODE_THREADS);
         result.put("USE_ASYNC_IO_WRITE_FOR_SAMTOOLS", USE_ASYNC_IO_WRITE_FOR_SAMTOOLS);
         result.put("USE_ASYNC_IO_WRITE_FOR_TRIBBLE", USE_ASYNC_IO_WRITE_FOR_TRIBBLE);
         result.put("COMPRESSION_LEVEL", COMPRESSION_LEVEL);
+        result.put("COMPRESSION_THREADS", COMPRESSION_THREADS);
+        result.put("SORTING_COLLECTION_SPILL_BUFFERS", SORTING_COLLECTION_SPILL_BUFFERS);
+        result.put("SORTING_COLLECTION_MERGE_FAN_IN", SORTING_COLLECTION_MERGE_FAN_IN);
+        result.put("SERIALIZED_COORDINATE_SORT", SERIALIZED_COORDINATE_SORT);
+        result.put("COLUMNAR_GENOTYPES", COLUMNAR_GENOTYPES);
+        result.put("BCF_RETAIN_RAW_RECORDS", BCF_RETAIN_RAW_RECORDS);
         result.put("BUFFER_SIZE", BUFFER_SIZE);
         result.put("NON_ZERO_BUFFER_SIZE", NON_ZERO_BUFFER_SIZE);
         result.put("REFERENCE_FASTA", REFERENCE_FASTA);
         result.put("USE_CRAM_REF_DOWNLOAD", USE_CRAM_REF_DOWNLOAD);
         result.put("EBI_REFERENCE_SERVICE_URL_MASK", EBI_REFERENCE_SERVICE_URL_MASK);
+        result.put("CRAM_REFERENCE_CACHE_SIZE_MB", CRAM_REFERENCE_CACHE_SIZE_MB);
+        result.put("HTTP_CACHE_BLOCKS", HTTP_CACHE_BLOCKS);
+        result.put("HTTP_BLOCK_SIZE", HTTP_BLOCK_SIZE);
+        result.put("HTTP_PREFETCH_BLOCKS", HTTP_PREFETCH_BLOCKS);
+        result.put("HTSGET_CONCURRENT_BLOCKS", HTSGET_CONCURRENT_BLOCKS);
+        result.put("BAM_QUERY_CHUNK_MERGE_GAP", BAM_QUERY_CHUNK_MERGE_GAP);
+        result.put("COMPACT_BAM_INDEX", COMPACT_BAM_INDEX);
         result.put("CUSTOM_READER_FACTORY", CUSTOM_READER_FACTORY);
         result.put("SAM_FLAG_FIELD_FORMAT", SAM_FLAG_FIELD_FORMAT);
         result.put("DISABLE_SNAPPY_COMPRESSOR", DISABLE_SNAPPY_COMPRESSOR);
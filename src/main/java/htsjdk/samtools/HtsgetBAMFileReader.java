@@ -12,6 +12,9 @@ import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -22,6 +25,8 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
     // Number of bases to read ahead by if using asynchronous IO
     private static final int READAHEAD_LIMIT = 500_000;
 
+    private static final ExecutorService ticketPool = ThreadPoolUtil.newCachedDaemonThreadPool();
+
     private final URI mSource;
 
     private final SAMFileHeader mFileHeader;
@@ -49,6 +54,9 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
 
     private boolean usePOSTRequest;
 
+    // Number of data blocks of each response to download concurrently
+    private int mConcurrentBlocks = Defaults.HTSGET_CONCURRENT_BLOCKS;
+
     /**
      * Instantiate an HtsgetBAMFileReader from an HtsgetInputResource,
      * attempting to convert it to an https resource then a http resource if the server does not support https
@@ -134,7 +142,7 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
 
         final HtsgetRequest req = new HtsgetRequest(this.mSource).withDataClass(HtsgetClass.header);
         // Request only the header and use it to construct a SAMFileHeader for this reader
-        try (final InputStream headerStream = req.getResponse().getDataStream()) {
+        try (final InputStream headerStream = req.getResponse().getDataStream(this.mConcurrentBlocks)) {
             final BinaryCodec headerCodec = new BinaryCodec(
                 new DataInputStream(this.mUseAsynchronousIO
                     ? new AsyncBlockCompressedInputStream(headerStream, this.mInflaterFactory)
@@ -260,6 +268,25 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
         this.usePOSTRequest = use;
     }
 
+    /**
+     * @return the number of data blocks of each htsget response to download concurrently
+     */
+    public int getConcurrentBlocks() {
+        return this.mConcurrentBlocks;
+    }
+
+    /**
+     * Set the number of data blocks of each htsget response to download concurrently. When greater than 1, the ticket
+     * for the next interval of a multi-interval query is also requested while the current interval is read
+     * @param concurrentBlocks number of blocks to download at once; 1 means one after another
+     */
+    public void setConcurrentBlocks(final int concurrentBlocks) {
+        if (concurrentBlocks < 1) {
+            throw new IllegalArgumentException("Invalid number of concurrent htsget blocks: " + concurrentBlocks);
+        }
+        this.mConcurrentBlocks = concurrentBlocks;
+    }
+
     /**
      * Prepare to iterate through the SAMRecords in file order.
      * Unlike file-based BAM readers, multiple iterators may be open at the same time
@@ -425,13 +452,21 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
      * @return the inflated stream with header skipped
      */
     private BlockCompressedInputStream getRequestStream(final HtsgetRequest req) {
-        final HtsgetResponse resp = req.getResponse();
+        return this.getRequestStream(req.getResponse());
+    }
 
+    /**
+     * Return an input stream of the data of an htsget response, as {@link #getRequestStream(HtsgetRequest)} does
+     *
+     * @param resp the response to an htsget request
+     * @return the inflated stream with header skipped
+     */
+    private BlockCompressedInputStream getRequestStream(final HtsgetResponse resp) {
         if (resp.getFormat() != HtsgetFormat.BAM) {
             throw new IllegalStateException("Expected format of response to be BAM but received + " + resp.getFormat());
         }
 
-        final InputStream stream = resp.getDataStream();
+        final InputStream stream = resp.getDataStream(this.mConcurrentBlocks);
         final BlockCompressedInputStream compressedInputStream = this.mUseAsynchronousIO
             ? new AsyncBlockCompressedInputStream(stream, this.mInflaterFactory)
             : new BlockCompressedInputStream(stream, this.mInflaterFactory);
@@ -463,7 +498,15 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
         private int samRecordIndex = 0;
 
         public HtsgetBAMFileIterator(final HtsgetRequest req) {
-            this.stream = HtsgetBAMFileReader.this.getRequestStream(req);
+            this(HtsgetBAMFileReader.this.getRequestStream(req));
+        }
+
+        public HtsgetBAMFileIterator(final HtsgetResponse resp) {
+            this(HtsgetBAMFileReader.this.getRequestStream(resp));
+        }
+
+        private HtsgetBAMFileIterator(final BlockCompressedInputStream stream) {
+            this.stream = stream;
             this.bamRecordCodec = new BAMRecordCodec(
                 HtsgetBAMFileReader.this.mFileHeader,
                 HtsgetBAMFileReader.this.mSamRecordFactory);
@@ -528,28 +571,25 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
     /**
      * Iterator over reads from the source that match the provided intervals
      * <p>
-     * Makes an htsget request for each interval lazily and filters out reads that are duplicated across two intervals
+     * Makes an htsget request for each interval lazily and filters out reads that are duplicated across two intervals.
+     * When data blocks are downloaded concurrently, the request for the next interval is made on a background thread
+     * while the current interval is read
      */
     private class BAMQueryChainingIterator implements CloseableIterator<SAMRecord> {
         private final List<Locatable> intervals;
         private final boolean contained;
-        private final Iterator<Lazy<HtsgetBAMFileIterator>> iterators;
+        private final boolean prefetchResponses;
 
         private CloseableIterator<SAMRecord> currentIterator;
         private SAMRecord currentRecord;
         private int currentIntervalIndex = 0;
+        // Response for the interval at currentIntervalIndex, if it was requested while the previous one was read
+        private Future<HtsgetResponse> nextResponse;
 
         public BAMQueryChainingIterator(final List<Locatable> intervals, final boolean contained) {
             this.intervals = intervals;
             this.contained = contained;
-            this.iterators = intervals.stream()
-                .map(i -> new Lazy<>(() -> {
-                    final HtsgetRequest req = new HtsgetRequest(HtsgetBAMFileReader.this.mSource)
-                        .withFormat(HtsgetFormat.BAM)
-                        .withInterval(i);
-                    return new HtsgetBAMFileIterator(req);
-                }))
-                .iterator();
+            this.prefetchResponses = HtsgetBAMFileReader.this.mConcurrentBlocks > 1;
             this.advanceIterator();
             this.advance();
         }
@@ -557,10 +597,14 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
         @Override
         public void close() {
             // All previous iterators were already closed when they were consumed and iterators after this one
-            // have not been created yet, so only need to close current one
+            // have not been created yet, so only need to close current one and discard the next response
             if (this.currentIterator != null) {
                 this.currentIterator.close();
             }
+            if (this.nextResponse != null) {
+                this.nextResponse.cancel(true);
+                this.nextResponse = null;
+            }
         }
 
         @Override
@@ -582,18 +626,47 @@ public class HtsgetBAMFileReader extends SamReader.ReaderImplementation {
             this.currentRecord = this.currentIterator == null ? null : this.currentIterator.next();
         }
 
+        private HtsgetRequest makeRequest(final Locatable interval) {
+            return new HtsgetRequest(HtsgetBAMFileReader.this.mSource)
+                .withFormat(HtsgetFormat.BAM)
+                .withInterval(interval);
+        }
+
+        private HtsgetResponse getCurrentResponse() {
+            if (this.nextResponse == null) {
+                return this.makeRequest(this.intervals.get(this.currentIntervalIndex)).getResponse();
+            }
+            try {
+                return this.nextResponse.get();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException("Interrupted waiting for htsget response", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Exception requesting htsget response", e.getCause());
+            } finally {
+                this.nextResponse = null;
+            }
+        }
+
         private void advanceIterator() {
             if (this.currentIterator != null) {
                 this.currentIterator.close();
             }
-            if (!this.iterators.hasNext()) {
+            if (this.currentIntervalIndex >= this.intervals.size()) {
                 this.currentIterator = null;
                 return;
             }
             final Locatable currInterval = this.intervals.get(this.currentIntervalIndex);
             final Locatable prevInterval = this.currentIntervalIndex == 0 ? null : this.intervals.get(this.currentIntervalIndex - 1);
+            final HtsgetResponse response = this.getCurrentResponse();
+            if (this.prefetchResponses && this.currentIntervalIndex + 1 < this.intervals.size()) {
+                final HtsgetRequest nextRequest = this.makeRequest(this.intervals.get(this.currentIntervalIndex + 1));
+                this.nextResponse = ticketPool.submit(nextRequest::getResponse);
+            }
             this.currentIterator = new FilteringSamIterator(
-                this.iterators.next().get(),
+                new HtsgetBAMFileIterator(response),
                 new ConsecutiveDuplicateRecordFilter(currInterval, prevInterval, contained));
             this.currentIntervalIndex++;
         }
@@ -59,7 +59,10 @@ public class SAMFileWriterFactory implements Cloneable {
     private int compressionLevel = BlockCompressedOutputStream.getDefaultCompressionLevel();
     private SamFlagField samFlagFieldOutput = SamFlagField.NONE;
     private Integer maxRecordsInRam = null;
+    private boolean serializedCoordinateSort = Defaults.SERIALIZED_COORDINATE_SORT;
     private DeflaterFactory deflaterFactory = BlockCompressedOutputStream.getDefaultDeflaterFactory();
+    /** number of threads used to deflate BAM blocks, 0 or 1 means deflate on the writing thread */
+    private int compressionThreads = BlockCompressedOutputStream.getDefaultCompressionThreads();
 
     /** simple constructor */
     public SAMFileWriterFactory() {
@@ -75,7 +78,9 @@ public class SAMFileWriterFactory implements Cloneable {
         this.bufferSize = other.bufferSize;
         this.tmpDir = other.tmpDir;
         this.compressionLevel = other.compressionLevel;
+        this.compressionThreads = other.compressionThreads;
         this.maxRecordsInRam = other.maxRecordsInRam;
+        this.serializedCoordinateSort = other.serializedCoordinateSort;
     }
     
     @Override
@@ -127,6 +132,23 @@ public class SAMFileWriterFactory implements Cloneable {
     public int getCompressionLevel() {
         return compressionLevel;
     }
+
+    /**
+     * Sets the number of threads used to deflate blocks of BAM files, and to build containers of CRAM files,
+     * written by this factory. 0 or 1 means blocks and containers are compressed on the writing thread.
+     * This method returns the SAMFileWriterFactory itself.
+     */
+    public SAMFileWriterFactory setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = compressionThreads;
+        return this;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
     
     /**
      * Sets the default for subsequent SAMFileWriterFactories
@@ -186,6 +208,18 @@ public class SAMFileWriterFactory implements Cloneable {
         return maxRecordsInRam;
     }
 
+    /**
+     * Before creating a writer that is not presorted, this method may be called to choose whether records being
+     * sorted into coordinate order are held in their BAM encoding, sorted by a packed coordinate key
+     * (see {@link BAMRecordCoordinateSorter}), rather than as SAMRecord objects.  This uses several times less memory
+     * per record, so more records can be held in RAM before spilling to disk.
+     * Default value: {@link Defaults#SERIALIZED_COORDINATE_SORT}
+     */
+    public SAMFileWriterFactory setSerializedCoordinateSort(final boolean serializedCoordinateSort) {
+        this.serializedCoordinateSort = serializedCoordinateSort;
+        return this;
+    }
+
     /**
      * Turn on or off the use of asynchronous IO for writing output SAM and BAM files.  If true then
      * each SAMFileWriter creates a dedicated thread which is used for compression and IO activities.
@@ -293,7 +327,7 @@ public class SAMFileWriterFactory implements Cloneable {
             }
             OutputStream os = IOUtil.maybeBufferOutputStream(Files.newOutputStream(outputPath), bufferSize);
             if (createMd5File) os = new Md5CalculatingOutputStream(os, IOUtil.addExtension(outputPath,".md5"));
-            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory);
+            final BAMFileWriter ret = new BAMFileWriter(os, outputPath.toUri().toString(), compressionLevel, deflaterFactory, compressionThreads);
             final boolean createIndex = this.createIndex && IOUtil.isRegularPath(outputPath);
             if (this.createIndex && !createIndex) {
                 log.warn("Cannot create index for BAM because output file is not a regular file: " + outputPath.toUri());
@@ -313,6 +347,7 @@ public class SAMFileWriterFactory implements Cloneable {
             writer.setMaxRecordsInRam(maxRecordsInRam);
         }
         if (this.tmpDir != null) writer.setTempDirectory(this.tmpDir);
+        writer.setSerializedCoordinateSort(serializedCoordinateSort);
         writer.setHeader(header);
         if (createIndex && writer.getSortOrder().equals(SAMFileHeader.SortOrder.coordinate)) {
             writer.enableBamIndexConstruction();
@@ -390,7 +425,7 @@ public class SAMFileWriterFactory implements Cloneable {
      */
 
     public SAMFileWriter makeBAMWriter(final SAMFileHeader header, final boolean presorted, final OutputStream stream) {
-        return initWriter(header, presorted, new BAMFileWriter(stream, (File)null, this.getCompressionLevel(), this.deflaterFactory));
+        return initWriter(header, presorted, new BAMFileWriter(stream, (String) null, this.getCompressionLevel(), this.deflaterFactory, this.compressionThreads));
     }
 
     /**
@@ -407,6 +442,7 @@ public class SAMFileWriterFactory implements Cloneable {
             writer.setMaxRecordsInRam(maxRecordsInRam);
         }
         if (this.tmpDir != null) writer.setTempDirectory(this.tmpDir);
+        writer.setSerializedCoordinateSort(serializedCoordinateSort);
         writer.setHeader(header);
 
         if (this.useAsyncIo) return new AsyncSAMFileWriter(writer, this.asyncOutputBufferSize);
@@ -676,6 +712,7 @@ public class SAMFileWriterFactory implements Cloneable {
                 referenceSource,
                 header,
                 outputFile.toUri().toString());
+        writer.setCompressionThreads(compressionThreads);
         setCRAMWriterDefaults(writer);
 
         return writer;
@@ -691,8 +728,9 @@ public class SAMFileWriterFactory implements Cloneable {
     public String toString() {
         return "SAMFileWriterFactory [createIndex=" + createIndex + ", createMd5File=" + createMd5File + ", useAsyncIo="
                 + useAsyncIo + ", asyncOutputBufferSize=" + asyncOutputBufferSize + ", bufferSize=" + bufferSize
-                + ", tmpDir=" + tmpDir + ", compressionLevel=" + compressionLevel + ", maxRecordsInRam="
-                + maxRecordsInRam + "]";
+                + ", tmpDir=" + tmpDir + ", compressionLevel=" + compressionLevel + ", compressionThreads=" + compressionThreads
+                + ", maxRecordsInRam="
+                + maxRecordsInRam + ", serializedCoordinateSort=" + serializedCoordinateSort + "]";
     }
 
 }
@@ -23,6 +23,7 @@
  */
 package htsjdk.samtools;
 
+import htsjdk.samtools.util.CloseableIterator;
 import htsjdk.samtools.util.ProgressLoggerInterface;
 import htsjdk.samtools.util.SortingCollection;
 
@@ -43,6 +44,8 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
     private SAMFileHeader.SortOrder sortOrder;
     private SAMFileHeader header;
     private SortingCollection<SAMRecord> alignmentSorter;
+    private BAMRecordCoordinateSorter coordinateSorter;
+    private boolean serializedCoordinateSort = Defaults.SERIALIZED_COORDINATE_SORT;
     private File tmpDir = new File(System.getProperty("java.io.tmpdir"));
     private ProgressLoggerInterface progressLogger = null;
     private boolean isClosed = false;
@@ -132,6 +135,18 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
         return tmpDir;
     }
 
+    /**
+     * When writing records in coordinate order that are not presorted, specify whether records are held in their
+     * BAM encoding by a {@link BAMRecordCoordinateSorter}, rather than as objects in a {@link SortingCollection}.
+     * Must be called before setHeader().  Default is {@link Defaults#SERIALIZED_COORDINATE_SORT}.
+     */
+    protected void setSerializedCoordinateSort(final boolean serializedCoordinateSort) {
+        if (this.header != null) {
+            throw new IllegalStateException("setSerializedCoordinateSort must be called before setHeader()");
+        }
+        this.serializedCoordinateSort = serializedCoordinateSort;
+    }
+
     /**
      * Must be called before addAlignment. Header cannot be null.
      */
@@ -154,6 +169,8 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
             } else {
                 sortOrderChecker = new SAMSortOrderChecker(sortOrder);
             }
+        } else if (sortOrder.equals(SAMFileHeader.SortOrder.coordinate) && serializedCoordinateSort) {
+            coordinateSorter = new BAMRecordCoordinateSorter(header, maxRecordsInRam, tmpDir.toPath());
         } else if (!sortOrder.equals(SAMFileHeader.SortOrder.unsorted)) {
             alignmentSorter = SortingCollection.newInstance(SAMRecord.class,
                     new BAMRecordCodec(header), sortOrder.getComparatorInstance(), maxRecordsInRam, tmpDir);
@@ -183,6 +200,8 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
         } else if (presorted) {
             assertPresorted(alignment);
             writeAlignment(alignment);
+        } else if (coordinateSorter != null) {
+            coordinateSorter.add(alignment);
         } else {
             alignmentSorter.add(alignment);
         }
@@ -217,6 +236,18 @@ public abstract class SAMFileWriterImpl implements SAMFileWriter
                         alignmentSorter.cleanup();
                     }
                 }
+                if (coordinateSorter != null) {
+                    try (CloseableIterator<SAMRecord> it = coordinateSorter.iterator()) {
+                        while (it.hasNext()) {
+                            final SAMRecord alignment = it.next();
+                            writeAlignment(alignment);
+                            if (progressLogger != null)
+                                progressLogger.record(alignment);
+                        }
+                    } finally {
+                        coordinateSorter.cleanup();
+                    }
+                }
                 finish();
             }
         } finally {
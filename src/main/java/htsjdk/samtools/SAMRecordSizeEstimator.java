@@ -0,0 +1,107 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.SortingCollection;
+
+/**
+ * Estimates the memory used by a {@link SAMRecord}, for {@link SortingCollection}s that are limited by a budget of
+ * bytes rather than a number of records.
+ * <p>
+ * A {@link BAMRecord} holds its BAM encoding until it is eagerly decoded, along with any fields that have been decoded
+ * from it, so its estimate is the size of that encoding plus the sizes of the decoded fields.  The sizes of fields
+ * are computed from the sizes of the fields of the BAM encoding, scaled up for the way those fields are held in
+ * memory, e.g. one byte per base rather than two bases per byte.
+ * Estimates include JVM object overheads, assuming a 64-bit JVM with compressed object pointers.
+ */
+public class SAMRecordSizeEstimator implements SortingCollection.RecordSizeEstimator<SAMRecord> {
+
+    // SAMRecord object with its fields, and the reference to it in the collection's buffer
+    static final int RECORD_OVERHEAD = 160;
+    static final int ARRAY_OVERHEAD = 16;
+    // String object and its backing array
+    static final int STRING_OVERHEAD = 40;
+    // Cigar object, with its list of elements
+    static final int CIGAR_OVERHEAD = 56;
+    // CigarElement object and the reference to it
+    static final int CIGAR_ELEMENT_SIZE = 28;
+    // SAMBinaryTagAndValue object, less the tag, which is counted with the value
+    static final int ATTRIBUTE_OVERHEAD = 24;
+
+    @Override
+    public long estimateSize(final SAMRecord record) {
+        if (record instanceof BAMRecord) {
+            return estimateSize((BAMRecord) record);
+        }
+        final int readLength = record.getReadLength();
+        return RECORD_OVERHEAD +
+                readNameSize(record.getReadNameLength()) +
+                ARRAY_OVERHEAD + readLength +       // bases
+                ARRAY_OVERHEAD + readLength +       // base qualities
+                cigarSize(record.getCigarLength()) +
+                attributesSize(record.getBinaryAttributes());
+    }
+
+    private static long estimateSize(final BAMRecord record) {
+        long size = RECORD_OVERHEAD;
+        final byte[] binary = record.getRestOfBinaryData();
+        if (binary != null) {
+            size += ARRAY_OVERHEAD + binary.length;
+        }
+        final String readName = record.getDecodedReadName();
+        if (readName != null) {
+            size += readNameSize(readName.length());
+        }
+        final Cigar cigar = record.getDecodedCigar();
+        if (cigar != null) {
+            size += cigarSize(cigar.numCigarElements());
+        }
+        final byte[] bases = record.getDecodedReadBases();
+        if (bases != null) {
+            size += ARRAY_OVERHEAD + bases.length;
+        }
+        final byte[] qualities = record.getDecodedBaseQualities();
+        if (qualities != null) {
+            size += ARRAY_OVERHEAD + qualities.length;
+        }
+        return size + attributesSize(record.getDecodedAttributes());
+    }
+
+    private static long readNameSize(final int readNameLength) {
+        // chars are two bytes each
+        return STRING_OVERHEAD + 2L * readNameLength;
+    }
+
+    private static long cigarSize(final int cigarLength) {
+        return CIGAR_OVERHEAD + (long) CIGAR_ELEMENT_SIZE * cigarLength;
+    }
+
+    private static long attributesSize(final SAMBinaryTagAndValue attributes) {
+        long size = 0;
+        for (SAMBinaryTagAndValue attribute = attributes; attribute != null; attribute = attribute.getNext()) {
+            size += ATTRIBUTE_OVERHEAD + BinaryTagCodec.getTagSize(attribute.value);
+        }
+        return size;
+    }
+}
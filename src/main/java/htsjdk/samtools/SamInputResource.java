@@ -79,6 +79,18 @@ public class SamInputResource {
         return index;
     }
 
+    /**
+     * @return true if the data, and the index if there is one, can be opened more than once, which is not the case
+     * for streams
+     */
+    public boolean isReopenable() {
+        return isReopenable(source) && (index == null || isReopenable(index));
+    }
+
+    private static boolean isReopenable(final InputResource resource) {
+        return resource.type() != InputResource.Type.INPUT_STREAM && resource.type() != InputResource.Type.SEEKABLE_STREAM;
+    }
+
     @Override
     public String toString() {
         return String.format("data=%s;index=%s", source, index);
@@ -158,6 +158,22 @@ public abstract class SamReaderFactory {
      * Returns the factory itself. */
     abstract public SamReaderFactory setUseAsyncIo(final boolean asynchronousIO);
 
+    /** Set the number of BGZF blocks that readers created by this factory decompress concurrently when reading ahead.
+     * A value greater than 1 takes precedence over {@link #setUseAsyncIo(boolean)}, and is best suited to sequential
+     * iteration over whole files.
+     * If this methods is not called, this defaults to the value of {@link Defaults#INFLATE_THREADS}.
+     * Note that this option is currently only applicable to BAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory setInflateThreads(final int inflateThreads);
+
+    /** Set the number of threads that readers created by this factory use to decode records, in batches (BAM) or
+     * containers (CRAM) read ahead of the record being returned. Records are still returned in file order, by both
+     * iteration and queries.
+     * If this methods is not called, this defaults to the value of {@link Defaults#DECODE_THREADS}.
+     * Note that this option is currently only applicable to BAM and CRAM readers.
+     * Returns the factory itself. */
+    abstract public SamReaderFactory setDecodeThreads(final int decodeThreads);
+
     private static SamReaderFactoryImpl DEFAULT =
             new SamReaderFactoryImpl(Option.DEFAULTS, defaultValidationStringency,
                     DefaultSAMRecordFactory.getInstance(), BlockGunzipper.getDefaultInflaterFactory());
@@ -188,6 +204,8 @@ public abstract class SamReaderFactory {
         private final EnumSet<Option> enabledOptions;
         private ValidationStringency validationStringency;
         private boolean asynchronousIO = Defaults.USE_ASYNC_IO_READ_FOR_SAMTOOLS;
+        private int inflateThreads = Defaults.INFLATE_THREADS;
+        private int decodeThreads = Defaults.DECODE_THREADS;
         private SAMRecordFactory samRecordFactory;
         private CustomReaderFactory customReaderFactory;
         private CRAMReferenceSource referenceSource;
@@ -308,6 +326,24 @@ public abstract class SamReaderFactory {
             return this;
         }
 
+        @Override
+        public SamReaderFactory setInflateThreads(final int inflateThreads) {
+            if (inflateThreads < 0) {
+                throw new IllegalArgumentException("Invalid number of inflate threads: " + inflateThreads);
+            }
+            this.inflateThreads = inflateThreads;
+            return this;
+        }
+
+        @Override
+        public SamReaderFactory setDecodeThreads(final int decodeThreads) {
+            if (decodeThreads < 0) {
+                throw new IllegalArgumentException("Invalid number of decode threads: " + decodeThreads);
+            }
+            this.decodeThreads = decodeThreads;
+            return this;
+        }
+
         @Override
         public SamReader open(final SamInputResource resource) {
             final SamReader.PrimitiveSamReader primitiveSamReader;
@@ -350,7 +386,8 @@ public abstract class SamReaderFactory {
                                 asynchronousIO,
                                 validationStringency,
                                 this.samRecordFactory,
-                                this.inflaterFactory
+                                this.inflaterFactory,
+                                this.inflateThreads
                         );
                     } else if (SamStreams.sourceLikeCram(data.asUnbufferedSeekableStream())) {
                         if (referenceSource == null) {
@@ -391,7 +428,7 @@ public abstract class SamReaderFactory {
                                 // not seekable.
                                 // it's OK that we consumed a bit of the stream already, this ctor expects it.
                                 primitiveSamReader = new BAMFileReader(bufferedStream, indexFile, false, asynchronousIO,
-                                        validationStringency, this.samRecordFactory, this.inflaterFactory);
+                                        validationStringency, this.samRecordFactory, this.inflaterFactory, this.inflateThreads);
                             } else {
                                 // seekable.
                                 // need to return to the beginning because it's the same stream we used earlier
@@ -399,13 +436,13 @@ public abstract class SamReaderFactory {
                                 sourceSeekable.seek(0);
                                 primitiveSamReader = new BAMFileReader(
                                         sourceSeekable, indexSeekable, false, asynchronousIO, validationStringency,
-                                        this.samRecordFactory, this.inflaterFactory);
+                                        this.samRecordFactory, this.inflaterFactory, this.inflateThreads);
                             }
                         } else {
                             bufferedStream.close();
                             primitiveSamReader = new BAMFileReader(
                                 sourceFile, indexFile, false, asynchronousIO,
-                                validationStringency, this.samRecordFactory, this.inflaterFactory);
+                                validationStringency, this.samRecordFactory, this.inflaterFactory, this.inflateThreads);
                         }
                     } else if (BlockCompressedInputStream.isValidFile(bufferedStream)) {
                         primitiveSamReader = new SAMTextReader(new BlockCompressedInputStream(bufferedStream), validationStringency, this.samRecordFactory);
@@ -445,6 +482,12 @@ public abstract class SamReaderFactory {
                     }
                 }
 
+                if (primitiveSamReader instanceof BAMFileReader) {
+                    ((BAMFileReader) primitiveSamReader).setDecodeThreads(this.decodeThreads);
+                } else if (primitiveSamReader instanceof CRAMFileReader) {
+                    ((CRAMFileReader) primitiveSamReader).setDecodeThreads(this.decodeThreads);
+                }
+
                 // Apply the options defined by this factory to this reader
                 final SamReader.PrimitiveSamReaderToSamReaderAdapter reader =
                         new SamReader.PrimitiveSamReaderToSamReaderAdapter(primitiveSamReader, resource);
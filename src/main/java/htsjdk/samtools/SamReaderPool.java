@@ -0,0 +1,491 @@
+/*
+ * Copyright (c) 2026 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.samtools.util.BufferedLineReader;
+import htsjdk.samtools.util.CloserUtil;
+
+import java.io.Closeable;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A pool of {@link SamReader}s, for services that query many files from many threads in a long-lived process.
+ *
+ * {@link #acquire(SamInputResource)} leases a reader of a resource, which only the thread that acquired it may use,
+ * until it is closed; closing it returns the underlying reader to the pool instead of closing the file, with any
+ * iterator left open closed, and the next {@link #acquire(SamInputResource)} of the same resource reuses it, without
+ * opening the file, parsing the header or loading the index again.  Each lease is a new {@link SamReader}, which cannot
+ * be used once it has been closed, even though the reader it wraps has been leased again.  A new reader is opened only
+ * when all the readers of a resource are leased.
+ *
+ * The pool keeps a copy of the header of each resource, which {@link #getFileHeader(SamInputResource)} returns without
+ * leasing a reader, and the readers of an indexed BAM file share one thread safe {@link CompactBAMFileIndex}, so that
+ * the index is loaded once however many readers of the file are open.  The header returned by a lease is the header of
+ * the reader it wraps, which its records refer to, so it is shared by every lease of that reader and must not be
+ * modified.  Readers of other formats, including CRAM, share
+ * only the header; each loads its own index, and CRAM readers each use the reference source of the factory.
+ *
+ * The pool closes idle readers, least recently used first, to keep at most maxIdleReaders of them, and closes any
+ * that have been idle for longer than the idle time limit.  This is done lazily, whenever a reader is acquired or
+ * returned, so a pool that is not being used keeps its idle readers, and their files, open until
+ * {@link #evictIdle()} is called, which callers may schedule, or the pool is closed.  The shared state of a
+ * resource is released when none of its readers are left.
+ *
+ * Resources are identified by their data and index, as described by {@link SamInputResource#toString()}, and must be
+ * able to be opened many times, so resources of streams are not supported.
+ */
+public class SamReaderPool implements Closeable {
+    public static final int DEFAULT_MAX_IDLE_READERS = 64;
+    public static final long DEFAULT_MAX_IDLE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    private final SamReaderFactory factory;
+    private final int maxIdleReaders;
+    private final long maxIdleNanos;
+
+    private final Map<String, Resource> resources = new HashMap<>();
+    // idle readers of all resources, least recently released first
+    private final LinkedHashSet<PooledSamReader> idleReaders = new LinkedHashSet<>();
+    private boolean closed = false;
+
+    /**
+     * Create a pool with at most {@link #DEFAULT_MAX_IDLE_READERS} idle readers, each closed after
+     * {@link #DEFAULT_MAX_IDLE_MILLIS} of being idle.
+     * @param factory factory to open readers with
+     */
+    public SamReaderPool(final SamReaderFactory factory) {
+        this(factory, DEFAULT_MAX_IDLE_READERS, DEFAULT_MAX_IDLE_MILLIS);
+    }
+
+    /**
+     * @param factory factory to open readers with
+     * @param maxIdleReaders most readers to keep open while they are not leased, across all resources
+     * @param maxIdleMillis time after which a reader that is not leased is closed
+     */
+    public SamReaderPool(final SamReaderFactory factory, final int maxIdleReaders, final long maxIdleMillis) {
+        if (factory == null) {
+            throw new IllegalArgumentException("factory must not be null");
+        }
+        if (maxIdleReaders < 0) {
+            throw new IllegalArgumentException("maxIdleReaders must not be negative: " + maxIdleReaders);
+        }
+        if (maxIdleMillis < 0) {
+            throw new IllegalArgumentException("maxIdleMillis must not be negative: " + maxIdleMillis);
+        }
+        this.factory = factory;
+        this.maxIdleReaders = maxIdleReaders;
+        this.maxIdleNanos = TimeUnit.MILLISECONDS.toNanos(maxIdleMillis);
+    }
+
+    /**
+     * Lease a reader of resource, to be used by one thread at a time, and closed to return it to the pool.
+     * @param resource resource to read
+     * @return an idle reader of resource, or a new one if there is none
+     */
+    public SamReader acquire(final SamInputResource resource) {
+        final String key = getKey(resource);
+        final Resource pooled;
+        synchronized (this) {
+            assertOpen();
+            evictExpiredReaders();
+            pooled = resources.computeIfAbsent(key, Resource::new);
+            // lease it now, so that the resource is kept while the reader is opened
+            pooled.leased++;
+            final PooledSamReader idle = pooled.idle.pollFirst();
+            if (idle != null) {
+                idleReaders.remove(idle);
+                return new LeasedSamReader(idle);
+            }
+        }
+
+        final SamReader reader;
+        try {
+            reader = factory.open(resource);
+        } catch (final RuntimeException e) {
+            synchronized (this) {
+                pooled.leased--;
+                releaseIfUnused(pooled);
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (closed) {
+                pooled.leased--;
+                releaseIfUnused(pooled);
+                CloserUtil.close(reader);
+                throw new IllegalStateException("The reader pool has been closed");
+            }
+            share(pooled, reader);
+            return new LeasedSamReader(new PooledSamReader(pooled, reader));
+        }
+    }
+
+    /**
+     * @param resource resource to read
+     * @return a copy of the header of resource, kept by the pool, which must not be modified
+     */
+    public SAMFileHeader getFileHeader(final SamInputResource resource) {
+        synchronized (this) {
+            final Resource pooled = resources.get(getKey(resource));
+            if (pooled != null && pooled.header != null) {
+                return pooled.header;
+            }
+        }
+        final LeasedSamReader reader = (LeasedSamReader) acquire(resource);
+        try {
+            return reader.pooledReader.resource.header;
+        } finally {
+            CloserUtil.close(reader);
+        }
+    }
+
+    /**
+     * Close the readers that have been idle for longer than the idle time limit.  This is otherwise only done when a
+     * reader is acquired or returned, so a long-lived pool that may be left unused should call this periodically,
+     * for example from a {@link java.util.concurrent.ScheduledExecutorService}.
+     */
+    public synchronized void evictIdle() {
+        if (!closed) {
+            evictExpiredReaders();
+        }
+    }
+
+    /**
+     * @return the number of readers open but not leased
+     */
+    public synchronized int getIdleReaderCount() {
+        return idleReaders.size();
+    }
+
+    /**
+     * @return the number of readers leased
+     */
+    public synchronized int getLeasedReaderCount() {
+        int leased = 0;
+        for (final Resource pooled : resources.values()) {
+            leased += pooled.leased;
+        }
+        return leased;
+    }
+
+    /**
+     * Close all idle readers.  Leased readers are closed when they are returned.
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        for (final PooledSamReader reader : new ArrayList<>(idleReaders)) {
+            evict(reader);
+        }
+    }
+
+    private static String getKey(final SamInputResource resource) {
+        if (!resource.isReopenable()) {
+            throw new IllegalArgumentException("Streams cannot be opened more than once, so cannot be pooled: " + resource);
+        }
+        return resource.toString();
+    }
+
+    private void assertOpen() {
+        if (closed) {
+            throw new IllegalStateException("The reader pool has been closed");
+        }
+    }
+
+    /**
+     * Give reader the state shared by the readers of its resource, or make reader's state the shared state if it is
+     * the first.
+     */
+    private void share(final Resource pooled, final SamReader reader) {
+        if (pooled.header == null) {
+            // a copy, so that the header is not changed by the holder of a lease of this reader
+            pooled.header = copyHeader(reader.getFileHeader());
+        }
+        if (reader instanceof SamReader.PrimitiveSamReaderToSamReaderAdapter &&
+                ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader() instanceof BAMFileReader) {
+            final BAMFileReader bamReader = (BAMFileReader) ((SamReader.PrimitiveSamReaderToSamReaderAdapter) reader).underlyingReader();
+            if (bamReader.hasIndex()) {
+                if (pooled.sharedIndex == null) {
+                    pooled.sharedIndex = bamReader.getCompactIndex();
+                }
+                bamReader.setSharedIndex(pooled.sharedIndex);
+            }
+        }
+    }
+
+    /**
+     * @return a copy of header, as {@link SAMFileHeader#clone()} makes, but with the version of header rather than the
+     * current version
+     */
+    private static SAMFileHeader copyHeader(final SAMFileHeader header) {
+        final StringWriter text = new StringWriter();
+        new SAMTextHeaderCodec().encode(text, header, true);
+        final SAMTextHeaderCodec codec = new SAMTextHeaderCodec();
+        codec.setValidationStringency(ValidationStringency.SILENT);
+        return codec.decode(BufferedLineReader.fromString(text.toString()), "SamReaderPool");
+    }
+
+    private synchronized void release(final PooledSamReader reader) {
+        final Resource pooled = reader.resource;
+        pooled.leased--;
+        if (closed) {
+            reader.closeReader();
+            releaseIfUnused(pooled);
+            return;
+        }
+        reader.releaseTime = System.nanoTime();
+        pooled.idle.addFirst(reader);
+        idleReaders.add(reader);
+        evictExpiredReaders();
+    }
+
+    private void evictExpiredReaders() {
+        final long now = System.nanoTime();
+        final Iterator<PooledSamReader> oldestFirst = idleReaders.iterator();
+        while (oldestFirst.hasNext()) {
+            final PooledSamReader reader = oldestFirst.next();
+            if (idleReaders.size() <= maxIdleReaders && now - reader.releaseTime < maxIdleNanos) {
+                break;
+            }
+            oldestFirst.remove();
+            reader.resource.idle.remove(reader);
+            reader.closeReader();
+            releaseIfUnused(reader.resource);
+        }
+    }
+
+    private void evict(final PooledSamReader reader) {
+        idleReaders.remove(reader);
+        reader.resource.idle.remove(reader);
+        reader.closeReader();
+        releaseIfUnused(reader.resource);
+    }
+
+    private void releaseIfUnused(final Resource pooled) {
+        if (pooled.leased == 0 && pooled.idle.isEmpty() && resources.get(pooled.key) == pooled) {
+            resources.remove(pooled.key);
+            if (pooled.sharedIndex != null) {
+                pooled.sharedIndex.close();
+            }
+        }
+    }
+
+    /**
+     * The readers of one resource, and the state they share.
+     */
+    private static final class Resource {
+        final String key;
+        // most recently released first
+        final ArrayDeque<PooledSamReader> idle = new ArrayDeque<>();
+        int leased = 0;
+        SAMFileHeader header;
+        BAMIndex sharedIndex;
+
+        Resource(final String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * A reader opened by the pool, which is either idle or wrapped by a {@link LeasedSamReader}.
+     */
+    private static final class PooledSamReader {
+        final Resource resource;
+        final SamReader reader;
+        long releaseTime;
+
+        PooledSamReader(final Resource resource, final SamReader reader) {
+            this.resource = resource;
+            this.reader = reader;
+        }
+
+        void closeReader() {
+            CloserUtil.close(reader);
+        }
+
+        @Override
+        public String toString() {
+            return reader.toString();
+        }
+    }
+
+    /**
+     * A lease of a pooled reader, which returns the reader to the pool when closed, and cannot be used after that.
+     */
+    private final class LeasedSamReader implements SamReader {
+        final PooledSamReader pooledReader;
+        final SamReader reader;
+        final List<SAMRecordIterator> iterators = new ArrayList<>();
+        boolean isLeased = true;
+
+        LeasedSamReader(final PooledSamReader pooledReader) {
+            this.pooledReader = pooledReader;
+            this.reader = pooledReader.reader;
+        }
+
+        private void assertLeased() {
+            if (!isLeased) {
+                throw new IllegalStateException("The reader has been returned to the pool");
+            }
+        }
+
+        private SAMRecordIterator track(final SAMRecordIterator iterator) {
+            iterators.add(iterator);
+            return iterator;
+        }
+
+        /**
+         * @return the header of the pooled reader, which is shared by every lease of it, and must not be modified
+         */
+        @Override
+        public SAMFileHeader getFileHeader() {
+            assertLeased();
+            return reader.getFileHeader();
+        }
+
+        @Override
+        public Type type() {
+            assertLeased();
+            return reader.type();
+        }
+
+        @Override
+        public String getResourceDescription() {
+            assertLeased();
+            return reader.getResourceDescription();
+        }
+
+        @Override
+        public boolean isQueryable() {
+            assertLeased();
+            return reader.isQueryable();
+        }
+
+        @Override
+        public boolean hasIndex() {
+            assertLeased();
+            return reader.hasIndex();
+        }
+
+        @Override
+        public Indexing indexing() {
+            assertLeased();
+            return reader.indexing();
+        }
+
+        @Override
+        public SAMRecordIterator iterator() {
+            assertLeased();
+            return track(reader.iterator());
+        }
+
+        @Override
+        public SAMRecordIterator query(final String sequence, final int start, final int end, final boolean contained) {
+            assertLeased();
+            return track(reader.query(sequence, start, end, contained));
+        }
+
+        @Override
+        public SAMRecordIterator queryOverlapping(final String sequence, final int start, final int end) {
+            assertLeased();
+            return track(reader.queryOverlapping(sequence, start, end));
+        }
+
+        @Override
+        public SAMRecordIterator queryContained(final String sequence, final int start, final int end) {
+            assertLeased();
+            return track(reader.queryContained(sequence, start, end));
+        }
+
+        @Override
+        public SAMRecordIterator query(final QueryInterval[] intervals, final boolean contained) {
+            assertLeased();
+            return track(reader.query(intervals, contained));
+        }
+
+        @Override
+        public SAMRecordIterator queryOverlapping(final QueryInterval[] intervals) {
+            assertLeased();
+            return track(reader.queryOverlapping(intervals));
+        }
+
+        @Override
+        public SAMRecordIterator queryContained(final QueryInterval[] intervals) {
+            assertLeased();
+            return track(reader.queryContained(intervals));
+        }
+
+        @Override
+        public SAMRecordIterator queryUnmapped() {
+            assertLeased();
+            return track(reader.queryUnmapped());
+        }
+
+        @Override
+        public SAMRecordIterator queryAlignmentStart(final String sequence, final int start) {
+            assertLeased();
+            return track(reader.queryAlignmentStart(sequence, start));
+        }
+
+        @Override
+        public SAMRecord queryMate(final SAMRecord rec) {
+            assertLeased();
+            return reader.queryMate(rec);
+        }
+
+        /**
+         * Return the reader to the pool, closing any iterator left open.
+         */
+        @Override
+        public void close() {
+            if (!isLeased) {
+                return;
+            }
+            isLeased = false;
+            try {
+                iterators.forEach(SAMRecordIterator::close);
+            } finally {
+                iterators.clear();
+                release(pooledReader);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return reader.toString();
+        }
+    }
+}
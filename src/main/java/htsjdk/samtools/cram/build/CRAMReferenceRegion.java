@@ -30,6 +30,8 @@ import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 
+import java.util.Arrays;
+
 /**
  * A (cached) region of a reference. Maintains a CRAMReferenceSource for retrieving additional regions.
  */
@@ -40,6 +42,8 @@ public class CRAMReferenceRegion {
 
     private byte[] referenceBases = null; // cache the reference bases
     private int referenceBasesContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
+    // true if the cached bases are an embedded reference, which covers only part of the contig
+    private boolean isEmbeddedReference = false;
 
     /**
      * @param cramReferenceSource {@link CRAMReferenceSource} to use to obtain reference bases
@@ -53,6 +57,19 @@ public class CRAMReferenceRegion {
         this.samFileHeader = samFileHeader;
     }
 
+    /**
+     * Create a region that shares the reference source of {@code cramReferenceRegion}, and starts with the same
+     * cached reference bases. This allows the cached bases to be used by another thread without fetching them again.
+     * @param cramReferenceRegion the region to copy
+     */
+    public CRAMReferenceRegion(final CRAMReferenceRegion cramReferenceRegion) {
+        this.referenceSource = cramReferenceRegion.referenceSource;
+        this.samFileHeader = cramReferenceRegion.samFileHeader;
+        this.referenceBases = cramReferenceRegion.referenceBases;
+        this.referenceBasesContextID = cramReferenceRegion.referenceBasesContextID;
+        this.isEmbeddedReference = cramReferenceRegion.isEmbeddedReference;
+    }
+
     /**
      * @return the currently cached reference bases (may ne null)
      */
@@ -80,6 +97,7 @@ public class CRAMReferenceRegion {
                 }
 
                 referenceBasesContextID = referenceIndex;
+                isEmbeddedReference = false;
             }
             return referenceBases;
         }
@@ -88,9 +106,44 @@ public class CRAMReferenceRegion {
         return null;
     }
 
+    /**
+     * Return the reference bases for a region of the given reference contig. The bases are taken from the cached
+     * contig if it is the one requested, otherwise only the requested region is retrieved from the reference
+     * source, and the cached contig is retained.
+     *
+     * @param referenceIndex the index of the reference contig
+     * @param zeroBasedStart zero-based offset of the first base of the region
+     * @param requestedRegionLength number of bases requested; fewer are returned if the region extends past the
+     *                              end of the contig
+     * @return bases for the requested region
+     */
+    public byte[] getReferenceBasesByRegion(
+            final int referenceIndex,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        if (referenceBases != null && referenceIndex == referenceBasesContextID && !isEmbeddedReference) {
+            final int start = Math.min(zeroBasedStart, referenceBases.length);
+            return Arrays.copyOfRange(
+                    referenceBases,
+                    start,
+                    (int) Math.min(referenceBases.length, (long) start + requestedRegionLength));
+        }
+
+        final SAMSequenceRecord sequence = samFileHeader.getSequence(referenceIndex);
+        final byte[] regionBases = referenceSource.getReferenceBasesByRegion(sequence, zeroBasedStart, requestedRegionLength);
+        if (regionBases == null) {
+            throw new IllegalArgumentException(
+                    String.format(
+                            "A reference must be supplied (reference sequence %s not found).",
+                            sequence));
+        }
+        return regionBases;
+    }
+
     public void setEmbeddedReference(final byte[] embeddedReferenceBytes, final int embeddedReferenceIndex) {
         referenceBasesContextID = embeddedReferenceIndex;
         referenceBases = embeddedReferenceBytes;
+        isEmbeddedReference = true;
     }
 
 }
@@ -22,9 +22,15 @@ import htsjdk.samtools.SAMRecord;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.*;
+import htsjdk.samtools.util.ThreadPoolUtil;
 import htsjdk.utils.ValidationUtils;
 
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Aggregates SAMRecord objects into one or more {@link Container}s, composed of one or more {@link Slice}s.
@@ -63,11 +69,29 @@ import java.util.*;
  * remaining reads mapped to the previous sequence, plus some subsequent records are accumulated until
  * MINIMUM_SINGLE_REFERENCE_SLICE_THRESHOLD is hit, and the resulting MULTI_REFERENCE slice will be emitted into
  * it's own container.
+ *
+ * If more than one compression thread is requested via {@link #setCompressionThreads(int)}, the compression
+ * header, slice encoding and block compression for each container is done on a shared pool of background threads,
+ * while the factory goes on accumulating records for subsequent containers. Containers are still returned in the
+ * order in which their records were added, so the caller is not affected other than that a container may be
+ * returned some time after its last record was added; and that {@link #getFinalContainer(long)} must then be
+ * called until it returns null.
  */
 public final class ContainerFactory {
+    private static final ExecutorService buildPool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
     private final CRAMEncodingStrategy encodingStrategy;
-    private final CompressionHeaderFactory compressionHeaderFactory;
     private final SliceFactory sliceFactory;
+    /**
+     * Compression header factories not currently in use by a container build. Each container being built
+     * concurrently needs its own factory, since factories (and their encoding maps and compressors) are stateful.
+     */
+    private final Deque<CompressionHeaderFactory> freeCompressionHeaderFactories = new ArrayDeque<>();
+    /**
+     * Containers (in record order) that are being, or have been, built, and have not yet been returned.
+     */
+    private final Deque<Future<ContainerTask>> pendingContainers = new ArrayDeque<>();
+    private int compressionThreads = 0;
 
     private final SAMFileHeader samFileHeader;
     private final boolean coordinateSorted;
@@ -88,21 +112,39 @@ public final class ContainerFactory {
         this.encodingStrategy = encodingStrategy;
         this.samFileHeader = samFileHeader;
         this.coordinateSorted = samFileHeader.getSortOrder() == SAMFileHeader.SortOrder.coordinate;
-        compressionHeaderFactory = new CompressionHeaderFactory(encodingStrategy);
+        freeCompressionHeaderFactories.push(new CompressionHeaderFactory(encodingStrategy));
         sliceFactory = new SliceFactory(encodingStrategy, referenceSource, samFileHeader, globalRecordCounter);
         sliceSAMRecords = new ArrayList<>(this.encodingStrategy.getReadsPerSlice());
     }
 
+    /**
+     * Set the number of threads used to build containers. 0 or 1 means containers are built on the calling
+     * thread. Containers are always built on the calling thread if the encoding strategy has a custom
+     * {@link CompressionHeaderEncodingMap}, since that can't be shared between threads.
+     *
+     * @param compressionThreads the number of containers to build concurrently
+     */
+    public void setCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        this.compressionThreads = encodingStrategy.getCustomCompressionHeaderEncodingMap() == null ?
+                compressionThreads :
+                0;
+    }
+
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
     /**
      * Add a new {@link SAMRecord} object to the factory, obtaining a {@link Container} if one is returned.
      *
      * @param samRecord the next SAMRecord to be written
-     * @param containerByteOffset the byte offset to record in the Container if one is created
+     * @param containerByteOffset the byte offset to record in the Container if one is returned
      * @return a {@link Container} if the threshold for emitting a {@link Container} has been reached, otherwise null
      */
     public final Container getNextContainer(final SAMRecord samRecord, final long containerByteOffset) {
-        Container container = null;
-
         if (samRecord.getHeader() == null) {
             samRecord.setHeaderStrict(samFileHeader);
         }
@@ -122,7 +164,7 @@ public final class ContainerFactory {
                     currentReferenceContextID,
                     nextRecordIndex,
                     sliceFactory.getNumberOfSliceEntries())) {
-                container = makeContainer(containerByteOffset);
+                makeContainer();
             }
             currentReferenceContextID = nextRecordIndex;
         } else {
@@ -130,13 +172,15 @@ public final class ContainerFactory {
         }
 
         sliceSAMRecords.add(samRecord);
-        return container;
+        return nextContainer(containerByteOffset, false);
     }
 
     /**
-     * Obtain a {@link Container} from any remaining accumulated SAMRecords, if any.
+     * Obtain a {@link Container} from any remaining accumulated SAMRecords, if any. If containers are being
+     * built on background threads (see {@link #setCompressionThreads(int)}), there may be more than one
+     * remaining container, so this method should be called until it returns null.
      *
-     * @param containerByteOffset the byte offset to record in the newly emitted {@link Container} if one is created
+     * @param containerByteOffset the byte offset to record in the returned {@link Container} if one is returned
      * @return a {@link Container} if any record have been accumulated, otherwise null
      */
     public Container getFinalContainer(final long containerByteOffset) {
@@ -146,12 +190,10 @@ public final class ContainerFactory {
             sliceSAMRecords.clear();
         }
         if (sliceFactory.getNumberOfSliceEntries() != 0) {
-            final Container container = makeContainer(containerByteOffset);
-            currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
-            return container;
+            makeContainer();
         }
         currentReferenceContextID = ReferenceContext.UNINITIALIZED_REFERENCE_ID;
-        return null;
+        return nextContainer(containerByteOffset, true);
     }
 
     /**
@@ -192,32 +234,107 @@ public final class ContainerFactory {
     }
 
     /**
-     * Build a Container (and its constituent Slices) from {@link CRAMCompressionRecord}s.
+     * Schedule a Container (and its constituent Slices) to be built from the accumulated slice entries.
      * Note that this will always result in a single Container, regardless of how many Slices
      * are created.  It is up to the caller to divide the records into multiple Containers,
      * if that is desired.
-     *
-     * @param containerByteOffset the Container's byte offset from the start of the stream
-     * @return the container built from the records
      */
-    private final Container makeContainer(final long containerByteOffset) {
+    private void makeContainer() {
         ValidationUtils.validateArg(
                 sliceFactory.getNumberOfSliceEntries() != 0,
                 "must have slice entries to create a container");
 
-        // Create the compression header, then convert to slices. The compression header  must
-        // be presented with ALL reads that will be included in the container, no matter how
-        // they may be distributed across slices.
-        final CompressionHeader compressionHeader = compressionHeaderFactory.createCompressionHeader(
-                sliceFactory.getCRAMRecordsForAllSlices(),
-                coordinateSorted);
-        final Container container = new Container(
-                compressionHeader,
-                sliceFactory.createSlices(compressionHeader, containerByteOffset),
-                containerByteOffset,
+        final CompressionHeaderFactory compressionHeaderFactory = freeCompressionHeaderFactories.isEmpty() ?
+                new CompressionHeaderFactory(encodingStrategy) :
+                freeCompressionHeaderFactories.pop();
+        final ContainerTask task = new ContainerTask(
+                sliceFactory.stageSlices(),
+                compressionHeaderFactory,
                 globalRecordCounter);
-        globalRecordCounter += container.getContainerHeader().getNumberOfRecords();
-        return container;
+        globalRecordCounter += task.stagedSlices.getNumberOfRecords();
+        if (compressionThreads > 1) {
+            pendingContainers.add(buildPool.submit(task));
+        } else {
+            pendingContainers.add(CompletableFuture.completedFuture(task.call()));
+        }
+    }
+
+    /**
+     * Return the next container, in record order, if it has been built, or if there are too many containers being
+     * built, or if flushing.
+     *
+     * @param containerByteOffset the byte offset to record in the returned {@link Container}
+     * @param flush true if the next container should be returned even if it is still being built
+     * @return the next {@link Container}, or null if there is none to return yet
+     */
+    private Container nextContainer(final long containerByteOffset, final boolean flush) {
+        final Future<ContainerTask> next = pendingContainers.peek();
+        if (next == null) {
+            return null;
+        }
+        // allow twice as many containers as can be built at once, so that the workers stay busy while
+        // the caller writes out containers that have already been built
+        if (!flush && !next.isDone() && pendingContainers.size() < 2 * compressionThreads) {
+            return null;
+        }
+        final ContainerTask task = waitFor(pendingContainers.poll());
+        freeCompressionHeaderFactories.push(task.compressionHeaderFactory);
+        // the position of the container in the stream isn't known until all previous containers have been written
+        task.container.setContainerByteOffset(containerByteOffset);
+        return task.container;
+    }
+
+    private static ContainerTask waitFor(final Future<ContainerTask> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for container building thread", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Exception building container", e.getCause());
+        }
+    }
+
+    /**
+     * The slice entries for one Container, to be built on a background thread, together with the compression
+     * header factory to use.
+     */
+    private final class ContainerTask implements Callable<ContainerTask> {
+        private final SliceFactory.StagedSlices stagedSlices;
+        private final CompressionHeaderFactory compressionHeaderFactory;
+        private final long containerRecordCounter;
+        private Container container;
+
+        private ContainerTask(
+                final SliceFactory.StagedSlices stagedSlices,
+                final CompressionHeaderFactory compressionHeaderFactory,
+                final long containerRecordCounter) {
+            this.stagedSlices = stagedSlices;
+            this.compressionHeaderFactory = compressionHeaderFactory;
+            this.containerRecordCounter = containerRecordCounter;
+        }
+
+        /**
+         * Build a Container (and its constituent Slices) from {@link CRAMCompressionRecord}s.
+         * The Container's byte offset is set when it is returned by the factory.
+         */
+        @Override
+        public ContainerTask call() {
+            // Create the compression header, then convert to slices. The compression header  must
+            // be presented with ALL reads that will be included in the container, no matter how
+            // they may be distributed across slices.
+            final CompressionHeader compressionHeader = compressionHeaderFactory.createCompressionHeader(
+                    stagedSlices.getCRAMRecordsForAllSlices(),
+                    coordinateSorted);
+            container = new Container(
+                    compressionHeader,
+                    stagedSlices.createSlices(compressionHeader, 0),
+                    0,
+                    containerRecordCounter);
+            return this;
+        }
     }
 
 }
@@ -26,7 +26,6 @@ package htsjdk.samtools.cram.build;
 
 import htsjdk.samtools.*;
 import htsjdk.samtools.cram.CRAMException;
-import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.ref.CRAMReferenceSource;
 import htsjdk.samtools.cram.ref.ReferenceContext;
 import htsjdk.samtools.cram.structure.CRAMEncodingStrategy;
@@ -128,19 +127,23 @@ public final class SliceFactory {
     public List<Slice> createSlices(
             final CompressionHeader compressionHeader,
             final long containerByteOffset) {
-        final List<Slice> slices = new ArrayList<>(cramRecordSliceEntries.size());
-        for (final SliceStagingEntry sliceStagingEntry : cramRecordSliceEntries) {
-            final Slice slice = new Slice(
-                    sliceStagingEntry.getRecords(),
-                    compressionHeader,
-                    containerByteOffset,
-                    sliceStagingEntry.getGlobalRecordCounter()
-            );
-            slice.setReferenceMD5(cramReferenceRegion.getCurrentReferenceBases());
-            slices.add(slice);
-        }
+        return stageSlices().createSlices(compressionHeader, containerByteOffset);
+    }
+
+    /**
+     * Detaches the records accumulated by the factory, together with the reference bases needed to compute
+     * the slice reference MD5s, and resets the factory state. The returned {@link StagedSlices} does not depend
+     * on any further state of this factory, so the Slices can be created on a different thread while this
+     * factory goes on accumulating records.
+     *
+     * @return the accumulated slice entries
+     */
+    public StagedSlices stageSlices() {
+        final StagedSlices stagedSlices = new StagedSlices(
+                new ArrayList<>(cramRecordSliceEntries),
+                cramReferenceRegion.getCurrentReferenceBases());
         cramRecordSliceEntries.clear();
-        return slices;
+        return stagedSlices;
     }
 
     // The htsjdk write implementation marks all mate pair records as "detached" state, even when in the same slice,
@@ -151,7 +154,7 @@ public final class SliceFactory {
         for (final SAMRecord samRecord : samRecords) {
             int referenceIndex = samRecord.getReferenceIndex();
             final CRAMCompressionRecord cramCompressionRecord = new CRAMCompressionRecord(
-                    CramVersions.DEFAULT_CRAM_VERSION,
+                    encodingStrategy.getCRAMVersion(),
                     encodingStrategy,
                     samRecord,
                     cramReferenceRegion.getReferenceBases(referenceIndex),
@@ -251,6 +254,64 @@ public final class SliceFactory {
         }
     }
 
+    /**
+     * A set of slice entries detached from a {@link SliceFactory} by {@link #stageSlices()}, from which the
+     * Slices for a single container can be created.
+     */
+    public static final class StagedSlices {
+        private final List<SliceStagingEntry> sliceStagingEntries;
+        private final byte[] referenceBases;
+
+        private StagedSlices(final List<SliceStagingEntry> sliceStagingEntries, final byte[] referenceBases) {
+            this.sliceStagingEntries = sliceStagingEntries;
+            this.referenceBases = referenceBases;
+        }
+
+        public int getNumberOfSliceEntries() {
+            return sliceStagingEntries.size();
+        }
+
+        /**
+         * @return the total number of records in these slice entries
+         */
+        public int getNumberOfRecords() {
+            return sliceStagingEntries.stream().mapToInt(e -> e.records.size()).sum();
+        }
+
+        /**
+         * @return the list of all CRAMRecords in these slice entries
+         * @see SliceFactory#getCRAMRecordsForAllSlices()
+         */
+        public List<CRAMCompressionRecord> getCRAMRecordsForAllSlices() {
+            return sliceStagingEntries.size() > 1 ?
+                    sliceStagingEntries.stream().flatMap(e -> e.records.stream()).collect(Collectors.toList()) :
+                    sliceStagingEntries.get(0).getRecords();
+        }
+
+        /**
+         * Returns a set of Slices created from these slice entries.
+         * @param compressionHeader the compression header to use to create the Slices
+         * @param containerByteOffset the container byte offset to use for the newly created Slices
+         * @return List of Slices created from these slice entries
+         */
+        public List<Slice> createSlices(
+                final CompressionHeader compressionHeader,
+                final long containerByteOffset) {
+            final List<Slice> slices = new ArrayList<>(sliceStagingEntries.size());
+            for (final SliceStagingEntry sliceStagingEntry : sliceStagingEntries) {
+                final Slice slice = new Slice(
+                        sliceStagingEntry.getRecords(),
+                        compressionHeader,
+                        containerByteOffset,
+                        sliceStagingEntry.getGlobalRecordCounter()
+                );
+                slice.setReferenceMD5(referenceBases);
+                slices.add(slice);
+            }
+            return slices;
+        }
+    }
+
     // We can't create a Slice until we have a compression header, and we can't create a compression
     // header until we've seen all records that will live in a container. SliceStagingEntry objects are
     // used to accumulate and hold sets of records that will populate a Slice until we're ready to create
@@ -6,10 +6,12 @@ import java.util.Set;
 public final class CramVersions {
     public static final CRAMVersion CRAM_v2_1 = new CRAMVersion(2, 1);
     public static final CRAMVersion CRAM_v3 = new CRAMVersion(3, 0);
+    public static final CRAMVersion CRAM_v3_1 = new CRAMVersion(3, 1);
 
     final static Set<CRAMVersion> supportedCRAMVersions = new HashSet<CRAMVersion>() {{
         add(CRAM_v2_1);
         add(CRAM_v3);
+        add(CRAM_v3_1);
     }};
 
     /**
@@ -0,0 +1,30 @@
+package htsjdk.samtools.cram.compression;
+
+import java.util.Arrays;
+
+/**
+ * Information about the records in a slice, gathered while the slice's blocks are written, that an
+ * {@link ExternalCompressor} can use to model the contents of a block.
+ */
+public class CRAMCodecModelContext {
+    private int[] qualityScoreRecordLengths = new int[16];
+    private int numberOfQualityScoreRecords = 0;
+
+    /**
+     * Record that an array of quality scores of the given length was written to the quality score block.
+     * @param length number of quality scores written for a record
+     */
+    public void addQualityScoreRecordLength(final int length) {
+        if (numberOfQualityScoreRecords == qualityScoreRecordLengths.length) {
+            qualityScoreRecordLengths = Arrays.copyOf(qualityScoreRecordLengths, 2 * numberOfQualityScoreRecords);
+        }
+        qualityScoreRecordLengths[numberOfQualityScoreRecords++] = length;
+    }
+
+    /**
+     * @return the lengths of the quality score arrays written to the quality score block, in order
+     */
+    public int[] getQualityScoreRecordLengths() {
+        return Arrays.copyOf(qualityScoreRecordLengths, numberOfQualityScoreRecords);
+    }
+}
@@ -0,0 +1,159 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.CRAMException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Serialization primitives and data transforms shared by the CRAM 3.1 codecs (rANS Nx16, adaptive arithmetic and
+ * fqzcomp).
+ */
+public final class CompressionUtils {
+    private static final int NUMBER_OF_SYMBOLS = 256;
+    private static final int MAX_PACKED_SYMBOLS = 16;
+
+    private CompressionUtils() {}
+
+    /**
+     * Write an unsigned value as 7-bit groups, most significant first, with the top bit of each byte set if more
+     * bytes follow.
+     */
+    public static void writeUint7(final int value, final ByteArrayOutputStream out) {
+        int groups = 0;
+        while (groups < 4 && (value >>> (7 * (groups + 1))) != 0) {
+            groups++;
+        }
+        for (int k = groups; k > 0; k--) {
+            out.write(((value >>> (7 * k)) & 0x7F) | 0x80);
+        }
+        out.write(value & 0x7F);
+    }
+
+    /**
+     * Read a value written by {@link #writeUint7}.
+     */
+    public static int readUint7(final ByteBuffer in) {
+        int value = 0;
+        int c;
+        do {
+            c = in.get() & 0xFF;
+            value = (value << 7) | (c & 0x7F);
+        } while ((c & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * @return a little-endian view of the next length bytes of the buffer, which is advanced past them
+     */
+    public static ByteBuffer slice(final ByteBuffer in, final int length) {
+        final ByteBuffer slice = in.slice();
+        slice.limit(length);
+        in.position(in.position() + length);
+        return slice.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Packs 2, 4 or 8 symbols into each byte if there are no more than 16 distinct symbols. The number of symbols,
+     * the symbols themselves (in ascending order) and the length of the packed data are written to metaData; the
+     * packed data is returned.
+     *
+     * @param in data to pack
+     * @param metaData stream to which the packing metadata is written
+     * @return the packed data, or null if the data can't be packed (in which case nothing is written)
+     */
+    public static byte[] encodePack(final byte[] in, final ByteArrayOutputStream metaData) {
+        final boolean[] present = new boolean[NUMBER_OF_SYMBOLS];
+        for (final byte b : in) {
+            present[b & 0xFF] = true;
+        }
+        final int[] symbolIndex = new int[NUMBER_OF_SYMBOLS];
+        int numberOfSymbols = 0;
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (present[s]) {
+                symbolIndex[s] = numberOfSymbols++;
+            }
+        }
+        if (numberOfSymbols == 0 || numberOfSymbols > MAX_PACKED_SYMBOLS) {
+            return null;
+        }
+
+        metaData.write(numberOfSymbols);
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (present[s]) {
+                metaData.write(s);
+            }
+        }
+
+        final int bitsPerSymbol = getPackedBitsPerSymbol(numberOfSymbols);
+        final byte[] packed;
+        if (bitsPerSymbol == 0) {
+            // a single symbol, which can be reconstructed from the size alone
+            packed = new byte[0];
+        } else {
+            final int symbolsPerByte = 8 / bitsPerSymbol;
+            packed = new byte[(in.length + symbolsPerByte - 1) / symbolsPerByte];
+            for (int i = 0; i < in.length; i++) {
+                packed[i / symbolsPerByte] |= symbolIndex[in[i] & 0xFF] << ((i % symbolsPerByte) * bitsPerSymbol);
+            }
+        }
+        writeUint7(packed.length, metaData);
+        return packed;
+    }
+
+    /**
+     * Reverse {@link #encodePack}.
+     *
+     * @param in packed data
+     * @param map symbols, in the order written to the packing metadata
+     * @param length unpacked length
+     * @return the unpacked data
+     */
+    public static byte[] decodePack(final byte[] in, final byte[] map, final int length) {
+        final byte[] out = new byte[length];
+        final int bitsPerSymbol = getPackedBitsPerSymbol(map.length);
+        if (bitsPerSymbol == 0) {
+            if (length > 0) {
+                Arrays.fill(out, map[0]);
+            }
+            return out;
+        }
+        final int symbolsPerByte = 8 / bitsPerSymbol;
+        final int mask = (1 << bitsPerSymbol) - 1;
+        if (in.length < (length + symbolsPerByte - 1) / symbolsPerByte) {
+            throw new CRAMException("Insufficient packed data");
+        }
+        for (int i = 0; i < length; i++) {
+            final int index = (in[i / symbolsPerByte] >> ((i % symbolsPerByte) * bitsPerSymbol)) & mask;
+            if (index >= map.length) {
+                throw new CRAMException("Invalid packed symbol");
+            }
+            out[i] = map[index];
+        }
+        return out;
+    }
+
+    private static int getPackedBitsPerSymbol(final int numberOfSymbols) {
+        if (numberOfSymbols <= 1) {
+            return 0;
+        } else if (numberOfSymbols <= 2) {
+            return 1;
+        } else if (numberOfSymbols <= 4) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    /**
+     * @param length length of the data being striped
+     * @param ways number of interleaved streams
+     * @param stream index of a stream
+     * @return the number of bytes in that stream, which holds bytes stream, stream + ways, stream + 2 * ways, ...
+     */
+    public static int getStripeLength(final int length, final int ways, final int stream) {
+        return length / ways + (stream < length % ways ? 1 : 0);
+    }
+}
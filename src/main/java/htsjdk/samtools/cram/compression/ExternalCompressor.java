@@ -1,6 +1,10 @@
 package htsjdk.samtools.cram.compression;
 
+import htsjdk.samtools.cram.compression.fqzcomp.FQZComp;
+import htsjdk.samtools.cram.compression.nametokenisation.NameTokeniser;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
 import htsjdk.samtools.cram.compression.rans.RANS;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
 import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import htsjdk.utils.ValidationUtils;
 
@@ -16,6 +20,17 @@ public abstract class ExternalCompressor {
 
     public abstract byte[] compress(byte[] data);
 
+    /**
+     * Compress data, taking advantage of any information in the context that this compressor can use. By
+     * default the context is ignored.
+     * @param data data to compress
+     * @param contextModel information about the records whose data is being compressed; may be null
+     * @return the compressed data
+     */
+    public byte[] compress(final byte[] data, final CRAMCodecModelContext contextModel) {
+        return compress(data);
+    }
+
     public abstract byte[] uncompress(byte[] data);
 
     public BlockCompressionMethod getMethod() { return method; }
@@ -44,8 +59,9 @@ public abstract class ExternalCompressor {
      * Return an ExternalCompressor subclass based on the BlockCompressionMethod. Compressor-specific arguments
      * must be populated by the caller.
      * @param compressionMethod the type of compressor required ({@link BlockCompressionMethod})
-     * @param compressorSpecificArg the required order for RANS compressors; or the desired write compression
-     *                             level for GZIP
+     * @param compressorSpecificArg the required order for RANS compressors; the requested format flags for
+     *                             RANSNx16 and ADAPTIVE_ARITHMETIC compressors; the token stream codec for
+     *                             NAME_TOKENISER compressors; or the desired write compression level for GZIP
      * @return an ExternalCompressor of the requested type, populated with an compressor-specific args
      */
     public static ExternalCompressor getCompressorForMethod(
@@ -74,6 +90,27 @@ public abstract class ExternalCompressor {
                         new RANSExternalCompressor(new RANS()) :
                         new RANSExternalCompressor(compressorSpecificArg, new RANS());
 
+            case RANSNx16:
+                return compressorSpecificArg == NO_COMPRESSION_ARG ?
+                        new RANSNx16ExternalCompressor(new RANSNx16()) :
+                        new RANSNx16ExternalCompressor(compressorSpecificArg, new RANSNx16());
+
+            case ADAPTIVE_ARITHMETIC:
+                return compressorSpecificArg == NO_COMPRESSION_ARG ?
+                        new RangeExternalCompressor(new RangeCodec()) :
+                        new RangeExternalCompressor(compressorSpecificArg, new RangeCodec());
+
+            case FQZCOMP:
+                ValidationUtils.validateArg(
+                        compressorSpecificArg == NO_COMPRESSION_ARG,
+                        String.format(argErrorMessage, compressorSpecificArg, compressionMethod));
+                return new FQZCompExternalCompressor(new FQZComp());
+
+            case NAME_TOKENISER:
+                return compressorSpecificArg == NO_COMPRESSION_ARG ?
+                        new NameTokeniserExternalCompressor(new NameTokeniser()) :
+                        new NameTokeniserExternalCompressor(compressorSpecificArg, new NameTokeniser());
+
             case BZIP2:
                 ValidationUtils.validateArg(
                         compressorSpecificArg == NO_COMPRESSION_ARG,
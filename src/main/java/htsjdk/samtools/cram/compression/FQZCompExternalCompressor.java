@@ -0,0 +1,37 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.fqzcomp.FQZComp;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ExternalCompressor for the CRAM 3.1 fqzcomp quality score codec. This is only suitable for the quality score
+ * block. It compresses best when the quality score length of each record is available from the
+ * {@link CRAMCodecModelContext}.
+ */
+public final class FQZCompExternalCompressor extends ExternalCompressor {
+    private final FQZComp fqzComp;
+
+    public FQZCompExternalCompressor(final FQZComp fqzComp) {
+        super(BlockCompressionMethod.FQZCOMP);
+        this.fqzComp = fqzComp;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return fqzComp.compress(data, null);
+    }
+
+    @Override
+    public byte[] compress(final byte[] data, final CRAMCodecModelContext contextModel) {
+        return fqzComp.compress(data, contextModel == null ? null : contextModel.getQualityScoreRecordLengths());
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        final ByteBuffer buffer = fqzComp.uncompress(ByteBuffer.wrap(data));
+        return buffer.array();
+    }
+
+}
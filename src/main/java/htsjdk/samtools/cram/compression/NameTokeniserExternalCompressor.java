@@ -0,0 +1,65 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.nametokenisation.NameTokeniser;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+import htsjdk.utils.ValidationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * ExternalCompressor for the CRAM 3.1 name tokeniser codec, which is only suitable for blocks of nul-terminated
+ * read names. The compressor-specific argument selects the codec used for the token streams: 0 for rANS Nx16 or
+ * 1 for the adaptive arithmetic coder.
+ */
+public final class NameTokeniserExternalCompressor extends ExternalCompressor {
+    public static final int RANS_NX16_STREAMS = 0;
+    public static final int ARITHMETIC_STREAMS = 1;
+
+    private final boolean useArithmeticCoder;
+    private final NameTokeniser nameTokeniser;
+
+    public NameTokeniserExternalCompressor(final NameTokeniser nameTokeniser) {
+        this(RANS_NX16_STREAMS, nameTokeniser);
+    }
+
+    public NameTokeniserExternalCompressor(final int streamCodec, final NameTokeniser nameTokeniser) {
+        super(BlockCompressionMethod.NAME_TOKENISER);
+        ValidationUtils.validateArg(
+                streamCodec == RANS_NX16_STREAMS || streamCodec == ARITHMETIC_STREAMS,
+                String.format("Invalid name tokeniser stream codec (%d)", streamCodec));
+        this.useArithmeticCoder = streamCodec == ARITHMETIC_STREAMS;
+        this.nameTokeniser = nameTokeniser;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return nameTokeniser.compress(data, useArithmeticCoder);
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        return nameTokeniser.uncompress(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%s)", this.getMethod(), useArithmeticCoder ? "arithmetic" : "rANS Nx16");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        NameTokeniserExternalCompressor that = (NameTokeniserExternalCompressor) o;
+
+        return this.useArithmeticCoder == that.useArithmeticCoder;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMethod(), useArithmeticCoder);
+    }
+
+}
@@ -0,0 +1,84 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+import htsjdk.utils.ValidationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * ExternalCompressor for the CRAM 3.1 rANS Nx16 codec. The compressor-specific argument is the set of
+ * {@link RANSNx16} format flags to request when compressing; the flags actually used are recorded in each
+ * compressed block, so any instance can uncompress any rANS Nx16 block.
+ */
+public final class RANSNx16ExternalCompressor extends ExternalCompressor {
+    private final int flags;
+    private final RANSNx16 rans;
+
+    /**
+     * We use a shared RANSNx16 instance for all compressors.
+     * @param rans
+     */
+    public RANSNx16ExternalCompressor(final RANSNx16 rans) {
+        this(0, rans);
+    }
+
+    public RANSNx16ExternalCompressor(final int flags, final RANSNx16 rans) {
+        super(BlockCompressionMethod.RANSNx16);
+        ValidationUtils.validateArg(isValidFlags(flags), String.format("Invalid rANS Nx16 flags (%d)", flags));
+        this.rans = rans;
+        this.flags = flags;
+    }
+
+    /**
+     * @param flags requested format flags
+     * @return true if flags can be used to compress with rANS Nx16
+     */
+    public static boolean isValidFlags(final int flags) {
+        return (flags & ~0xFF) == 0 && (flags & RANSNx16.NOSZ_FLAG) == 0;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return toByteArray(rans.compress(ByteBuffer.wrap(data), flags));
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        return toByteArray(rans.uncompress(ByteBuffer.wrap(data)));
+    }
+
+    public int getFlags() { return flags; }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d)", this.getMethod(), flags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RANSNx16ExternalCompressor that = (RANSNx16ExternalCompressor) o;
+
+        return this.flags == that.flags;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMethod(), flags);
+    }
+
+    private byte[] toByteArray(final ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
@@ -0,0 +1,80 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
+import htsjdk.utils.ValidationUtils;
+
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * ExternalCompressor for the CRAM 3.1 adaptive arithmetic codec. The compressor-specific argument is the set of
+ * {@link RangeCodec} format flags to request when compressing; the flags actually used are recorded in each
+ * compressed block.
+ */
+public final class RangeExternalCompressor extends ExternalCompressor {
+    private final int flags;
+    private final RangeCodec rangeCodec;
+
+    public RangeExternalCompressor(final RangeCodec rangeCodec) {
+        this(0, rangeCodec);
+    }
+
+    public RangeExternalCompressor(final int flags, final RangeCodec rangeCodec) {
+        super(BlockCompressionMethod.ADAPTIVE_ARITHMETIC);
+        ValidationUtils.validateArg(isValidFlags(flags), String.format("Invalid adaptive arithmetic flags (%d)", flags));
+        this.rangeCodec = rangeCodec;
+        this.flags = flags;
+    }
+
+    /**
+     * @param flags requested format flags
+     * @return true if flags can be used to compress with the adaptive arithmetic codec
+     */
+    public static boolean isValidFlags(final int flags) {
+        return (flags & ~0xFF) == 0 && (flags & RangeCodec.NOSZ_FLAG) == 0;
+    }
+
+    @Override
+    public byte[] compress(final byte[] data) {
+        return toByteArray(rangeCodec.compress(ByteBuffer.wrap(data), flags));
+    }
+
+    @Override
+    public byte[] uncompress(final byte[] data) {
+        return toByteArray(rangeCodec.uncompress(ByteBuffer.wrap(data)));
+    }
+
+    public int getFlags() { return flags; }
+
+    @Override
+    public String toString() {
+        return String.format("%s(%d)", this.getMethod(), flags);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        RangeExternalCompressor that = (RangeExternalCompressor) o;
+
+        return this.flags == that.flags;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getMethod(), flags);
+    }
+
+    private byte[] toByteArray(final ByteBuffer buffer) {
+        if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.limit()) {
+            return buffer.array();
+        }
+
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+}
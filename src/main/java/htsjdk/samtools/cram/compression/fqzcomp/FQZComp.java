@@ -0,0 +1,328 @@
+package htsjdk.samtools.cram.compression.fqzcomp;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.range.ByteModel;
+import htsjdk.samtools.cram.compression.range.RangeDecoder;
+import htsjdk.samtools.cram.compression.range.RangeEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static htsjdk.samtools.cram.compression.CompressionUtils.readUint7;
+import static htsjdk.samtools.cram.compression.CompressionUtils.writeUint7;
+
+/**
+ * Encoder and decoder for the CRAM 3.1 fqzcomp quality score codec (block compression method 7).
+ *
+ * Quality values are range coded with adaptive models (see {@link ByteModel}), selected by a context built from the
+ * previous quality values in the same record, the position in the record and how variable the record has been so
+ * far (see {@link FQZParams}). Record lengths are stored in the stream, so decoding needs no other information;
+ * for encoding, supplying the record lengths allows positional contexts to be used, which compresses
+ * considerably better than treating the whole block as a single record.
+ *
+ * The decoder accepts multiple parameter sets, selectors and reversed records; the encoder chooses a single
+ * parameter set from the data.
+ */
+public final class FQZComp {
+    private static final int VERSION = 5;
+    private static final int GFLAG_MULTI_PARAM = 0x01;
+    private static final int GFLAG_HAVE_STAB = 0x02;
+    private static final int GFLAG_DO_REV = 0x04;
+
+    private static final int NUMBER_OF_CONTEXTS = 1 << 16;
+    private static final int POSITION_BITS = 2;
+    private static final int DELTA_BITS = 2;
+    private static final int MAX_QUALITY_BITS = 16 - POSITION_BITS - DELTA_BITS;
+
+    /**
+     * Compress quality values.
+     *
+     * @param in concatenated quality values
+     * @param recordLengths the number of quality values for each record, or null if unknown; ignored unless the
+     *                      lengths add up to the length of the input
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] in, final int[] recordLengths) {
+        final int[] lengths = getRecordLengths(in.length, recordLengths);
+        final FQZParams params = chooseParameters(in, lengths);
+        final int[] symbolIndex = new int[256];
+        if ((params.flags & FQZParams.PFLAG_HAVE_QMAP) != 0) {
+            for (int i = 0; i < params.maxSymbol; i++) {
+                symbolIndex[params.qualityMap[i]] = i;
+            }
+        } else {
+            for (int i = 0; i < symbolIndex.length; i++) {
+                symbolIndex[i] = i;
+            }
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 3 + 64);
+        writeUint7(in.length, out);
+        out.write(VERSION);
+        out.write(0); // a single parameter set, with no selectors or reversed records
+        params.write(out);
+
+        final Models models = new Models(params.getNumberOfSymbols(), 1);
+        final RangeEncoder encoder = new RangeEncoder(out);
+        final FQZState state = new FQZState();
+        int offset = 0;
+        int previousOffset = -1;
+        int previousLength = -1;
+        for (int record = 0; record < lengths.length; record++) {
+            final int length = lengths[record];
+            if (!params.isFixedLength() || record == 0) {
+                for (int k = 0; k < 4; k++) {
+                    models.lengths[k].encodeSymbol(encoder, (length >>> (8 * k)) & 0xFF);
+                }
+            }
+            if (params.isDeduplicated()) {
+                final boolean duplicate = length == previousLength && regionsMatch(in, previousOffset, offset, length);
+                models.duplicate.encodeSymbol(encoder, duplicate ? 1 : 0);
+                if (duplicate) {
+                    offset += length;
+                    continue;
+                }
+            }
+
+            state.startRecord(length, 0);
+            int context = params.context;
+            for (int i = offset; i < offset + length; i++) {
+                final int quality = symbolIndex[in[i] & 0xFF];
+                models.getQualityModel(context).encodeSymbol(encoder, quality);
+                context = params.updateContext(state, quality);
+            }
+            previousOffset = offset;
+            previousLength = length;
+            offset += length;
+        }
+        encoder.finish();
+        return out.toByteArray();
+    }
+
+    /**
+     * Uncompress an fqzcomp stream.
+     *
+     * @param inBuffer compressed stream
+     * @return concatenated quality values
+     */
+    public ByteBuffer uncompress(final ByteBuffer inBuffer) {
+        final ByteBuffer in = inBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        final int length = readUint7(in);
+        final int version = in.get() & 0xFF;
+        if (version != VERSION) {
+            throw new CRAMException("Unsupported fqzcomp version: " + version);
+        }
+        final int globalFlags = in.get() & 0xFF;
+        final int numberOfParams = (globalFlags & GFLAG_MULTI_PARAM) != 0 ? in.get() & 0xFF : 1;
+        final int[] selectorTable = new int[256];
+        final int maxSelector;
+        if ((globalFlags & GFLAG_HAVE_STAB) != 0) {
+            maxSelector = in.get() & 0xFF;
+            FQZParams.readArray(in, selectorTable);
+        } else {
+            maxSelector = numberOfParams > 1 ? numberOfParams - 1 : 0;
+            for (int i = 0; i < selectorTable.length; i++) {
+                selectorTable[i] = Math.min(i, numberOfParams - 1);
+            }
+        }
+        final FQZParams[] params = new FQZParams[numberOfParams];
+        int numberOfSymbols = 0;
+        for (int i = 0; i < numberOfParams; i++) {
+            params[i] = FQZParams.read(in);
+            numberOfSymbols = Math.max(numberOfSymbols, params[i].getNumberOfSymbols());
+        }
+
+        final byte[] out = new byte[length];
+        final Models models = new Models(numberOfSymbols, maxSelector + 1);
+        final RangeDecoder decoder = new RangeDecoder(in);
+        final FQZState state = new FQZState();
+        boolean firstRecord = true;
+        int recordLength = 0;
+        for (int i = 0; i < length; ) {
+            final int selector = maxSelector > 0 ? models.selector.decodeSymbol(decoder) : 0;
+            if (selectorTable[selector] >= numberOfParams) {
+                throw new CRAMException("Invalid fqzcomp parameter selector: " + selector);
+            }
+            final FQZParams param = params[selectorTable[selector]];
+            if (!param.isFixedLength() || firstRecord) {
+                recordLength = 0;
+                for (int k = 0; k < 4; k++) {
+                    recordLength |= models.lengths[k].decodeSymbol(decoder) << (8 * k);
+                }
+                firstRecord = false;
+            }
+            if (recordLength < 0 || recordLength > length - i) {
+                throw new CRAMException("Invalid fqzcomp record length: " + recordLength);
+            }
+            final boolean reversed = (globalFlags & GFLAG_DO_REV) != 0 && models.reverse.decodeSymbol(decoder) == 1;
+            if (param.isDeduplicated() && models.duplicate.decodeSymbol(decoder) == 1) {
+                if (recordLength > i) {
+                    throw new CRAMException("fqzcomp duplicate record has no predecessor");
+                }
+                System.arraycopy(out, i - recordLength, out, i, recordLength);
+                i += recordLength;
+                continue;
+            }
+
+            state.startRecord(recordLength, selector);
+            int context = param.context;
+            final int start = i;
+            for (final int end = i + recordLength; i < end; i++) {
+                final int quality = models.getQualityModel(context).decodeSymbol(decoder);
+                out[i] = (byte) param.qualityMap[quality];
+                context = param.updateContext(state, quality);
+            }
+            if (reversed) {
+                for (int l = start, r = i - 1; l < r; l++, r--) {
+                    final byte b = out[l];
+                    out[l] = out[r];
+                    out[r] = b;
+                }
+            }
+        }
+        return ByteBuffer.wrap(out);
+    }
+
+    private static int[] getRecordLengths(final int length, final int[] recordLengths) {
+        if (recordLengths != null) {
+            long total = 0;
+            int nonEmpty = 0;
+            for (final int recordLength : recordLengths) {
+                total += recordLength;
+                if (recordLength > 0) {
+                    nonEmpty++;
+                }
+            }
+            if (total == length) {
+                // empty records contribute nothing and needn't be coded
+                final int[] lengths = new int[nonEmpty];
+                int i = 0;
+                for (final int recordLength : recordLengths) {
+                    if (recordLength > 0) {
+                        lengths[i++] = recordLength;
+                    }
+                }
+                return lengths;
+            }
+        }
+        return length == 0 ? new int[0] : new int[] {length};
+    }
+
+    /**
+     * Choose the quality map, context layout and tables for the data.
+     */
+    private static FQZParams chooseParameters(final byte[] in, final int[] lengths) {
+        final FQZParams params = new FQZParams();
+
+        final boolean[] present = new boolean[256];
+        int maxQuality = 0;
+        int numberOfSymbols = 0;
+        for (final byte b : in) {
+            final int q = b & 0xFF;
+            if (!present[q]) {
+                present[q] = true;
+                numberOfSymbols++;
+                maxQuality = Math.max(maxQuality, q);
+            }
+        }
+        int maxCodedQuality = maxQuality;
+        if (numberOfSymbols <= maxQuality) {
+            // not every value up to the maximum is used, so code indices into a map of the values that are
+            params.flags |= FQZParams.PFLAG_HAVE_QMAP;
+            params.maxSymbol = numberOfSymbols;
+            for (int q = 0, i = 0; q < present.length; q++) {
+                if (present[q]) {
+                    params.qualityMap[i++] = q;
+                }
+            }
+            maxCodedQuality = numberOfSymbols - 1;
+        } else {
+            params.maxSymbol = maxQuality;
+        }
+
+        // as many previous quality values as fit, up to three, in the bits left after the position and delta
+        params.qualityShift = Math.max(1, 32 - Integer.numberOfLeadingZeros(maxCodedQuality));
+        params.qualityBits = Math.min(MAX_QUALITY_BITS, params.qualityShift * (params.qualityShift <= 3 ? 3 : 2));
+        params.qualityLocation = 0;
+        params.positionLocation = params.qualityBits;
+        params.deltaLocation = params.qualityBits + POSITION_BITS;
+        params.selectorLocation = 15;
+
+        int maxLength = 0;
+        boolean fixedLength = true;
+        boolean hasDuplicates = false;
+        for (int record = 0, offset = 0; record < lengths.length; offset += lengths[record++]) {
+            maxLength = Math.max(maxLength, lengths[record]);
+            if (record > 0) {
+                final int previousLength = lengths[record - 1];
+                fixedLength &= lengths[record] == previousLength;
+                hasDuplicates |= lengths[record] == previousLength &&
+                        regionsMatch(in, offset - previousLength, offset, previousLength);
+            }
+        }
+        if (fixedLength) {
+            params.flags |= FQZParams.PFLAG_DO_LEN;
+        }
+        if (hasDuplicates) {
+            params.flags |= FQZParams.PFLAG_DO_DEDUP;
+        }
+
+        // positions (counted down from the end of the record) are scaled into POSITION_BITS bits
+        params.flags |= FQZParams.PFLAG_HAVE_PTAB;
+        final int positionBits = 32 - Integer.numberOfLeadingZeros(Math.min(maxLength, FQZParams.POSITION_TABLE_SIZE - 1));
+        final int positionShift = Math.max(0, positionBits - POSITION_BITS);
+        for (int i = 0; i < FQZParams.POSITION_TABLE_SIZE; i++) {
+            params.positionTable[i] = Math.min((1 << POSITION_BITS) - 1, i >> positionShift);
+        }
+
+        // the number of changes in quality value so far is a proxy for how noisy the record is
+        params.flags |= FQZParams.PFLAG_HAVE_DTAB;
+        for (int i = 0; i < FQZParams.DELTA_TABLE_SIZE; i++) {
+            params.deltaTable[i] = Math.min((1 << DELTA_BITS) - 1, (int) Math.sqrt(i) / 2);
+        }
+        return params;
+    }
+
+    private static boolean regionsMatch(final byte[] in, final int offset1, final int offset2, final int length) {
+        if (offset1 < 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (in[offset1 + i] != in[offset2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The adaptive models for a stream. Quality models are created on first use, since typically only a small
+     * fraction of the possible contexts occur.
+     */
+    private static final class Models {
+        private final ByteModel[] quality = new ByteModel[NUMBER_OF_CONTEXTS];
+        private final ByteModel[] lengths = new ByteModel[4];
+        private final ByteModel reverse = new ByteModel(2);
+        private final ByteModel duplicate = new ByteModel(2);
+        private final ByteModel selector;
+        private final int numberOfQualitySymbols;
+
+        private Models(final int numberOfQualitySymbols, final int numberOfSelectors) {
+            this.numberOfQualitySymbols = numberOfQualitySymbols;
+            for (int k = 0; k < lengths.length; k++) {
+                lengths[k] = new ByteModel(256);
+            }
+            selector = new ByteModel(numberOfSelectors);
+        }
+
+        private ByteModel getQualityModel(final int context) {
+            ByteModel model = quality[context];
+            if (model == null) {
+                model = new ByteModel(numberOfQualitySymbols);
+                quality[context] = model;
+            }
+            return model;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package htsjdk.samtools.cram.compression.fqzcomp;
+
+import htsjdk.samtools.cram.CRAMException;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * One fqzcomp parameter set. Each quality value is coded with an adaptive model selected by a 16-bit context,
+ * which is assembled from bit fields derived from the preceding quality values in the record, the number of
+ * bases remaining in the record, the number of times the quality value has changed so far in the record, and
+ * the parameter selector. The parameters give the size and location of each field, and the tables that map
+ * positions and changes to field values.
+ */
+final class FQZParams {
+    static final int PFLAG_DO_DEDUP = 0x02;
+    // all records have the same length, which is stored once
+    static final int PFLAG_DO_LEN = 0x04;
+    static final int PFLAG_DO_SEL = 0x08;
+    static final int PFLAG_HAVE_QMAP = 0x10;
+    static final int PFLAG_HAVE_PTAB = 0x20;
+    static final int PFLAG_HAVE_DTAB = 0x40;
+    static final int PFLAG_HAVE_QTAB = 0x80;
+
+    static final int QUALITY_TABLE_SIZE = 256;
+    static final int POSITION_TABLE_SIZE = 1024;
+    static final int DELTA_TABLE_SIZE = 256;
+
+    int context;
+    int flags;
+    // quality symbols are in the range 0..maxSymbol - 1 when there is a quality map, and 0..maxSymbol otherwise
+    int maxSymbol;
+    int qualityBits;
+    int qualityShift;
+    int qualityLocation;
+    int selectorLocation;
+    int positionLocation;
+    int deltaLocation;
+    final int[] qualityMap = new int[256];
+    final int[] qualityTable = new int[QUALITY_TABLE_SIZE];
+    final int[] positionTable = new int[POSITION_TABLE_SIZE];
+    final int[] deltaTable = new int[DELTA_TABLE_SIZE];
+
+    FQZParams() {
+        for (int i = 0; i < qualityMap.length; i++) {
+            qualityMap[i] = i;
+        }
+        for (int i = 0; i < QUALITY_TABLE_SIZE; i++) {
+            qualityTable[i] = i;
+        }
+    }
+
+    boolean isFixedLength() { return (flags & PFLAG_DO_LEN) != 0; }
+
+    boolean isDeduplicated() { return (flags & PFLAG_DO_DEDUP) != 0; }
+
+    /**
+     * @return the number of symbols in each quality model
+     */
+    int getNumberOfSymbols() { return maxSymbol + 1; }
+
+    /**
+     * @return the context for the next quality value, after updating the state with the quality value just coded
+     */
+    int updateContext(final FQZState state, final int quality) {
+        state.qualityContext = (state.qualityContext << qualityShift) + qualityTable[quality];
+        int context = (state.qualityContext & ((1 << qualityBits) - 1)) << qualityLocation;
+        context += positionTable[Math.min(POSITION_TABLE_SIZE - 1, state.remaining)] << positionLocation;
+        context += deltaTable[Math.min(DELTA_TABLE_SIZE - 1, state.delta)] << deltaLocation;
+        context += state.selector << selectorLocation;
+        if (state.previousQuality != quality) {
+            state.delta++;
+        }
+        state.previousQuality = quality;
+        state.remaining--;
+        return context & 0xFFFF;
+    }
+
+    static FQZParams read(final ByteBuffer in) {
+        final FQZParams params = new FQZParams();
+        params.context = (in.get() & 0xFF) | ((in.get() & 0xFF) << 8);
+        params.flags = in.get() & 0xFF;
+        params.maxSymbol = in.get() & 0xFF;
+        int x = in.get() & 0xFF;
+        params.qualityBits = x >> 4;
+        params.qualityShift = x & 0xF;
+        x = in.get() & 0xFF;
+        params.qualityLocation = x >> 4;
+        params.selectorLocation = x & 0xF;
+        x = in.get() & 0xFF;
+        params.positionLocation = x >> 4;
+        params.deltaLocation = x & 0xF;
+        if ((params.flags & PFLAG_HAVE_QMAP) != 0) {
+            for (int i = 0; i < params.maxSymbol; i++) {
+                params.qualityMap[i] = in.get() & 0xFF;
+            }
+        }
+        if ((params.flags & PFLAG_HAVE_QTAB) != 0) {
+            readArray(in, params.qualityTable);
+        }
+        if ((params.flags & PFLAG_HAVE_PTAB) != 0) {
+            readArray(in, params.positionTable);
+        }
+        if ((params.flags & PFLAG_HAVE_DTAB) != 0) {
+            readArray(in, params.deltaTable);
+        }
+        return params;
+    }
+
+    void write(final ByteArrayOutputStream out) {
+        out.write(context & 0xFF);
+        out.write((context >> 8) & 0xFF);
+        out.write(flags);
+        out.write(maxSymbol);
+        out.write(qualityBits << 4 | qualityShift);
+        out.write(qualityLocation << 4 | selectorLocation);
+        out.write(positionLocation << 4 | deltaLocation);
+        if ((flags & PFLAG_HAVE_QMAP) != 0) {
+            for (int i = 0; i < maxSymbol; i++) {
+                out.write(qualityMap[i]);
+            }
+        }
+        if ((flags & PFLAG_HAVE_QTAB) != 0) {
+            writeArray(qualityTable, out);
+        }
+        if ((flags & PFLAG_HAVE_PTAB) != 0) {
+            writeArray(positionTable, out);
+        }
+        if ((flags & PFLAG_HAVE_DTAB) != 0) {
+            writeArray(deltaTable, out);
+        }
+    }
+
+    /**
+     * Write a non-decreasing array of small values starting at 0, as the number of entries with each value
+     * (in pieces of at most 255), with runs of the same count then run length encoded: a count that repeats the
+     * previous one is followed by the number of further repeats.
+     */
+    static void writeArray(final int[] array, final ByteArrayOutputStream out) {
+        final byte[] counts = new byte[2 * array.length + 1];
+        int numberOfCounts = 0;
+        for (int i = 0, value = 0; i < array.length; value++) {
+            int run = 0;
+            while (i < array.length && array[i] == value) {
+                i++;
+                run++;
+            }
+            if (run == 0 && i < array.length && array[i] < value) {
+                throw new IllegalArgumentException("fqzcomp tables must be non-decreasing");
+            }
+            int piece;
+            do {
+                piece = Math.min(255, run);
+                counts[numberOfCounts++] = (byte) piece;
+                run -= piece;
+            } while (piece == 255);
+        }
+
+        int last = -1;
+        for (int j = 0; j < numberOfCounts; ) {
+            final int count = counts[j++] & 0xFF;
+            out.write(count);
+            if (count == last) {
+                int repeats = 0;
+                while (j < numberOfCounts && (counts[j] & 0xFF) == last && repeats < 255) {
+                    j++;
+                    repeats++;
+                }
+                out.write(repeats);
+            } else {
+                last = count;
+            }
+        }
+    }
+
+    /**
+     * Read an array written by {@link #writeArray}.
+     */
+    static void readArray(final ByteBuffer in, final int[] array) {
+        final int size = array.length;
+        final int[] counts = new int[POSITION_TABLE_SIZE * 2];
+        int numberOfCounts = 0;
+        int total = 0;
+        int last = -1;
+        // a count of 255 is always followed by another piece of the same run
+        while (total < size || last == 255) {
+            final int count = in.get() & 0xFF;
+            int repeats = 0;
+            if (count == last) {
+                repeats = in.get() & 0xFF;
+            }
+            if (numberOfCounts + repeats + 1 > counts.length) {
+                throw new CRAMException("Invalid fqzcomp table");
+            }
+            for (int k = 0; k <= repeats; k++) {
+                counts[numberOfCounts++] = count;
+                total += count;
+            }
+            last = count;
+        }
+
+        int j = 0;
+        for (int i = 0, value = 0; j < size; value++) {
+            int run = 0;
+            int piece;
+            do {
+                if (i >= numberOfCounts) {
+                    throw new CRAMException("Invalid fqzcomp table");
+                }
+                piece = counts[i++];
+                run += piece;
+            } while (piece == 255);
+            if (j + run > size) {
+                throw new CRAMException("Invalid fqzcomp table");
+            }
+            Arrays.fill(array, j, j + run, value);
+            j += run;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package htsjdk.samtools.cram.compression.fqzcomp;
+
+/**
+ * Per-record state from which fqzcomp contexts are derived.
+ */
+final class FQZState {
+    int qualityContext;
+    // number of quality values in the record that haven't been coded yet
+    int remaining;
+    // number of times the quality value has changed so far in the record
+    int delta;
+    int previousQuality;
+    int selector;
+
+    void startRecord(final int length, final int selector) {
+        qualityContext = 0;
+        remaining = length;
+        delta = 0;
+        previousQuality = 0;
+        this.selector = selector;
+    }
+}
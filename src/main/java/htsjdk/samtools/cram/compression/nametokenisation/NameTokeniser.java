@@ -0,0 +1,533 @@
+package htsjdk.samtools.cram.compression.nametokenisation;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static htsjdk.samtools.cram.compression.CompressionUtils.readUint7;
+import static htsjdk.samtools.cram.compression.CompressionUtils.slice;
+import static htsjdk.samtools.cram.compression.CompressionUtils.writeUint7;
+
+/**
+ * Encoder and decoder for the CRAM 3.1 name tokeniser codec (block compression method 8, called tok3 in htslib).
+ *
+ * The input is a series of read names, each terminated by a nul byte. Each name is split into tokens (runs of
+ * letters, runs of digits and single punctuation characters), and each token is encoded relative to the token in
+ * the same position of an earlier name: as a match, as a small numeric delta, or as a new value. The token types
+ * and values for each token position are gathered into separate byte streams, which are then compressed with
+ * rANS Nx16 or the adaptive arithmetic coder. Since consecutive names typically differ only in a few numeric
+ * fields, most of the streams are highly repetitive and compress to almost nothing.
+ *
+ * The encoder stores a name that has occurred before in the block as a reference to its previous occurrence, and
+ * otherwise encodes it against its immediate predecessor; the decoder accepts names encoded against any earlier
+ * name.
+ */
+public final class NameTokeniser {
+    // token types, which are also the indices of the streams for each token position
+    static final int TYPE = 0;
+    static final int ALPHA = 1;
+    static final int CHAR = 2;
+    static final int DIGITS0 = 3;
+    static final int DZLEN = 4;
+    static final int DUP = 5;
+    static final int DIFF = 6;
+    static final int DIGITS = 7;
+    static final int DELTA = 8;
+    static final int DELTA0 = 9;
+    static final int MATCH = 10;
+    static final int NOP = 11;
+    static final int END = 12;
+
+    private static final int STREAMS_PER_TOKEN = 16;
+    private static final int NEW_TOKEN_FLAG = 0x80;
+    private static final int DUPLICATE_STREAM_FLAG = 0x40;
+    private static final int STREAM_TYPE_MASK = 0x3F;
+
+    private static final byte NAME_SEPARATOR = 0;
+    // stream references store the token position in a byte, so keep well within that
+    private static final int MAX_TOKENS = 128;
+    // digit runs are stored as 32 bit values, so longer runs are split
+    private static final int MAX_DIGITS = 9;
+    private static final int MAX_DELTA = 255;
+
+    // the format flags tried for each stream, the smallest result being kept
+    private static final int[] RANS_FLAG_CHOICES = {
+            0,
+            RANSNx16.ORDER_FLAG,
+            RANSNx16.RLE_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.ORDER_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG,
+    };
+    private static final int[] ARITHMETIC_FLAG_CHOICES = {
+            0,
+            RangeCodec.ORDER_FLAG,
+            RangeCodec.RLE_FLAG,
+            RangeCodec.PACK_FLAG | RangeCodec.ORDER_FLAG,
+            RangeCodec.PACK_FLAG | RangeCodec.RLE_FLAG,
+    };
+
+    private final RANSNx16 rans = new RANSNx16();
+    private final RangeCodec rangeCodec = new RangeCodec();
+
+    /**
+     * Compress a series of nul-terminated names.
+     *
+     * @param in names, each terminated by a nul byte
+     * @param useArithmeticCoder true to compress the token streams with the adaptive arithmetic coder rather than
+     *                           rANS Nx16
+     * @return the compressed stream
+     */
+    public byte[] compress(final byte[] in, final boolean useArithmeticCoder) {
+        ValidationUtils.validateArg(
+                in.length == 0 || in[in.length - 1] == NAME_SEPARATOR,
+                "Names to be tokenised must each be terminated by a nul byte");
+        final TokenStreams streams = new TokenStreams();
+        // the most recent index of each name, so that repeated names (such as the two reads of a pair in a
+        // coordinate sorted file) can be stored as references to the earlier copy
+        final Map<ByteBuffer, Integer> nameIndices = new HashMap<>();
+        int numberOfNames = 0;
+        List<Token> previousTokens = null;
+        for (int start = 0; start < in.length; numberOfNames++) {
+            int end = start;
+            while (in[end] != NAME_SEPARATOR) {
+                end++;
+            }
+
+            final ByteBuffer name = ByteBuffer.wrap(in, start, end - start).slice();
+            final Integer earlierIndex = nameIndices.put(name, numberOfNames);
+            if (earlierIndex != null) {
+                streams.get(0, TYPE).write(DUP);
+                writeUint32(numberOfNames - earlierIndex, streams.get(0, DUP));
+                // the next name is still encoded against this one
+                previousTokens = tokenise(in, start, end);
+            } else {
+                streams.get(0, TYPE).write(DIFF);
+                writeUint32(previousTokens == null ? 0 : 1, streams.get(0, DIFF));
+                final List<Token> tokens = tokenise(in, start, end);
+                encodeTokens(in, tokens, previousTokens, streams);
+                previousTokens = tokens;
+            }
+            start = end + 1;
+        }
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 4 + 16);
+        writeUint32(in.length, out);
+        writeUint32(numberOfNames, out);
+        out.write(useArithmeticCoder ? 1 : 0);
+        writeStreams(streams, useArithmeticCoder, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Uncompress a name tokeniser stream.
+     *
+     * @param inBuffer compressed stream
+     * @return the names, each terminated by a nul byte
+     */
+    public byte[] uncompress(final ByteBuffer inBuffer) {
+        final ByteBuffer in = inBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        final int length = in.getInt();
+        final int numberOfNames = in.getInt();
+        final boolean useArithmeticCoder = in.get() != 0;
+        if (length < 0 || numberOfNames < 0 || numberOfNames > length) {
+            throw new CRAMException("Invalid name tokeniser header");
+        }
+        final List<ByteBuffer[]> streams = readStreams(in, numberOfNames, useArithmeticCoder);
+
+        final byte[] out = new byte[length];
+        final byte[][][] names = new byte[numberOfNames][][];
+        int outPosition = 0;
+        for (int n = 0; n < numberOfNames; n++) {
+            final int nameType = readByte(streams, 0, TYPE);
+            if (nameType != DIFF && nameType != DUP) {
+                throw new CRAMException("Invalid name tokeniser name type: " + nameType);
+            }
+            final long distance = readUint32(streams, 0, nameType);
+            if (distance > n || (nameType == DUP && distance == 0)) {
+                throw new CRAMException("Invalid name tokeniser name reference: " + distance);
+            }
+            final byte[][] previous = distance == 0 ? null : names[n - (int) distance];
+            names[n] = nameType == DUP ? previous : decodeTokens(streams, previous);
+
+            for (final byte[] token : names[n]) {
+                if (outPosition + token.length > length) {
+                    throw new CRAMException("Name tokeniser output exceeds the recorded length");
+                }
+                System.arraycopy(token, 0, out, outPosition, token.length);
+                outPosition += token.length;
+            }
+            if (outPosition == length) {
+                throw new CRAMException("Name tokeniser output exceeds the recorded length");
+            }
+            out[outPosition++] = NAME_SEPARATOR;
+        }
+        if (outPosition != length) {
+            throw new CRAMException("Name tokeniser output is shorter than the recorded length");
+        }
+        return out;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Encoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    // a token of a name being encoded, referring to the bytes from start to end of the input
+    private static final class Token {
+        private final int type;
+        private final int start;
+        private final int end;
+        private final long value;
+
+        private Token(final int type, final int start, final int end, final long value) {
+            this.type = type;
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+
+        private int length() { return end - start; }
+    }
+
+    private static List<Token> tokenise(final byte[] in, final int start, final int end) {
+        final List<Token> tokens = new ArrayList<>();
+        int i = start;
+        while (i < end) {
+            final int tokenStart = i;
+            if (tokens.size() == MAX_TOKENS - 2) {
+                // the last token available holds the rest of the name
+                tokens.add(new Token(ALPHA, tokenStart, end, 0));
+                break;
+            } else if (isDigit(in[i])) {
+                long value = 0;
+                while (i < end && i - tokenStart < MAX_DIGITS && isDigit(in[i])) {
+                    value = value * 10 + (in[i++] - '0');
+                }
+                final boolean leadingZero = in[tokenStart] == '0' && i - tokenStart > 1;
+                tokens.add(new Token(leadingZero ? DIGITS0 : DIGITS, tokenStart, i, value));
+            } else if (isLetter(in[i])) {
+                while (i < end && isLetter(in[i])) {
+                    i++;
+                }
+                tokens.add(new Token(ALPHA, tokenStart, i, 0));
+            } else {
+                tokens.add(new Token(CHAR, tokenStart, ++i, 0));
+            }
+        }
+        return tokens;
+    }
+
+    // Write the tokens of a name to the streams for each token position, as matches or deltas against the tokens
+    // in the same position of the previous name where possible.
+    private static void encodeTokens(
+            final byte[] in,
+            final List<Token> tokens,
+            final List<Token> previousTokens,
+            final TokenStreams streams) {
+        for (int t = 0; t < tokens.size(); t++) {
+            final int position = t + 1;
+            final Token token = tokens.get(t);
+            final Token previous = previousTokens != null && t < previousTokens.size() ? previousTokens.get(t) : null;
+            final long delta = previous == null ? -1 : token.value - previous.value;
+
+            if (previous != null && token.type == previous.type &&
+                    regionsMatch(in, token.start, token.end, previous.start, previous.end)) {
+                streams.get(position, TYPE).write(MATCH);
+            } else if (previous != null && token.type == DIGITS && previous.type == DIGITS &&
+                    delta >= 0 && delta <= MAX_DELTA) {
+                streams.get(position, TYPE).write(DELTA);
+                streams.get(position, DELTA).write((int) delta);
+            } else if (previous != null && token.type == DIGITS0 && previous.type == DIGITS0 &&
+                    token.length() == previous.length() && delta >= 0 && delta <= MAX_DELTA) {
+                streams.get(position, TYPE).write(DELTA0);
+                streams.get(position, DELTA0).write((int) delta);
+            } else {
+                streams.get(position, TYPE).write(token.type);
+                switch (token.type) {
+                    case ALPHA:
+                        streams.get(position, ALPHA).write(in, token.start, token.length());
+                        streams.get(position, ALPHA).write(NAME_SEPARATOR);
+                        break;
+                    case CHAR:
+                        streams.get(position, CHAR).write(in[token.start]);
+                        break;
+                    case DIGITS0:
+                        writeUint32(token.value, streams.get(position, DIGITS0));
+                        streams.get(position, DZLEN).write(token.length());
+                        break;
+                    case DIGITS:
+                        writeUint32(token.value, streams.get(position, DIGITS));
+                        break;
+                    default:
+                        throw new IllegalStateException("Unexpected token type " + token.type);
+                }
+            }
+        }
+        streams.get(tokens.size() + 1, TYPE).write(END);
+    }
+
+    // Compress each stream, replacing streams with the same content as an earlier stream by a reference to it.
+    private void writeStreams(final TokenStreams streams, final boolean useArithmeticCoder, final ByteArrayOutputStream out) {
+        final Map<ByteBuffer, Integer> earlierStreams = new HashMap<>();
+        for (int position = 0; position < streams.size(); position++) {
+            boolean newToken = true;
+            for (int type = 0; type < STREAMS_PER_TOKEN; type++) {
+                final ByteArrayOutputStream stream = streams.getIfPresent(position, type);
+                if (stream == null || stream.size() == 0) {
+                    continue;
+                }
+                final byte[] data = stream.toByteArray();
+                out.write(type | (newToken ? NEW_TOKEN_FLAG : 0) | (earlierStreams.containsKey(ByteBuffer.wrap(data)) ? DUPLICATE_STREAM_FLAG : 0));
+                newToken = false;
+
+                final Integer earlier = earlierStreams.get(ByteBuffer.wrap(data));
+                if (earlier != null) {
+                    out.write(earlier / STREAMS_PER_TOKEN);
+                    out.write(earlier % STREAMS_PER_TOKEN);
+                } else {
+                    earlierStreams.put(ByteBuffer.wrap(data), position * STREAMS_PER_TOKEN + type);
+                    final byte[] compressed = compressStream(data, useArithmeticCoder);
+                    writeUint7(compressed.length, out);
+                    out.write(compressed, 0, compressed.length);
+                }
+            }
+        }
+    }
+
+    private byte[] compressStream(final byte[] data, final boolean useArithmeticCoder) {
+        ByteBuffer best = null;
+        for (final int flags : useArithmeticCoder ? ARITHMETIC_FLAG_CHOICES : RANS_FLAG_CHOICES) {
+            final ByteBuffer compressed = useArithmeticCoder ?
+                    rangeCodec.compress(ByteBuffer.wrap(data), flags) :
+                    rans.compress(ByteBuffer.wrap(data), flags);
+            if (best == null || compressed.remaining() < best.remaining()) {
+                best = compressed;
+            }
+        }
+        final byte[] bytes = new byte[best.remaining()];
+        best.get(bytes);
+        return bytes;
+    }
+
+    // the streams for each token position, created on demand; position 0 holds the type of each name and the
+    // distance to the name it is encoded against
+    private static final class TokenStreams {
+        private final List<ByteArrayOutputStream[]> streams = new ArrayList<>();
+
+        private ByteArrayOutputStream get(final int position, final int type) {
+            while (streams.size() <= position) {
+                streams.add(new ByteArrayOutputStream[STREAMS_PER_TOKEN]);
+            }
+            final ByteArrayOutputStream[] positionStreams = streams.get(position);
+            if (positionStreams[type] == null) {
+                positionStreams[type] = new ByteArrayOutputStream();
+            }
+            return positionStreams[type];
+        }
+
+        private ByteArrayOutputStream getIfPresent(final int position, final int type) {
+            return streams.get(position)[type];
+        }
+
+        private int size() { return streams.size(); }
+    }
+
+    private static boolean regionsMatch(final byte[] in, final int start1, final int end1, final int start2, final int end2) {
+        if (end1 - start1 != end2 - start2) {
+            return false;
+        }
+        for (int i = 0; i < end1 - start1; i++) {
+            if (in[start1 + i] != in[start2 + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(final byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isLetter(final byte b) {
+        return (b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z');
+    }
+
+    private static void writeUint32(final long value, final ByteArrayOutputStream out) {
+        out.write((int) value);
+        out.write((int) (value >> 8));
+        out.write((int) (value >> 16));
+        out.write((int) (value >> 24));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Decoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private List<ByteBuffer[]> readStreams(final ByteBuffer in, final int numberOfNames, final boolean useArithmeticCoder) {
+        final List<ByteBuffer[]> streams = new ArrayList<>();
+        while (in.hasRemaining()) {
+            final int streamType = in.get() & 0xFF;
+            final int type = streamType & STREAM_TYPE_MASK;
+            if (type >= STREAMS_PER_TOKEN) {
+                throw new CRAMException("Invalid name tokeniser stream type: " + type);
+            }
+            if ((streamType & NEW_TOKEN_FLAG) != 0) {
+                streams.add(new ByteBuffer[STREAMS_PER_TOKEN]);
+                if (type != TYPE) {
+                    // a token position without a type stream has the same type for every name
+                    final byte[] types = new byte[numberOfNames];
+                    Arrays.fill(types, (byte) type);
+                    streams.get(streams.size() - 1)[TYPE] = ByteBuffer.wrap(types);
+                }
+            }
+            if (streams.isEmpty()) {
+                throw new CRAMException("Name tokeniser stream precedes the first token");
+            }
+
+            final ByteBuffer stream;
+            if ((streamType & DUPLICATE_STREAM_FLAG) != 0) {
+                final int position = in.get() & 0xFF;
+                final int duplicateType = in.get() & 0xFF;
+                if (position >= streams.size() || duplicateType >= STREAMS_PER_TOKEN ||
+                        streams.get(position)[duplicateType] == null) {
+                    throw new CRAMException("Invalid name tokeniser stream reference");
+                }
+                // share the data, but not the read position
+                stream = streams.get(position)[duplicateType].duplicate();
+            } else {
+                final int compressedLength = readUint7(in);
+                if (compressedLength > in.remaining()) {
+                    throw new CRAMException("Truncated name tokeniser stream");
+                }
+                final ByteBuffer compressed = slice(in, compressedLength);
+                stream = useArithmeticCoder ? rangeCodec.uncompress(compressed) : rans.uncompress(compressed);
+            }
+            streams.get(streams.size() - 1)[type] = stream.order(ByteOrder.LITTLE_ENDIAN);
+        }
+        return streams;
+    }
+
+    // Decode the tokens of a name from the streams, given the tokens of the name it's encoded against.
+    private static byte[][] decodeTokens(final List<ByteBuffer[]> streams, final byte[][] previous) {
+        final List<byte[]> tokens = new ArrayList<>();
+        for (int position = 1; ; position++) {
+            final int type = readByte(streams, position, TYPE);
+            final byte[] token;
+            switch (type) {
+                case ALPHA:
+                    token = readString(getStream(streams, position, ALPHA));
+                    break;
+                case CHAR:
+                    token = new byte[] {(byte) readByte(streams, position, CHAR)};
+                    break;
+                case DIGITS0:
+                    token = formatNumber(readUint32(streams, position, DIGITS0), readByte(streams, position, DZLEN));
+                    break;
+                case DIGITS:
+                    token = formatNumber(readUint32(streams, position, DIGITS), 0);
+                    break;
+                case DELTA:
+                    token = formatNumber(
+                            parseNumber(getPreviousToken(previous, position)) + readByte(streams, position, DELTA),
+                            0);
+                    break;
+                case DELTA0: {
+                    final byte[] previousToken = getPreviousToken(previous, position);
+                    token = formatNumber(
+                            parseNumber(previousToken) + readByte(streams, position, DELTA0),
+                            previousToken.length);
+                    break;
+                }
+                case MATCH:
+                    token = getPreviousToken(previous, position);
+                    break;
+                case NOP:
+                    token = new byte[0];
+                    break;
+                case END:
+                    return tokens.toArray(new byte[0][]);
+                default:
+                    throw new CRAMException("Invalid name tokeniser token type: " + type);
+            }
+            tokens.add(token);
+        }
+    }
+
+    private static ByteBuffer getStream(final List<ByteBuffer[]> streams, final int position, final int type) {
+        final ByteBuffer stream = position < streams.size() ? streams.get(position)[type] : null;
+        if (stream == null) {
+            throw new CRAMException(String.format("Missing name tokeniser stream %d for token %d", type, position));
+        }
+        return stream;
+    }
+
+    private static int readByte(final List<ByteBuffer[]> streams, final int position, final int type) {
+        final ByteBuffer stream = getStream(streams, position, type);
+        if (!stream.hasRemaining()) {
+            throw new CRAMException(String.format("Name tokeniser stream %d for token %d is exhausted", type, position));
+        }
+        return stream.get() & 0xFF;
+    }
+
+    private static long readUint32(final List<ByteBuffer[]> streams, final int position, final int type) {
+        final ByteBuffer stream = getStream(streams, position, type);
+        if (stream.remaining() < 4) {
+            throw new CRAMException(String.format("Name tokeniser stream %d for token %d is exhausted", type, position));
+        }
+        return stream.getInt() & 0xFFFFFFFFL;
+    }
+
+    private static byte[] readString(final ByteBuffer stream) {
+        final int start = stream.position();
+        int end = start;
+        while (end < stream.limit() && stream.get(end) != NAME_SEPARATOR) {
+            end++;
+        }
+        if (end == stream.limit()) {
+            throw new CRAMException("Unterminated name tokeniser string");
+        }
+        final byte[] string = new byte[end - start];
+        stream.get(string);
+        stream.get(); // the terminator
+        return string;
+    }
+
+    private static byte[] getPreviousToken(final byte[][] previous, final int position) {
+        if (previous == null || position > previous.length) {
+            throw new CRAMException("Name tokeniser token refers to a missing token " + position);
+        }
+        return previous[position - 1];
+    }
+
+    private static long parseNumber(final byte[] digits) {
+        long value = 0;
+        for (final byte digit : digits) {
+            if (!isDigit(digit)) {
+                throw new CRAMException("Name tokeniser delta refers to a non-numeric token");
+            }
+            value = value * 10 + (digit - '0');
+        }
+        return value;
+    }
+
+    // format a number in decimal, left padded with zeros to at least the given width
+    private static byte[] formatNumber(final long value, final int width) {
+        final String digits = Long.toString(value);
+        final byte[] token = new byte[Math.max(width, digits.length())];
+        final int padding = token.length - digits.length();
+        Arrays.fill(token, 0, padding, (byte) '0');
+        for (int i = 0; i < digits.length(); i++) {
+            token[padding + i] = (byte) digits.charAt(i);
+        }
+        return token;
+    }
+}
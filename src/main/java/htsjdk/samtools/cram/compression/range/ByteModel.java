@@ -0,0 +1,90 @@
+package htsjdk.samtools.cram.compression.range;
+
+import htsjdk.samtools.cram.CRAMException;
+
+/**
+ * Adaptive frequency model over the symbols 0 to numberOfSymbols - 1, for use with {@link RangeEncoder} and
+ * {@link RangeDecoder}. Every symbol starts with the same frequency, which is increased each time the symbol is
+ * coded; frequencies are halved when their total gets too large, so the model tracks changes in the data.
+ * Symbols are kept approximately sorted by decreasing frequency to shorten the linear search.
+ */
+public final class ByteModel {
+    private static final int MAX_FREQUENCY = (1 << 16) - 17;
+    private static final int STEP = 16;
+
+    // entry 0 is a sentinel with maximal frequency that stops symbols from being swapped past the start,
+    // and entry numberOfSymbols + 1 is a terminator with zero frequency
+    private final int[] frequencies;
+    private final int[] symbols;
+    private final int numberOfSymbols;
+    private int totalFrequency;
+
+    /**
+     * @param numberOfSymbols number of symbols in the model's alphabet (1 to 256, or more)
+     */
+    public ByteModel(final int numberOfSymbols) {
+        this.numberOfSymbols = numberOfSymbols;
+        frequencies = new int[numberOfSymbols + 2];
+        symbols = new int[numberOfSymbols + 2];
+        frequencies[0] = MAX_FREQUENCY;
+        for (int i = 0; i < numberOfSymbols; i++) {
+            symbols[i + 1] = i;
+            frequencies[i + 1] = 1;
+        }
+        totalFrequency = numberOfSymbols;
+    }
+
+    public void encodeSymbol(final RangeEncoder encoder, final int symbol) {
+        int cumulativeFrequency = 0;
+        int i = 1;
+        while (symbols[i] != symbol) {
+            cumulativeFrequency += frequencies[i++];
+            if (i > numberOfSymbols) {
+                throw new IllegalArgumentException(
+                        String.format("Symbol %d is outside of the model's range of %d symbols", symbol, numberOfSymbols));
+            }
+        }
+        encoder.encode(cumulativeFrequency, frequencies[i], totalFrequency);
+        update(i);
+    }
+
+    public int decodeSymbol(final RangeDecoder decoder) {
+        final int target = decoder.getFrequency(totalFrequency);
+        int cumulativeFrequency = 0;
+        int i = 1;
+        while (cumulativeFrequency + frequencies[i] <= target) {
+            cumulativeFrequency += frequencies[i++];
+            if (i > numberOfSymbols) {
+                throw new CRAMException("Corrupt range coded data");
+            }
+        }
+        decoder.decode(cumulativeFrequency, frequencies[i]);
+        final int symbol = symbols[i];
+        update(i);
+        return symbol;
+    }
+
+    private void update(final int i) {
+        frequencies[i] += STEP;
+        totalFrequency += STEP;
+        if (totalFrequency > MAX_FREQUENCY) {
+            normalize();
+        }
+        if (frequencies[i] > frequencies[i - 1]) {
+            final int frequency = frequencies[i];
+            frequencies[i] = frequencies[i - 1];
+            frequencies[i - 1] = frequency;
+            final int symbol = symbols[i];
+            symbols[i] = symbols[i - 1];
+            symbols[i - 1] = symbol;
+        }
+    }
+
+    private void normalize() {
+        totalFrequency = 0;
+        for (int i = 1; i <= numberOfSymbols; i++) {
+            frequencies[i] -= frequencies[i] >> 1;
+            totalFrequency += frequencies[i];
+        }
+    }
+}
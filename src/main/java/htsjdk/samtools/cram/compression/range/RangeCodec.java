@@ -0,0 +1,311 @@
+package htsjdk.samtools.cram.compression.range;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.BZIP2ExternalCompressor;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static htsjdk.samtools.cram.compression.CompressionUtils.readUint7;
+import static htsjdk.samtools.cram.compression.CompressionUtils.slice;
+import static htsjdk.samtools.cram.compression.CompressionUtils.writeUint7;
+
+/**
+ * Encoder and decoder for the CRAM 3.1 adaptive arithmetic codec (block compression method 6, called
+ * arith_dynamic in htslib).
+ *
+ * Unlike the rANS codecs, which store a static frequency table, this codec adapts its symbol frequencies as it goes
+ * (see {@link ByteModel}), so there is no table overhead and it compresses small or non-stationary blocks well, at
+ * the cost of being slower. A compressed stream starts with a flags byte, which is the OR of the following values:
+ * <ul>
+ *     <li>{@link #ORDER_FLAG}: use the previous symbol as context</li>
+ *     <li>{@link #EXT_FLAG}: compress the (transformed) data with bzip2 instead</li>
+ *     <li>{@link #STRIPE_FLAG}: split the input into 4 interleaved streams, each compressed separately</li>
+ *     <li>{@link #NOSZ_FLAG}: the uncompressed size is not stored (only used for the streams within a stripe)</li>
+ *     <li>{@link #CAT_FLAG}: store the (transformed) data uncompressed</li>
+ *     <li>{@link #RLE_FLAG}: model run lengths alongside each symbol</li>
+ *     <li>{@link #PACK_FLAG}: pack several symbols into each byte if there are no more than 16 distinct symbols</li>
+ * </ul>
+ * As for {@link htsjdk.samtools.cram.compression.rans.RANSNx16}, the requested flags are hints, and the flags
+ * actually used are recorded in the compressed stream.
+ */
+public final class RangeCodec {
+    public static final int ORDER_FLAG = 0x01;
+    public static final int EXT_FLAG = 0x04;
+    public static final int STRIPE_FLAG = 0x08;
+    public static final int NOSZ_FLAG = 0x10;
+    public static final int CAT_FLAG = 0x20;
+    public static final int RLE_FLAG = 0x40;
+    public static final int PACK_FLAG = 0x80;
+
+    private static final int NUMBER_OF_SYMBOLS = 256;
+    private static final int STRIPE_WAYS = 4;
+    // run lengths are coded in parts of 0 to 3, with the first part in the context of the symbol, the second in
+    // context 256 and the rest in context 257
+    private static final int RUN_CONTEXTS = NUMBER_OF_SYMBOLS + 2;
+    private static final int MAX_RUN_PART = 3;
+
+    /**
+     * Compress the remaining bytes of the input buffer.
+     *
+     * @param inBuffer data to compress; on return, its position is at its limit
+     * @param flags requested format flags (see class documentation); {@link #NOSZ_FLAG} is not permitted
+     * @return the compressed stream
+     */
+    public ByteBuffer compress(final ByteBuffer inBuffer, final int flags) {
+        ValidationUtils.validateArg((flags & ~0xFF) == 0, "Invalid adaptive arithmetic codec flags: " + flags);
+        ValidationUtils.validateArg((flags & NOSZ_FLAG) == 0, "Adaptive arithmetic codec streams must record their size");
+        final byte[] in = new byte[inBuffer.remaining()];
+        inBuffer.get(in);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 2 + 64);
+        encode(in, flags, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Uncompress the remaining bytes of the input buffer, which must be a complete adaptive arithmetic stream.
+     *
+     * @param inBuffer data to uncompress
+     * @return the uncompressed data
+     */
+    public ByteBuffer uncompress(final ByteBuffer inBuffer) {
+        return ByteBuffer.wrap(decode(inBuffer.slice().order(ByteOrder.LITTLE_ENDIAN), -1));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Encoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private void encode(final byte[] in, int flags, final ByteArrayOutputStream out) {
+        if ((flags & STRIPE_FLAG) != 0 && in.length >= STRIPE_WAYS) {
+            encodeStripe(in, flags, out);
+            return;
+        }
+        flags &= ~STRIPE_FLAG;
+
+        byte[] data = in;
+        byte[] packMetaData = null;
+        if ((flags & PACK_FLAG) != 0) {
+            final ByteArrayOutputStream packMetaStream = new ByteArrayOutputStream();
+            final byte[] packed = CompressionUtils.encodePack(data, packMetaStream);
+            if (packed == null) {
+                flags &= ~PACK_FLAG;
+            } else {
+                packMetaData = packMetaStream.toByteArray();
+                data = packed;
+            }
+        }
+
+        byte[] encoded = null;
+        if ((flags & CAT_FLAG) == 0 && data.length > 0) {
+            if ((flags & EXT_FLAG) != 0) {
+                encoded = new BZIP2ExternalCompressor().compress(data);
+            } else {
+                final ByteArrayOutputStream entropyStream = new ByteArrayOutputStream(data.length / 2 + 64);
+                encodeData(data, (flags & ORDER_FLAG) != 0, (flags & RLE_FLAG) != 0, entropyStream);
+                encoded = entropyStream.toByteArray();
+            }
+            if (encoded.length >= data.length) {
+                encoded = null;
+            }
+        }
+        if (encoded == null) {
+            // store the data uncompressed
+            flags = (flags | CAT_FLAG) & ~(ORDER_FLAG | EXT_FLAG | RLE_FLAG);
+            encoded = data;
+        }
+
+        out.write(flags);
+        if ((flags & NOSZ_FLAG) == 0) {
+            writeUint7(in.length, out);
+        }
+        if (packMetaData != null) {
+            out.write(packMetaData, 0, packMetaData.length);
+        }
+        out.write(encoded, 0, encoded.length);
+    }
+
+    private void encodeStripe(final byte[] in, final int flags, final ByteArrayOutputStream out) {
+        final byte[][] streams = new byte[STRIPE_WAYS][];
+        for (int j = 0; j < STRIPE_WAYS; j++) {
+            final byte[] stream = new byte[CompressionUtils.getStripeLength(in.length, STRIPE_WAYS, j)];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = in[i * STRIPE_WAYS + j];
+            }
+            final ByteArrayOutputStream streamOut = new ByteArrayOutputStream(stream.length / 2 + 64);
+            encode(stream, (flags & ~STRIPE_FLAG) | NOSZ_FLAG, streamOut);
+            streams[j] = streamOut.toByteArray();
+        }
+
+        out.write(flags);
+        writeUint7(in.length, out);
+        out.write(STRIPE_WAYS);
+        for (final byte[] stream : streams) {
+            writeUint7(stream.length, out);
+        }
+        for (final byte[] stream : streams) {
+            out.write(stream, 0, stream.length);
+        }
+    }
+
+    private static void encodeData(
+            final byte[] in,
+            final boolean order1,
+            final boolean rle,
+            final ByteArrayOutputStream out) {
+        // the alphabet is limited to 0..maxSymbol - 1, which is stored first (0 means 256)
+        int maxSymbol = 0;
+        for (final byte b : in) {
+            maxSymbol = Math.max(maxSymbol, b & 0xFF);
+        }
+        maxSymbol++;
+        out.write(maxSymbol & 0xFF);
+
+        final ByteModel[] byteModels = new ByteModel[order1 ? NUMBER_OF_SYMBOLS : 1];
+        final ByteModel[] runModels = rle ? new ByteModel[RUN_CONTEXTS] : null;
+        final RangeEncoder encoder = new RangeEncoder(out);
+        int context = 0;
+        for (int i = 0; i < in.length; i++) {
+            final int symbol = in[i] & 0xFF;
+            getModel(byteModels, order1 ? context : 0, maxSymbol).encodeSymbol(encoder, symbol);
+            context = symbol;
+            if (rle) {
+                int run = 0;
+                while (i + run + 1 < in.length && in[i + run + 1] == in[i]) {
+                    run++;
+                }
+                final int maxRun = in.length - i - 1;
+                int runContext = symbol;
+                int total = 0;
+                int part;
+                do {
+                    part = Math.min(run - total, MAX_RUN_PART);
+                    getModel(runModels, runContext, MAX_RUN_PART + 1).encodeSymbol(encoder, part);
+                    runContext = getNextRunContext(runContext, symbol);
+                    total += part;
+                } while (part == MAX_RUN_PART && total < maxRun);
+                i += run;
+            }
+        }
+        encoder.finish();
+    }
+
+    private static ByteModel getModel(final ByteModel[] models, final int context, final int numberOfSymbols) {
+        ByteModel model = models[context];
+        if (model == null) {
+            model = new ByteModel(numberOfSymbols);
+            models[context] = model;
+        }
+        return model;
+    }
+
+    private static int getNextRunContext(final int runContext, final int symbol) {
+        if (runContext == symbol) {
+            return NUMBER_OF_SYMBOLS;
+        }
+        return runContext < RUN_CONTEXTS - 1 ? runContext + 1 : runContext;
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Decoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private byte[] decode(final ByteBuffer in, final int expectedLength) {
+        final int flags = in.get() & 0xFF;
+        final int length;
+        if ((flags & NOSZ_FLAG) != 0) {
+            if (expectedLength < 0) {
+                throw new CRAMException("Adaptive arithmetic stream has no uncompressed size");
+            }
+            length = expectedLength;
+        } else {
+            length = readUint7(in);
+        }
+        if ((flags & STRIPE_FLAG) != 0) {
+            return decodeStripe(in, length);
+        }
+
+        int dataLength = length;
+        byte[] packMap = null;
+        if ((flags & PACK_FLAG) != 0) {
+            packMap = new byte[in.get() & 0xFF];
+            in.get(packMap);
+            dataLength = readUint7(in);
+        }
+
+        byte[] data = new byte[dataLength];
+        if ((flags & CAT_FLAG) != 0) {
+            in.get(data);
+        } else if ((flags & EXT_FLAG) != 0) {
+            final byte[] compressed = new byte[in.remaining()];
+            in.get(compressed);
+            data = new BZIP2ExternalCompressor().uncompress(compressed);
+            if (data.length != dataLength) {
+                throw new CRAMException("Incorrect adaptive arithmetic external data length");
+            }
+        } else if (dataLength > 0) {
+            decodeData(in, data, (flags & ORDER_FLAG) != 0, (flags & RLE_FLAG) != 0);
+        }
+
+        if (packMap != null) {
+            data = CompressionUtils.decodePack(data, packMap, length);
+        }
+        return data;
+    }
+
+    private byte[] decodeStripe(final ByteBuffer in, final int length) {
+        final int ways = in.get() & 0xFF;
+        final int[] compressedLengths = new int[ways];
+        for (int j = 0; j < ways; j++) {
+            compressedLengths[j] = readUint7(in);
+        }
+        final byte[] out = new byte[length];
+        for (int j = 0; j < ways; j++) {
+            final int streamLength = CompressionUtils.getStripeLength(length, ways, j);
+            final byte[] stream = decode(slice(in, compressedLengths[j]), streamLength);
+            if (stream.length != streamLength) {
+                throw new CRAMException("Incorrect adaptive arithmetic stripe length");
+            }
+            for (int i = 0; i < streamLength; i++) {
+                out[i * ways + j] = stream[i];
+            }
+        }
+        return out;
+    }
+
+    private static void decodeData(final ByteBuffer in, final byte[] out, final boolean order1, final boolean rle) {
+        int maxSymbol = in.get() & 0xFF;
+        if (maxSymbol == 0) {
+            maxSymbol = NUMBER_OF_SYMBOLS;
+        }
+        final ByteModel[] byteModels = new ByteModel[order1 ? NUMBER_OF_SYMBOLS : 1];
+        final ByteModel[] runModels = rle ? new ByteModel[RUN_CONTEXTS] : null;
+        final RangeDecoder decoder = new RangeDecoder(in);
+        int context = 0;
+        for (int i = 0; i < out.length; i++) {
+            final int symbol = getModel(byteModels, order1 ? context : 0, maxSymbol).decodeSymbol(decoder);
+            out[i] = (byte) symbol;
+            context = symbol;
+            if (rle) {
+                final int maxRun = out.length - i - 1;
+                int runContext = symbol;
+                int run = 0;
+                int part;
+                do {
+                    part = getModel(runModels, runContext, MAX_RUN_PART + 1).decodeSymbol(decoder);
+                    runContext = getNextRunContext(runContext, symbol);
+                    run += part;
+                } while (part == MAX_RUN_PART && run < maxRun);
+                if (run > maxRun) {
+                    throw new CRAMException("Adaptive arithmetic run length exceeds the uncompressed size");
+                }
+                for (int j = 0; j < run; j++) {
+                    out[++i] = (byte) symbol;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package htsjdk.samtools.cram.compression.range;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Range decoder for streams written by {@link RangeEncoder}.
+ */
+public final class RangeDecoder {
+    private final ByteBuffer in;
+    private long code = 0;
+    private long range = RangeEncoder.MASK;
+
+    /**
+     * @param in buffer positioned at the start of the encoded bytes; it's advanced as symbols are decoded
+     */
+    public RangeDecoder(final ByteBuffer in) {
+        this.in = in;
+        for (int i = 0; i < 5; i++) {
+            code = ((code << 8) | nextByte()) & RangeEncoder.MASK;
+        }
+    }
+
+    /**
+     * Scale the range for a model with the given total frequency, and return the cumulative frequency of the
+     * next symbol, which must be followed by a call to {@link #decode}.
+     */
+    int getFrequency(final int totalFrequency) {
+        range /= totalFrequency;
+        return (int) Math.min(code / range, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Consume the symbol occupying [cumulativeFrequency, cumulativeFrequency + frequency).
+     */
+    void decode(final int cumulativeFrequency, final int frequency) {
+        code -= cumulativeFrequency * range;
+        range *= frequency;
+        while (range < RangeEncoder.TOP) {
+            code = ((code << 8) | nextByte()) & RangeEncoder.MASK;
+            range = (range << 8) & RangeEncoder.MASK;
+        }
+    }
+
+    private int nextByte() {
+        // the encoder's final flush leaves nothing significant beyond the end of the stream
+        return in.hasRemaining() ? in.get() & 0xFF : 0;
+    }
+}
@@ -0,0 +1,69 @@
+package htsjdk.samtools.cram.compression.range;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Carry-propagating range encoder used by the CRAM 3.1 adaptive arithmetic and fqzcomp codecs. Symbols are coded
+ * with cumulative frequencies supplied by a model (see {@link ByteModel}); {@link RangeDecoder} reverses the
+ * process given the same sequence of models.
+ */
+public final class RangeEncoder {
+    static final long TOP = 1L << 24;
+    static final long MASK = 0xFFFFFFFFL;
+
+    private final ByteArrayOutputStream out;
+    // low is a 32-bit value, with any carry out of it held separately until the pending bytes are written
+    private long low = 0;
+    private long range = MASK;
+    private int carry = 0;
+    private int cache = 0;
+    private int pendingFFs = 0;
+
+    /**
+     * @param out stream to which the encoded bytes are written
+     */
+    public RangeEncoder(final ByteArrayOutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Encode a symbol occupying [cumulativeFrequency, cumulativeFrequency + frequency) of totalFrequency.
+     */
+    void encode(final int cumulativeFrequency, final int frequency, final int totalFrequency) {
+        final long oldLow = low;
+        range /= totalFrequency;
+        low = (low + cumulativeFrequency * range) & MASK;
+        range *= frequency;
+        if (low < oldLow) {
+            carry++;
+        }
+        while (range < TOP) {
+            range = (range << 8) & MASK;
+            shiftLow();
+        }
+    }
+
+    /**
+     * Flush the remaining state. The encoder must not be used afterwards.
+     */
+    public void finish() {
+        for (int i = 0; i < 5; i++) {
+            shiftLow();
+        }
+    }
+
+    private void shiftLow() {
+        if (low < 0xFF000000L || carry != 0) {
+            out.write(cache + carry);
+            for (; pendingFFs != 0; pendingFFs--) {
+                out.write(carry - 1);
+            }
+            cache = (int) (low >>> 24);
+            carry = 0;
+        } else {
+            // the top byte may still change if a carry is propagated into it
+            pendingFFs++;
+        }
+        low = (low << 8) & MASK;
+    }
+}
@@ -0,0 +1,815 @@
+package htsjdk.samtools.cram.compression.rans;
+
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CompressionUtils;
+import htsjdk.utils.ValidationUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+import static htsjdk.samtools.cram.compression.CompressionUtils.readUint7;
+import static htsjdk.samtools.cram.compression.CompressionUtils.slice;
+import static htsjdk.samtools.cram.compression.CompressionUtils.writeUint7;
+
+/**
+ * Encoder and decoder for the CRAM 3.1 rANS Nx16 codec (block compression method 5, called rANS4x16 in htslib).
+ *
+ * Compared to the CRAM 3.0 rANS 4x8 codec ({@link RANS}), this codec renormalizes 16 bits at a time, can interleave
+ * 32 rather than 4 rANS states, and has optional transforms that are applied before entropy coding. A compressed
+ * stream starts with a flags byte, which is the OR of the following values:
+ * <ul>
+ *     <li>{@link #ORDER_FLAG}: use an order-1 rather than an order-0 frequency model</li>
+ *     <li>{@link #N32_FLAG}: interleave 32 rather than 4 rANS states</li>
+ *     <li>{@link #STRIPE_FLAG}: split the input into 4 interleaved streams, each compressed separately</li>
+ *     <li>{@link #NOSZ_FLAG}: the uncompressed size is not stored (only used for the streams within a stripe)</li>
+ *     <li>{@link #CAT_FLAG}: store the (transformed) data uncompressed</li>
+ *     <li>{@link #RLE_FLAG}: run length encode symbols with long runs before entropy coding</li>
+ *     <li>{@link #PACK_FLAG}: pack several symbols into each byte if there are no more than 16 distinct symbols</li>
+ * </ul>
+ * The requested flags are hints: transforms that don't apply to the data are dropped, and data that doesn't
+ * compress is stored uncompressed, and the flags actually used are recorded in the compressed stream.
+ *
+ * Instances of this class reuse working memory between calls, and are not thread-safe.
+ */
+public final class RANSNx16 {
+    public static final int ORDER_FLAG = 0x01;
+    public static final int N32_FLAG = 0x04;
+    public static final int STRIPE_FLAG = 0x08;
+    public static final int NOSZ_FLAG = 0x10;
+    public static final int CAT_FLAG = 0x20;
+    public static final int RLE_FLAG = 0x40;
+    public static final int PACK_FLAG = 0x80;
+
+    private static final int NUMBER_OF_SYMBOLS = 256;
+    // lower bound of the normalized rANS state interval [RANS_L, RANS_L << 16)
+    private static final int RANS_L = 1 << 15;
+    private static final int ORDER_0_SHIFT = 12;
+    private static final int ORDER_1_SHIFT = 12;
+    // the order-1 frequency table and the RLE metadata are compressed with a 4-way order-0 coder
+    private static final int META_DATA_WAYS = 4;
+    private static final int STRIPE_WAYS = 4;
+
+    // order-1 working memory; initialized lazily since it's fairly large
+    private int[][] frequencies1;
+    private int[][] cumulativeFrequencies1;
+    private byte[][] symbolLookup1;
+
+    /**
+     * Compress the remaining bytes of the input buffer.
+     *
+     * @param inBuffer data to compress; on return, its position is at its limit
+     * @param flags requested format flags (see class documentation); {@link #NOSZ_FLAG} is not permitted
+     * @return the compressed stream
+     */
+    public ByteBuffer compress(final ByteBuffer inBuffer, final int flags) {
+        ValidationUtils.validateArg((flags & ~0xFF) == 0, "Invalid rANS Nx16 flags: " + flags);
+        ValidationUtils.validateArg((flags & NOSZ_FLAG) == 0, "rANS Nx16 streams must record their size");
+        final byte[] in = new byte[inBuffer.remaining()];
+        inBuffer.get(in);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream(in.length / 2 + 64);
+        encode(in, flags, out);
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    /**
+     * Uncompress the remaining bytes of the input buffer, which must be a complete rANS Nx16 stream.
+     *
+     * @param inBuffer data to uncompress
+     * @return the uncompressed data
+     */
+    public ByteBuffer uncompress(final ByteBuffer inBuffer) {
+        return ByteBuffer.wrap(decode(inBuffer.slice().order(ByteOrder.LITTLE_ENDIAN), -1));
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Encoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    private void encode(final byte[] in, int flags, final ByteArrayOutputStream out) {
+        if ((flags & STRIPE_FLAG) != 0 && in.length >= STRIPE_WAYS) {
+            encodeStripe(in, flags, out);
+            return;
+        }
+        flags &= ~STRIPE_FLAG;
+
+        byte[] data = in;
+        byte[] packMetaData = null;
+        if ((flags & PACK_FLAG) != 0) {
+            final ByteArrayOutputStream packMetaStream = new ByteArrayOutputStream();
+            final byte[] packed = CompressionUtils.encodePack(data, packMetaStream);
+            if (packed == null) {
+                flags &= ~PACK_FLAG;
+            } else {
+                packMetaData = packMetaStream.toByteArray();
+                data = packed;
+            }
+        }
+
+        byte[] rleMetaData = null;
+        if ((flags & RLE_FLAG) != 0) {
+            final ByteArrayOutputStream rleMetaStream = new ByteArrayOutputStream();
+            final byte[] literals = encodeRLE(data, rleMetaStream);
+            if (literals == null) {
+                flags &= ~RLE_FLAG;
+            } else {
+                rleMetaData = rleMetaStream.toByteArray();
+                data = literals;
+            }
+        }
+
+        byte[] encoded = null;
+        if ((flags & CAT_FLAG) == 0 && data.length > 0) {
+            final ByteArrayOutputStream entropyStream = new ByteArrayOutputStream(data.length / 2 + 64);
+            final int ways = (flags & N32_FLAG) != 0 ? 32 : 4;
+            if ((flags & ORDER_FLAG) != 0) {
+                encodeOrder1(data, ways, entropyStream);
+            } else {
+                encodeOrder0(data, ways, entropyStream);
+            }
+            if (entropyStream.size() < data.length) {
+                encoded = entropyStream.toByteArray();
+            }
+        }
+        if (encoded == null) {
+            // store the data uncompressed
+            flags = (flags | CAT_FLAG) & ~(ORDER_FLAG | N32_FLAG);
+            encoded = data;
+        }
+
+        out.write(flags);
+        if ((flags & NOSZ_FLAG) == 0) {
+            writeUint7(in.length, out);
+        }
+        if (packMetaData != null) {
+            out.write(packMetaData, 0, packMetaData.length);
+        }
+        if (rleMetaData != null) {
+            out.write(rleMetaData, 0, rleMetaData.length);
+        }
+        out.write(encoded, 0, encoded.length);
+    }
+
+    private void encodeStripe(final byte[] in, final int flags, final ByteArrayOutputStream out) {
+        final byte[][] streams = new byte[STRIPE_WAYS][];
+        for (int j = 0; j < STRIPE_WAYS; j++) {
+            final byte[] stream = new byte[CompressionUtils.getStripeLength(in.length, STRIPE_WAYS, j)];
+            for (int i = 0; i < stream.length; i++) {
+                stream[i] = in[i * STRIPE_WAYS + j];
+            }
+            final ByteArrayOutputStream streamOut = new ByteArrayOutputStream(stream.length / 2 + 64);
+            encode(stream, (flags & ~STRIPE_FLAG) | NOSZ_FLAG, streamOut);
+            streams[j] = streamOut.toByteArray();
+        }
+
+        out.write(flags);
+        writeUint7(in.length, out);
+        out.write(STRIPE_WAYS);
+        for (final byte[] stream : streams) {
+            writeUint7(stream.length, out);
+        }
+        for (final byte[] stream : streams) {
+            out.write(stream, 0, stream.length);
+        }
+    }
+
+    /**
+     * Replaces each run of a symbol that benefits from run length encoding with a single literal, recording the
+     * run lengths in the RLE metadata.
+     *
+     * @param in data to encode
+     * @param out stream to which the RLE metadata is written
+     * @return the literals, or null if no symbol benefits from run length encoding
+     */
+    private byte[] encodeRLE(final byte[] in, final ByteArrayOutputStream out) {
+        // estimate the bytes saved by run length encoding each symbol, assuming each run length takes a byte
+        final long[] saved = new long[NUMBER_OF_SYMBOLS];
+        for (int i = 0; i < in.length; ) {
+            final int symbol = in[i] & 0xFF;
+            int run = 1;
+            while (i + run < in.length && in[i + run] == in[i]) {
+                run++;
+            }
+            saved[symbol] += run - 2;
+            i += run;
+        }
+        final boolean[] isRLESymbol = new boolean[NUMBER_OF_SYMBOLS];
+        int numberOfRLESymbols = 0;
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (saved[s] > 0) {
+                isRLESymbol[s] = true;
+                numberOfRLESymbols++;
+            }
+        }
+        if (numberOfRLESymbols == 0) {
+            return null;
+        }
+
+        final ByteArrayOutputStream metaData = new ByteArrayOutputStream();
+        metaData.write(numberOfRLESymbols & 0xFF); // 0 means 256
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (isRLESymbol[s]) {
+                metaData.write(s);
+            }
+        }
+        final byte[] literals = new byte[in.length];
+        int numberOfLiterals = 0;
+        for (int i = 0; i < in.length; ) {
+            final int symbol = in[i] & 0xFF;
+            literals[numberOfLiterals++] = in[i];
+            if (isRLESymbol[symbol]) {
+                int run = 1;
+                while (i + run < in.length && in[i + run] == in[i]) {
+                    run++;
+                }
+                writeUint7(run - 1, metaData);
+                i += run;
+            } else {
+                i++;
+            }
+        }
+
+        final byte[] rawMetaData = metaData.toByteArray();
+        final ByteArrayOutputStream compressedMetaData = new ByteArrayOutputStream(rawMetaData.length);
+        encodeOrder0(rawMetaData, META_DATA_WAYS, compressedMetaData);
+        if (compressedMetaData.size() < rawMetaData.length) {
+            writeUint7(rawMetaData.length * 2, out);
+            writeUint7(numberOfLiterals, out);
+            writeUint7(compressedMetaData.size(), out);
+            out.write(compressedMetaData.toByteArray(), 0, compressedMetaData.size());
+        } else {
+            writeUint7(rawMetaData.length * 2 + 1, out);
+            writeUint7(numberOfLiterals, out);
+            out.write(rawMetaData, 0, rawMetaData.length);
+        }
+        return Arrays.copyOf(literals, numberOfLiterals);
+    }
+
+    private static void encodeOrder0(final byte[] in, final int ways, final ByteArrayOutputStream out) {
+        final int[] F = new int[NUMBER_OF_SYMBOLS];
+        for (final byte b : in) {
+            F[b & 0xFF]++;
+        }
+        normalizeFrequencies(F, ORDER_0_SHIFT);
+        writeAlphabet(F, out);
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (F[s] != 0) {
+                writeUint7(F[s], out);
+            }
+        }
+        final int[] C = getCumulativeFrequencies(F);
+
+        // symbols are encoded in reverse order, and the output is written backwards from the end of the buffer,
+        // so that the decoder reads it forwards
+        final byte[] buffer = new byte[2 * in.length + 4 * ways];
+        int ptr = buffer.length;
+        final int[] R = new int[ways];
+        Arrays.fill(R, RANS_L);
+        for (int i = in.length - 1; i >= 0; i--) {
+            final int j = i & (ways - 1);
+            final int s = in[i] & 0xFF;
+            int x = R[j];
+            if (x >= getMaxState(F[s], ORDER_0_SHIFT)) {
+                buffer[--ptr] = (byte) (x >> 8);
+                buffer[--ptr] = (byte) x;
+                x >>>= 16;
+            }
+            R[j] = ((x / F[s]) << ORDER_0_SHIFT) + (x % F[s]) + C[s];
+        }
+        ptr = writeStates(R, buffer, ptr);
+        out.write(buffer, ptr, buffer.length - ptr);
+    }
+
+    private void encodeOrder1(final byte[] in, final int ways, final ByteArrayOutputStream out) {
+        initializeOrder1();
+        final int[][] F = frequencies1;
+        final int chunkLength = in.length / ways;
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        // the first symbol of each interleaved chunk has context 0
+        alphabet[0] = true;
+        for (int i = 0; i < in.length; i++) {
+            final int s = in[i] & 0xFF;
+            F[getOrder1Context(in, i, ways, chunkLength)][s]++;
+            alphabet[s] = true;
+        }
+        for (int context = 0; context < NUMBER_OF_SYMBOLS; context++) {
+            if (alphabet[context]) {
+                normalizeFrequencies(F[context], ORDER_1_SHIFT);
+            }
+        }
+
+        // write the frequency table, compressed if that makes it smaller
+        final ByteArrayOutputStream table = new ByteArrayOutputStream();
+        writeAlphabet(alphabet, table);
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (!alphabet[i]) {
+                continue;
+            }
+            int run = 0;
+            for (int j = 0; j < NUMBER_OF_SYMBOLS; j++) {
+                if (!alphabet[j]) {
+                    continue;
+                }
+                if (run > 0) {
+                    run--;
+                    continue;
+                }
+                writeUint7(F[i][j], table);
+                if (F[i][j] == 0) {
+                    // count the following zero frequencies
+                    for (int k = j + 1; k < NUMBER_OF_SYMBOLS; k++) {
+                        if (alphabet[k]) {
+                            if (F[i][k] != 0) {
+                                break;
+                            }
+                            run++;
+                        }
+                    }
+                    table.write(run);
+                }
+            }
+        }
+        final byte[] rawTable = table.toByteArray();
+        final ByteArrayOutputStream compressedTable = new ByteArrayOutputStream(rawTable.length);
+        encodeOrder0(rawTable, META_DATA_WAYS, compressedTable);
+        if (compressedTable.size() < rawTable.length) {
+            out.write(ORDER_1_SHIFT << 4 | 1);
+            writeUint7(rawTable.length, out);
+            writeUint7(compressedTable.size(), out);
+            out.write(compressedTable.toByteArray(), 0, compressedTable.size());
+        } else {
+            out.write(ORDER_1_SHIFT << 4);
+            out.write(rawTable, 0, rawTable.length);
+        }
+
+        final int[][] C = cumulativeFrequencies1;
+        for (int context = 0; context < NUMBER_OF_SYMBOLS; context++) {
+            if (alphabet[context]) {
+                C[context] = getCumulativeFrequencies(F[context]);
+            }
+        }
+
+        // encode in exactly the reverse of the order in which the symbols are decoded: first the remainder
+        // after the last chunk, which is decoded by the last state, then the chunks
+        final byte[] buffer = new byte[2 * in.length + 4 * ways];
+        int ptr = buffer.length;
+        final int[] R = new int[ways];
+        Arrays.fill(R, RANS_L);
+        for (int i = in.length - 1; i >= ways * chunkLength; i--) {
+            ptr = encodeOrder1Symbol(in, i, ways, chunkLength, R, ways - 1, buffer, ptr);
+        }
+        for (int i = chunkLength - 1; i >= 0; i--) {
+            for (int j = ways - 1; j >= 0; j--) {
+                ptr = encodeOrder1Symbol(in, j * chunkLength + i, ways, chunkLength, R, j, buffer, ptr);
+            }
+        }
+        ptr = writeStates(R, buffer, ptr);
+        out.write(buffer, ptr, buffer.length - ptr);
+    }
+
+    private int encodeOrder1Symbol(
+            final byte[] in,
+            final int i,
+            final int ways,
+            final int chunkLength,
+            final int[] R,
+            final int j,
+            final byte[] buffer,
+            int ptr) {
+        final int context = getOrder1Context(in, i, ways, chunkLength);
+        final int s = in[i] & 0xFF;
+        final int f = frequencies1[context][s];
+        int x = R[j];
+        if (x >= getMaxState(f, ORDER_1_SHIFT)) {
+            buffer[--ptr] = (byte) (x >> 8);
+            buffer[--ptr] = (byte) x;
+            x >>>= 16;
+        }
+        R[j] = ((x / f) << ORDER_1_SHIFT) + (x % f) + cumulativeFrequencies1[context][s];
+        return ptr;
+    }
+
+    // the context of a symbol is the previous symbol in the same interleaved chunk, or 0 at the start of a chunk
+    private static int getOrder1Context(final byte[] in, final int i, final int ways, final int chunkLength) {
+        if (i == 0 || (i < ways * chunkLength && i % chunkLength == 0)) {
+            return 0;
+        }
+        return in[i - 1] & 0xFF;
+    }
+
+    // (exclusive) upper bound of the state for which a symbol can be encoded without renormalizing
+    private static long getMaxState(final int frequency, final int shift) {
+        return ((long) (RANS_L >> shift) << 16) * frequency;
+    }
+
+    // flush the final states, so that state 0 is first in the output
+    private static int writeStates(final int[] R, final byte[] buffer, int ptr) {
+        for (int j = R.length - 1; j >= 0; j--) {
+            ptr -= 4;
+            buffer[ptr] = (byte) R[j];
+            buffer[ptr + 1] = (byte) (R[j] >> 8);
+            buffer[ptr + 2] = (byte) (R[j] >> 16);
+            buffer[ptr + 3] = (byte) (R[j] >> 24);
+        }
+        return ptr;
+    }
+
+    /**
+     * Scale frequencies so that they sum to exactly 1 << shift, keeping every non-zero frequency non-zero.
+     */
+    private static void normalizeFrequencies(final int[] F, final int shift) {
+        long total = 0;
+        for (final int f : F) {
+            total += f;
+        }
+        if (total == 0) {
+            return;
+        }
+        final int target = 1 << shift;
+        int sum = 0;
+        int maxSymbol = 0;
+        for (int s = 0; s < F.length; s++) {
+            if (F[s] != 0) {
+                F[s] = (int) Math.max(1, (F[s] * (long) target + total / 2) / total);
+                sum += F[s];
+                if (F[s] > F[maxSymbol]) {
+                    maxSymbol = s;
+                }
+            }
+        }
+        if (sum < target) {
+            F[maxSymbol] += target - sum;
+        } else {
+            // rounding up, and the minimum frequency of 1, can overshoot; take the excess from the largest
+            // frequencies
+            while (sum > target) {
+                int largest = 0;
+                for (int s = 1; s < F.length; s++) {
+                    if (F[s] > F[largest]) {
+                        largest = s;
+                    }
+                }
+                final int excess = Math.min(sum - target, F[largest] - 1);
+                F[largest] -= excess;
+                sum -= excess;
+            }
+        }
+    }
+
+    private static void writeAlphabet(final int[] F, final ByteArrayOutputStream out) {
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            alphabet[s] = F[s] != 0;
+        }
+        writeAlphabet(alphabet, out);
+    }
+
+    /**
+     * Write the set of symbols in use: each symbol, except that a symbol that immediately follows the previously
+     * written symbol is followed by the number of further consecutive symbols, which are not written. Terminated
+     * by a 0.
+     */
+    private static void writeAlphabet(final boolean[] alphabet, final ByteArrayOutputStream out) {
+        int run = 0;
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (!alphabet[s]) {
+                continue;
+            }
+            if (run > 0) {
+                run--;
+                continue;
+            }
+            out.write(s);
+            if (s > 0 && alphabet[s - 1]) {
+                for (run = s + 1; run < NUMBER_OF_SYMBOLS && alphabet[run]; run++) {
+                }
+                run -= s + 1;
+                out.write(run);
+            }
+        }
+        out.write(0);
+    }
+
+    ////////////////////////////////////////////////////////////////////////////////
+    // Decoding
+    ////////////////////////////////////////////////////////////////////////////////
+
+    /**
+     * @param in little-endian buffer positioned at the start of a compressed stream
+     * @param expectedLength uncompressed length if known to the caller, which it must be if {@link #NOSZ_FLAG} is set
+     * @return the uncompressed data
+     */
+    private byte[] decode(final ByteBuffer in, final int expectedLength) {
+        final int flags = in.get() & 0xFF;
+        final int length;
+        if ((flags & NOSZ_FLAG) != 0) {
+            if (expectedLength < 0) {
+                throw new CRAMException("rANS Nx16 stream has no uncompressed size");
+            }
+            length = expectedLength;
+        } else {
+            length = readUint7(in);
+        }
+        if ((flags & STRIPE_FLAG) != 0) {
+            return decodeStripe(in, length);
+        }
+
+        int dataLength = length;
+        byte[] packMap = null;
+        if ((flags & PACK_FLAG) != 0) {
+            packMap = new byte[in.get() & 0xFF];
+            in.get(packMap);
+            dataLength = readUint7(in);
+        }
+
+        final int rleLength = dataLength;
+        ByteBuffer rleMetaData = null;
+        if ((flags & RLE_FLAG) != 0) {
+            final int rleMetaDataLength = readUint7(in);
+            dataLength = readUint7(in);
+            if ((rleMetaDataLength & 1) != 0) {
+                rleMetaData = slice(in, rleMetaDataLength / 2);
+            } else {
+                final int compressedLength = readUint7(in);
+                final byte[] metaData = new byte[rleMetaDataLength / 2];
+                decodeOrder0(slice(in, compressedLength), metaData, META_DATA_WAYS);
+                rleMetaData = ByteBuffer.wrap(metaData);
+            }
+        }
+
+        byte[] data = new byte[dataLength];
+        if ((flags & CAT_FLAG) != 0) {
+            in.get(data);
+        } else if (dataLength > 0) {
+            final int ways = (flags & N32_FLAG) != 0 ? 32 : 4;
+            if ((flags & ORDER_FLAG) != 0) {
+                decodeOrder1(in, data, ways);
+            } else {
+                decodeOrder0(in, data, ways);
+            }
+        }
+
+        if (rleMetaData != null) {
+            data = decodeRLE(data, rleMetaData, rleLength);
+        }
+        if (packMap != null) {
+            data = CompressionUtils.decodePack(data, packMap, length);
+        }
+        return data;
+    }
+
+    private byte[] decodeStripe(final ByteBuffer in, final int length) {
+        final int ways = in.get() & 0xFF;
+        final int[] compressedLengths = new int[ways];
+        for (int j = 0; j < ways; j++) {
+            compressedLengths[j] = readUint7(in);
+        }
+        final byte[] out = new byte[length];
+        for (int j = 0; j < ways; j++) {
+            final int streamLength = CompressionUtils.getStripeLength(length, ways, j);
+            final byte[] stream = decode(slice(in, compressedLengths[j]), streamLength);
+            if (stream.length != streamLength) {
+                throw new CRAMException("Incorrect rANS Nx16 stripe length");
+            }
+            for (int i = 0; i < streamLength; i++) {
+                out[i * ways + j] = stream[i];
+            }
+        }
+        return out;
+    }
+
+    private static byte[] decodeRLE(final byte[] literals, final ByteBuffer metaData, final int length) {
+        int numberOfRLESymbols = metaData.get() & 0xFF;
+        if (numberOfRLESymbols == 0) {
+            numberOfRLESymbols = NUMBER_OF_SYMBOLS;
+        }
+        final boolean[] isRLESymbol = new boolean[NUMBER_OF_SYMBOLS];
+        for (int i = 0; i < numberOfRLESymbols; i++) {
+            isRLESymbol[metaData.get() & 0xFF] = true;
+        }
+        final byte[] out = new byte[length];
+        int j = 0;
+        for (final byte literal : literals) {
+            if (isRLESymbol[literal & 0xFF]) {
+                final int run = readUint7(metaData) + 1;
+                if (j + run > length) {
+                    throw new CRAMException("rANS Nx16 run length exceeds the uncompressed size");
+                }
+                Arrays.fill(out, j, j + run, literal);
+                j += run;
+            } else {
+                out[j++] = literal;
+            }
+        }
+        if (j != length) {
+            throw new CRAMException("Incorrect rANS Nx16 run length encoded size");
+        }
+        return out;
+    }
+
+    private static void decodeOrder0(final ByteBuffer in, final byte[] out, final int ways) {
+        final int[] F = new int[NUMBER_OF_SYMBOLS];
+        final boolean[] alphabet = readAlphabet(in);
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            if (alphabet[s]) {
+                F[s] = readUint7(in);
+            }
+        }
+        final int[] C = new int[NUMBER_OF_SYMBOLS];
+        final byte[] lookup = new byte[1 << ORDER_0_SHIFT];
+        buildDecodingTables(F, C, lookup, ORDER_0_SHIFT);
+
+        final int[] R = new int[ways];
+        for (int j = 0; j < ways; j++) {
+            R[j] = in.getInt();
+        }
+        final int mask = (1 << ORDER_0_SHIFT) - 1;
+        int i = 0;
+        // interleaved main loop, over all states for each group of symbols
+        for (final int end = out.length & ~(ways - 1); i < end; i += ways) {
+            for (int j = 0; j < ways; j++) {
+                int x = R[j];
+                final int m = x & mask;
+                final int s = lookup[m] & 0xFF;
+                out[i + j] = (byte) s;
+                x = F[s] * (x >>> ORDER_0_SHIFT) + m - C[s];
+                if (x < RANS_L) {
+                    x = (x << 16) | (in.getShort() & 0xFFFF);
+                }
+                R[j] = x;
+            }
+        }
+        for (int j = 0; i < out.length; i++, j++) {
+            int x = R[j];
+            final int m = x & mask;
+            final int s = lookup[m] & 0xFF;
+            out[i] = (byte) s;
+            x = F[s] * (x >>> ORDER_0_SHIFT) + m - C[s];
+            if (x < RANS_L) {
+                x = (x << 16) | (in.getShort() & 0xFFFF);
+            }
+            R[j] = x;
+        }
+    }
+
+    private void decodeOrder1(final ByteBuffer in, final byte[] out, final int ways) {
+        initializeOrder1();
+        final int format = in.get() & 0xFF;
+        final int shift = format >> 4;
+        if (shift < 1 || shift > ORDER_1_SHIFT) {
+            throw new CRAMException("Invalid rANS Nx16 order-1 frequency shift: " + shift);
+        }
+        final ByteBuffer table;
+        if ((format & 1) != 0) {
+            final int rawLength = readUint7(in);
+            final int compressedLength = readUint7(in);
+            final byte[] rawTable = new byte[rawLength];
+            decodeOrder0(slice(in, compressedLength), rawTable, META_DATA_WAYS);
+            table = ByteBuffer.wrap(rawTable);
+        } else {
+            table = in;
+        }
+
+        final int[][] F = frequencies1;
+        final int[][] C = cumulativeFrequencies1;
+        final boolean[] alphabet = readAlphabet(table);
+        for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+            if (!alphabet[i]) {
+                continue;
+            }
+            int run = 0;
+            for (int j = 0; j < NUMBER_OF_SYMBOLS; j++) {
+                if (!alphabet[j]) {
+                    continue;
+                }
+                if (run > 0) {
+                    run--;
+                } else {
+                    F[i][j] = readUint7(table);
+                    if (F[i][j] == 0) {
+                        run = table.get() & 0xFF;
+                    }
+                }
+            }
+            if (symbolLookup1[i] == null || symbolLookup1[i].length != 1 << shift) {
+                symbolLookup1[i] = new byte[1 << shift];
+            }
+            buildDecodingTables(F[i], C[i], symbolLookup1[i], shift);
+        }
+
+        final int[] R = new int[ways];
+        final int[] contexts = new int[ways];
+        for (int j = 0; j < ways; j++) {
+            R[j] = in.getInt();
+        }
+        final int mask = (1 << shift) - 1;
+        final int chunkLength = out.length / ways;
+        for (int i = 0; i < chunkLength; i++) {
+            for (int j = 0; j < ways; j++) {
+                contexts[j] = decodeOrder1Symbol(in, out, j * chunkLength + i, R, j, contexts[j], shift, mask);
+            }
+        }
+        for (int i = ways * chunkLength; i < out.length; i++) {
+            contexts[ways - 1] = decodeOrder1Symbol(in, out, i, R, ways - 1, contexts[ways - 1], shift, mask);
+        }
+    }
+
+    private int decodeOrder1Symbol(
+            final ByteBuffer in,
+            final byte[] out,
+            final int i,
+            final int[] R,
+            final int j,
+            final int context,
+            final int shift,
+            final int mask) {
+        final byte[] lookup = symbolLookup1[context];
+        if (lookup == null) {
+            throw new CRAMException("rANS Nx16 context not present in the frequency table: " + context);
+        }
+        int x = R[j];
+        final int m = x & mask;
+        final int s = lookup[m] & 0xFF;
+        out[i] = (byte) s;
+        x = frequencies1[context][s] * (x >>> shift) + m - cumulativeFrequencies1[context][s];
+        if (x < RANS_L) {
+            x = (x << 16) | (in.getShort() & 0xFFFF);
+        }
+        R[j] = x;
+        return s;
+    }
+
+    /**
+     * Scale frequencies whose total is less than 1 << shift up by a power of 2, and compute the cumulative
+     * frequencies and the reverse lookup table from (state & mask) to symbol.
+     */
+    private static void buildDecodingTables(final int[] F, final int[] C, final byte[] lookup, final int shift) {
+        final int target = 1 << shift;
+        int total = 0;
+        for (final int f : F) {
+            total += f;
+        }
+        if (total == 0) {
+            Arrays.fill(C, 0);
+            return;
+        }
+        int scale = 0;
+        while (total < target) {
+            total <<= 1;
+            scale++;
+        }
+        if (total != target) {
+            throw new CRAMException("Invalid rANS Nx16 frequency table");
+        }
+        int x = 0;
+        for (int s = 0; s < NUMBER_OF_SYMBOLS; s++) {
+            F[s] <<= scale;
+            C[s] = x;
+            Arrays.fill(lookup, x, x + F[s], (byte) s);
+            x += F[s];
+        }
+    }
+
+    private static int[] getCumulativeFrequencies(final int[] F) {
+        final int[] C = new int[NUMBER_OF_SYMBOLS];
+        for (int s = 1; s < NUMBER_OF_SYMBOLS; s++) {
+            C[s] = C[s - 1] + F[s - 1];
+        }
+        return C;
+    }
+
+    private static boolean[] readAlphabet(final ByteBuffer in) {
+        final boolean[] alphabet = new boolean[NUMBER_OF_SYMBOLS];
+        int run = 0;
+        int symbol = in.get() & 0xFF;
+        int lastSymbol = symbol;
+        do {
+            alphabet[symbol] = true;
+            if (run > 0) {
+                run--;
+                symbol++;
+            } else {
+                symbol = in.get() & 0xFF;
+                if (symbol == lastSymbol + 1) {
+                    run = in.get() & 0xFF;
+                }
+            }
+            lastSymbol = symbol;
+        } while (symbol != 0 && symbol < NUMBER_OF_SYMBOLS);
+        return alphabet;
+    }
+
+    private void initializeOrder1() {
+        if (frequencies1 == null) {
+            frequencies1 = new int[NUMBER_OF_SYMBOLS][NUMBER_OF_SYMBOLS];
+            cumulativeFrequencies1 = new int[NUMBER_OF_SYMBOLS][NUMBER_OF_SYMBOLS];
+            symbolLookup1 = new byte[NUMBER_OF_SYMBOLS][];
+        } else {
+            for (int i = 0; i < NUMBER_OF_SYMBOLS; i++) {
+                Arrays.fill(frequencies1[i], 0);
+                Arrays.fill(cumulativeFrequencies1[i], 0);
+            }
+        }
+    }
+}
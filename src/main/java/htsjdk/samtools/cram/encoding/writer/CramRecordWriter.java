@@ -226,6 +226,7 @@ public class CramRecordWriter {
             numberOfReadFeaturesCodec.writeData(featuresSize);
             if (featuresSize != 0) {
                 int prevPos = 0;
+                int featureQualityScores = 0;
                 for (final ReadFeature f : r.getReadFeatures()) {
                     featuresCodeCodec.writeData(f.getOperator());
 
@@ -237,6 +238,7 @@ public class CramRecordWriter {
                             final ReadBase rb = (ReadBase) f;
                             baseCodec.writeData(rb.getBase());
                             qualityScoreCodec.writeData(rb.getQualityScore());
+                            featureQualityScores++;
                             break;
                         case Substitution.operator:
                             final Substitution sv = (Substitution) f;
@@ -278,18 +280,22 @@ public class CramRecordWriter {
                             //Note: htsjdk never generates these, it only consumes them
                             final BaseQualityScore bqs = (BaseQualityScore) f;
                             qualityScoreCodec.writeData(bqs.getQualityScore());
+                            featureQualityScores++;
                             break;
                         case Bases.operator: // not implemented since the htsjdk implementation doesn't generate these
                         default:
                             throw new RuntimeException("Unknown read feature operator: " + (char) f.getOperator());
                     }
                 }
+                if (featureQualityScores > 0) {
+                    sliceBlocksWriteStreams.getCodecModelContext().addQualityScoreRecordLength(featureQualityScores);
+                }
             }
 
             // mapping quality:
             mappingQualityScoreCodec.writeData(r.getMappingQuality());
             if (r.isForcePreserveQualityScores()) {
-                qualityScoreArrayCodec.writeData(r.getQualityScores());
+                writeQualityScoreArray(r.getQualityScores());
             }
         } else {
             if (!r.isUnknownBases()) {
@@ -299,8 +305,14 @@ public class CramRecordWriter {
             }
 
             if (r.isForcePreserveQualityScores()) {
-                qualityScoreArrayCodec.writeData(r.getQualityScores());
+                writeQualityScoreArray(r.getQualityScores());
             }
         }
     }
+
+    // the quality score codec records the length of each array so that quality score compressors can model it
+    private void writeQualityScoreArray(final byte[] qualityScores) {
+        qualityScoreArrayCodec.writeData(qualityScores);
+        sliceBlocksWriteStreams.getCodecModelContext().addQualityScoreRecordLength(qualityScores.length);
+    }
 }
@@ -30,14 +30,42 @@ import htsjdk.samtools.SAMSequenceRecord;
  * A lazy CRAMReferenceSource implementation, for use when no explicit reference source has been provided
  * by the user. This allows client code to have a CRAMReferenceSource to thread through the CRAM code and to
  * access containers, slices, and un-normalized CRAM records and otherwise perform operations such as indexing
- * that do not require a reference to be resolved. If a reference sequence is actually requested, throws an
- * exception.
+ * that do not require a reference to be resolved. If a reference sequence is actually requested, it is
+ * returned if it is held by the {@link CRAMReferenceCache#getSharedCache() shared reference cache} (because another
+ * reference source has read or downloaded a sequence with the same MD5), otherwise an exception is thrown.
  */
 public class CRAMLazyReferenceSource implements CRAMReferenceSource {
 
     @Override
     public byte[] getReferenceBases(final SAMSequenceRecord sequenceRecord, final boolean tryNameVariants) {
-        throw new IllegalArgumentException(
+        final String md5Key = ReferenceSource.getMD5Key(sequenceRecord);
+        final byte[] bases = md5Key == null ? null : CRAMReferenceCache.getSharedCache().getSequenceIfCached(md5Key);
+        if (bases == null) {
+            throw referenceRequired(sequenceRecord);
+        }
+        return bases;
+    }
+
+    @Override
+    public byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord sequenceRecord,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        final String md5Key = ReferenceSource.getMD5Key(sequenceRecord);
+        final byte[] bases = md5Key == null ? null : CRAMReferenceCache.getSharedCache().getRegion(
+                md5Key,
+                sequenceRecord.getSequenceLength(),
+                zeroBasedStart,
+                requestedRegionLength,
+                (start, length) -> null);
+        if (bases == null) {
+            throw referenceRequired(sequenceRecord);
+        }
+        return bases;
+    }
+
+    private static IllegalArgumentException referenceRequired(final SAMSequenceRecord sequenceRecord) {
+        return new IllegalArgumentException(
                 String.format("A reference must be supplied that includes the reference sequence for %s.",
                         sequenceRecord.getSequenceName()));
     }
@@ -0,0 +1,431 @@
+/*
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.cram.ref;
+
+import htsjdk.samtools.Defaults;
+import htsjdk.utils.ValidationUtils;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Supplier;
+
+/**
+ * A thread-safe cache of reference bases with a fixed memory budget, intended to be shared by all of the CRAM
+ * readers and writers in a JVM so that a contig that is needed by several of them is only loaded once.
+ * <p>
+ * Sequences are identified by an arbitrary key, which must always refer to the same bases; {@link ReferenceSource}
+ * uses the lower-cased MD5 for sequences that were retrieved by MD5, and the reference file and sequence name
+ * otherwise. A sequence that is requested as a whole is stored as a single array, which is shared by all the callers
+ * that request it. Bases requested by region are stored in fixed-size regions, so a request for a small region of a
+ * large contig only loads (and retains) the part that is needed. Concurrent requests for the same region or
+ * sequence wait for a single load rather than each loading it.
+ * <p>
+ * Whole sequences and regions are held by strong references up to the budget. Once their total size exceeds it they
+ * are evicted in least-recently-used order to {@link SoftReference}s, from which they are still returned until the
+ * garbage collector clears them, which it does before running out of memory. With a budget of 0 every sequence is
+ * held softly, so the cache only keeps bases that the heap has room for, and a contig larger than the budget is not
+ * reloaded on every request unless memory is short. The heap cost is therefore the budget, plus whatever softly held
+ * bases the collector has not needed to clear.
+ * <p>
+ * The budget covers the bases held by the cache itself. Whole sequences are returned without copying, and must not
+ * be modified by callers; regions are returned as copies, which are not counted once they have been returned.
+ */
+public final class CRAMReferenceCache {
+
+    /** The size of the regions in which bases are cached. */
+    public static final int DEFAULT_REGION_SIZE = 1 << 20;
+
+    private static final long BYTES_PER_MEGABYTE = 1024L * 1024L;
+
+    private static final CRAMReferenceCache SHARED_CACHE = new CRAMReferenceCache(
+            Defaults.CRAM_REFERENCE_CACHE_SIZE_MB * BYTES_PER_MEGABYTE,
+            DEFAULT_REGION_SIZE);
+
+    /**
+     * Loads bases for a region of a sequence.
+     */
+    @FunctionalInterface
+    public interface RegionLoader {
+        /**
+         * @param zeroBasedStart zero-based offset of the first base to load
+         * @param length number of bases to load
+         * @return the upper-cased bases for the region, or null if the sequence can't be found
+         */
+        byte[] load(int zeroBasedStart, int length);
+    }
+
+    private final long maximumBytes;
+    private final int regionSize;
+
+    // guarded by "this"; the keys are sequence keys for whole sequences, and RegionKeys for regions of sequences.
+    // Iteration order is least to most recently used.
+    private final LinkedHashMap<Object, byte[]> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // guarded by "this"; entries evicted from the budget, with the same keys as entries, until they are cleared
+    private final Map<Object, SoftEntry> softEntries = new HashMap<>();
+    private final ReferenceQueue<byte[]> clearedEntries = new ReferenceQueue<>();
+    // guarded by "this"; the sequences that are cached whole or have at least one cached region, strongly or softly
+    private final Map<Object, CachedSequence> sequences = new HashMap<>();
+    private long cachedBytes = 0;
+
+    private final Map<Object, FutureTask<byte[]>> pendingLoads = new ConcurrentHashMap<>();
+
+    /**
+     * @param maximumBytes the maximum number of bases to hold by strong references
+     * @param regionSize the size of the regions in which bases are cached and evicted
+     */
+    public CRAMReferenceCache(final long maximumBytes, final int regionSize) {
+        ValidationUtils.validateArg(maximumBytes >= 0, "maximum cache size must be >= 0");
+        ValidationUtils.validateArg(regionSize > 0, "region size must be > 0");
+        this.maximumBytes = maximumBytes;
+        this.regionSize = regionSize;
+    }
+
+    /**
+     * @return the cache shared by all reference sources in this JVM. The budget is set by
+     * {@link Defaults#CRAM_REFERENCE_CACHE_SIZE_MB}, and is 0 unless that is set, so that by default all the bases
+     * are held softly.
+     */
+    public static CRAMReferenceCache getSharedCache() {
+        return SHARED_CACHE;
+    }
+
+    /**
+     * Return all the bases of a sequence, loading and caching them if they are not all cached already.
+     *
+     * @param key the key identifying the sequence
+     * @param loader supplies the upper-cased bases for the whole sequence, or null if the sequence can't be found
+     * @return the bases of the sequence, which must not be modified, or null if the sequence isn't cached and the
+     * loader returns null
+     */
+    public byte[] getSequence(final Object key, final Supplier<byte[]> loader) {
+        ValidationUtils.nonNull(key, "key");
+        final byte[] cachedBases = getSequenceIfCached(key);
+        if (cachedBases != null) {
+            return cachedBases;
+        }
+        final byte[] bases = load(key, loader);
+        if (bases != null) {
+            putSequence(key, bases);
+        }
+        return bases;
+    }
+
+    /**
+     * Return all the bases of a sequence if they are all cached. If the sequence has only been cached in regions,
+     * the regions are combined into a single array, which then replaces them in the cache.
+     *
+     * @param key the key identifying the sequence
+     * @return the bases of the sequence, which must not be modified, or null if any of them are not cached
+     */
+    public byte[] getSequenceIfCached(final Object key) {
+        ValidationUtils.nonNull(key, "key");
+        final byte[][] regionBases;
+        final int sequenceLength;
+        synchronized (this) {
+            final CachedSequence cachedSequence = sequences.get(key);
+            if (cachedSequence == null) {
+                return null;
+            }
+            final byte[] bases = getCachedEntry(key);
+            if (bases != null) {
+                return bases;
+            }
+            sequenceLength = cachedSequence.length;
+            regionBases = new byte[getNumberOfRegions(sequenceLength)][];
+            for (int regionIndex = 0; regionIndex < regionBases.length; regionIndex++) {
+                regionBases[regionIndex] = getCachedEntry(new RegionKey(key, regionIndex));
+                if (regionBases[regionIndex] == null) {
+                    return null;
+                }
+            }
+        }
+        // the regions are never modified, so they can be copied without holding the lock
+        final byte[] bases = new byte[sequenceLength];
+        for (int regionIndex = 0; regionIndex < regionBases.length; regionIndex++) {
+            System.arraycopy(regionBases[regionIndex], 0, bases, regionIndex * regionSize, regionBases[regionIndex].length);
+        }
+        putSequence(key, bases);
+        return bases;
+    }
+
+    /**
+     * Return the bases of a region of a sequence, loading and caching any parts of it that are not cached already.
+     * The region is truncated if it extends past the end of the sequence.
+     *
+     * @param key the key identifying the sequence
+     * @param sequenceLength the length of the sequence, which is ignored if the cache already knows the length
+     * @param zeroBasedStart zero-based offset of the first base of the region
+     * @param length number of bases in the region
+     * @param loader loads the bases for parts of the sequence that are not cached
+     * @return a copy of the bases of the region, or null if the loader returns null
+     */
+    public byte[] getRegion(
+            final Object key,
+            final int requestedSequenceLength,
+            final int zeroBasedStart,
+            final int length,
+            final RegionLoader loader) {
+        ValidationUtils.nonNull(key, "key");
+        ValidationUtils.validateArg(zeroBasedStart >= 0 && length >= 0, "region start and length must be >= 0");
+        final int sequenceLength = getSequenceLength(key, requestedSequenceLength);
+
+        final int end = (int) Math.min(sequenceLength, (long) zeroBasedStart + length);
+        if (end <= zeroBasedStart) {
+            return new byte[0];
+        }
+        final byte[] cachedSequenceBases = getCachedEntry(key);
+        if (cachedSequenceBases != null) {
+            return Arrays.copyOfRange(cachedSequenceBases, zeroBasedStart, end);
+        }
+        final byte[] bases = new byte[end - zeroBasedStart];
+        for (int regionIndex = zeroBasedStart / regionSize; (long) regionIndex * regionSize < end; regionIndex++) {
+            final int regionStart = regionIndex * regionSize;
+            final int regionLength = Math.min(regionSize, sequenceLength - regionStart);
+            final RegionKey regionKey = new RegionKey(key, regionIndex);
+            byte[] regionBases = getCachedEntry(regionKey);
+            if (regionBases == null) {
+                regionBases = load(regionKey, () -> loader.load(regionStart, regionLength));
+                if (regionBases == null) {
+                    return null;
+                }
+                if (regionBases.length != regionLength) {
+                    throw new IllegalStateException(String.format(
+                            "Expected %d reference bases at offset %d but %d were loaded",
+                            regionLength, regionStart, regionBases.length));
+                }
+                putEntry(regionKey, key, sequenceLength, regionBases);
+            }
+            final int copyStart = Math.max(zeroBasedStart, regionStart);
+            final int copyEnd = Math.min(end, regionStart + regionLength);
+            System.arraycopy(regionBases, copyStart - regionStart, bases, copyStart - zeroBasedStart, copyEnd - copyStart);
+        }
+        return bases;
+    }
+
+    /**
+     * Add all the bases of a sequence to the cache, replacing any regions of it that are already cached.
+     *
+     * @param key the key identifying the sequence
+     * @param bases the upper-cased bases of the sequence, which are retained by the cache and must not be modified
+     */
+    public synchronized void putSequence(final Object key, final byte[] bases) {
+        ValidationUtils.nonNull(key, "key");
+        ValidationUtils.nonNull(bases, "bases");
+        expungeClearedEntries();
+        final CachedSequence cachedSequence = sequences.get(key);
+        if (cachedSequence != null) {
+            for (int regionIndex = 0; regionIndex < getNumberOfRegions(cachedSequence.length); regionIndex++) {
+                final RegionKey regionKey = new RegionKey(key, regionIndex);
+                final byte[] regionBases = entries.remove(regionKey);
+                if (regionBases != null) {
+                    cachedBytes -= regionBases.length;
+                    cachedSequence.cachedEntries--;
+                } else if (softEntries.remove(regionKey) != null) {
+                    cachedSequence.cachedEntries--;
+                }
+            }
+        }
+        putEntry(key, key, bases.length, bases);
+    }
+
+    /**
+     * @return the total number of bases currently held by strong references, which doesn't include bases held softly
+     */
+    public synchronized long getCachedBytes() {
+        return cachedBytes;
+    }
+
+    /**
+     * @return the maximum number of bases the cache holds by strong references
+     */
+    public long getMaximumBytes() {
+        return maximumBytes;
+    }
+
+    /**
+     * Remove all entries from the cache.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        softEntries.clear();
+        sequences.clear();
+        cachedBytes = 0;
+    }
+
+    /**
+     * Clear the soft references to evicted entries, as the garbage collector would when memory is short.
+     */
+    synchronized void clearSoftReferences() {
+        for (final SoftEntry softEntry : new ArrayList<>(softEntries.values())) {
+            softEntry.clear();
+            removeSoftEntry(softEntry);
+        }
+    }
+
+    // Return a whole sequence or region, whether it is held strongly or softly, or null if it isn't cached.
+    private synchronized byte[] getCachedEntry(final Object entryKey) {
+        final byte[] bases = entries.get(entryKey);
+        if (bases != null) {
+            return bases;
+        }
+        final SoftEntry softEntry = softEntries.get(entryKey);
+        return softEntry == null ? null : softEntry.get();
+    }
+
+    private synchronized int getSequenceLength(final Object key, final int requestedSequenceLength) {
+        final CachedSequence cachedSequence = sequences.get(key);
+        return cachedSequence == null ? requestedSequenceLength : cachedSequence.length;
+    }
+
+    private int getNumberOfRegions(final int sequenceLength) {
+        return (int) (((long) sequenceLength + regionSize - 1) / regionSize);
+    }
+
+    // Add a whole sequence (when entryKey is the sequence key) or a region of one, then evict least recently used
+    // entries, including this one if it is larger than the budget, to soft references until the cache is within
+    // its budget.
+    private synchronized void putEntry(
+            final Object entryKey,
+            final Object sequenceKey,
+            final int sequenceLength,
+            final byte[] bases) {
+        expungeClearedEntries();
+        final byte[] previous = entries.put(entryKey, bases);
+        if (previous != null) {
+            cachedBytes -= previous.length;
+        } else if (softEntries.remove(entryKey) == null) {
+            sequences.computeIfAbsent(sequenceKey, k -> new CachedSequence(sequenceLength)).cachedEntries++;
+        }
+        cachedBytes += bases.length;
+
+        final Iterator<Map.Entry<Object, byte[]>> leastRecentlyUsed = entries.entrySet().iterator();
+        while (cachedBytes > maximumBytes) {
+            final Map.Entry<Object, byte[]> evicted = leastRecentlyUsed.next();
+            leastRecentlyUsed.remove();
+            cachedBytes -= evicted.getValue().length;
+            softEntries.put(evicted.getKey(), new SoftEntry(evicted.getKey(), evicted.getValue(), clearedEntries));
+        }
+    }
+
+    // Forget the entries whose soft references have been cleared.
+    private synchronized void expungeClearedEntries() {
+        for (Reference<? extends byte[]> cleared = clearedEntries.poll(); cleared != null; cleared = clearedEntries.poll()) {
+            removeSoftEntry((SoftEntry) cleared);
+        }
+    }
+
+    private synchronized void removeSoftEntry(final SoftEntry softEntry) {
+        // the entry may have been replaced since it was evicted
+        if (softEntries.get(softEntry.entryKey) == softEntry) {
+            softEntries.remove(softEntry.entryKey);
+            final Object sequenceKey = softEntry.entryKey instanceof RegionKey ?
+                    ((RegionKey) softEntry.entryKey).sequenceKey :
+                    softEntry.entryKey;
+            final CachedSequence cachedSequence = sequences.get(sequenceKey);
+            if (--cachedSequence.cachedEntries == 0) {
+                sequences.remove(sequenceKey);
+            }
+        }
+    }
+
+    // Run the loader for a key, or wait for a load of the same key that is already running on another thread.
+    private byte[] load(final Object key, final Supplier<byte[]> loader) {
+        final FutureTask<byte[]> task = new FutureTask<>(loader::get);
+        final FutureTask<byte[]> pendingTask = pendingLoads.putIfAbsent(key, task);
+        if (pendingTask == null) {
+            try {
+                task.run();
+            } finally {
+                pendingLoads.remove(key);
+            }
+        }
+        try {
+            return (pendingTask == null ? task : pendingTask).get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for reference bases", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private static final class CachedSequence {
+        private final int length;
+        // the number of regions of the sequence that are cached, or 1 if the whole sequence is cached, counting
+        // those held softly
+        private int cachedEntries = 0;
+
+        private CachedSequence(final int length) {
+            this.length = length;
+        }
+    }
+
+    private static final class SoftEntry extends SoftReference<byte[]> {
+        private final Object entryKey;
+
+        private SoftEntry(final Object entryKey, final byte[] bases, final ReferenceQueue<byte[]> queue) {
+            super(bases, queue);
+            this.entryKey = entryKey;
+        }
+    }
+
+    private static final class RegionKey {
+        private final Object sequenceKey;
+        private final int regionIndex;
+
+        private RegionKey(final Object sequenceKey, final int regionIndex) {
+            this.sequenceKey = sequenceKey;
+            this.regionIndex = regionIndex;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final RegionKey that = (RegionKey) o;
+            return regionIndex == that.regionIndex && sequenceKey.equals(that.sequenceKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(sequenceKey, regionIndex);
+        }
+    }
+}
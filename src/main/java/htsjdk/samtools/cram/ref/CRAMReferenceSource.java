@@ -2,6 +2,8 @@ package htsjdk.samtools.cram.ref;
 
 import htsjdk.samtools.SAMSequenceRecord;
 
+import java.util.Arrays;
+
 /**
  * Interface used to supply a reference source when reading CRAM files.
  */
@@ -19,4 +21,26 @@ public interface CRAMReferenceSource {
      * bases representing the requested sequence, or null if the sequence cannot be found
      */
     byte[] getReferenceBases(final SAMSequenceRecord sequenceRecord, final boolean tryNameVariants);
+
+    /**
+     * Get the bases for a region of a reference sequence. The default implementation retrieves the whole
+     * sequence; implementations that can retrieve part of a sequence should override this.
+     *
+     * @param sequenceRecord the SAMSequenceRecord identifying the reference being requested
+     * @param zeroBasedStart zero-based offset of the first base of the region
+     * @param requestedRegionLength the number of bases requested; fewer bases are returned if the region
+     *                              extends past the end of the sequence
+     * @return the upper cased, normalized bases for the requested region, or null if the sequence cannot be found
+     */
+    default byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord sequenceRecord,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        final byte[] bases = getReferenceBases(sequenceRecord, true);
+        if (bases == null) {
+            return null;
+        }
+        final int start = Math.min(zeroBasedStart, bases.length);
+        return Arrays.copyOfRange(bases, start, (int) Math.min(bases.length, (long) start + requestedRegionLength));
+    }
 }
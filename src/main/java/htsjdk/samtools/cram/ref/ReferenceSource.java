@@ -21,6 +21,10 @@ import htsjdk.samtools.Defaults;
 import htsjdk.samtools.SAMException;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.cram.io.InputStreamUtils;
+import htsjdk.samtools.reference.BlockCompressedIndexedFastaSequenceFile;
+import htsjdk.samtools.reference.FastaSequenceIndex;
+import htsjdk.samtools.reference.IndexedFastaSequenceFile;
+import htsjdk.samtools.reference.MemoryMappedFastaSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequence;
 import htsjdk.samtools.reference.ReferenceSequenceFile;
 import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
@@ -28,24 +32,30 @@ import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.Log;
 import htsjdk.samtools.util.SequenceUtil;
 import htsjdk.samtools.util.StringUtil;
+import htsjdk.samtools.util.Tuple;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.lang.ref.WeakReference;
 import java.net.URL;
 import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
 import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 /**
  * Used to represent a CRAM reference, the backing source for which can either be
  * a file or the EBI ENA reference service.
  *
+ * Reference bases are held in a {@link CRAMReferenceCache}, by default the one shared by all reference sources
+ * in the JVM. Sequences are cached by the MD5 of their {@link SAMSequenceRecord} when it has one, whether they are
+ * read from a reference file or downloaded, so are shared with every source that needs them, including
+ * {@link CRAMLazyReferenceSource}; the bases read from a file for a record are trusted to match its MD5. Sequences
+ * with no MD5 are cached by reference file and sequence name, so are shared only with other sources created for the
+ * same file.
+ *
  * NOTE: In a future release, this class will be renamed and the functionality it
  * contains will be refactored and distributed into one or more separate reference
  * source implementations, each corresponding to the type of resource backing the
@@ -54,20 +64,41 @@ import java.util.regex.Pattern;
 public class ReferenceSource implements CRAMReferenceSource {
     private static final Log log = Log.getInstance(ReferenceSource.class);
     private final ReferenceSequenceFile rsFile;
+    // identifies the reference file in cache keys
+    private final Object referenceKey;
+    private final CRAMReferenceCache referenceCache;
     private int downloadTriesBeforeFailing = 2;
 
-    private final Map<String, WeakReference<byte[]>> cacheW = new HashMap<>();
-
     public ReferenceSource(final File file) {
         this(IOUtil.toPath(file));
     }
 
     public ReferenceSource(final Path path) {
-        this( path == null ? null : ReferenceSequenceFileFactory.getReferenceSequenceFile(path));
+        this(path == null ? null : ReferenceSequenceFileFactory.getReferenceSequenceFile(path),
+                path == null ? new Object() : path.toAbsolutePath().toUri(),
+                CRAMReferenceCache.getSharedCache());
     }
 
     public ReferenceSource(final ReferenceSequenceFile rsFile) {
+        this(rsFile, CRAMReferenceCache.getSharedCache());
+    }
+
+    /**
+     * @param rsFile the reference file to read sequences from; may be null if sequences are only to be downloaded
+     * @param referenceCache the cache to hold reference bases in
+     */
+    public ReferenceSource(final ReferenceSequenceFile rsFile, final CRAMReferenceCache referenceCache) {
+        // the file can't be identified, so sequences read from it are only shared with sources that use this key
+        this(rsFile, new Object(), referenceCache);
+    }
+
+    private ReferenceSource(
+            final ReferenceSequenceFile rsFile,
+            final Object referenceKey,
+            final CRAMReferenceCache referenceCache) {
         this.rsFile = rsFile;
+        this.referenceKey = referenceKey;
+        this.referenceCache = referenceCache;
     }
 
     /**
@@ -107,75 +138,100 @@ public class ReferenceSource implements CRAMReferenceSource {
         }
     }
 
-    private byte[] findInCache(final String name) {
-        final WeakReference<byte[]> weakReference = cacheW.get(name);
-        if (weakReference != null) {
-            final byte[] bytes = weakReference.get();
-            if (bytes != null)
-                return bytes;
-        }
-        return null;
+    /**
+     * @return the key used to cache the bases for {@code record} by MD5, or null if the record has no MD5
+     */
+    static String getMD5Key(final SAMSequenceRecord record) {
+        final String md5 = record.getAttribute(SAMSequenceRecord.MD5_TAG);
+        return md5 == null ? null : md5.toLowerCase(Locale.US);
     }
 
-    // Upper case (in-place), and add to the cache
-    private byte[] addToCache(final String sequenceName, final byte[] bases) {
+    /**
+     * @return the key to cache the bases for {@code record} by: its MD5 if it has one, otherwise this source's
+     * reference file and the sequence name
+     */
+    private Object getCacheKey(final SAMSequenceRecord record) {
+        final String md5Key = getMD5Key(record);
+        return md5Key != null ? md5Key : new Tuple<>(referenceKey, record.getSequenceName());
+    }
+
+    // Upper case (in-place)
+    private static byte[] upperCase(final byte[] bases) {
         // Normalize to upper case only. We can't use the cram normalization utility Utils.normalizeBases, since
         // we don't want to normalize ambiguity codes, we can't use SamUtils.normalizeBases, since we don't want
         // to normalize no-call ('.') bases.
-        for (int i = 0; i < bases.length; i++) {
-            bases[i] = StringUtil.toUpperCase(bases[i]);
+        if (bases != null) {
+            for (int i = 0; i < bases.length; i++) {
+                bases[i] = StringUtil.toUpperCase(bases[i]);
+            }
         }
-        cacheW.put(sequenceName, new WeakReference<>(bases));
         return bases;
     }
 
     @Override
     public synchronized byte[] getReferenceBases(final SAMSequenceRecord record,
                                                  final boolean tryNameVariants) {
-        { // check cache by sequence name:
-            final String name = record.getSequenceName();
-            final byte[] bases = findInCache(name);
+        final String md5Key = getMD5Key(record);
+        final Object cacheKey = getCacheKey(record);
+        final byte[] cachedBases = referenceCache.getSequenceIfCached(cacheKey);
+        if (cachedBases != null) {
+            return cachedBases;
+        }
+
+        if (rsFile != null) { // try to fetch sequence by name:
+            final byte[] bases = referenceCache.getSequence(
+                    cacheKey,
+                    () -> upperCase(findBasesByName(record.getSequenceName(), tryNameVariants)));
             if (bases != null) {
                 return bases;
             }
         }
 
-        final String md5 = record.getAttribute(SAMSequenceRecord.MD5_TAG);
-        { // check cache by md5:
-            if (md5 != null) {
-                byte[] bases = findInCache(md5);
-                if (bases != null)
-                    return bases;
-                bases = findInCache(md5.toLowerCase());
-                if (bases != null)
-                    return bases;
-                bases = findInCache(md5.toUpperCase());
-                if (bases != null)
-                    return bases;
-            }
+        if (Defaults.USE_CRAM_REF_DOWNLOAD && md5Key != null) { // try to fetch sequence by md5:
+            return referenceCache.getSequence(md5Key, () -> upperCase(findBasesByMD5(md5Key)));
         }
 
-        byte[] bases;
+        // sequence not found, give up:
+        return null;
+    }
 
-        { // try to fetch sequence by name:
-            bases = findBasesByName(record.getSequenceName(), tryNameVariants);
-            if (bases != null) {
-                return addToCache(record.getSequenceName(), bases);
+    /**
+     * Get the bases for a region of a reference sequence. If the sequence is read from an indexed reference file,
+     * only the cached regions of the file that overlap the requested region are read.
+     */
+    @Override
+    public synchronized byte[] getReferenceBasesByRegion(
+            final SAMSequenceRecord record,
+            final int zeroBasedStart,
+            final int requestedRegionLength) {
+        final FastaSequenceIndex index = getFastaIndex();
+        if (index != null) {
+            final String sequenceName = Stream.concat(
+                    Stream.of(record.getSequenceName()),
+                    getVariants(record.getSequenceName()).stream())
+                    .filter(index::hasIndexEntry)
+                    .findFirst()
+                    .orElse(null);
+            if (sequenceName != null) {
+                return referenceCache.getRegion(
+                        getCacheKey(record),
+                        (int) index.getIndexEntry(sequenceName).getSize(),
+                        zeroBasedStart,
+                        requestedRegionLength,
+                        (start, length) -> upperCase(rsFile.getSubsequenceAt(sequenceName, start + 1, start + length).getBases()));
             }
         }
+        return CRAMReferenceSource.super.getReferenceBasesByRegion(record, zeroBasedStart, requestedRegionLength);
+    }
 
-        {
-            if (Defaults.USE_CRAM_REF_DOWNLOAD) { // try to fetch sequence by md5:
-                if (md5 != null) {
-                    bases = findBasesByMD5(md5.toLowerCase());
-                }
-                if (bases != null) {
-                    return addToCache(md5, bases);
-                }
-            }
+    private FastaSequenceIndex getFastaIndex() {
+        if (rsFile instanceof IndexedFastaSequenceFile) {
+            return ((IndexedFastaSequenceFile) rsFile).getIndex();
+        } else if (rsFile instanceof BlockCompressedIndexedFastaSequenceFile) {
+            return ((BlockCompressedIndexedFastaSequenceFile) rsFile).getIndex();
+        } else if (rsFile instanceof MemoryMappedFastaSequenceFile) {
+            return ((MemoryMappedFastaSequenceFile) rsFile).getIndex();
         }
-
-        // sequence not found, give up:
         return null;
     }
 
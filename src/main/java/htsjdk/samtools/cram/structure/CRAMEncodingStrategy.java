@@ -25,6 +25,8 @@
 package htsjdk.samtools.cram.structure;
 
 import htsjdk.samtools.Defaults;
+import htsjdk.samtools.cram.common.CRAMVersion;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.utils.ValidationUtils;
 import htsjdk.samtools.cram.ref.ReferenceContextType;
 
@@ -42,8 +44,14 @@ public class CRAMEncodingStrategy {
     public static final int DEFAULT_READS_PER_SLICE = 10000;
 
     // encoding strategies
+    private CRAMVersion cramVersion = CramVersions.DEFAULT_CRAM_VERSION;
     private CompressionHeaderEncodingMap customCompressionHeaderEncodingMap;
 
+    // CRAM 3.1 codec choices; these have no effect when writing CRAM 3.0
+    private boolean useArithmeticCoder = false;
+    private boolean useFQZComp = false;
+    private boolean useNameTokeniser = false;
+
     //Note: should this have separate values for tags (separate from CRAMRecord data) ?
     private int gzipCompressionLevel = Defaults.COMPRESSION_LEVEL;
 
@@ -124,6 +132,63 @@ public class CRAMEncodingStrategy {
         return this;
     }
 
+    /**
+     * Set the CRAM version to write. CRAM 3.1 makes the rANS Nx16, adaptive arithmetic and fqzcomp codecs
+     * available to the default encoding map.
+     *
+     * CRAM 3.0 is written unless 3.1 is requested here. The CRAM 3.1 codecs are tested against htslib by reading
+     * CRAM 3.1 written by each with the other, using samtools, but 3.1 output should still be treated as
+     * experimental.
+     *
+     * @param cramVersion the CRAM version to write; must be 3.0 or 3.1
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setCRAMVersion(final CRAMVersion cramVersion) {
+        ValidationUtils.nonNull(cramVersion, "cramVersion");
+        ValidationUtils.validateArg(
+                cramVersion.equals(CramVersions.CRAM_v3) || cramVersion.equals(CramVersions.CRAM_v3_1),
+                String.format("CRAM version %s can't be written; CRAM 3.0 and 3.1 are supported", cramVersion));
+        this.cramVersion = cramVersion;
+        return this;
+    }
+
+    /**
+     * When writing CRAM 3.1, use the adaptive arithmetic codec in place of rANS Nx16 for the data series that
+     * are rANS encoded by default. This compresses slightly better, but is slower to encode and decode.
+     *
+     * @param useArithmeticCoder true to use the adaptive arithmetic codec
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setUseArithmeticCoder(final boolean useArithmeticCoder) {
+        this.useArithmeticCoder = useArithmeticCoder;
+        return this;
+    }
+
+    /**
+     * When writing CRAM 3.1, compress quality scores with the fqzcomp codec instead of the codec used for other
+     * data series. This usually compresses quality scores better, at some cost in speed, but the models it uses
+     * take a few thousand records to train, so may not pay off for small slices. Defaults to false.
+     *
+     * @param useFQZComp true to use fqzcomp for quality scores
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setUseFQZComp(final boolean useFQZComp) {
+        this.useFQZComp = useFQZComp;
+        return this;
+    }
+
+    /**
+     * When writing CRAM 3.1, compress read names with the name tokeniser codec. Defaults to false, in which case
+     * read names are compressed as for CRAM 3.0.
+     *
+     * @param useNameTokeniser true to use the name tokeniser for read names
+     * @return updated CRAMEncodingStrategy
+     */
+    public CRAMEncodingStrategy setUseNameTokeniser(final boolean useNameTokeniser) {
+        this.useNameTokeniser = useNameTokeniser;
+        return this;
+    }
+
     /**
      * Set the {@link CompressionHeaderEncodingMap} to use.
      *
@@ -134,6 +199,10 @@ public class CRAMEncodingStrategy {
     }
     public CompressionHeaderEncodingMap getCustomCompressionHeaderEncodingMap() { return customCompressionHeaderEncodingMap; }
 
+    public CRAMVersion getCRAMVersion() { return cramVersion; }
+    public boolean getUseArithmeticCoder() { return useArithmeticCoder; }
+    public boolean getUseFQZComp() { return useFQZComp; }
+    public boolean getUseNameTokeniser() { return useNameTokeniser; }
     public int getGZIPCompressionLevel() { return gzipCompressionLevel; }
     public int getReadsPerSlice() { return readsPerSlice; }
     public int getSlicesPerContainer() { return slicesPerContainer; }
@@ -141,10 +210,14 @@ public class CRAMEncodingStrategy {
     @Override
     public String toString() {
         return "CRAMEncodingStrategy{" +
+                "cramVersion=" + cramVersion +
                 ", customCompressionMap='" + customCompressionHeaderEncodingMap + '\'' +
                 ", gzipCompressionLevel=" + gzipCompressionLevel +
                 ", readsPerSlice=" + readsPerSlice +
                 ", slicesPerContainer=" + slicesPerContainer +
+                ", useArithmeticCoder=" + useArithmeticCoder +
+                ", useFQZComp=" + useFQZComp +
+                ", useNameTokeniser=" + useNameTokeniser +
                 '}';
     }
     @Override
@@ -158,6 +231,10 @@ public class CRAMEncodingStrategy {
         if (getMinimumSingleReferenceSliceSize() != that.getMinimumSingleReferenceSliceSize()) return false;
         if (getReadsPerSlice() != that.getReadsPerSlice()) return false;
         if (getSlicesPerContainer() != that.getSlicesPerContainer()) return false;
+        if (getUseArithmeticCoder() != that.getUseArithmeticCoder()) return false;
+        if (getUseFQZComp() != that.getUseFQZComp()) return false;
+        if (getUseNameTokeniser() != that.getUseNameTokeniser()) return false;
+        if (!getCRAMVersion().equals(that.getCRAMVersion())) return false;
         return getCustomCompressionHeaderEncodingMap() != null ?
                 getCustomCompressionHeaderEncodingMap().equals(that.getCustomCompressionHeaderEncodingMap()) :
                 that.getCustomCompressionHeaderEncodingMap() == null;
@@ -171,6 +248,10 @@ public class CRAMEncodingStrategy {
         result = 31 * result + getMinimumSingleReferenceSliceSize();
         result = 31 * result + getReadsPerSlice();
         result = 31 * result + getSlicesPerContainer();
+        result = 31 * result + getCRAMVersion().hashCode();
+        result = 31 * result + (getUseArithmeticCoder() ? 1 : 0);
+        result = 31 * result + (getUseFQZComp() ? 1 : 0);
+        result = 31 * result + (getUseNameTokeniser() ? 1 : 0);
         return result;
     }
 
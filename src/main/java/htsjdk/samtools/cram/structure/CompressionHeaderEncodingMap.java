@@ -25,8 +25,13 @@
 package htsjdk.samtools.cram.structure;
 
 import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.common.CramVersions;
+import htsjdk.samtools.cram.compression.CRAMCodecModelContext;
 import htsjdk.samtools.cram.compression.ExternalCompressor;
+import htsjdk.samtools.cram.compression.NameTokeniserExternalCompressor;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
 import htsjdk.samtools.cram.compression.rans.RANS;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
 import htsjdk.samtools.cram.encoding.CRAMEncoding;
 import htsjdk.samtools.cram.encoding.external.ByteArrayStopEncoding;
 import htsjdk.samtools.cram.encoding.external.ExternalByteEncoding;
@@ -58,7 +63,9 @@ import htsjdk.samtools.util.Log;
  * Notes on the htsjdk CRAM write implementation: This implementation encodes ALL DataSeries to external
  * blocks, (although some of the external encodings split the data between core and external; see
  * {@link htsjdk.samtools.cram.encoding.ByteArrayLenEncoding}, and does not use the 'BB' or 'QQ'
- * DataSeries when writing CRAM at all.  Relies heavily on GZIP and RANS for compression.
+ * DataSeries when writing CRAM at all.  Relies heavily on GZIP and RANS for compression; when writing CRAM 3.1,
+ * RANSNx16 or the adaptive arithmetic coder replace RANS, read names are compressed with the name tokeniser and
+ * quality scores may be compressed with fqzcomp.
  *
  * See {@link htsjdk.samtools.cram.encoding.EncodingFactory} for details on how an {@link EncodingDescriptor}
  * is mapped to the codec that actually transfers data to and from underlying Slice blocks.
@@ -107,12 +114,12 @@ public class CompressionHeaderEncodingMap {
         // data. The only use of core block encodings are as params for other (external)
         // encodings, i.e., the ByteArrayLenEncoding used for tag data uses a core (sub-)encoding
         // to store the length of the array that is stored in an external block.
-        putExternalRansOrderZeroEncoding(DataSeries.AP_AlignmentPositionOffset);
-        putExternalRansOrderOneEncoding(DataSeries.BA_Base);
+        putExternalRansOrderZeroEncoding(encodingStrategy, DataSeries.AP_AlignmentPositionOffset);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.BA_Base);
         // the BB data series is not used by this implementation when writing CRAMs
-        putExternalRansOrderOneEncoding(DataSeries.BF_BitFlags);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.BF_BitFlags);
         putExternalGzipEncoding(encodingStrategy, DataSeries.BS_BaseSubstitutionCode);
-        putExternalRansOrderOneEncoding(DataSeries.CF_CompressionBitFlags);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.CF_CompressionBitFlags);
         putExternalGzipEncoding(encodingStrategy, DataSeries.DL_DeletionLength);
         putExternalGzipEncoding(encodingStrategy, DataSeries.FC_FeatureCode);
         putExternalGzipEncoding(encodingStrategy, DataSeries.FN_NumberOfReadFeatures);
@@ -123,20 +130,20 @@ public class CompressionHeaderEncodingMap {
         putExternalGzipEncoding(encodingStrategy, DataSeries.MQ_MappingQualityScore);
         putExternalGzipEncoding(encodingStrategy, DataSeries.NF_RecordsToNextFragment);
         putExternalGzipEncoding(encodingStrategy, DataSeries.NP_NextFragmentAlignmentStart);
-        putExternalRansOrderOneEncoding(DataSeries.NS_NextFragmentReferenceSequenceID);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.NS_NextFragmentReferenceSequenceID);
         putExternalGzipEncoding(encodingStrategy, DataSeries.PD_padding);
         // the QQ data series is not used by this implementation when writing CRAMs
-        putExternalRansOrderOneEncoding(DataSeries.QS_QualityScore);
-        putExternalRansOrderOneEncoding(DataSeries.RG_ReadGroup);
-        putExternalRansOrderZeroEncoding(DataSeries.RI_RefId);
-        putExternalRansOrderOneEncoding(DataSeries.RL_ReadLength);
-        putExternalByteArrayStopTabGzipEncoding(encodingStrategy, DataSeries.RN_ReadName);
+        putExternalQualityScoreEncoding(encodingStrategy, DataSeries.QS_QualityScore);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.RG_ReadGroup);
+        putExternalRansOrderZeroEncoding(encodingStrategy, DataSeries.RI_RefId);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.RL_ReadLength);
+        putExternalReadNameEncoding(encodingStrategy, DataSeries.RN_ReadName);
         putExternalGzipEncoding(encodingStrategy, DataSeries.RS_RefSkip);
         putExternalByteArrayStopTabGzipEncoding(encodingStrategy, DataSeries.SC_SoftClip);
         // the TC data series is obsolete
         putExternalGzipEncoding(encodingStrategy, DataSeries.TL_TagIdList);
         // the TN data series is obsolete
-        putExternalRansOrderOneEncoding(DataSeries.TS_InsertSize);
+        putExternalRansOrderOneEncoding(encodingStrategy, DataSeries.TS_InsertSize);
     }
 
     /**
@@ -209,12 +216,27 @@ public class CompressionHeaderEncodingMap {
      * @return Block containing the compressed contends of the stream
      */
     public Block createCompressedBlockForStream(final Integer contentId, final ByteArrayOutputStream outputStream) {
+        return createCompressedBlockForStream(contentId, outputStream, null);
+    }
+
+    /**
+     * Given a content ID, return a {@link Block} for that ID by obtaining the contents of the stream,
+     * compressing it using the compressor for that contentID, and converting the result to a {@link Block}.
+     * @param contentId contentID to use
+     * @param outputStream stream to compress
+     * @param contextModel information about the slice's records for use by the compressor; may be null
+     * @return Block containing the compressed contends of the stream
+     */
+    public Block createCompressedBlockForStream(
+            final Integer contentId,
+            final ByteArrayOutputStream outputStream,
+            final CRAMCodecModelContext contextModel) {
         final ExternalCompressor compressor = externalCompressors.get(contentId);
         final byte[] rawContent = outputStream.toByteArray();
         return Block.createExternalBlock(
                 compressor.getMethod(),
                 contentId,
-                compressor.compress(rawContent),
+                compressor.compress(rawContent, contextModel),
                 rawContent.length);
     }
 
@@ -276,14 +298,10 @@ public class CompressionHeaderEncodingMap {
                 encodingStrategy.getGZIPCompressionLevel());
         final int gzipLen = gzip.compress(data).length;
 
-        final ExternalCompressor rans0 = compressorCache.getCompressorForMethod(
-                BlockCompressionMethod.RANS,
-                RANS.ORDER.ZERO.ordinal());
+        final ExternalCompressor rans0 = getRansCompressor(encodingStrategy, RANS.ORDER.ZERO);
         final int rans0Len = rans0.compress(data).length;
 
-        final ExternalCompressor rans1 = compressorCache.getCompressorForMethod(
-                BlockCompressionMethod.RANS,
-                RANS.ORDER.ONE.ordinal());
+        final ExternalCompressor rans1 = getRansCompressor(encodingStrategy, RANS.ORDER.ONE);
         final int rans1Len = rans1.compress(data).length;
 
         // find the best of general purpose codecs:
@@ -376,6 +394,22 @@ public class CompressionHeaderEncodingMap {
                 compressorCache.getCompressorForMethod(BlockCompressionMethod.GZIP, encodingStrategy.getGZIPCompressionLevel()));
     }
 
+    // add an external encoding for read names, using the name tokeniser (which requires nul-terminated names) if the
+    // strategy requests it, otherwise tab-terminated names with a GZIP compressor
+    private void putExternalReadNameEncoding(final CRAMEncodingStrategy encodingStrategy, final DataSeries dataSeries) {
+        if (isCRAM31(encodingStrategy) && encodingStrategy.getUseNameTokeniser()) {
+            putExternalEncoding(dataSeries,
+                    new ByteArrayStopEncoding((byte) 0, dataSeries.getExternalBlockContentId()).toEncodingDescriptor(),
+                    compressorCache.getCompressorForMethod(
+                            BlockCompressionMethod.NAME_TOKENISER,
+                            encodingStrategy.getUseArithmeticCoder() ?
+                                    NameTokeniserExternalCompressor.ARITHMETIC_STREAMS :
+                                    NameTokeniserExternalCompressor.RANS_NX16_STREAMS));
+        } else {
+            putExternalByteArrayStopTabGzipEncoding(encodingStrategy, dataSeries);
+        }
+    }
+
     // add an external encoding appropriate for the dataSeries value type, with a GZIP compressor
     private void putExternalGzipEncoding(final CRAMEncodingStrategy encodingStrategy, final DataSeries dataSeries) {
         putExternalEncoding(
@@ -384,17 +418,45 @@ public class CompressionHeaderEncodingMap {
     }
 
     // add an external encoding appropriate for the dataSeries value type, with a RANS order 1 compressor
-    private void putExternalRansOrderOneEncoding(final DataSeries dataSeries) {
-        putExternalEncoding(
-                dataSeries,
-                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ONE.ordinal()));
+    private void putExternalRansOrderOneEncoding(final CRAMEncodingStrategy encodingStrategy, final DataSeries dataSeries) {
+        putExternalEncoding(dataSeries, getRansCompressor(encodingStrategy, RANS.ORDER.ONE));
     }
 
     // add an external encoding appropriate for the dataSeries value type, with a RANS order 0 compressor
-    private void putExternalRansOrderZeroEncoding(final DataSeries dataSeries) {
-        putExternalEncoding(
-                dataSeries,
-                compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, RANS.ORDER.ZERO.ordinal()));
+    private void putExternalRansOrderZeroEncoding(final CRAMEncodingStrategy encodingStrategy, final DataSeries dataSeries) {
+        putExternalEncoding(dataSeries, getRansCompressor(encodingStrategy, RANS.ORDER.ZERO));
+    }
+
+    // add an external encoding for quality scores, using fqzcomp if the strategy requests it, otherwise
+    // a RANS order 1 compressor
+    private void putExternalQualityScoreEncoding(final CRAMEncodingStrategy encodingStrategy, final DataSeries dataSeries) {
+        if (isCRAM31(encodingStrategy) && encodingStrategy.getUseFQZComp()) {
+            putExternalEncoding(
+                    dataSeries,
+                    compressorCache.getCompressorForMethod(BlockCompressionMethod.FQZCOMP, ExternalCompressor.NO_COMPRESSION_ARG));
+        } else {
+            putExternalRansOrderOneEncoding(encodingStrategy, dataSeries);
+        }
+    }
+
+    // Get the rANS-family compressor of the given order for the CRAM version being written: RANS for CRAM 3.0,
+    // and RANSNx16 (or the adaptive arithmetic coder, if requested) for CRAM 3.1.
+    private ExternalCompressor getRansCompressor(final CRAMEncodingStrategy encodingStrategy, final RANS.ORDER order) {
+        if (!isCRAM31(encodingStrategy)) {
+            return compressorCache.getCompressorForMethod(BlockCompressionMethod.RANS, order.ordinal());
+        } else if (encodingStrategy.getUseArithmeticCoder()) {
+            return compressorCache.getCompressorForMethod(
+                    BlockCompressionMethod.ADAPTIVE_ARITHMETIC,
+                    order == RANS.ORDER.ONE ? RangeCodec.ORDER_FLAG : 0);
+        } else {
+            return compressorCache.getCompressorForMethod(
+                    BlockCompressionMethod.RANSNx16,
+                    order == RANS.ORDER.ONE ? RANSNx16.ORDER_FLAG : 0);
+        }
+    }
+
+    private static boolean isCRAM31(final CRAMEncodingStrategy encodingStrategy) {
+        return encodingStrategy.getCRAMVersion().compatibleWith(CramVersions.CRAM_v3_1);
     }
 
     @Override
@@ -78,7 +78,7 @@ public class Slice {
 
     private final CompressionHeader compressionHeader;
     private final SliceBlocks sliceBlocks;
-    private final long byteOffsetOfContainer;
+    private long byteOffsetOfContainer;
 
     private Block sliceHeaderBlock;
 
@@ -300,6 +300,15 @@ public class Slice {
         this.byteSizeOfSliceBlocks = byteSizeOfSliceBlocks;
     }
 
+    /**
+     * Set the stream byte offset of the start of the container in which this Slice resides. Used when the
+     * Slice is created before the position of its container in the stream is known.
+     * Used by BAI and CRAI indexing
+     */
+    public void setByteOffsetOfContainer(final long byteOffsetOfContainer) {
+        this.byteOffsetOfContainer = byteOffsetOfContainer;
+    }
+
     public void setLandmarkIndex(int landmarkIndex) {
         this.landmarkIndex = landmarkIndex;
     }
@@ -25,6 +25,7 @@
 package htsjdk.samtools.cram.structure;
 
 import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.CRAMCodecModelContext;
 import htsjdk.samtools.cram.io.BitOutputStream;
 import htsjdk.samtools.cram.io.DefaultBitOutputStream;
 import htsjdk.samtools.cram.structure.block.Block;
@@ -51,6 +52,9 @@ public class SliceBlocksWriteStreams {
     // content ID to ByteArrayOutputStream
     private final Map<Integer, ByteArrayOutputStream> externalOutputStreams = new TreeMap<>();
 
+    // information about the records written, for use by compressors that can model it
+    private final CRAMCodecModelContext codecModelContext = new CRAMCodecModelContext();
+
     /**
      * @param compressionHeader {@link CompressionHeader} for the container containing the slice
      */
@@ -78,6 +82,11 @@ public class SliceBlocksWriteStreams {
      */
     public ByteArrayOutputStream getExternalOutputStream(final Integer contentID) { return externalOutputStreams.get(contentID); }
 
+    /**
+     * @return the {@link CRAMCodecModelContext} to be populated as records are written to these streams
+     */
+    public CRAMCodecModelContext getCodecModelContext() { return codecModelContext; }
+
     /**
      * Compress and write each each stream to a corresponding Block (note that this does not write
      * the blocks themselves to a container output stream - that can't happen until the slice is aggregated
@@ -94,7 +103,7 @@ public class SliceBlocksWriteStreams {
             if (contentId.equals(Block.NO_CONTENT_ID)) {
                 throw new CRAMException("A valid content ID is required.  Given: " + contentId);
             }
-            externalBlocks.add(compressionHeader.getEncodingMap().createCompressedBlockForStream(contentId, contentStream));
+            externalBlocks.add(compressionHeader.getEncodingMap().createCompressedBlockForStream(contentId, contentStream, codecModelContext));
          });
 
         return new SliceBlocks(coreBlock, externalBlocks);
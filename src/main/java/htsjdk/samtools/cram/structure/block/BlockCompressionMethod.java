@@ -32,7 +32,12 @@ public enum BlockCompressionMethod {
     GZIP(1),
     BZIP2(2),
     LZMA(3),
-    RANS(4);
+    RANS(4),
+    // CRAM 3.1
+    RANSNx16(5),
+    ADAPTIVE_ARITHMETIC(6),
+    FQZCOMP(7),
+    NAME_TOKENISER(8);
 
     private final int methodId;
 
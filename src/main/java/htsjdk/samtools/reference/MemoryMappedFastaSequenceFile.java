@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2019 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools.reference;
+
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.IOUtil;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * An uncompressed, indexed fasta file that is memory-mapped, so that sequences are read without any file I/O
+ * calls or intermediate buffers. The line geometry in the fasta index is used to copy each line's bases directly
+ * from the mapped file, and {@link #getSubsequenceView} gives access to a region's bases without copying them at all.
+ *
+ * <p>Unlike the other indexed fasta readers, {@link #getSubsequenceAt}, {@link #getSequence} and
+ * {@link #getSubsequenceView} may be called concurrently from multiple threads, so one instance can be shared by
+ * worker threads. {@link #nextSequence} and {@link #reset} are stateful, and are not thread-safe.
+ *
+ * <p>The mapping is released when the instance is garbage collected, rather than when it is closed.
+ */
+public class MemoryMappedFastaSequenceFile extends AbstractIndexedFastaSequenceFile {
+
+    // mappings are limited to Integer.MAX_VALUE bytes, so larger files are mapped in segments
+    static final int DEFAULT_SEGMENT_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final ByteBuffer[] segments;
+    private final int segmentSize;
+    private final long fileSize;
+
+    /**
+     * Open and map the given indexed fasta sequence file.
+     * @param path The file to open.
+     * @throws FileNotFoundException If the fasta or its index cannot be found.
+     */
+    public MemoryMappedFastaSequenceFile(final Path path) throws FileNotFoundException {
+        this(path, new FastaSequenceIndex(findRequiredFastaIndexFile(path)));
+    }
+
+    /**
+     * Open and map the given indexed fasta sequence file.
+     * @param path The file to open.
+     * @param index Pre-built FastaSequenceIndex, for the case in which one does not exist on disk.
+     */
+    public MemoryMappedFastaSequenceFile(final Path path, final FastaSequenceIndex index) {
+        this(path, index, DEFAULT_SEGMENT_SIZE);
+    }
+
+    MemoryMappedFastaSequenceFile(final Path path, final FastaSequenceIndex index, final int segmentSize) {
+        super(path, index);
+        try {
+            if (IOUtil.isBlockCompressed(path, true)) {
+                throw new SAMException("Block-compressed FASTA file cannot be memory-mapped: " + path);
+            }
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            this.fileSize = channel.size();
+            this.segmentSize = segmentSize;
+            this.segments = new ByteBuffer[(int) ((fileSize + segmentSize - 1) / segmentSize)];
+            for (int i = 0; i < segments.length; i++) {
+                final long segmentStart = (long) i * segmentSize;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, segmentStart, Math.min(segmentSize, fileSize - segmentStart));
+            }
+        } catch (final IOException | UnsupportedOperationException e) {
+            throw new SAMException("FASTA file should be readable and mappable but is not: " + path, e);
+        }
+    }
+
+    /**
+     * Gets the subsequence of the contig in the range [start,stop]
+     * @param contig Contig whose subsequence to retrieve.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return The partial reference sequence associated with this range.
+     */
+    @Override
+    public ReferenceSequence getSubsequenceAt(final String contig, final long start, final long stop) {
+        final FastaSequenceIndexEntry indexEntry = getIndexEntry(contig, start, stop);
+        final byte[] target = new byte[(int) (stop - start + 1)];
+        copyBases(indexEntry, start - 1, target, 0, target.length);
+        return new ReferenceSequence(contig, indexEntry.getSequenceIndex(), target);
+    }
+
+    /**
+     * Get a view of the bases of the contig in the range [start,stop], which reads them from the mapped file
+     * as they are accessed rather than copying them.
+     * @param contig Contig whose bases to view.
+     * @param start inclusive, 1-based start of region.
+     * @param stop inclusive, 1-based stop of region.
+     * @return A view of the bases in the region.
+     */
+    public SubsequenceView getSubsequenceView(final String contig, final long start, final long stop) {
+        return new SubsequenceView(getIndexEntry(contig, start, stop), start, (int) (stop - start + 1));
+    }
+
+    private FastaSequenceIndexEntry getIndexEntry(final String contig, final long start, final long stop) {
+        if (start < 1) {
+            throw new SAMException(String.format("Malformed query; start point %d is before the start of the contig", start));
+        }
+        if (start > stop + 1) {
+            throw new SAMException(String.format("Malformed query; start point %d lies after end point %d", start, stop));
+        }
+        final FastaSequenceIndexEntry indexEntry = getIndex().getIndexEntry(contig);
+        if (stop > indexEntry.getSize()) {
+            throw new SAMException("Query asks for data past end of contig");
+        }
+        return indexEntry;
+    }
+
+    // Copy bases from the contig, starting at the 0-based position, one line at a time.
+    private void copyBases(
+            final FastaSequenceIndexEntry indexEntry,
+            final long position,
+            final byte[] target,
+            final int targetOffset,
+            final int length) {
+        final int basesPerLine = indexEntry.getBasesPerLine();
+        final int bytesPerLine = indexEntry.getBytesPerLine();
+        long nextPosition = position;
+        int copied = 0;
+        while (copied < length) {
+            final int positionInLine = (int) (nextPosition % basesPerLine);
+            final int run = Math.min(basesPerLine - positionInLine, length - copied);
+            copyFromFile(
+                    indexEntry.getLocation() + (nextPosition / basesPerLine) * bytesPerLine + positionInLine,
+                    target,
+                    targetOffset + copied,
+                    run);
+            nextPosition += run;
+            copied += run;
+        }
+    }
+
+    private void copyFromFile(final long fileOffset, final byte[] target, final int targetOffset, final int length) {
+        long nextOffset = fileOffset;
+        int copied = 0;
+        while (copied < length) {
+            final ByteBuffer segment = segments[(int) (nextOffset / segmentSize)].duplicate();
+            segment.position((int) (nextOffset % segmentSize));
+            final int run = Math.min(segment.remaining(), length - copied);
+            segment.get(target, targetOffset + copied, run);
+            nextOffset += run;
+            copied += run;
+        }
+    }
+
+    private byte getFromFile(final long fileOffset) {
+        return segments[(int) (fileOffset / segmentSize)].get((int) (fileOffset % segmentSize));
+    }
+
+    /**
+     * Reads a sequence of bytes from the mapped file into the given buffer, starting at the given file position.
+     * @param buffer the buffer into which bytes are to be transferred
+     * @param position the position to start reading at
+     * @return the number of bytes read, or -1 if the position is at or past the end of the file
+     */
+    @Override
+    protected int readFromPosition(final ByteBuffer buffer, final long position) {
+        if (position >= fileSize) {
+            return -1;
+        }
+        final int length = (int) Math.min(buffer.remaining(), fileSize - position);
+        final byte[] bytes = new byte[length];
+        copyFromFile(position, bytes, 0, length);
+        buffer.put(bytes);
+        return length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    /**
+     * A view of the bases of a region of a contig in a {@link MemoryMappedFastaSequenceFile}. Bases are read from
+     * the mapped file when they are accessed, so a view is only valid while the file that created it is in use.
+     * Bases are returned as they appear in the file, without any normalization.
+     */
+    public final class SubsequenceView {
+        private final FastaSequenceIndexEntry indexEntry;
+        private final long start;
+        private final int length;
+
+        private SubsequenceView(final FastaSequenceIndexEntry indexEntry, final long start, final int length) {
+            this.indexEntry = indexEntry;
+            this.start = start;
+            this.length = length;
+        }
+
+        /**
+         * @return the contig this view is of
+         */
+        public String getContig() {
+            return indexEntry.getContig();
+        }
+
+        /**
+         * @return the 1-based position in the contig of the first base of the view
+         */
+        public long getStart() {
+            return start;
+        }
+
+        /**
+         * @return the number of bases in the view
+         */
+        public int length() {
+            return length;
+        }
+
+        /**
+         * @param offset 0-based offset within the view
+         * @return the base at {@code offset}
+         */
+        public byte byteAt(final int offset) {
+            if (offset < 0 || offset >= length) {
+                throw new IndexOutOfBoundsException(String.format("offset %d is outside a view of length %d", offset, length));
+            }
+            final long position = start - 1 + offset;
+            final int basesPerLine = indexEntry.getBasesPerLine();
+            return getFromFile(indexEntry.getLocation() +
+                    (position / basesPerLine) * indexEntry.getBytesPerLine() + position % basesPerLine);
+        }
+
+        /**
+         * Copy bases from the view into an array.
+         * @param offset 0-based offset within the view of the first base to copy
+         * @param target the array to copy bases into
+         * @param targetOffset the offset in {@code target} to copy the first base to
+         * @param count the number of bases to copy
+         */
+        public void copyTo(final int offset, final byte[] target, final int targetOffset, final int count) {
+            if (offset < 0 || count < 0 || offset + count > length) {
+                throw new IndexOutOfBoundsException(String.format(
+                        "bases %d to %d are outside a view of length %d", offset, offset + count, length));
+            }
+            copyBases(indexEntry, start - 1 + offset, target, targetOffset, count);
+        }
+
+        /**
+         * @return a copy of all the bases in the view
+         */
+        public byte[] getBases() {
+            final byte[] bases = new byte[length];
+            copyTo(0, bases, 0, length);
+            return bases;
+        }
+    }
+}
@@ -23,34 +23,109 @@
  */
 package htsjdk.samtools.seekablestream;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.HttpUtils;
+import htsjdk.samtools.util.ThreadPoolUtil;
 
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.net.HttpURLConnection;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
+ * A seekable stream over a file served by HTTP, read with ranged requests.
+ *
+ * By default, every read is a ranged request of its own. When blocks are cached, the file is instead read in fixed-size
+ * blocks that are kept in an LRU cache, so that the many small reads of, for example, an index query share a few
+ * requests, and connections are left open to be reused for the next request. When blocks are also read in sequence,
+ * the blocks that follow are fetched concurrently on background threads before they are reached.
+ *
+ * If the server ignores the range of a request for a block and returns the whole file, the blocks are instead read in
+ * order from that one response, and nothing is prefetched. The file is then only requested again when a block before
+ * the one last read is no longer cached.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must be synchronized externally.
+ *
  * @author jrobinso
  */
 public class SeekableHTTPStream extends SeekableStream {
 
+    private static final ExecutorService prefetchPool = ThreadPoolUtil.newCachedDaemonThreadPool();
+
     private long position = 0;
     private long contentLength = -1;
     private final URL url;
     private final Proxy proxy;
 
+    private final int blockSize;
+    private final int prefetchBlocks;
+    /**
+     * Blocks by index, least recently used first, or null if blocks aren't cached. A block shorter than blockSize is
+     * the last block of the file.
+     */
+    private final LinkedHashMap<Long, byte[]> cachedBlocks;
+    /**
+     * Blocks by index that are being fetched on background threads.
+     */
+    private final Map<Long, Future<byte[]>> prefetchedBlocks = new HashMap<>();
+    private long lastBlockRead = -1;
+    /**
+     * Set once the server has answered a ranged request with the whole file.
+     */
+    private volatile boolean rangesIgnored = false;
+    /**
+     * The whole file response that blocks are read from once ranges are ignored, and its position in the file.
+     */
+    private final Object sequentialLock = new Object();
+    private InputStream sequentialStream;
+    private long sequentialPosition;
+
     public SeekableHTTPStream(final URL url) {
         this(url, null);
 
     }
 
     public SeekableHTTPStream(final URL url, Proxy proxy) {
+        this(url, proxy, Defaults.HTTP_BLOCK_SIZE, Defaults.HTTP_CACHE_BLOCKS, Defaults.HTTP_PREFETCH_BLOCKS);
+    }
+
+    /**
+     * @param url the file to read
+     * @param proxy the proxy to connect through, or null to connect directly
+     * @param blockSize the size of the blocks that the file is read in, if they are cached
+     * @param cacheBlocks the number of blocks to cache, or 0 to make a ranged request for every read
+     * @param prefetchBlocks the number of blocks to fetch ahead of blocks read in sequence, if blocks are cached
+     */
+    public SeekableHTTPStream(final URL url, final Proxy proxy, final int blockSize, final int cacheBlocks, final int prefetchBlocks) {
+        if (cacheBlocks > 0 && blockSize <= 0) {
+            throw new IllegalArgumentException("Invalid HTTP block size: " + blockSize);
+        }
+        if (prefetchBlocks < 0) {
+            throw new IllegalArgumentException("Invalid number of HTTP blocks to prefetch: " + prefetchBlocks);
+        }
 
         this.proxy = proxy;
         this.url = url;
+        this.blockSize = blockSize;
+        this.prefetchBlocks = prefetchBlocks;
+        this.cachedBlocks = cacheBlocks <= 0 ? null : new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Long, byte[]> eldest) {
+                return size() > cacheBlocks;
+            }
+        };
 
         // Try to get the file length
         // Note: This also sets setDefaultUseCaches(false), which is important
@@ -106,6 +181,9 @@ public class SeekableHTTPStream extends SeekableStream {
         if (position == contentLength) {
             return -1;
         }
+        if (cachedBlocks != null) {
+            return readCachedBlocks(buffer, offset, len);
+        }
 
         HttpURLConnection connection = null;
         InputStream is = null;
@@ -176,9 +254,212 @@ public class SeekableHTTPStream extends SeekableStream {
     }
 
 
+    private int readCachedBlocks(final byte[] buffer, final int offset, final int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            final long blockIndex = position / blockSize;
+            final byte[] block = getBlock(blockIndex);
+            final int blockOffset = (int) (position - blockIndex * blockSize);
+            if (blockOffset >= block.length) {
+                // past the end of the file
+                break;
+            }
+            final int count = Math.min(len - n, block.length - blockOffset);
+            System.arraycopy(block, blockOffset, buffer, offset + n, count);
+            n += count;
+            position += count;
+            if (block.length < blockSize && blockOffset + count == block.length) {
+                break;
+            }
+        }
+        return n == 0 ? -1 : n;
+    }
+
+    private byte[] getBlock(final long blockIndex) throws IOException {
+        if (blockIndex != lastBlockRead) {
+            if (blockIndex == lastBlockRead + 1) {
+                prefetch(blockIndex);
+            } else {
+                // the blocks being fetched ahead of the previous position are unlikely to be read now
+                cancelPrefetches();
+            }
+            lastBlockRead = blockIndex;
+        }
+
+        byte[] block = cachedBlocks.get(blockIndex);
+        if (block == null) {
+            final Future<byte[]> prefetched = prefetchedBlocks.remove(blockIndex);
+            block = prefetched != null ? waitFor(prefetched) : fetchBlock(blockIndex);
+            cachedBlocks.put(blockIndex, block);
+        }
+        return block;
+    }
+
+    /**
+     * Starts fetching the blocks that follow blockIndex, and that are in the file, on background threads.
+     */
+    private void prefetch(final long blockIndex) {
+        if (rangesIgnored) {
+            // the blocks are read in order from one response
+            return;
+        }
+        for (long i = blockIndex + 1; i <= blockIndex + prefetchBlocks; i++) {
+            if (contentLength >= 0 && i * blockSize >= contentLength) {
+                break;
+            }
+            if (!prefetchedBlocks.containsKey(i) && !cachedBlocks.containsKey(i)) {
+                final long index = i;
+                prefetchedBlocks.put(index, prefetchPool.submit(() -> fetchBlock(index)));
+            }
+        }
+    }
+
+    private void cancelPrefetches() {
+        for (final Future<byte[]> prefetched : prefetchedBlocks.values()) {
+            prefetched.cancel(true);
+        }
+        prefetchedBlocks.clear();
+    }
+
+    private byte[] waitFor(final Future<byte[]> prefetched) throws IOException {
+        try {
+            return prefetched.get();
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted waiting for a block of " + url);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Exception reading a block of " + url, e.getCause());
+        }
+    }
+
+    /**
+     * Reads a block of the file with a ranged request, leaving the connection open to be reused, or from the whole file
+     * response if the server ignores ranges.
+     *
+     * @return the block, which is shorter than the block size if it is the last block of the file, and empty if it is
+     * past the end of the file
+     */
+    private byte[] fetchBlock(final long blockIndex) throws IOException {
+        final long start = blockIndex * blockSize;
+        long end = start + blockSize - 1;
+        if (contentLength >= 0) {
+            if (start >= contentLength) {
+                return new byte[0];
+            }
+            end = Math.min(end, contentLength - 1);
+        }
+        if (rangesIgnored) {
+            return readSequentially(start);
+        }
+
+        final HttpURLConnection connection = openConnection();
+        connection.setRequestProperty("Range", "bytes=" + start + "-" + end);
+
+        final int responseCode = connection.getResponseCode();
+        if (responseCode == 416) {
+            // the range starts past the end of the file
+            final InputStream errorStream = connection.getErrorStream();
+            if (errorStream != null) {
+                errorStream.close();
+            }
+            return new byte[0];
+        }
+        if (responseCode == HttpURLConnection.HTTP_OK) {
+            // the server ignored the range and returns the whole file, so rather than downloading the file up to every
+            // block that is read, read this block and the ones that follow from this response
+            rangesIgnored = true;
+            synchronized (sequentialLock) {
+                closeSequentialStream();
+                sequentialStream = connection.getInputStream();
+                sequentialPosition = 0;
+                return readSequentially(start);
+            }
+        }
+
+        // reading the response to the end and closing the stream, rather than disconnecting, returns the connection
+        // to the pool of connections that are kept alive
+        try (final InputStream is = connection.getInputStream()) {
+            return readBlock(is);
+        }
+    }
+
+    /**
+     * Reads the block that starts at start from the whole file response, requesting the file again if the response is
+     * already past the start of the block.
+     */
+    private byte[] readSequentially(final long start) throws IOException {
+        synchronized (sequentialLock) {
+            if (sequentialStream == null || start < sequentialPosition) {
+                closeSequentialStream();
+                sequentialStream = openConnection().getInputStream();
+                sequentialPosition = 0;
+            }
+            sequentialPosition += skipFully(sequentialStream, start - sequentialPosition);
+            final byte[] block = readBlock(sequentialStream);
+            sequentialPosition += block.length;
+            return block;
+        }
+    }
+
+    private void closeSequentialStream() throws IOException {
+        synchronized (sequentialLock) {
+            if (sequentialStream != null) {
+                sequentialStream.close();
+                sequentialStream = null;
+            }
+        }
+    }
+
+    private HttpURLConnection openConnection() throws IOException {
+        return proxy == null ?
+                (HttpURLConnection) url.openConnection() :
+                (HttpURLConnection) url.openConnection(proxy);
+    }
+
+    /**
+     * @return the next blockSize bytes of the stream, or fewer if it ends first
+     */
+    private byte[] readBlock(final InputStream is) throws IOException {
+        final byte[] block = new byte[blockSize];
+        int n = 0;
+        while (n < blockSize) {
+            final int count = is.read(block, n, blockSize - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n == blockSize ? block : Arrays.copyOf(block, n);
+    }
+
+    /**
+     * @return the number of bytes skipped, which is less than n if the stream ends first
+     */
+    private static long skipFully(final InputStream is, final long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n) {
+            final long count = is.skip(n - skipped);
+            if (count <= 0) {
+                if (is.read() < 0) {
+                    break;
+                }
+                skipped++;
+            } else {
+                skipped += count;
+            }
+        }
+        return skipped;
+    }
+
     @Override
     public void close() throws IOException {
-        // Nothing to do
+        cancelPrefetches();
+        if (cachedBlocks != null) {
+            cachedBlocks.clear();
+        }
+        closeSequentialStream();
     }
 
 
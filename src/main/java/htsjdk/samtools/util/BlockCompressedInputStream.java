@@ -505,38 +505,75 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         if (mFileBuffer == null) {
             mFileBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
         }
+        return inflateCompressedBlock(readCompressedBlock(mFileBuffer), blockGunzipper, bufferAvailableForReuse);
+    }
+
+    /**
+     * Reads the next block from the input stream without decompressing it, so that decompression can be done
+     * separately, possibly on another thread, by {@link #inflateCompressedBlock}.
+     * @param compressedBuffer buffer of at least {@link BlockCompressedStreamConstants#MAX_COMPRESSED_BLOCK_SIZE}
+     *                         bytes in which to place the compressed block
+     * @return next compressed block in input stream, which is empty at the end of the stream
+     */
+    protected CompressedBlock readCompressedBlock(final byte[] compressedBuffer) {
         long blockAddress = mStreamOffset;
         try {
-            final int headerByteCount = readBytes(mFileBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
+            final int headerByteCount = readBytes(compressedBuffer, 0, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH);
             mStreamOffset += headerByteCount;
             if (headerByteCount == 0) {
                 // Handle case where there is no empty gzip block at end.
-                return new DecompressedBlock(blockAddress, new byte[0], 0);
+                return new CompressedBlock(blockAddress, compressedBuffer, 0, null);
             }
             if (headerByteCount != BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH) {
-                return new DecompressedBlock(blockAddress, headerByteCount, new IOException(INCORRECT_HEADER_SIZE_MSG + getSource()));
+                return new CompressedBlock(blockAddress, compressedBuffer, headerByteCount, new IOException(INCORRECT_HEADER_SIZE_MSG + getSource()));
             }
-            final int blockLength = unpackInt16(mFileBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
-            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > mFileBuffer.length) {
-                return new DecompressedBlock(blockAddress, blockLength,
+            final int blockLength = unpackInt16(compressedBuffer, BlockCompressedStreamConstants.BLOCK_LENGTH_OFFSET) + 1;
+            if (blockLength < BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH || blockLength > compressedBuffer.length) {
+                return new CompressedBlock(blockAddress, compressedBuffer, blockLength,
                         new IOException(UNEXPECTED_BLOCK_LENGTH_MSG + blockLength + " for " + getSource()));
             }
             final int remaining = blockLength - BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH;
-            final int dataByteCount = readBytes(mFileBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
+            final int dataByteCount = readBytes(compressedBuffer, BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH,
                     remaining);
             mStreamOffset += dataByteCount;
             if (dataByteCount != remaining) {
-                return new DecompressedBlock(blockAddress, blockLength,
+                return new CompressedBlock(blockAddress, compressedBuffer, blockLength,
                         new FileTruncatedException(PREMATURE_END_MSG + getSource()));
             }
-            final byte[] decompressed = inflateBlock(mFileBuffer, blockLength, bufferAvailableForReuse);
-            return new DecompressedBlock(blockAddress, decompressed, blockLength);
+            return new CompressedBlock(blockAddress, compressedBuffer, blockLength, null);
         } catch (IOException e) {
-            return new DecompressedBlock(blockAddress, 0, e);
+            return new CompressedBlock(blockAddress, compressedBuffer, 0, e);
         }
     }
 
-    private byte[] inflateBlock(final byte[] compressedBlock, final int compressedLength,
+    /**
+     * Decompresses a block read by {@link #readCompressedBlock}. This may be called from a thread other than the one
+     * reading the stream, as long as each thread uses its own {@link BlockGunzipper}.
+     * @param compressedBlock block to decompress
+     * @param gunzipper gunzipper used to decompress the block
+     * @param bufferAvailableForReuse buffer in which to place decompressed block. A null or
+     *  incorrectly sized buffer will result in the buffer being ignored and
+     *  a new buffer allocated for decompression.
+     * @return the decompressed block, or a block holding the exception encountered when reading it
+     */
+    protected DecompressedBlock inflateCompressedBlock(final CompressedBlock compressedBlock, final BlockGunzipper gunzipper,
+                                                       final byte[] bufferAvailableForReuse) {
+        if (compressedBlock.mException != null) {
+            return new DecompressedBlock(compressedBlock.mBlockAddress, compressedBlock.mBlockCompressedSize, compressedBlock.mException);
+        }
+        if (compressedBlock.mBlockCompressedSize == 0) {
+            return new DecompressedBlock(compressedBlock.mBlockAddress, new byte[0], 0);
+        }
+        try {
+            final byte[] decompressed = inflateBlock(gunzipper, compressedBlock.mCompressedBlock,
+                    compressedBlock.mBlockCompressedSize, bufferAvailableForReuse);
+            return new DecompressedBlock(compressedBlock.mBlockAddress, decompressed, compressedBlock.mBlockCompressedSize);
+        } catch (IOException e) {
+            return new DecompressedBlock(compressedBlock.mBlockAddress, 0, e);
+        }
+    }
+
+    private byte[] inflateBlock(final BlockGunzipper gunzipper, final byte[] compressedBlock, final int compressedLength,
             final byte[] bufferAvailableForReuse) throws IOException {
         final int uncompressedLength = unpackInt32(compressedBlock, compressedLength - 4);
         if (uncompressedLength < 0) {
@@ -547,7 +584,7 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         	// can't reuse the buffer since the size is incorrect
             buffer = new byte[uncompressedLength];
         }
-        blockGunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
+        gunzipper.unzipBlock(buffer, compressedBlock, compressedLength);
         return buffer;
     }
 
@@ -719,6 +756,50 @@ public class BlockCompressedInputStream extends InputStream implements LocationA
         return true;
     }
 
+    /**
+     * A block read from the input stream that has not been decompressed yet
+     */
+    protected static class CompressedBlock {
+        /**
+         * Stream offset of start of block
+         */
+        private final long mBlockAddress;
+        /**
+         * Buffer holding the compressed block
+         */
+        private final byte[] mCompressedBlock;
+        /**
+         * Compressed size of block, 0 at the end of the stream
+         */
+        private final int mBlockCompressedSize;
+        /**
+         * Exception thrown (if any) when attempting to read block
+         */
+        private final Exception mException;
+
+        private CompressedBlock(final long blockAddress, final byte[] compressedBlock, final int compressedSize, final Exception exception) {
+            mBlockAddress = blockAddress;
+            mCompressedBlock = compressedBlock;
+            mBlockCompressedSize = compressedSize;
+            mException = exception;
+        }
+
+        /**
+         * @return the buffer holding the compressed block
+         */
+        public byte[] getCompressedBlock() {
+            return mCompressedBlock;
+        }
+
+        /**
+         * @return true if no further blocks follow this one, either because the end of the stream was reached
+         * or because the block could not be read
+         */
+        public boolean isLastBlock() {
+            return mBlockCompressedSize == 0 || mException != null;
+        }
+    }
+
     protected static class DecompressedBlock {
         /**
          * Decompressed block
@@ -23,6 +23,7 @@
  */
 package htsjdk.samtools.util;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.zip.DeflaterFactory;
 
 import java.io.File;
@@ -30,6 +31,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.zip.CRC32;
 import java.util.zip.Deflater;
 
@@ -46,6 +53,13 @@ import java.util.zip.Deflater;
  * number of buffered bytes has not reached threshold.  close(), on the other hand, must be called
  * when done writing in order to force the last gzip block to be written.
  *
+ * If more than one compression thread is requested (see {@link #setDefaultCompressionThreads(int)}), filled blocks
+ * are deflated on a shared pool of background threads and written to the underlying stream in order.  At most
+ * that many blocks are in flight for any one stream, so memory use stays bounded.  {@link #getFilePointer()} remains
+ * exact in this mode, but has to wait for all pending blocks to be written in order to know the address of the
+ * current block; callers that need a file pointer for every record should use
+ * {@link #getProvisionalFilePointer()} and {@link #resolveProvisionalFilePointer(long)} instead.
+ *
  * c.f. http://samtools.sourceforge.net/SAM1.pdf for details of BGZF file format.
  */
 public class BlockCompressedOutputStream
@@ -57,6 +71,13 @@ public class BlockCompressedOutputStream
 
     private static int defaultCompressionLevel = BlockCompressedStreamConstants.DEFAULT_COMPRESSION_LEVEL;
     private static DeflaterFactory defaultDeflaterFactory = new DeflaterFactory();
+    private static int defaultCompressionThreads = Defaults.COMPRESSION_THREADS;
+
+    /**
+     * Pool shared by all streams that deflate blocks in the background.  Each stream limits itself to its own
+     * number of compression threads worth of in-flight blocks.
+     */
+    private static final ExecutorService compressionPool = ThreadPoolUtil.newProcessorDaemonThreadPool();
 
     /**
      * Sets the GZip compression level for subsequent BlockCompressedOutputStream object creation
@@ -90,8 +111,24 @@ public class BlockCompressedOutputStream
         return defaultDeflaterFactory;
     }
 
+    /**
+     * Sets the number of threads used to deflate blocks for subsequent BlockCompressedOutputStream object creation
+     * that do not specify it.  A value of 0 or 1 means blocks are deflated synchronously on the calling thread.
+     * @param compressionThreads non-negative number of threads
+     */
+    public static void setDefaultCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        defaultCompressionThreads = compressionThreads;
+    }
+
+    public static int getDefaultCompressionThreads() {
+        return defaultCompressionThreads;
+    }
+
     private final BinaryCodec codec;
-    private final byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+    private byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
     private int numUncompressedBytes = 0;
     private final byte[] compressedBuffer =
             new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
@@ -116,6 +153,22 @@ public class BlockCompressedOutputStream
     private long mBlockAddress = 0;
     private GZIIndex.GZIIndexer indexer;
 
+    // State used only when blocks are deflated in the background
+    private final int compressionThreads;
+    private final DeflaterFactory deflaterFactory;
+    private final int compressionLevel;
+    private final Deque<Future<DeflateTask>> pendingBlocks = new ArrayDeque<>();
+    private final Deque<DeflateTask> freeTasks = new ArrayDeque<>();
+
+    // Ordinal of the block currently being filled, and number of blocks written to the underlying stream
+    private long blocksSubmitted = 0;
+    private long blocksWritten = 0;
+
+    // Addresses of blocks starting at ordinal blockAddressesStart, kept only once provisional pointers are in use
+    private long[] blockAddresses = null;
+    private long blockAddressesStart = 0;
+    private int numBlockAddresses = 0;
+
     /**
      * Uses default compression level, which is 5 unless changed by setCompressionLevel
      * Note: this constructor uses the default {@link DeflaterFactory}, see {@link #getDefaultDeflaterFactory()}.
@@ -168,10 +221,24 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(path, compressionLevel, deflaterFactory, defaultCompressionThreads);
+    }
+
+    /**
+     * Prepare to compress at the given compression level
+     * @param compressionLevel 1 <= compressionLevel <= 9
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param compressionThreads number of blocks to deflate concurrently; 0 or 1 deflates on the calling thread
+     */
+    public BlockCompressedOutputStream(final Path path, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                                       final int compressionThreads) {
         this.file = path;
         codec = new BinaryCodec(path, true);
         deflater = deflaterFactory.makeDeflater(compressionLevel, true);
         log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.deflaterFactory = deflaterFactory;
+        this.compressionLevel = compressionLevel;
+        this.compressionThreads = validateCompressionThreads(compressionThreads);
     }
 
     /**
@@ -231,6 +298,19 @@ public class BlockCompressedOutputStream
      * @param deflaterFactory custom factory to create deflaters (overrides the default)
      */
     public BlockCompressedOutputStream(final OutputStream os, final Path file, final int compressionLevel, final DeflaterFactory deflaterFactory) {
+        this(os, file, compressionLevel, deflaterFactory, defaultCompressionThreads);
+    }
+
+    /**
+     * Creates the output stream.
+     * @param os output stream to create a BlockCompressedOutputStream from
+     * @param file file to which to write the output or null if not available
+     * @param compressionLevel the compression level (0-9)
+     * @param deflaterFactory custom factory to create deflaters (overrides the default)
+     * @param compressionThreads number of blocks to deflate concurrently; 0 or 1 deflates on the calling thread
+     */
+    public BlockCompressedOutputStream(final OutputStream os, final Path file, final int compressionLevel, final DeflaterFactory deflaterFactory,
+                                       final int compressionThreads) {
         this.file = file;
         codec = new BinaryCodec(os);
         if (file != null) {
@@ -238,6 +318,28 @@ public class BlockCompressedOutputStream
         }
         deflater = deflaterFactory.makeDeflater(compressionLevel, true);
         log.debug("Using deflater: " + deflater.getClass().getSimpleName());
+        this.deflaterFactory = deflaterFactory;
+        this.compressionLevel = compressionLevel;
+        this.compressionThreads = validateCompressionThreads(compressionThreads);
+    }
+
+    private static int validateCompressionThreads(final int compressionThreads) {
+        if (compressionThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of compression threads: " + compressionThreads);
+        }
+        return compressionThreads;
+    }
+
+    /**
+     * @return the number of blocks this stream deflates concurrently; 0 or 1 means blocks are deflated on the
+     * calling thread.
+     */
+    public int getCompressionThreads() {
+        return compressionThreads;
+    }
+
+    private boolean isParallel() {
+        return compressionThreads > 1;
     }
 
     /**
@@ -262,7 +364,7 @@ public class BlockCompressedOutputStream
      * @throws RuntimeException this method is called after output has already been written to the stream.
      */
     public void addIndexer(final OutputStream outputStream) {
-        if (mBlockAddress != 0) {
+        if (blocksSubmitted != 0) {
             throw new RuntimeException("Cannot add gzi indexer if this BlockCompressedOutput stream has already written Gzipped blocks");
         }
         indexer = new GZIIndex.GZIIndexer(outputStream);
@@ -320,6 +422,7 @@ public class BlockCompressedOutputStream
         while (numUncompressedBytes > 0) {
             deflateBlock();
         }
+        writePendingBlocks(0);
         codec.getOutputStream().flush();
     }
 
@@ -364,9 +467,65 @@ public class BlockCompressedOutputStream
      * Lower 16 bits is the byte offset into the uncompressed stream inside the block.
      */
     public long getFilePointer(){
+        // the address of the current block is not known until every block before it has been written
+        writePendingBlocks(0);
         return BlockCompressedFilePointerUtil.makeFilePointer(mBlockAddress, numUncompressedBytes);
     }
 
+    /**
+     * Returns a provisional virtual file pointer for the current position.  It has the same layout as the value
+     * returned by {@link #getFilePointer()}, except that the upper 48 bits hold the ordinal of the current block
+     * rather than its address in the compressed stream.  Unlike {@link #getFilePointer()} this never waits for blocks
+     * that are being deflated in the background.
+     *
+     * Use {@link #resolveProvisionalFilePointer(long)} to convert it to a real virtual file pointer once the blocks
+     * before it have been written.
+     */
+    public long getProvisionalFilePointer() {
+        if (blockAddresses == null) {
+            // start remembering block addresses from the last block whose address is known
+            blockAddresses = new long[16];
+            blockAddressesStart = blocksWritten;
+            numBlockAddresses = 0;
+            addBlockAddress(mBlockAddress);
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(blocksSubmitted, numUncompressedBytes);
+    }
+
+    /**
+     * Converts a pointer returned by {@link #getProvisionalFilePointer()} to a virtual file pointer.
+     * Provisional pointers must be resolved in non-decreasing order, because the addresses of blocks before the
+     * requested one are discarded.
+     *
+     * @return the virtual file pointer, or -1 if the blocks before the pointer have not all been written yet
+     */
+    public long resolveProvisionalFilePointer(final long provisionalFilePointer) {
+        final long ordinal = BlockCompressedFilePointerUtil.getBlockAddress(provisionalFilePointer);
+        if (blockAddresses == null || ordinal < blockAddressesStart) {
+            throw new IllegalArgumentException("Provisional file pointer for block " + ordinal + " can no longer be resolved");
+        }
+        final long index = ordinal - blockAddressesStart;
+        if (index >= numBlockAddresses) {
+            return -1;
+        }
+        final long address = blockAddresses[(int) index];
+        // discard addresses that precede the requested block
+        if (index > 0) {
+            System.arraycopy(blockAddresses, (int) index, blockAddresses, 0, numBlockAddresses - (int) index);
+            numBlockAddresses -= (int) index;
+            blockAddressesStart = ordinal;
+        }
+        return BlockCompressedFilePointerUtil.makeFilePointer(address,
+                BlockCompressedFilePointerUtil.getBlockOffset(provisionalFilePointer));
+    }
+
+    private void addBlockAddress(final long address) {
+        if (numBlockAddresses == blockAddresses.length) {
+            blockAddresses = Arrays.copyOf(blockAddresses, blockAddresses.length * 2);
+        }
+        blockAddresses[numBlockAddresses++] = address;
+    }
+
     @Override
     public long getPosition() {
         return getFilePointer();
@@ -377,53 +536,122 @@ public class BlockCompressedOutputStream
      * If the entire uncompressedBuffer does not fit in the maximum allowed size, reduce the amount
      * of data to be compressed, and slide the excess down in uncompressedBuffer so it can be picked
      * up in the next deflate event.
-     * @return size of gzip block that was written.
+     * In parallel mode the block is instead handed to a background thread, and written once all earlier blocks are.
+     * @return size of gzip block that was written, or 0 if the block was handed to a background thread.
      */
     private int deflateBlock() {
         if (numUncompressedBytes == 0) {
             return 0;
         }
+        if (isParallel()) {
+            submitBlock();
+            return 0;
+        }
         final int bytesToCompress = numUncompressedBytes;
+        final int compressedSize = deflate(deflater, noCompressionDeflater, uncompressedBuffer, bytesToCompress, compressedBuffer);
+        // Data compressed small enough, so write it out.
+        crc32.reset();
+        crc32.update(uncompressedBuffer, 0, bytesToCompress);
+
+        blocksSubmitted++;
+        final int totalBlockSize = writeBlock(compressedBuffer, compressedSize, bytesToCompress, crc32.getValue());
+
+        // Clear out from uncompressedBuffer the data that was written
+        numUncompressedBytes = 0;
+        return totalBlockSize;
+    }
+
+    /**
+     * Hands the data in uncompressedBuffer to a background thread to be deflated, swapping in an unused buffer.
+     * If the maximum number of blocks are already in flight, first waits for the oldest one and writes it.
+     */
+    private void submitBlock() {
+        writePendingBlocks(compressionThreads - 1);
+        final DeflateTask task;
+        if (!freeTasks.isEmpty()) {
+            task = freeTasks.pop();
+        } else {
+            task = new DeflateTask(deflaterFactory.makeDeflater(compressionLevel, true));
+        }
+        final byte[] filledBuffer = uncompressedBuffer;
+        uncompressedBuffer = task.uncompressedBuffer;
+        task.uncompressedBuffer = filledBuffer;
+        task.uncompressedSize = numUncompressedBytes;
+        pendingBlocks.add(compressionPool.submit(task));
+        numUncompressedBytes = 0;
+        blocksSubmitted++;
+    }
+
+    /**
+     * Writes deflated blocks, in order, until no more than maxPending blocks remain in flight.
+     * Blocks that have already been deflated are written as well, since that does not require waiting.
+     */
+    private void writePendingBlocks(final int maxPending) {
+        while (!pendingBlocks.isEmpty() && (pendingBlocks.size() > maxPending || pendingBlocks.peek().isDone())) {
+            final DeflateTask task;
+            try {
+                task = pendingBlocks.poll().get();
+            } catch (final InterruptedException e) {
+                throw new RuntimeException("Interrupted waiting for compression thread", e);
+            } catch (final ExecutionException e) {
+                throw new RuntimeException("Exception deflating block for " + codec.getOutputFileName(), e.getCause());
+            }
+            writeBlock(task.compressedBuffer, task.compressedSize, task.uncompressedSize, task.crc);
+            freeTasks.push(task);
+        }
+    }
+
+    /**
+     * Writes a deflated block to the underlying stream and advances the block address.
+     * @return size of gzip block that was written.
+     */
+    private int writeBlock(final byte[] compressed, final int compressedSize, final int uncompressedSize, final long crc) {
+        final int totalBlockSize = writeGzipBlock(compressed, compressedSize, uncompressedSize, crc);
+
+        // Call out to the indexer if it exists
+        if (indexer != null) {
+            indexer.addGzipBlock(mBlockAddress, uncompressedSize);
+        }
+        mBlockAddress += totalBlockSize;
+        blocksWritten++;
+        if (blockAddresses != null) {
+            addBlockAddress(mBlockAddress);
+        }
+        return totalBlockSize;
+    }
+
+    /**
+     * Deflates the given bytes into compressed.
+     * If they don't all fit in compressed.length, use noCompressionDeflater instead.  This should always fit.
+     * @return the number of compressed bytes
+     */
+    private static int deflate(final Deflater deflater, final Deflater noCompressionDeflater, final byte[] uncompressed,
+                               final int bytesToCompress, final byte[] compressed) {
         // Compress the input
         deflater.reset();
-        deflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+        deflater.setInput(uncompressed, 0, bytesToCompress);
         deflater.finish();
-        int compressedSize = deflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+        int compressedSize = deflater.deflate(compressed, 0, compressed.length);
 
         // If it didn't all fit in compressedBuffer.length, set compression level to NO_COMPRESSION
         // and try again.  This should always fit.
         if (!deflater.finished()) {
             noCompressionDeflater.reset();
-            noCompressionDeflater.setInput(uncompressedBuffer, 0, bytesToCompress);
+            noCompressionDeflater.setInput(uncompressed, 0, bytesToCompress);
             noCompressionDeflater.finish();
-            compressedSize = noCompressionDeflater.deflate(compressedBuffer, 0, compressedBuffer.length);
+            compressedSize = noCompressionDeflater.deflate(compressed, 0, compressed.length);
             if (!noCompressionDeflater.finished()) {
                 throw new IllegalStateException("unpossible");
             }
         }
-        // Data compressed small enough, so write it out.
-        crc32.reset();
-        crc32.update(uncompressedBuffer, 0, bytesToCompress);
-
-        final int totalBlockSize = writeGzipBlock(compressedSize, bytesToCompress, crc32.getValue());
-        assert(bytesToCompress <= numUncompressedBytes);
-
-        // Call out to the indexer if it exists
-        if (indexer != null) {
-            indexer.addGzipBlock(mBlockAddress, numUncompressedBytes);
-        }
-
-        // Clear out from uncompressedBuffer the data that was written
-        numUncompressedBytes = 0;
-        mBlockAddress += totalBlockSize;
-        return totalBlockSize;
+        return compressedSize;
     }
 
     /**
-     * Writes the entire gzip block, assuming the compressed data is stored in compressedBuffer
+     * Writes the entire gzip block, assuming the compressed data is stored in compressed
      * @return  size of gzip block that was written.
      */
-    private int writeGzipBlock(final int compressedSize, final int uncompressedSize, final long crc) {
+    private int writeGzipBlock(final byte[] compressed, final int compressedSize, final int uncompressedSize, final long crc) {
         // Init gzip header
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID1);
         codec.writeByte(BlockCompressedStreamConstants.GZIP_ID2);
@@ -441,9 +669,39 @@ public class BlockCompressedOutputStream
 
         // I don't know why we store block size - 1, but that is what the spec says
         codec.writeShort((short)(totalBlockSize - 1));
-        codec.writeBytes(compressedBuffer, 0, compressedSize);
+        codec.writeBytes(compressed, 0, compressedSize);
         codec.writeInt((int)crc);
         codec.writeInt(uncompressedSize);
         return totalBlockSize;
     }
+
+    /**
+     * A block to be deflated on a background thread, together with the buffers and deflaters needed to do so.
+     * Tasks are reused once their block has been written, so each stream allocates at most compressionThreads of them.
+     */
+    private static final class DeflateTask implements java.util.concurrent.Callable<DeflateTask> {
+        private byte[] uncompressedBuffer = new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE];
+        private int uncompressedSize;
+        private final byte[] compressedBuffer =
+                new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE -
+                        BlockCompressedStreamConstants.BLOCK_HEADER_LENGTH];
+        private int compressedSize;
+        private long crc;
+        private final Deflater deflater;
+        private final Deflater noCompressionDeflater = new Deflater(Deflater.NO_COMPRESSION, true);
+        private final CRC32 crc32 = new CRC32();
+
+        private DeflateTask(final Deflater deflater) {
+            this.deflater = deflater;
+        }
+
+        @Override
+        public DeflateTask call() {
+            compressedSize = deflate(deflater, noCompressionDeflater, uncompressedBuffer, uncompressedSize, compressedBuffer);
+            crc32.reset();
+            crc32.update(uncompressedBuffer, 0, uncompressedSize);
+            crc = crc32.getValue();
+            return this;
+        }
+    }
 }
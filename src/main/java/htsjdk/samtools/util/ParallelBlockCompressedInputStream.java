@@ -0,0 +1,239 @@
+/*
+ * Copyright (c) 2026 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.samtools.util;
+
+import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.zip.InflaterFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Read-ahead implementation of {@link BlockCompressedInputStream} that decompresses several blocks at once.
+ *
+ * Compressed blocks are read from the underlying stream on the calling thread, up to a fixed number of blocks ahead
+ * of the current one, and handed to a shared pool of background threads to be inflated. Decompressed blocks are
+ * delivered in stream order, so virtual file pointers are the same as for {@link BlockCompressedInputStream}.
+ * This is intended for sequential scans of whole files, where decompression rather than I/O is the bottleneck.
+ * After a seek, any read-ahead is discarded.
+ *
+ * Note that this implementation is not synchronized. If multiple threads access an instance concurrently, it must be synchronized externally.
+ */
+public class ParallelBlockCompressedInputStream extends BlockCompressedInputStream {
+    private static final ExecutorService threadpool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
+    private final InflaterFactory inflaterFactory;
+    private final int readAheadBlocks;
+    /**
+     * Read by each task as it starts to inflate its block.
+     */
+    private volatile boolean checkCrcs = false;
+    /**
+     * Blocks (in stream order) that have been read and are being, or have been, decompressed.
+     */
+    private final Deque<Future<InflateTask>> pendingBlocks = new ArrayDeque<>();
+    /**
+     * Tasks whose blocks have been delivered, and whose buffers and gunzippers can be reused.
+     */
+    private final Deque<InflateTask> freeTasks = new ArrayDeque<>();
+    /**
+     * Set once the end of the stream, or an unreadable block, has been read, so that no more blocks are read
+     * until that block has been delivered.
+     */
+    private boolean lastBlockRead = false;
+
+    /**
+     * Note that seek() is not supported if this ctor is used.
+     * @param stream source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by {@link BlockGunzipper}
+     * @param inflateThreads number of blocks to decompress concurrently
+     */
+    public ParallelBlockCompressedInputStream(final InputStream stream, final InflaterFactory inflaterFactory, final int inflateThreads) {
+        super(stream, true, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = getReadAheadBlocks(inflateThreads);
+    }
+
+    /**
+     * Use this ctor if you wish to call seek()
+     * @param file source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by {@link BlockGunzipper}
+     * @param inflateThreads number of blocks to decompress concurrently
+     */
+    public ParallelBlockCompressedInputStream(final File file, final InflaterFactory inflaterFactory, final int inflateThreads)
+            throws IOException {
+        super(file, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = getReadAheadBlocks(inflateThreads);
+    }
+
+    /**
+     * @param strm source of bytes
+     * @param inflaterFactory {@link InflaterFactory} used by {@link BlockGunzipper}
+     * @param inflateThreads number of blocks to decompress concurrently
+     */
+    public ParallelBlockCompressedInputStream(final SeekableStream strm, final InflaterFactory inflaterFactory, final int inflateThreads) {
+        super(strm, inflaterFactory);
+        this.inflaterFactory = inflaterFactory;
+        this.readAheadBlocks = getReadAheadBlocks(inflateThreads);
+    }
+
+    private static int getReadAheadBlocks(final int inflateThreads) {
+        if (inflateThreads < 1) {
+            throw new IllegalArgumentException("Invalid number of inflate threads: " + inflateThreads);
+        }
+        // read twice as many blocks as can be inflated at once, so that the workers stay busy while
+        // the consumer works through the blocks that are already decompressed
+        return 2 * inflateThreads;
+    }
+
+    /**
+     * Sets whether to check the CRC of each block. This applies to the blocks read ahead that are still waiting to be
+     * inflated, but blocks that are already being, or have been, inflated on background threads keep the previous
+     * setting.
+     */
+    @Override
+    public void setCheckCrcs(final boolean check) {
+        super.setCheckCrcs(check);
+        this.checkCrcs = check;
+    }
+
+    @Override
+    protected DecompressedBlock nextBlock(final byte[] bufferAvailableForReuse) {
+        if (pendingBlocks.isEmpty()) {
+            lastBlockRead = false;
+        }
+        while (!lastBlockRead && pendingBlocks.size() < readAheadBlocks) {
+            readAhead();
+        }
+        final InflateTask task = waitFor(pendingBlocks.poll());
+        final DecompressedBlock block = task.result;
+        task.result = null;
+        task.decompressedBuffer = bufferAvailableForReuse;
+        freeTasks.push(task);
+        return block;
+    }
+
+    /**
+     * Reads the next compressed block and schedules it for decompression.
+     */
+    private void readAhead() {
+        final InflateTask task;
+        if (freeTasks.isEmpty()) {
+            task = new InflateTask();
+        } else {
+            task = freeTasks.pop();
+        }
+        task.compressedBlock = readCompressedBlock(task.compressedBuffer);
+        if (task.compressedBlock.isLastBlock()) {
+            // nothing to inflate, and nothing beyond it to read
+            lastBlockRead = true;
+            pendingBlocks.add(CompletableFuture.completedFuture(task.call()));
+        } else {
+            pendingBlocks.add(threadpool.submit(task));
+        }
+    }
+
+    private static InflateTask waitFor(final Future<InflateTask> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for decompression thread", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Exception decompressing block", e.getCause());
+        }
+    }
+
+    @Override
+    protected void prepareForSeek() {
+        flushReadAhead();
+        super.prepareForSeek();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Suppress interrupts while we close.
+        final boolean isInterrupted = Thread.interrupted();
+        try {
+            flushReadAhead();
+            super.close();
+        } finally {
+            if (isInterrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Waits for all scheduled decompression to complete, and discards the results.
+     * Tasks cannot simply be cancelled since their buffers will be reused.
+     */
+    private void flushReadAhead() {
+        while (!pendingBlocks.isEmpty()) {
+            final Future<InflateTask> future = pendingBlocks.poll();
+            try {
+                final InflateTask task = future.get();
+                task.result = null;
+                freeTasks.push(task);
+            } catch (InterruptedException e) {
+                throw new RuntimeException("Interrupted waiting for decompression thread", e);
+            } catch (ExecutionException e) {
+                // the block is being discarded anyway
+            }
+        }
+        lastBlockRead = false;
+    }
+
+    /**
+     * A compressed block to be decompressed on a background thread, together with the buffers and gunzipper needed
+     * to do so. Tasks are reused once their block has been delivered.
+     */
+    private final class InflateTask implements Callable<InflateTask> {
+        private final byte[] compressedBuffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE];
+        private final BlockGunzipper gunzipper = new BlockGunzipper(inflaterFactory);
+        private CompressedBlock compressedBlock;
+        private byte[] decompressedBuffer;
+        private DecompressedBlock result;
+
+        @Override
+        public InflateTask call() {
+            gunzipper.setCheckCrcs(checkCrcs);
+            try {
+                result = inflateCompressedBlock(compressedBlock, gunzipper, decompressedBuffer);
+            } catch (RuntimeException e) {
+                // rethrown on the reading thread when this block is reached
+                result = new DecompressedBlock(0, 0, e);
+            }
+            decompressedBuffer = null;
+            return this;
+        }
+    }
+}
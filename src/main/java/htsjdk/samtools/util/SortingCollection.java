@@ -33,14 +33,20 @@ import java.lang.reflect.Array;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * Collection to which many records can be added.  After all records are added, the collection can be
@@ -50,14 +56,29 @@ import java.util.TreeSet;
  * equal as determined by the codec used to write them to disk and read them back.
  * <p>
  * When iterating over the collection, the number of file handles required is numRecordsInCollection/maxRecordsInRam.
- * If this becomes a limiting factor, a file handle cache could be added.
+ * If this becomes a limiting factor, {@link #setMergeFanIn(int)} can be used to merge files in groups in the
+ * background as they are written, so that no more than the fan-in number of files are read at once.
  * <p>
  * If Snappy DLL is available and snappy.disable system property is not set to true, then Snappy is used
  * to compress temporary files.
+ * <p>
+ * If {@link #setSpillBuffers(int)} is set to a value greater than 0, full buffers of records are sorted and written
+ * to disk on background threads while {@link #add} fills another buffer, rather than on the adding thread.
+ * <p>
+ * Instead of a maximum number of records, a collection may be given a budget of bytes of memory and a
+ * {@link RecordSizeEstimator} (see {@link #newInstance(Class, Codec, Comparator, long, RecordSizeEstimator, Path...)}),
+ * in which case records are spilled when their estimated total size would exceed the budget.  This keeps memory use
+ * predictable when record sizes vary widely, e.g. between short and long reads.
  */
 public class SortingCollection<T> implements Iterable<T> {
     private static final Log log = Log.getInstance(SortingCollection.class);
 
+    /**
+     * Pool shared by all collections that spill or merge records in the background.  Each collection limits itself
+     * to its own number of spill buffers worth of in-flight spills.
+     */
+    private static final ExecutorService spillPool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
     /**
      * Client must implement this class, which defines the way in which records are written to and
      * read from file.
@@ -96,6 +117,31 @@ public class SortingCollection<T> implements Iterable<T> {
         Codec<T> clone();
     }
 
+    /**
+     * Estimates the number of bytes of memory used by a record, so that a collection can be limited to a budget
+     * of bytes rather than a number of records.  Estimates should include the objects and arrays that the record
+     * refers to, but need not be exact; the cost of an estimate should be small compared to the cost of writing
+     * the record with the codec.
+     */
+    @FunctionalInterface
+    public interface RecordSizeEstimator<T> {
+        /**
+         * @param record a record that is being added to the collection
+         * @return the approximate number of bytes of memory used by the record
+         */
+        long estimateSize(T record);
+    }
+
+    /**
+     * Initial buffer size for collections limited by a budget of bytes, whose buffers grow as records are added.
+     */
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    /**
+     * Largest buffer size that can safely be allocated.
+     */
+    private static final int MAX_BUFFER_SIZE = Integer.MAX_VALUE - 8;
+
     /**
      * Directories where files of sorted records go.
      */
@@ -110,21 +156,47 @@ public class SortingCollection<T> implements Iterable<T> {
      * For sorting, both when spilling records to file, and merge sorting.
      */
     private final Comparator<T> comparator;
+    private final Class<T> componentType;
     private final int maxRecordsInRam;
     private int numRecordsInRam = 0;
     private T[] ramRecords;
+
+    /**
+     * If sizeEstimator is non-null, records are spilled when their estimated size would exceed maxBytesInRam,
+     * rather than when maxRecordsInRam records are in memory.
+     */
+    private final long maxBytesInRam;
+    private final RecordSizeEstimator<T> sizeEstimator;
+    private long bytesInRam = 0;
+
+    /**
+     * Number of full buffers that may be spilled in the background at once; 0 means buffers are spilled on the
+     * adding thread.
+     */
+    private int spillBuffers;
+
+    /**
+     * Spills running in the background, in the order they were started, and buffers they have released.
+     */
+    private final Deque<Future<CompletedSpill<T>>> pendingSpills = new ArrayDeque<>();
+    private final Deque<T[]> freeBuffers = new ArrayDeque<>();
     private boolean iterationStarted = false;
     private boolean doneAdding = false;
 
+    /**
+     * Maximum number of files that are merged at once; 0 means all files are merged at once during iteration.
+     */
+    private int mergeFanIn;
+
     /**
      * Set to true when all temp files have been cleaned up
      */
     private boolean cleanedUp = false;
 
     /**
-     * List of files in tmpDir containing sorted records
+     * List of files in tmpDir containing sorted records, in the order in which their records were added
      */
-    private final List<Path> files = new ArrayList<>();
+    private final List<SpillFile> files = new ArrayList<>();
 
     private boolean destructiveIteration = true;
 
@@ -145,6 +217,29 @@ public class SortingCollection<T> implements Iterable<T> {
     private SortingCollection(final Class<T> componentType, final SortingCollection.Codec<T> codec,
                               final Comparator<T> comparator, final int maxRecordsInRam,
                               final boolean printRecordSizeSampling, final Path... tmpDir) {
+        this(componentType, codec, comparator, maxRecordsInRam, 0, null, printRecordSizeSampling, tmpDir);
+    }
+
+    /**
+     * Prepare to accumulate records to be sorted, spilling them when their estimated size exceeds a budget of bytes
+     *
+     * @param componentType   Class of the record to be sorted.  Necessary because of Java generic lameness.
+     * @param codec           For writing records to file and reading them back into RAM
+     * @param comparator      Defines output sort order
+     * @param maxBytesInRam   how many bytes of records to accumulate before spilling to disk
+     * @param sizeEstimator   Estimates the number of bytes used by each record
+     * @param tmpDir          Where to write files of records that will not fit in RAM
+     */
+    private SortingCollection(final Class<T> componentType, final SortingCollection.Codec<T> codec,
+                              final Comparator<T> comparator, final long maxBytesInRam,
+                              final RecordSizeEstimator<T> sizeEstimator, final Path... tmpDir) {
+        this(componentType, codec, comparator, MAX_BUFFER_SIZE, maxBytesInRam, validateSizeEstimator(sizeEstimator, maxBytesInRam), false, tmpDir);
+    }
+
+    private SortingCollection(final Class<T> componentType, final SortingCollection.Codec<T> codec,
+                              final Comparator<T> comparator, final int maxRecordsInRam,
+                              final long maxBytesInRam, final RecordSizeEstimator<T> sizeEstimator,
+                              final boolean printRecordSizeSampling, final Path... tmpDir) {
         if (maxRecordsInRam <= 0) {
             throw new IllegalArgumentException("maxRecordsInRam must be > 0");
         }
@@ -156,13 +251,125 @@ public class SortingCollection<T> implements Iterable<T> {
         this.tmpDirs = tmpDir;
         this.codec = codec;
         this.comparator = comparator;
+        this.componentType = componentType;
         this.maxRecordsInRam = maxRecordsInRam;
-        @SuppressWarnings("unchecked")
-        T[] ramRecords = (T[]) Array.newInstance(componentType, maxRecordsInRam);
-        this.ramRecords = ramRecords;
+        this.maxBytesInRam = maxBytesInRam;
+        this.sizeEstimator = sizeEstimator;
+        this.spillBuffers = validateSpillBuffers(Defaults.SORTING_COLLECTION_SPILL_BUFFERS);
+        this.mergeFanIn = validateMergeFanIn(Defaults.SORTING_COLLECTION_MERGE_FAN_IN);
+        this.ramRecords = newBuffer(getBufferSize());
         this.printRecordSizeSampling = printRecordSizeSampling;
     }
 
+    private static <T> RecordSizeEstimator<T> validateSizeEstimator(final RecordSizeEstimator<T> sizeEstimator, final long maxBytesInRam) {
+        if (sizeEstimator == null) {
+            throw new IllegalArgumentException("sizeEstimator must not be null");
+        }
+        if (maxBytesInRam <= 0) {
+            throw new IllegalArgumentException("maxBytesInRam must be > 0");
+        }
+        return sizeEstimator;
+    }
+
+    private T[] newBuffer(final int size) {
+        @SuppressWarnings("unchecked")
+        T[] buffer = (T[]) Array.newInstance(componentType, size);
+        return buffer;
+    }
+
+    /**
+     * Set the number of full buffers of records that may be sorted and written to disk on background threads
+     * while more records are added.  0 (the default, unless set by {@link Defaults#SORTING_COLLECTION_SPILL_BUFFERS})
+     * means records are spilled on the thread that calls {@link #add}.
+     * <p>
+     * maxRecordsInRam (or the budget of bytes) still bounds the total number of records held in memory, so it is
+     * divided between the buffer being filled and the buffers being spilled.  As a result each spill file holds fewer records, and
+     * more records are spilled overall.  This may only be called before any records have been added.
+     *
+     * @param spillBuffers number of buffers that may be spilled in the background at once
+     */
+    public void setSpillBuffers(final int spillBuffers) {
+        validateSpillBuffers(spillBuffers);
+        if (numRecordsInRam > 0 || !files.isEmpty() || doneAdding || iterationStarted) {
+            throw new IllegalStateException("Cannot set spill buffers after records have been added");
+        }
+        if (spillBuffers != this.spillBuffers) {
+            this.spillBuffers = spillBuffers;
+            this.ramRecords = newBuffer(getBufferSize());
+        }
+    }
+
+    /**
+     * @return the number of full buffers that may be spilled in the background at once; 0 means records are
+     * spilled on the adding thread
+     */
+    public int getSpillBuffers() {
+        return spillBuffers;
+    }
+
+    private static int validateSpillBuffers(final int spillBuffers) {
+        if (spillBuffers < 0) {
+            throw new IllegalArgumentException("spillBuffers must be >= 0");
+        }
+        return spillBuffers;
+    }
+
+    /**
+     * Set the maximum number of files of sorted records that are merged at once.  Whenever this many files of the
+     * same size have been written, they are merged into one larger file on a background thread, and those files are
+     * in turn merged once there are enough of them.  Before iteration any remaining files are merged until no more
+     * than this many are left, so iterating opens at most this many files and reads them sequentially.
+     * 0 (the default, unless set by {@link Defaults#SORTING_COLLECTION_MERGE_FAN_IN}) means that all files are
+     * merged at once during iteration.  This may only be called before any records have been added.
+     *
+     * @param mergeFanIn maximum number of files to merge at once, either 0 or at least 2
+     */
+    public void setMergeFanIn(final int mergeFanIn) {
+        validateMergeFanIn(mergeFanIn);
+        if (numRecordsInRam > 0 || !files.isEmpty() || doneAdding || iterationStarted) {
+            throw new IllegalStateException("Cannot set merge fan-in after records have been added");
+        }
+        this.mergeFanIn = mergeFanIn;
+    }
+
+    /**
+     * @return the maximum number of files that are merged at once; 0 means all files are merged at once
+     */
+    public int getMergeFanIn() {
+        return mergeFanIn;
+    }
+
+    private static int validateMergeFanIn(final int mergeFanIn) {
+        if (mergeFanIn < 0 || mergeFanIn == 1) {
+            throw new IllegalArgumentException("mergeFanIn must be 0 or >= 2");
+        }
+        return mergeFanIn;
+    }
+
+    private int getBufferSize() {
+        if (sizeEstimator != null) {
+            return INITIAL_BUFFER_SIZE;
+        }
+        return Math.max(1, maxRecordsInRam / (spillBuffers + 1));
+    }
+
+    /**
+     * @return the number of bytes of records that may be held in one buffer, when limited by a budget of bytes
+     */
+    private long getBufferBytes() {
+        return Math.max(1, maxBytesInRam / (spillBuffers + 1));
+    }
+
+    /**
+     * @return true if the buffer must be spilled before a record of the given estimated size can be added
+     */
+    private boolean isBufferFull(final long recordSize) {
+        if (sizeEstimator == null) {
+            return numRecordsInRam == ramRecords.length;
+        }
+        return numRecordsInRam == maxRecordsInRam || (numRecordsInRam > 0 && bytesInRam + recordSize > getBufferBytes());
+    }
+
     public void add(final T rec) {
         if (doneAdding) {
             throw new IllegalStateException("Cannot add after calling doneAdding()");
@@ -170,8 +377,10 @@ public class SortingCollection<T> implements Iterable<T> {
         if (iterationStarted) {
             throw new IllegalStateException("Cannot add after calling iterator()");
         }
-        if (numRecordsInRam == maxRecordsInRam) {
+        final long recordSize = sizeEstimator == null ? 0 : sizeEstimator.estimateSize(rec);
+        if (isBufferFull(recordSize)) {
 
+            final int numRecordsSpilled = numRecordsInRam;
             long startMem = 0;
             if (printRecordSizeSampling) {
                 // Garbage collect and get free memory
@@ -179,7 +388,11 @@ public class SortingCollection<T> implements Iterable<T> {
                 startMem = Runtime.getRuntime().freeMemory();
             }
 
-            spillToDisk();
+            if (spillBuffers > 0) {
+                startSpill();
+            } else {
+                spillToDisk();
+            }
 
             if (printRecordSizeSampling) {
                 //Garbage collect again and get free memory
@@ -187,13 +400,18 @@ public class SortingCollection<T> implements Iterable<T> {
                 long endMem = Runtime.getRuntime().freeMemory();
 
                 long usedBytes = endMem - startMem;
-                log.debug(String.format("%d records in ram required approximately %s memory or %s per record. ", maxRecordsInRam,
+                log.debug(String.format("%d records in ram required approximately %s memory or %s per record. ", numRecordsSpilled,
                         StringUtil.humanReadableByteCount(usedBytes),
-                        StringUtil.humanReadableByteCount(usedBytes / maxRecordsInRam)));
+                        StringUtil.humanReadableByteCount(usedBytes / numRecordsSpilled)));
 
             }
         }
+        if (numRecordsInRam == ramRecords.length) {
+            // only buffers of collections limited by a budget of bytes fill up without being spilled
+            ramRecords = Arrays.copyOf(ramRecords, (int) Math.min(MAX_BUFFER_SIZE, 2L * ramRecords.length));
+        }
         ramRecords[numRecordsInRam++] = rec;
+        bytesInRam += recordSize;
     }
 
     /**
@@ -211,16 +429,19 @@ public class SortingCollection<T> implements Iterable<T> {
 
         doneAdding = true;
 
-        if (this.files.isEmpty()) {
+        if (this.files.isEmpty() && this.pendingSpills.isEmpty()) {
             return;
         }
 
         if (this.numRecordsInRam > 0) {
             spillToDisk();
         }
+        finishPendingSpills();
+        finishMerges();
 
         // Facilitate GC
         this.ramRecords = null;
+        this.freeBuffers.clear();
     }
 
     /**
@@ -240,34 +461,231 @@ public class SortingCollection<T> implements Iterable<T> {
     }
 
     /**
-     * Sort the records in memory, write them to a file, and clear the buffer of records in memory.
+     * Sort the records in memory, write them to a file, and clear the buffer of records in memory.  If records
+     * are being spilled in the background, this waits for all the spills to finish.
      */
     public void spillToDisk() {
+        finishPendingSpills();
+        addFile(writeSpillFile(this.ramRecords, this.numRecordsInRam, this.codec));
+        this.numRecordsInRam = 0;
+        this.bytesInRam = 0;
+    }
+
+    /**
+     * Sort and write the records in {@code records[0, numRecords)} to a new temporary file, clearing them from
+     * the array.
+     */
+    private Path writeSpillFile(final T[] records, final int numRecords, final SortingCollection.Codec<T> codec) {
         try {
-            Arrays.parallelSort(this.ramRecords, 0, this.numRecordsInRam, this.comparator);
+            Arrays.parallelSort(records, 0, numRecords, this.comparator);
 
             final Path f = newTempFile();
             try (OutputStream os
                          = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
-                this.codec.setOutputStream(os);
-                for (int i = 0; i < this.numRecordsInRam; ++i) {
-                    this.codec.encode(ramRecords[i]);
+                codec.setOutputStream(os);
+                for (int i = 0; i < numRecords; ++i) {
+                    codec.encode(records[i]);
                     // Facilitate GC
-                    this.ramRecords[i] = null;
+                    records[i] = null;
                 }
                 os.flush();
             } catch (RuntimeIOException ex) {
                 throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
                         ".  Try setting TMP_DIR to a file system with lots of space.", ex);
             }
+            return f;
+        } catch (IOException e) {
+            throw new RuntimeIOException(e);
+        }
+    }
+
+    /**
+     * Hand the full buffer of records to a background thread to be spilled, and continue with an empty buffer.
+     * Waits for the oldest spill to finish if the maximum number of spills are already running.
+     */
+    private void startSpill() {
+        while (!pendingSpills.isEmpty() && (pendingSpills.size() >= spillBuffers || pendingSpills.peekFirst().isDone())) {
+            finishOldestSpill();
+        }
+
+        final T[] records = this.ramRecords;
+        final int numRecords = this.numRecordsInRam;
+        final SortingCollection.Codec<T> spillCodec = this.codec.clone();
+        pendingSpills.addLast(spillPool.submit(() -> new CompletedSpill<>(writeSpillFile(records, numRecords, spillCodec), records)));
+
+        this.ramRecords = freeBuffers.isEmpty() ? newBuffer(records.length) : freeBuffers.pollFirst();
+        this.numRecordsInRam = 0;
+        this.bytesInRam = 0;
+    }
+
+    private void finishPendingSpills() {
+        while (!pendingSpills.isEmpty()) {
+            finishOldestSpill();
+        }
+    }
+
+    // Files are added in the order their spills were started, so that records that compare equal are returned
+    // in the order in which they were added.
+    private void finishOldestSpill() {
+        final Future<CompletedSpill<T>> spill = pendingSpills.pollFirst();
+        final CompletedSpill<T> completedSpill = waitFor(spill, "spilling");
+        addFile(completedSpill.file);
+        freeBuffers.addLast(completedSpill.buffer);
+    }
+
+    private static <R> R waitFor(final Future<R> future, final String task) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for " + task + " thread", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new RuntimeException("Exception " + task + " records", e.getCause());
+        }
+    }
+
+    private static final class CompletedSpill<T> {
+        private final Path file;
+        private final T[] buffer;
+
+        private CompletedSpill(final Path file, final T[] buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+    }
 
-            this.numRecordsInRam = 0;
-            this.files.add(f);
+    /**
+     * Register a newly written file of sorted records, and start any merges that it completes.
+     */
+    private void addFile(final Path file) {
+        files.add(new SpillFile(file, 0));
+        startMerges();
+    }
+
+    /**
+     * Start a background merge for each run of mergeFanIn adjacent files of the same level whose merges, if any,
+     * have finished.  Only adjacent files are merged, and the merged file takes their place, so that records that
+     * compare equal are still returned in the order in which they were added.
+     */
+    private void startMerges() {
+        if (mergeFanIn == 0) {
+            return;
+        }
+        for (final SpillFile file : files) {
+            if (file.merge != null && file.merge.isDone()) {
+                file.finishMerge();
+            }
+        }
+        int runStart = 0;
+        for (int i = 0; i < files.size(); i++) {
+            final SpillFile file = files.get(i);
+            if (!file.isReady() || file.level != files.get(runStart).level) {
+                runStart = file.isReady() ? i : i + 1;
+            } else if (i - runStart + 1 == mergeFanIn) {
+                final List<SpillFile> group = files.subList(runStart, i + 1);
+                final List<Path> inputs = new ArrayList<>(group.size());
+                group.forEach(f -> inputs.add(f.path));
+                final SortingCollection.Codec<T> mergeCodec = this.codec.clone();
+                final SpillFile merged = new SpillFile(spillPool.submit(() -> mergeFiles(inputs, mergeCodec)), inputs, file.level + 1);
+                group.clear();
+                files.add(runStart, merged);
+                i = runStart;
+                runStart = i + 1;
+            }
+        }
+    }
+
+    /**
+     * Wait for background merges to finish, and then merge the most recently written files on this thread until
+     * no more than mergeFanIn files remain.
+     */
+    private void finishMerges() {
+        if (mergeFanIn == 0) {
+            return;
+        }
+        for (final SpillFile file : files) {
+            if (file.merge != null) {
+                file.finishMerge();
+            }
+        }
+        while (files.size() > mergeFanIn) {
+            // the most recently written files are the smallest, and merging this many leaves exactly mergeFanIn files
+            final List<SpillFile> group = files.subList(files.size() - Math.min(mergeFanIn, files.size() - mergeFanIn + 1), files.size());
+            final List<Path> inputs = new ArrayList<>(group.size());
+            group.forEach(f -> inputs.add(f.path));
+            final int level = group.get(0).level + 1;
+            group.clear();
+            files.add(new SpillFile(mergeFiles(inputs, this.codec.clone()), level));
+        }
+    }
+
+    /**
+     * Merge files of sorted records, in the order in which their records were added, into a new temporary file,
+     * and delete them.
+     */
+    private Path mergeFiles(final List<Path> inputs, final SortingCollection.Codec<T> codec) {
+        try {
+            final Path f = newTempFile();
+            try (MergingIterator it = new MergingIterator(inputs, Defaults.BUFFER_SIZE, codec);
+                 OutputStream os = tempStreamFactory.wrapTempOutputStream(Files.newOutputStream(f), Defaults.BUFFER_SIZE)) {
+                codec.setOutputStream(os);
+                while (it.hasNext()) {
+                    codec.encode(it.next());
+                }
+                os.flush();
+            } catch (RuntimeIOException ex) {
+                IOUtil.deletePath(f);
+                throw new RuntimeIOException("Problem writing temporary file " + f.toUri() +
+                        ".  Try setting TMP_DIR to a file system with lots of space.", ex);
+            }
+            IOUtil.deletePaths(inputs);
+            return f;
         } catch (IOException e) {
             throw new RuntimeIOException(e);
         }
     }
 
+    /**
+     * A file of sorted records, or a file being merged from several of them in the background.
+     */
+    private static final class SpillFile {
+        /** 0 for a file of spilled records, or one more than the level of the files merged into this one. */
+        private final int level;
+        private Path path;
+        private Future<Path> merge;
+        private List<Path> mergeInputs;
+
+        private SpillFile(final Path path, final int level) {
+            this.path = path;
+            this.level = level;
+        }
+
+        private SpillFile(final Future<Path> merge, final List<Path> mergeInputs, final int level) {
+            this.merge = merge;
+            this.mergeInputs = mergeInputs;
+            this.level = level;
+        }
+
+        private boolean isReady() {
+            return path != null;
+        }
+
+        private void finishMerge() {
+            path = waitFor(merge, "merging");
+            merge = null;
+            mergeInputs = null;
+        }
+
+        /**
+         * @return the files that hold this file's records
+         */
+        private List<Path> getPaths() {
+            return isReady() ? Collections.singletonList(path) : mergeInputs;
+        }
+    }
+
 
     /**
      * Creates a new tmp file on one of the available temp filesystems, registers it for deletion
@@ -297,6 +715,14 @@ public class SortingCollection<T> implements Iterable<T> {
         }
     }
 
+    private List<Path> getFilePaths() {
+        final List<Path> paths = new ArrayList<>(files.size());
+        for (final SpillFile file : files) {
+            paths.add(file.path);
+        }
+        return paths;
+    }
+
     /**
      * Delete any temporary files.  After this method is called, iterator() may not be called.
      */
@@ -304,7 +730,24 @@ public class SortingCollection<T> implements Iterable<T> {
         this.iterationStarted = true;
         this.cleanedUp = true;
 
-        IOUtil.deletePaths(this.files);
+        // let any background spills and merges finish so that their files are deleted too
+        while (!this.pendingSpills.isEmpty()) {
+            try {
+                finishOldestSpill();
+            } catch (final RuntimeException e) {
+                log.warn(e, "Exception spilling records");
+            }
+        }
+        for (final SpillFile file : this.files) {
+            if (file.merge != null) {
+                try {
+                    file.finishMerge();
+                } catch (final RuntimeException e) {
+                    log.warn(e, "Exception merging records");
+                }
+            }
+            IOUtil.deletePaths(file.getPaths());
+        }
     }
 
     /**
@@ -444,6 +887,28 @@ public class SortingCollection<T> implements Iterable<T> {
                 tmpDirs.toArray(new Path[tmpDirs.size()]));
     }
 
+    /**
+     * Create a collection that spills records to disk when their estimated size would exceed a budget of bytes,
+     * rather than after a fixed number of records.  The budget is divided between buffers in the same way as
+     * maxRecordsInRAM when {@link #setSpillBuffers(int)} is used.
+     *
+     * @param componentType   Class of the record to be sorted.  Necessary because of Java generic lameness.
+     * @param codec           For writing records to file and reading them back into RAM
+     * @param comparator      Defines output sort order
+     * @param maxBytesInRAM   how many bytes of records, as estimated by sizeEstimator, to accumulate in memory
+     *                        before spilling to disk
+     * @param sizeEstimator   Estimates the number of bytes of memory used by each record
+     * @param tmpDir          Where to write files of records that will not fit in RAM
+     */
+    public static <T> SortingCollection<T> newInstance(final Class<T> componentType,
+                                                       final SortingCollection.Codec<T> codec,
+                                                       final Comparator<T> comparator,
+                                                       final long maxBytesInRAM,
+                                                       final RecordSizeEstimator<T> sizeEstimator,
+                                                       final Path... tmpDir) {
+        return new SortingCollection<>(componentType, codec, comparator, maxBytesInRAM, sizeEstimator, tmpDir);
+    }
+
     /**
      * For iteration when number of records added is less than the threshold for spilling to disk.
      */
@@ -503,12 +968,21 @@ public class SortingCollection<T> implements Iterable<T> {
         private final TreeSet<PeekFileRecordIterator> queue;
 
         MergingIterator() {
+            this(SortingCollection.this.getFilePaths(), -1, SortingCollection.this.codec);
+        }
+
+        /**
+         * @param files      files to merge, in the order in which their records were added
+         * @param bufferSize buffer size for reading each file, or -1 to choose one based on available memory
+         * @param codec      prototype of the codecs used to read the files
+         */
+        MergingIterator(final List<Path> files, final int bufferSize, final SortingCollection.Codec<T> codec) {
             this.queue = new TreeSet<>(new PeekFileRecordIteratorComparator());
             int n = 0;
             log.debug(String.format("Creating merging iterator from %d files", files.size()));
-            int suggestedBufferSize = checkMemoryAndAdjustBuffer(files.size());
+            int suggestedBufferSize = bufferSize < 0 ? checkMemoryAndAdjustBuffer(files.size()) : bufferSize;
             for (final Path f : files) {
-                final FileRecordIterator it = new FileRecordIterator(f, suggestedBufferSize);
+                final FileRecordIterator it = new FileRecordIterator(f, suggestedBufferSize, codec);
                 if (it.hasNext()) {
                     this.queue.add(new PeekFileRecordIterator(it, n++));
                 } else {
@@ -595,10 +1069,14 @@ public class SortingCollection<T> implements Iterable<T> {
         private T currentRecord = null;
 
         FileRecordIterator(final Path file, final int bufferSize) {
+            this(file, bufferSize, SortingCollection.this.codec);
+        }
+
+        FileRecordIterator(final Path file, final int bufferSize, final Codec<T> codec) {
             this.file = file;
             try {
                 this.is = Files.newInputStream(file);
-                this.codec = SortingCollection.this.codec.clone();
+                this.codec = codec.clone();
                 this.codec.setInputStream(tempStreamFactory.wrapTempInputStream(this.is, bufferSize));
                 advance();
             } catch (IOException e) {
@@ -0,0 +1,51 @@
+package htsjdk.samtools.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Factory methods for the shared background thread pools used within htsjdk.
+ *
+ * The threads of these pools are daemon threads, so that a pool held in a static field does not prevent the JVM
+ * from exiting.
+ */
+public final class ThreadPoolUtil {
+
+    private ThreadPoolUtil() {
+    }
+
+    /**
+     * @return a {@link ThreadFactory} that creates daemon threads, otherwise as {@link Executors#defaultThreadFactory()}
+     */
+    public static ThreadFactory daemonThreadFactory() {
+        return r -> {
+            final Thread t = Executors.defaultThreadFactory().newThread(r);
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * @param nThreads the number of threads in the pool
+     * @return a fixed size pool of daemon threads, as {@link Executors#newFixedThreadPool(int)}
+     */
+    public static ExecutorService newFixedDaemonThreadPool(final int nThreads) {
+        return Executors.newFixedThreadPool(nThreads, daemonThreadFactory());
+    }
+
+    /**
+     * @return a fixed size pool with a daemon thread per available processor, for CPU bound work
+     */
+    public static ExecutorService newProcessorDaemonThreadPool() {
+        return newFixedDaemonThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return a pool of daemon threads that grows as needed, as {@link Executors#newCachedThreadPool()}, for work
+     * that mostly waits on I/O
+     */
+    public static ExecutorService newCachedDaemonThreadPool() {
+        return Executors.newCachedThreadPool(daemonThreadFactory());
+    }
+}
@@ -1,12 +1,17 @@
 package htsjdk.samtools.util.htsget;
 
+import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.samtools.util.ThreadPoolUtil;
 
 import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -37,6 +42,8 @@ import java.util.stream.Collectors;
  * }
  */
 public class HtsgetResponse {
+    private static final ExecutorService downloadPool = ThreadPoolUtil.newCachedDaemonThreadPool();
+
     public static class Block {
         private final URI uri;
 
@@ -207,4 +214,112 @@ public class HtsgetResponse {
             }
         });
     }
+
+    /**
+     * Generates an InputStream over this response's data from the concatenation of the data of each of the response's
+     * data blocks, downloading up to concurrentBlocks blocks at once on background threads
+     * <p>
+     * Blocks are read in order, but each block that is downloaded ahead of the one being read is held in memory until
+     * it is reached, so this should only be used with servers that split their responses into blocks of moderate size
+     *
+     * @param concurrentBlocks number of blocks to download at once; 0 or 1 means blocks are downloaded lazily, one
+     *                         after another, as by {@link #getDataStream()}
+     * @return InputStream over this response's data
+     */
+    public InputStream getDataStream(final int concurrentBlocks) {
+        return concurrentBlocks > 1
+            ? new ConcurrentBlocksInputStream(this.blocks.iterator(), concurrentBlocks)
+            : this.getDataStream();
+    }
+
+    /**
+     * InputStream over the data of a sequence of blocks, a fixed number of which are downloaded concurrently ahead
+     * of the one being read
+     */
+    private static class ConcurrentBlocksInputStream extends InputStream {
+        private final Iterator<Block> blocks;
+        private final int concurrentBlocks;
+        private final Deque<Future<byte[]>> pendingBlocks = new ArrayDeque<>();
+        private InputStream currentBlock = new ByteArrayInputStream(new byte[0]);
+
+        ConcurrentBlocksInputStream(final Iterator<Block> blocks, final int concurrentBlocks) {
+            this.blocks = blocks;
+            this.concurrentBlocks = concurrentBlocks;
+            this.downloadAhead();
+        }
+
+        private void downloadAhead() {
+            while (this.pendingBlocks.size() < this.concurrentBlocks && this.blocks.hasNext()) {
+                final Block block = this.blocks.next();
+                this.pendingBlocks.add(downloadPool.submit(() -> {
+                    try (final InputStream data = block.getData()) {
+                        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+                        IOUtil.copyStream(data, out);
+                        return out.toByteArray();
+                    }
+                }));
+            }
+        }
+
+        /**
+         * Moves on to the next block, waiting for it to be downloaded if need be
+         *
+         * @return false if there are no more blocks
+         */
+        private boolean nextBlock() throws IOException {
+            final Future<byte[]> next = this.pendingBlocks.poll();
+            if (next == null) {
+                return false;
+            }
+            try {
+                this.currentBlock = new ByteArrayInputStream(next.get());
+            } catch (final InterruptedException e) {
+                throw new InterruptedIOException("Interrupted waiting for htsget data block");
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeIOException("Could not retrieve data from block", e.getCause());
+            }
+            this.downloadAhead();
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b;
+            while ((b = this.currentBlock.read()) < 0) {
+                if (!this.nextBlock()) {
+                    return -1;
+                }
+            }
+            return b;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n;
+            while ((n = this.currentBlock.read(b, off, len)) < 0) {
+                if (!this.nextBlock()) {
+                    return -1;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return this.currentBlock.available();
+        }
+
+        @Override
+        public void close() {
+            this.pendingBlocks.forEach(f -> f.cancel(true));
+            this.pendingBlocks.clear();
+            this.currentBlock = new ByteArrayInputStream(new byte[0]);
+        }
+    }
 }
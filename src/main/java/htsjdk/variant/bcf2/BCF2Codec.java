@@ -25,6 +25,7 @@
 
 package htsjdk.variant.bcf2;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.BinaryFeatureCodec;
 import htsjdk.tribble.Feature;
@@ -33,7 +34,9 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.tribble.readers.*;
 import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
+import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.VariantContextBuilder;
@@ -48,6 +51,7 @@ import htsjdk.variant.vcf.VCFHeaderLineType;
 import java.io.*;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -102,6 +106,21 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
      */
     private GenotypeBuilder[] builders = null;
 
+    /**
+     * If true, genotypes are decoded into GenotypeColumns rather than a Genotype object per sample
+     */
+    private boolean columnarGenotypes = Defaults.COLUMNAR_GENOTYPES;
+
+    /**
+     * If true, records are returned as BCF2VariantContexts holding their raw blocks
+     */
+    private boolean retainRawRecords = Defaults.BCF_RETAIN_RAW_RECORDS;
+
+    /**
+     * A snapshot of contigNames for the BCF2VariantContexts, which must not change when another header is read
+     */
+    private List<String> rawRecordContigs = null;
+
     // for error handling
     private int recordNo = 0;
     private int pos = 0;
@@ -128,12 +147,16 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
             final int genotypeBlockSize = decoder.readBlockSize(inputStream);
 
             decoder.readNextBlock(sitesBlockSize, inputStream);
+            final byte[] sitesBlock = decoder.getRecordBytes();
             decodeSiteLoc(builder);
             final SitesInfoForDecoding info = decodeSitesExtendedInfo(builder);
 
             decoder.readNextBlock(genotypeBlockSize, inputStream);
             createLazyGenotypesDecoder(info, builder);
-            return builder.fullyDecoded(true).make();
+            final VariantContext vc = builder.fullyDecoded(true).make();
+            return retainRawRecords
+                    ? new BCF2VariantContext(vc, header, dictionary, rawRecordContigs, sitesBlock, decoder.getRecordBytes())
+                    : vc;
         } catch ( IOException e ) {
             throw new TribbleException("Failed to read BCF file", e);
         }
@@ -211,6 +234,8 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
             error("Didn't find any contig lines in BCF2 file header");
         }
 
+        rawRecordContigs = Collections.unmodifiableList(new ArrayList<>(contigNames));
+
         // create the string dictionary
         dictionary = parseDictionary(header);
 
@@ -433,7 +458,8 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
                                              final VariantContextBuilder builder ) {
         if (siteInfo.nSamples > 0) {
             final LazyGenotypesContext.LazyParser lazyParser =
-                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields, builders);
+                    new BCF2LazyGenotypesDecoder(this, siteInfo.alleles, siteInfo.nSamples, siteInfo.nFormatFields,
+                            columnarGenotypes ? null : builders);
 
             final LazyData lazyData = new LazyData(header, siteInfo.nFormatFields, decoder.getRecordBytes());
             final LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, lazyData, header.getNGenotypeSamples());
@@ -494,6 +520,30 @@ public class BCF2Codec extends BinaryFeatureCodec<VariantContext> {
         return header;
     }
 
+    /**
+     * Decode genotypes into {@link GenotypeColumns}, presented as one lightweight {@link Genotype} view per sample, rather
+     * than into a {@link Genotype} object with its own attribute map and allele list per sample. The columns can be read
+     * directly through {@link LazyGenotypesContext#getGenotypeColumns()}. The default is taken from
+     * {@link Defaults#COLUMNAR_GENOTYPES}.
+     *
+     * @param columnarGenotypes whether to decode genotypes into columns
+     */
+    public void setColumnarGenotypes(final boolean columnarGenotypes) {
+        this.columnarGenotypes = columnarGenotypes;
+    }
+
+    /**
+     * Return each record as a {@link BCF2VariantContext} holding its raw sites and genotypes blocks, which a BCF2
+     * writer can then copy verbatim if the record is written unchanged to an output with the same dictionaries and
+     * samples. This keeps the blocks of each record in memory for as long as the record itself. The default is
+     * taken from {@link Defaults#BCF_RETAIN_RAW_RECORDS}.
+     *
+     * @param retainRawRecords whether to keep the raw blocks of each record
+     */
+    public void setRetainRawRecords(final boolean retainRawRecords) {
+        this.retainRawRecords = retainRawRecords;
+    }
+
     protected BCF2GenotypeFieldDecoders.Decoder getGenotypeFieldDecoder(final String field) {
         return gtFieldDecoders.getDecoder(field);
     }
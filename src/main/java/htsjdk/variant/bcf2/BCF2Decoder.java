@@ -281,6 +281,51 @@ public final class BCF2Decoder {
         return decodeIntArray(size, type, null);
     }
 
+    /**
+     * Bulk reader for the values of a FORMAT field, which are stored as one vector of size values per
+     * sample, one sample after another.  Reads all nSamples * size values straight from the record bytes
+     * into a single int[], so that value i of sample s ends up at [s * size + i].
+     *
+     * Each value is returned exactly as {@link #decodeInt(BCF2Type)} would return it: MISSING values are
+     * left as type.getMissingBytes(), and FLOAT values are left as their raw bits.
+     *
+     * @param maybeDest if not null and large enough, the values are stored in this array instead of a new one
+     * @return the values, in maybeDest or a freshly allocated array
+     */
+    public final int[] decodeIntVectors(final BCF2Type type, final int size, final int nSamples, final int[] maybeDest) {
+        final int nValues = size * nSamples;
+        final int nBytes = nValues * type.getSizeInBytes();
+        final int offset = recordBytes.length - recordStream.available();
+        if ( nBytes > recordStream.available() )
+            throw new TribbleException(String.format("Failed to decode %d values of type %s: only %d bytes remain in the record",
+                    nValues, type, recordStream.available()));
+
+        final int[] ints = maybeDest != null && maybeDest.length >= nValues ? maybeDest : new int[nValues];
+        final byte[] bytes = recordBytes;
+        switch ( type ) {
+            case INT8:
+            case CHAR:
+                for ( int i = 0; i < nValues; i++ )
+                    ints[i] = bytes[offset + i];
+                break;
+            case INT16:
+                for ( int i = 0, p = offset; i < nValues; i++, p += 2 )
+                    ints[i] = (short)((bytes[p + 1] & 0xFF) << 8 | (bytes[p] & 0xFF));
+                break;
+            case INT32:
+            case FLOAT:
+                for ( int i = 0, p = offset; i < nValues; i++, p += 4 )
+                    ints[i] = (bytes[p + 3] & 0xFF) << 24 | (bytes[p + 2] & 0xFF) << 16 | (bytes[p + 1] & 0xFF) << 8 | (bytes[p] & 0xFF);
+                break;
+            default:
+                if ( nValues > 0 )
+                    throw new TribbleException("BCF2 codec doesn't know how to decode type " + type);
+        }
+
+        recordStream.skip(nBytes);
+        return ints;
+    }
+
     private double rawFloatToFloat(final int rawFloat) {
         return (double)Float.intBitsToFloat(rawFloat);
     }
@@ -29,10 +29,13 @@ import htsjdk.tribble.TribbleException;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
 import htsjdk.variant.variantcontext.GenotypeBuilder;
+import htsjdk.variant.variantcontext.GenotypeColumns;
 import htsjdk.variant.variantcontext.LazyGenotypesContext;
+import htsjdk.variant.vcf.VCFConstants;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 
 /**
@@ -49,6 +52,7 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
     private final List<Allele> siteAlleles;
     private final int nSamples;
     private final int nFields;
+    // null if decoding into GenotypeColumns
     private final GenotypeBuilder[] builders;
 
     BCF2LazyGenotypesDecoder(final BCF2Codec codec, final List<Allele> alleles, final int nSamples,
@@ -67,6 +71,9 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
             // load our byte[] data into the decoder
             final BCF2Decoder decoder = new BCF2Decoder(((BCF2Codec.LazyData)data).bytes);
 
+            if ( builders == null )
+                return parseIntoColumns(decoder);
+
             for ( int i = 0; i < nSamples; i++ )
                 builders[i].reset(true);
 
@@ -96,4 +103,142 @@ public class BCF2LazyGenotypesDecoder implements LazyGenotypesContext.LazyParser
             throw new TribbleException("Unexpected IOException parsing already read genotypes data block", e);
         }
     }
+
+    /**
+     * Decode the genotypes into columns, giving each field the same meaning as the decoders in
+     * {@link BCF2GenotypeFieldDecoders} give it when filling in a GenotypeBuilder per sample.
+     *
+     * Integer and float fields are read for all samples at once, straight from the record bytes into the arrays
+     * that back the columns, so no object is created per sample or per value.
+     */
+    private LazyGenotypesContext.LazyData parseIntoColumns(final BCF2Decoder decoder) throws IOException {
+        final GenotypeColumns columns = new GenotypeColumns(codec.getHeader().getGenotypeSamples(), siteAlleles);
+        final int[] scratch = new int[nSamples];
+
+        for ( int i = 0; i < nFields; i++ ) {
+            // get the field name
+            final int offset = (Integer) decoder.decodeTypedValue();
+            final String field = codec.getDictionaryString(offset);
+
+            // the type of each element
+            final byte typeDescriptor = decoder.readTypeDescriptor();
+            final int numElements = decoder.decodeNumberOfElements(typeDescriptor);
+            final BCF2Type type = BCF2Utils.decodeType(typeDescriptor);
+
+            try {
+                switch ( field ) {
+                    case VCFConstants.GENOTYPE_KEY:
+                        decodeGenotypes(decoder, type, numElements, columns);
+                        break;
+                    case VCFConstants.GENOTYPE_FILTER_KEY:
+                        for ( int sample = 0; sample < nSamples; sample++ )
+                            columns.setFilters(sample, (String) decoder.decodeTypedValue(typeDescriptor, numElements));
+                        break;
+                    case VCFConstants.DEPTH_KEY:
+                    case VCFConstants.GENOTYPE_QUALITY_KEY:
+                        // a single value per sample, whatever the number of elements, as read by decodeInt
+                        final int[] values = decoder.decodeIntVectors(type, 1, nSamples, scratch);
+                        final boolean isDP = field.equals(VCFConstants.DEPTH_KEY);
+                        for ( int sample = 0; sample < nSamples; sample++ ) {
+                            final int value = values[sample] == type.getMissingBytes() ? -1 : values[sample];
+                            if ( isDP ) columns.setDP(sample, value);
+                            else columns.setGQ(sample, value);
+                        }
+                        break;
+                    case VCFConstants.GENOTYPE_ALLELE_DEPTHS:
+                    case VCFConstants.GENOTYPE_PL_KEY:
+                        final int[] vectors = decoder.decodeIntVectors(type, numElements, nSamples, null);
+                        final int[] counts = countUntilMissing(vectors, numElements, type);
+                        if ( field.equals(VCFConstants.GENOTYPE_ALLELE_DEPTHS) ) columns.setADs(vectors, numElements, counts);
+                        else columns.setPLs(vectors, numElements, counts);
+                        break;
+                    default:
+                        if ( type.isIntegerType() ) {
+                            final int[] ints = decoder.decodeIntVectors(type, numElements, nSamples, null);
+                            columns.setIntAttribute(field, ints, numElements, removeMissing(ints, numElements, type));
+                        } else if ( type == BCF2Type.FLOAT ) {
+                            final int[] bits = decoder.decodeIntVectors(type, numElements, nSamples, null);
+                            final int[] floatCounts = removeMissing(bits, numElements, type);
+                            final float[] floats = new float[bits.length];
+                            for ( int j = 0; j < bits.length; j++ )
+                                floats[j] = Float.intBitsToFloat(bits[j]);
+                            columns.setFloatAttribute(field, floats, numElements, floatCounts);
+                        } else {
+                            for ( int sample = 0; sample < nSamples; sample++ ) {
+                                final Object value = decoder.decodeTypedValue(typeDescriptor, numElements);
+                                if ( value != null ) // don't add missing values
+                                    columns.setAttribute(sample, field, value);
+                            }
+                        }
+                }
+            } catch ( ClassCastException e ) {
+                throw new TribbleException("BUG: expected encoding of field " + field
+                        + " inconsistent with the value observed in the decoded value");
+            }
+        }
+
+        return new LazyGenotypesContext.LazyData(columns, codec.getHeader().getSampleNamesInOrder(), codec.getHeader().getSampleNameToOffset());
+    }
+
+    /**
+     * Decode the GT field of all samples, with the same meaning as BCF2GenotypeFieldDecoders.GTDecoder gives it
+     */
+    private void decodeGenotypes(final BCF2Decoder decoder, final BCF2Type type, final int numElements, final GenotypeColumns columns) {
+        final int[] encoded = decoder.decodeIntVectors(type, numElements, nSamples, null);
+        final int[] ploidies = countUntilMissing(encoded, numElements, type);
+        final BitSet phased = new BitSet(nSamples);
+
+        // the fast path of the GT decoder takes the phase of a biallelic diploid genotype from its second allele,
+        // even if that is missing, and otherwise the phase is taken from the second allele the sample has, if any
+        final boolean biallelicDiploid = siteAlleles.size() == 2 && numElements == 2;
+        for ( int sample = 0, start = 0; sample < nSamples; sample++, start += numElements ) {
+            final int ploidy = ploidies[sample];
+            if ( biallelicDiploid )
+                phased.set(sample, (encoded[start + 1] & 0x01) == 1);
+            else if ( ploidy > 0 )
+                phased.set(sample, (encoded[start + Math.min(ploidy, 2) - 1] & 0x01) == 1);
+
+            // downshift to remove phase, and offset so that the reference allele is 0 and a no-call is -1
+            for ( int j = start; j < start + ploidy; j++ )
+                encoded[j] = (encoded[j] >> 1) - 1;
+        }
+        columns.setGenotypes(encoded, numElements, ploidies, phased);
+    }
+
+    /**
+     * Count the values of each sample before its first missing value, as {@link BCF2Decoder#decodeIntArray} keeps them
+     *
+     * @return the count for each sample, or -1 for a sample with no values
+     */
+    private int[] countUntilMissing(final int[] values, final int width, final BCF2Type type) {
+        final int missing = type.getMissingBytes();
+        final int[] counts = new int[nSamples];
+        for ( int sample = 0, start = 0; sample < nSamples; sample++, start += width ) {
+            int count = 0;
+            while ( count < width && values[start + count] != missing )
+                count++;
+            counts[sample] = count == 0 ? -1 : count;
+        }
+        return counts;
+    }
+
+    /**
+     * Move the non-missing values of each sample to the start of its vector, as {@link BCF2Decoder#decodeTypedValue}
+     * prunes missing values
+     *
+     * @return the number of non-missing values of each sample, or -1 for a sample with none
+     */
+    private int[] removeMissing(final int[] values, final int width, final BCF2Type type) {
+        final int missing = type.getMissingBytes();
+        final int[] counts = new int[nSamples];
+        for ( int sample = 0, start = 0; sample < nSamples; sample++, start += width ) {
+            int count = 0;
+            for ( int j = start; j < start + width; j++ ) {
+                if ( values[j] != missing )
+                    values[start + count++] = values[j];
+            }
+            counts[sample] = count == 0 ? -1 : count;
+        }
+        return counts;
+    }
 }
@@ -0,0 +1,69 @@
+package htsjdk.variant.bcf2;
+
+import htsjdk.variant.variantcontext.VariantContext;
+import htsjdk.variant.vcf.VCFHeader;
+
+import java.util.List;
+
+/**
+ * A {@link VariantContext} decoded by {@link BCF2Codec} that keeps the raw sites and genotypes blocks of its record,
+ * so that a BCF2 writer can copy them verbatim instead of encoding the record again.
+ *
+ * The blocks encode strings and contigs as offsets into the dictionaries of the file they were read from, so they can
+ * only be copied to an output whose dictionaries and samples are the same. A VariantContext built from this one, for
+ * example with a VariantContextBuilder, is a plain VariantContext, so any change to a record drops its raw blocks.
+ */
+public final class BCF2VariantContext extends VariantContext {
+    public static final long serialVersionUID = 1L;
+
+    private final VCFHeader sourceHeader;
+    private final List<String> sourceDictionary;
+    private final List<String> sourceContigs;
+    private final byte[] sitesBlock;
+    private final byte[] genotypesBlock;
+
+    BCF2VariantContext(final VariantContext decoded, final VCFHeader sourceHeader, final List<String> sourceDictionary,
+                       final List<String> sourceContigs, final byte[] sitesBlock, final byte[] genotypesBlock) {
+        super(decoded);
+        this.sourceHeader = sourceHeader;
+        this.sourceDictionary = sourceDictionary;
+        this.sourceContigs = sourceContigs;
+        this.sitesBlock = sitesBlock;
+        this.genotypesBlock = genotypesBlock;
+    }
+
+    /**
+     * @return the header of the file the record was read from
+     */
+    public VCFHeader getSourceHeader() {
+        return sourceHeader;
+    }
+
+    /**
+     * @return the string dictionary the offsets in the raw blocks refer to
+     */
+    public List<String> getSourceDictionary() {
+        return sourceDictionary;
+    }
+
+    /**
+     * @return the contigs, in order, the contig offset in the sites block refers to
+     */
+    public List<String> getSourceContigs() {
+        return sourceContigs;
+    }
+
+    /**
+     * @return the raw sites block of the record; must not be modified
+     */
+    public byte[] getSitesBlock() {
+        return sitesBlock;
+    }
+
+    /**
+     * @return the raw genotypes block of the record; must not be modified
+     */
+    public byte[] getGenotypesBlock() {
+        return genotypesBlock;
+    }
+}
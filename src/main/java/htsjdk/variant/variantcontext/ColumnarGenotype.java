@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2026 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link Genotype} that is a view of one sample of a {@link GenotypeColumns}, holding nothing but its sample index.
+ *
+ * {@link #getAD()} and {@link #getPL()} return a new copy of the values on each call, and
+ * {@link #getExtendedAttributes()} a new map; use the columns directly to read many values without allocation.
+ */
+final class ColumnarGenotype extends Genotype {
+    public static final long serialVersionUID = 1L;
+
+    private final GenotypeColumns columns;
+    private final int sample;
+
+    ColumnarGenotype(final GenotypeColumns columns, final int sample) {
+        super(columns.getSampleNames().get(sample), columns.getFilters(sample));
+        this.columns = columns;
+        this.sample = sample;
+    }
+
+    @Override public List<Allele> getAlleles() {
+        return columns.getAlleleList(sample);
+    }
+
+    @Override public Allele getAllele(final int i) {
+        return columns.getAllele(columns.getAlleleIndex(sample, i));
+    }
+
+    @Override public int getPloidy() {
+        return columns.getPloidy(sample);
+    }
+
+    @Override public boolean isPhased() {
+        return columns.isPhased(sample);
+    }
+
+    @Override public int getDP() {
+        return columns.getDP(sample);
+    }
+
+    @Override public int[] getAD() {
+        return columns.getAD(sample);
+    }
+
+    @Override public boolean hasAD() {
+        return columns.getADCount(sample) != -1;
+    }
+
+    @Override public int getGQ() {
+        return columns.getGQ(sample);
+    }
+
+    @Override public int[] getPL() {
+        return columns.getPL(sample);
+    }
+
+    @Override public boolean hasPL() {
+        return columns.getPLCount(sample) != -1;
+    }
+
+    @Override public Map<String, Object> getExtendedAttributes() {
+        return columns.getAttributes(sample);
+    }
+
+    @Override public boolean hasExtendedAttribute(final String key) {
+        return columns.hasAttribute(sample, key);
+    }
+
+    @Override public Object getExtendedAttribute(final String key, final Object defaultValue) {
+        final Object value = columns.getAttribute(sample, key);
+        return value == null ? defaultValue : value;
+    }
+}
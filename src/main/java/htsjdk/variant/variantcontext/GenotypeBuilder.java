@@ -373,12 +373,7 @@ public final class GenotypeBuilder {
      * @return this builder
      */
     public GenotypeBuilder filters(final List<String> filters) {
-        if ( filters.isEmpty() )
-            return filter(null);
-        else if ( filters.size() == 1 )
-            return filter(filters.get(0));
-        else
-            return filter(ParsingUtils.join(";", ParsingUtils.sortList(filters)));
+        return filter(filterString(filters));
     }
 
     /**
@@ -397,10 +392,29 @@ public final class GenotypeBuilder {
      * @return
      */
     public GenotypeBuilder filter(final String filter) {
-        this.filters = VCFConstants.PASSES_FILTERS_v4.equals(filter) ? null : filter;
+        this.filters = filterString(filter);
         return this;
     }
 
+    /**
+     * @return the filter string of a genotype with the given filters, as set by {@link #filters(List)}
+     */
+    static String filterString(final List<String> filters) {
+        if ( filters.isEmpty() )
+            return null;
+        else if ( filters.size() == 1 )
+            return filters.get(0);
+        else
+            return ParsingUtils.join(";", ParsingUtils.sortList(filters));
+    }
+
+    /**
+     * @return the filter string of a genotype with the given filter, as set by {@link #filter(String)}
+     */
+    static String filterString(final String filter) {
+        return VCFConstants.PASSES_FILTERS_v4.equals(filter) ? null : filter;
+    }
+
     /**
      * This genotype is unfiltered
      *
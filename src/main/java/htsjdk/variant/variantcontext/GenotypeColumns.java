@@ -0,0 +1,604 @@
+/*
+ * Copyright (c) 2026 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person
+ * obtaining a copy of this software and associated documentation
+ * files (the "Software"), to deal in the Software without
+ * restriction, including without limitation the rights to use,
+ * copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the
+ * Software is furnished to do so, subject to the following
+ * conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES
+ * OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT
+ * HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY,
+ * WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING
+ * FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR
+ * THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package htsjdk.variant.variantcontext;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The genotypes of all samples at one site, stored as columns of primitive values rather than as one
+ * {@link Genotype} object per sample.
+ *
+ * Codecs fill in the columns sample by sample or field by field, and {@link #toGenotypes()} then returns a
+ * lightweight {@link Genotype} view of each sample, so that decoding a site with many samples allocates a handful
+ * of arrays instead of a genotype, an attribute map and an allele list per sample. The columns can also be read
+ * directly, by sample index, for bulk access.
+ *
+ * The columns are:
+ * <ul>
+ *     <li> GT: the index of each allele of the sample in the site alleles, or -1 for a no-call, and a phasing bit</li>
+ *     <li> GQ and DP: one int per sample, -1 if missing</li>
+ *     <li> AD and PL: a slice of an int array per sample, possibly missing</li>
+ *     <li> FT: the filter string of each sample, null if it passes</li>
+ *     <li> any other integer or float FORMAT field filled in as a whole: a slice of an int or float array per sample</li>
+ *     <li> any other FORMAT field: one Object per sample, null if missing</li>
+ * </ul>
+ *
+ * The vector columns can be set either one sample at a time, copying the values, or for all samples at once from a
+ * single array holding a fixed number of values per sample, which is then used as is. Values of integer and float
+ * columns are only boxed when they are read through a {@link Genotype}.
+ *
+ * Not thread safe while being filled in; once filled in, it may be read from several threads.
+ */
+public final class GenotypeColumns implements Serializable {
+    public static final long serialVersionUID = 1L;
+
+    private final List<String> sampleNames;
+    private final List<Allele> alleles;
+    private final int nSamples;
+
+    private final IntColumn gt;
+    private final BitSet phased = new BitSet();
+    private final int[] gq;
+    private final int[] dp;
+    private final IntColumn ad;
+    private final IntColumn pl;
+    private String[] filters = null;
+    private final Map<String, Object[]> attributes = new LinkedHashMap<>();
+    private final Map<String, IntColumn> intAttributes = new LinkedHashMap<>();
+    private final Map<String, FloatColumn> floatAttributes = new LinkedHashMap<>();
+
+    // allele lists of haploid and diploid genotypes, shared between the samples that have them
+    private transient List<Allele>[] alleleLists = null;
+
+    /**
+     * @param sampleNames the names of the samples, in the order of their genotypes
+     * @param alleles the alleles of the site, reference first, to which GT allele indices refer
+     */
+    public GenotypeColumns(final List<String> sampleNames, final List<Allele> alleles) {
+        this.sampleNames = sampleNames;
+        this.alleles = alleles;
+        this.nSamples = sampleNames.size();
+        this.gt = new IntColumn(nSamples);
+        this.gq = new int[nSamples];
+        this.dp = new int[nSamples];
+        Arrays.fill(gq, -1);
+        Arrays.fill(dp, -1);
+        this.ad = new IntColumn(nSamples);
+        this.pl = new IntColumn(nSamples);
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    //
+    // filling in the columns
+    //
+    // ---------------------------------------------------------------------------------------------------------
+
+    /**
+     * Set the genotype of a sample.
+     *
+     * @param sample the index of the sample
+     * @param alleleIndices the index of each allele in the site alleles, or -1 for a no-call; not retained
+     * @param ploidy the number of alleles to take from alleleIndices
+     * @param isPhased whether the genotype is phased
+     */
+    public void setGenotype(final int sample, final int[] alleleIndices, final int ploidy, final boolean isPhased) {
+        for (int i = 0; i < ploidy; i++) {
+            if (alleleIndices[i] < -1 || alleleIndices[i] >= alleles.size()) {
+                throw new IllegalArgumentException("Allele index " + alleleIndices[i] + " is not one of the " + alleles.size() + " alleles of the site");
+            }
+        }
+        gt.set(sample, alleleIndices, ploidy);
+        phased.set(sample, isPhased);
+    }
+
+    public void setGQ(final int sample, final int GQ) {
+        gq[sample] = GQ;
+    }
+
+    public void setDP(final int sample, final int DP) {
+        dp[sample] = DP;
+    }
+
+    /**
+     * @param values the AD values; not retained
+     * @param count the number of values to take from values
+     */
+    public void setAD(final int sample, final int[] values, final int count) {
+        ad.set(sample, values, count);
+    }
+
+    /**
+     * @param values the PL values; not retained
+     * @param count the number of values to take from values
+     */
+    public void setPL(final int sample, final int[] values, final int count) {
+        pl.set(sample, values, count);
+    }
+
+    /**
+     * @param filter the filter string of the sample, with the same meaning as {@link GenotypeBuilder#filter(String)}
+     */
+    public void setFilters(final int sample, final String filter) {
+        if (filters == null) {
+            if (filter == null) {
+                return;
+            }
+            filters = new String[nSamples];
+        }
+        filters[sample] = GenotypeBuilder.filterString(filter);
+    }
+
+    /**
+     * @param filters the filters of the sample, with the same meaning as {@link GenotypeBuilder#filters(List)}
+     */
+    public void setFilters(final int sample, final List<String> filters) {
+        setFilters(sample, GenotypeBuilder.filterString(filters));
+    }
+
+    /**
+     * Set the value of a FORMAT field other than GT, GQ, DP, AD, PL and FT.
+     */
+    public void setAttribute(final int sample, final String key, final Object value) {
+        attributes.computeIfAbsent(key, k -> new Object[nSamples])[sample] = value;
+    }
+
+    /**
+     * Set the genotypes of all samples at once.
+     *
+     * @param alleleIndices the allele indices of sample s, as for {@link #setGenotype(int, int[], int, boolean)},
+     *                      at [s * width] onwards; used as is, not copied
+     * @param width the number of values per sample in alleleIndices
+     * @param ploidies the ploidy of each sample, or -1 if it has no GT; used as is, not copied
+     * @param isPhased which samples have phased genotypes
+     */
+    public void setGenotypes(final int[] alleleIndices, final int width, final int[] ploidies, final BitSet isPhased) {
+        for (int sample = 0; sample < nSamples; sample++) {
+            for (int i = 0; i < ploidies[sample]; i++) {
+                final int index = alleleIndices[sample * width + i];
+                if (index < -1 || index >= alleles.size()) {
+                    throw new IllegalArgumentException("Allele index " + index + " is not one of the " + alleles.size() + " alleles of the site");
+                }
+            }
+        }
+        gt.adopt(alleleIndices, width, ploidies);
+        phased.clear();
+        phased.or(isPhased);
+    }
+
+    /**
+     * Set the AD values of all samples at once.
+     *
+     * @param values the AD values of sample s at [s * width] onwards; used as is, not copied
+     * @param width the number of values per sample in values
+     * @param counts the number of AD values of each sample, or -1 if it has none; used as is, not copied
+     */
+    public void setADs(final int[] values, final int width, final int[] counts) {
+        ad.adopt(values, width, counts);
+    }
+
+    /**
+     * Set the PL values of all samples at once.
+     *
+     * @param values the PL values of sample s at [s * width] onwards; used as is, not copied
+     * @param width the number of values per sample in values
+     * @param counts the number of PL values of each sample, or -1 if it has none; used as is, not copied
+     */
+    public void setPLs(final int[] values, final int width, final int[] counts) {
+        pl.adopt(values, width, counts);
+    }
+
+    /**
+     * Set the values of an integer FORMAT field, other than GQ, DP, AD and PL, for all samples at once.
+     *
+     * Through a {@link Genotype}, a sample with a single value has that value as an Integer, a sample with several
+     * values has a List of them, and a sample with none has no value.
+     *
+     * @param values the values of sample s at [s * width] onwards; used as is, not copied
+     * @param width the number of values per sample in values
+     * @param counts the number of values of each sample, or -1 if it has none; used as is, not copied
+     */
+    public void setIntAttribute(final String key, final int[] values, final int width, final int[] counts) {
+        final IntColumn column = new IntColumn(nSamples);
+        column.adopt(values, width, counts);
+        intAttributes.put(key, column);
+    }
+
+    /**
+     * Set the values of a float FORMAT field for all samples at once.
+     *
+     * Through a {@link Genotype}, a sample with a single value has that value as a Double, a sample with several
+     * values has a List of them, and a sample with none has no value.
+     *
+     * @param values the values of sample s at [s * width] onwards; used as is, not copied
+     * @param width the number of values per sample in values
+     * @param counts the number of values of each sample, or -1 if it has none; used as is, not copied
+     */
+    public void setFloatAttribute(final String key, final float[] values, final int width, final int[] counts) {
+        floatAttributes.put(key, new FloatColumn(values, width, counts));
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    //
+    // reading the columns
+    //
+    // ---------------------------------------------------------------------------------------------------------
+
+    public int getNSamples() {
+        return nSamples;
+    }
+
+    public List<String> getSampleNames() {
+        return sampleNames;
+    }
+
+    public List<Allele> getAlleles() {
+        return alleles;
+    }
+
+    /**
+     * @return the ploidy of the sample, 0 if it has no GT
+     */
+    public int getPloidy(final int sample) {
+        return Math.max(gt.count(sample), 0);
+    }
+
+    /**
+     * @return the index in the site alleles of allele i of the sample's genotype, or -1 for a no-call
+     */
+    public int getAlleleIndex(final int sample, final int i) {
+        return gt.get(sample, i);
+    }
+
+    public boolean isPhased(final int sample) {
+        return phased.get(sample);
+    }
+
+    public int getGQ(final int sample) {
+        return gq[sample];
+    }
+
+    public int getDP(final int sample) {
+        return dp[sample];
+    }
+
+    /**
+     * @return the number of AD values of the sample, or -1 if it has none
+     */
+    public int getADCount(final int sample) {
+        return ad.count(sample);
+    }
+
+    public int getAD(final int sample, final int i) {
+        return ad.get(sample, i);
+    }
+
+    /**
+     * @return a copy of the AD values of the sample, or null if it has none
+     */
+    public int[] getAD(final int sample) {
+        return ad.copy(sample);
+    }
+
+    /**
+     * @return the number of PL values of the sample, or -1 if it has none
+     */
+    public int getPLCount(final int sample) {
+        return pl.count(sample);
+    }
+
+    public int getPL(final int sample, final int i) {
+        return pl.get(sample, i);
+    }
+
+    /**
+     * @return a copy of the PL values of the sample, or null if it has none
+     */
+    public int[] getPL(final int sample) {
+        return pl.copy(sample);
+    }
+
+    /**
+     * @return the filter string of the sample, or null if it passes
+     */
+    public String getFilters(final int sample) {
+        return filters == null ? null : filters[sample];
+    }
+
+    /**
+     * @return the value of a FORMAT field other than GT, GQ, DP, AD, PL and FT, or null if the sample has none;
+     * the values of integer and float columns are boxed on each call
+     */
+    public Object getAttribute(final int sample, final String key) {
+        final Object[] values = attributes.get(key);
+        if (values != null) {
+            return values[sample];
+        }
+        final IntColumn ints = intAttributes.get(key);
+        if (ints != null) {
+            return ints.box(sample);
+        }
+        final FloatColumn floats = floatAttributes.get(key);
+        return floats == null ? null : floats.box(sample);
+    }
+
+    /**
+     * @return the number of values of the sample for an integer FORMAT field set with
+     * {@link #setIntAttribute(String, int[], int, int[])}, or -1 if it has none or the field was not set that way
+     */
+    public int getIntAttributeCount(final int sample, final String key) {
+        final IntColumn column = intAttributes.get(key);
+        return column == null ? -1 : column.count(sample);
+    }
+
+    public int getIntAttribute(final int sample, final String key, final int i) {
+        final IntColumn column = intAttributes.get(key);
+        if (column == null) {
+            throw new IllegalArgumentException("No integer column for " + key);
+        }
+        return column.get(sample, i);
+    }
+
+    /**
+     * @return the number of values of the sample for a float FORMAT field set with
+     * {@link #setFloatAttribute(String, float[], int, int[])}, or -1 if it has none or the field was not set that way
+     */
+    public int getFloatAttributeCount(final int sample, final String key) {
+        final FloatColumn column = floatAttributes.get(key);
+        return column == null ? -1 : column.counts[sample];
+    }
+
+    public float getFloatAttribute(final int sample, final String key, final int i) {
+        final FloatColumn column = floatAttributes.get(key);
+        if (column == null) {
+            throw new IllegalArgumentException("No float column for " + key);
+        }
+        return column.get(sample, i);
+    }
+
+    /**
+     * @return a view of each sample as a {@link Genotype}, in sample order
+     */
+    public ArrayList<Genotype> toGenotypes() {
+        final ArrayList<Genotype> genotypes = new ArrayList<>(nSamples);
+        for (int sample = 0; sample < nSamples; sample++) {
+            genotypes.add(new ColumnarGenotype(this, sample));
+        }
+        return genotypes;
+    }
+
+    // ---------------------------------------------------------------------------------------------------------
+    //
+    // support for the genotype views
+    //
+    // ---------------------------------------------------------------------------------------------------------
+
+    List<Allele> getAlleleList(final int sample) {
+        final int ploidy = getPloidy(sample);
+        if (ploidy == 0) {
+            return Collections.emptyList();
+        }
+        final int nAlleles = alleles.size() + 1;
+        if (ploidy > 2) {
+            final List<Allele> list = new ArrayList<>(ploidy);
+            for (int i = 0; i < ploidy; i++) {
+                list.add(getAllele(gt.get(sample, i)));
+            }
+            return list;
+        }
+
+        // haploid genotypes are stored after all of the diploid ones
+        final int a1 = gt.get(sample, 0) + 1;
+        final int key = ploidy == 1 ? nAlleles * nAlleles + a1 : a1 * nAlleles + gt.get(sample, 1) + 1;
+        List<Allele>[] lists = alleleLists;
+        if (lists == null) {
+            lists = newAlleleLists(nAlleles * nAlleles + nAlleles);
+            alleleLists = lists;
+        }
+        List<Allele> list = lists[key];
+        if (list == null) {
+            list = ploidy == 1 ? Collections.singletonList(getAllele(a1 - 1)) :
+                    Collections.unmodifiableList(Arrays.asList(getAllele(a1 - 1), getAllele(gt.get(sample, 1))));
+            lists[key] = list;
+        }
+        return list;
+    }
+
+    Allele getAllele(final int index) {
+        return index == -1 ? Allele.NO_CALL : alleles.get(index);
+    }
+
+    boolean hasAttribute(final int sample, final String key) {
+        final Object[] values = attributes.get(key);
+        if (values != null) {
+            return values[sample] != null;
+        }
+        return getIntAttributeCount(sample, key) > 0 || getFloatAttributeCount(sample, key) > 0;
+    }
+
+    Map<String, Object> getAttributes(final int sample) {
+        final Map<String, Object> map = new HashMap<>();
+        for (final Map.Entry<String, Object[]> entry : attributes.entrySet()) {
+            final Object value = entry.getValue()[sample];
+            if (value != null) {
+                map.put(entry.getKey(), value);
+            }
+        }
+        for (final Map.Entry<String, IntColumn> entry : intAttributes.entrySet()) {
+            final Object value = entry.getValue().box(sample);
+            if (value != null) {
+                map.put(entry.getKey(), value);
+            }
+        }
+        for (final Map.Entry<String, FloatColumn> entry : floatAttributes.entrySet()) {
+            final Object value = entry.getValue().box(sample);
+            if (value != null) {
+                map.put(entry.getKey(), value);
+            }
+        }
+        return map.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(map);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static List<Allele>[] newAlleleLists(final int size) {
+        return new List[size];
+    }
+
+    /**
+     * A vector of ints per sample, stored at a fixed stride in one array, which is widened if a longer vector is set.
+     */
+    private static final class IntColumn implements Serializable {
+        public static final long serialVersionUID = 1L;
+
+        private int[] counts;
+        private int width = 0;
+        private int[] values = null;
+
+        private IntColumn(final int nSamples) {
+            counts = new int[nSamples];
+            Arrays.fill(counts, -1);
+        }
+
+        private void adopt(final int[] values, final int width, final int[] counts) {
+            if (counts.length != this.counts.length || values.length < counts.length * width) {
+                throw new IllegalArgumentException("Expected " + this.counts.length + " samples of " + width + " values");
+            }
+            this.values = values;
+            this.width = width;
+            this.counts = counts;
+        }
+
+        private void set(final int sample, final int[] source, final int count) {
+            if (count == 0) {
+                // nothing to copy, and values may not have been allocated yet
+                counts[sample] = 0;
+                return;
+            }
+            if (count > width) {
+                widen(count);
+            }
+            System.arraycopy(source, 0, values, sample * width, count);
+            counts[sample] = count;
+        }
+
+        private void widen(final int minWidth) {
+            final int newWidth = Math.max(minWidth, 2 * width);
+            final int[] newValues = new int[counts.length * newWidth];
+            for (int sample = 0; sample < counts.length; sample++) {
+                if (counts[sample] > 0) {
+                    System.arraycopy(values, sample * width, newValues, sample * newWidth, counts[sample]);
+                }
+            }
+            values = newValues;
+            width = newWidth;
+        }
+
+        private int count(final int sample) {
+            return counts[sample];
+        }
+
+        private int get(final int sample, final int i) {
+            if (i < 0 || i >= counts[sample]) {
+                throw new IndexOutOfBoundsException("Index " + i + " of " + Math.max(counts[sample], 0) + " values");
+            }
+            return values[sample * width + i];
+        }
+
+        private int[] copy(final int sample) {
+            final int count = counts[sample];
+            if (count == -1) {
+                return null;
+            }
+            final int start = sample * width;
+            return count == 0 ? new int[0] : Arrays.copyOfRange(values, start, start + count);
+        }
+
+        private Object box(final int sample) {
+            final int count = counts[sample];
+            if (count <= 0) {
+                return null;
+            }
+            final int start = sample * width;
+            if (count == 1) {
+                return values[start];
+            }
+            final List<Object> list = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                list.add(values[i]);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * A vector of floats per sample, stored at a fixed stride in one array.
+     */
+    private static final class FloatColumn implements Serializable {
+        public static final long serialVersionUID = 1L;
+
+        private final float[] values;
+        private final int width;
+        private final int[] counts;
+
+        private FloatColumn(final float[] values, final int width, final int[] counts) {
+            if (values.length < counts.length * width) {
+                throw new IllegalArgumentException("Expected " + counts.length + " samples of " + width + " values");
+            }
+            this.values = values;
+            this.width = width;
+            this.counts = counts;
+        }
+
+        private float get(final int sample, final int i) {
+            if (i < 0 || i >= counts[sample]) {
+                throw new IndexOutOfBoundsException("Index " + i + " of " + Math.max(counts[sample], 0) + " values");
+            }
+            return values[sample * width + i];
+        }
+
+        private Object box(final int sample) {
+            final int count = counts[sample];
+            if (count <= 0) {
+                return null;
+            }
+            final int start = sample * width;
+            if (count == 1) {
+                return (double) values[start];
+            }
+            final List<Object> list = new ArrayList<>(count);
+            for (int i = start; i < start + count; i++) {
+                list.add((double) values[i]);
+            }
+            return list;
+        }
+    }
+}
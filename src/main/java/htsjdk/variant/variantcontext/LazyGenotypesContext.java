@@ -68,6 +68,11 @@ public class LazyGenotypesContext extends GenotypesContext {
      */
     private boolean loaded = false;
 
+    /**
+     * The columns the genotypes were decoded into, if the parser stored them that way
+     */
+    private GenotypeColumns genotypeColumns = null;
+
     /**
      * Custom de-serialization routine to ensure that all LazyGenotypesContexts we de-serialize
      * are fully decoded. Throws an IllegalStateException if that is not the case.
@@ -110,6 +115,7 @@ public class LazyGenotypesContext extends GenotypesContext {
         final ArrayList<Genotype> genotypes;
         final Map<String, Integer> sampleNameToOffset;
         final List<String> sampleNamesInOrder;
+        final GenotypeColumns genotypeColumns;
 
         public LazyData(final ArrayList<Genotype> genotypes,
                         final List<String> sampleNamesInOrder,
@@ -117,6 +123,19 @@ public class LazyGenotypesContext extends GenotypesContext {
             this.genotypes = genotypes;
             this.sampleNamesInOrder = sampleNamesInOrder;
             this.sampleNameToOffset = sampleNameToOffset;
+            this.genotypeColumns = null;
+        }
+
+        /**
+         * Genotypes stored as columns, which are presented as one lightweight view per sample
+         */
+        public LazyData(final GenotypeColumns genotypeColumns,
+                        final List<String> sampleNamesInOrder,
+                        final Map<String, Integer> sampleNameToOffset) {
+            this.genotypes = genotypeColumns.toGenotypes();
+            this.sampleNamesInOrder = sampleNamesInOrder;
+            this.sampleNameToOffset = sampleNameToOffset;
+            this.genotypeColumns = genotypeColumns;
         }
     }
 
@@ -159,6 +178,7 @@ public class LazyGenotypesContext extends GenotypesContext {
             notToBeDirectlyAccessedGenotypes = parsed.genotypes;
             sampleNamesInOrder = parsed.sampleNamesInOrder;
             sampleNameToOffset = parsed.sampleNameToOffset;
+            genotypeColumns = parsed.genotypeColumns;
             loaded = true;
             unparsedGenotypeData = null; // don't hold the unparsed data any longer
             nUnparsedGenotypes = 0;
@@ -220,6 +240,20 @@ public class LazyGenotypesContext extends GenotypesContext {
         return loaded ? super.size() : nUnparsedGenotypes;
     }
 
+    /**
+     * Decode the genotypes, if necessary, and return the columns they were stored in, for reading many
+     * genotype values without going through a {@link Genotype} object for each sample.
+     *
+     * The columns reflect the genotypes as decoded; genotypes added to or replaced in this context
+     * afterwards are not included.
+     *
+     * @return the columns, or null if the parser did not store the genotypes in columns
+     */
+    public GenotypeColumns getGenotypeColumns() {
+        decode();
+        return genotypeColumns;
+    }
+
     public Object getUnparsedGenotypeData() {
         return unparsedGenotypeData;
     }
@@ -32,6 +32,7 @@ import htsjdk.tribble.index.IndexCreator;
 import htsjdk.variant.bcf2.BCF2Codec;
 import htsjdk.variant.bcf2.BCF2Type;
 import htsjdk.variant.bcf2.BCF2Utils;
+import htsjdk.variant.bcf2.BCF2VariantContext;
 import htsjdk.variant.bcf2.BCFVersion;
 import htsjdk.variant.utils.GeneralUtils;
 import htsjdk.variant.variantcontext.Allele;
@@ -52,6 +53,7 @@ import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -124,6 +126,12 @@ class BCF2Writer extends IndexingVariantContextWriter {
     private VCFHeader lastVCFHeaderOfUnparsedGenotypes = null;
     private boolean canPassOnUnparsedGenotypeDataForLastVCFHeader = false;
 
+    /**
+     * cached results for whether we can write out the raw blocks of records read from a BCF2 file.
+     */
+    private VCFHeader lastVCFHeaderOfRawRecords = null;
+    private boolean canPassOnRawRecordsForLastVCFHeader = false;
+
     // is the header or body written to the output stream?
     private boolean outputHasBeenWritten;
 
@@ -185,6 +193,18 @@ class BCF2Writer extends IndexingVariantContextWriter {
 
     @Override
     public void add( VariantContext vc ) {
+        if ( vc instanceof BCF2VariantContext && canSafelyWriteRawRecord((BCF2VariantContext) vc) ) {
+            // the record is unchanged since it was read, so its blocks can be copied as they are
+            super.add(vc); // allow on the fly indexing
+            try {
+                writeBlock(((BCF2VariantContext) vc).getSitesBlock(), ((BCF2VariantContext) vc).getGenotypesBlock());
+                outputHasBeenWritten = true;
+            } catch ( IOException e ) {
+                throw new RuntimeIOException("Error writing record to BCF2 file: " + vc.toString(), e);
+            }
+            return;
+        }
+
         if ( doNotWriteGenotypes )
             vc = new VariantContextBuilder(vc).noGenotypes().make();
         vc = vc.fullyDecode(header, false);
@@ -319,6 +339,41 @@ class BCF2Writer extends IndexingVariantContextWriter {
         return canPassOnUnparsedGenotypeDataForLastVCFHeader;
     }
 
+    /**
+     * Can we write out the raw sites and genotypes blocks of a record read from a BCF2 file?
+     *
+     * Only if the offsets in the blocks mean the same in our output, which requires the same string dictionary,
+     * contigs and samples, in the same order. The result is cached for the header the record was read with.
+     *
+     * @param vc
+     * @return
+     */
+    private boolean canSafelyWriteRawRecord(final BCF2VariantContext vc) {
+        if ( doNotWriteGenotypes )
+            return false;
+
+        if ( vc.getSourceHeader() != lastVCFHeaderOfRawRecords ) {
+            canPassOnRawRecordsForLastVCFHeader =
+                    isSameDictionary(stringDictionaryMap, vc.getSourceDictionary()) &&
+                    isSameDictionary(contigDictionary, vc.getSourceContigs()) &&
+                    Arrays.asList(sampleNames).equals(vc.getSourceHeader().getGenotypeSamples());
+            lastVCFHeaderOfRawRecords = vc.getSourceHeader();
+        }
+
+        return canPassOnRawRecordsForLastVCFHeader;
+    }
+
+    private static boolean isSameDictionary(final Map<String, Integer> offsets, final List<String> dictionary) {
+        if ( offsets.size() != dictionary.size() )
+            return false;
+        for ( int i = 0; i < dictionary.size(); i++ ) {
+            final Integer offset = offsets.get(dictionary.get(i));
+            if ( offset == null || offset != i )
+                return false;
+        }
+        return true;
+    }
+
     private BCF2Codec.LazyData getLazyData(final VariantContext vc) {
         if ( vc.getGenotypes().isLazyWithData() ) {
             final LazyGenotypesContext lgc = (LazyGenotypesContext)vc.getGenotypes();
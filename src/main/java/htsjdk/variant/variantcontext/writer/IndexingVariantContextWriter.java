@@ -26,6 +26,7 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.LocationAware;
 import htsjdk.samtools.util.RuntimeIOException;
@@ -42,6 +43,8 @@ import java.io.IOException;
 import java.io.OutputStream;
 import java.io.PrintStream;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
 /**
  * this class writes VCF files
@@ -54,6 +57,10 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     private OutputStream outputStream;
     private LocationAware locationSource = null;
     private IndexCreator indexer = null;
+    // Set when writing BGZF, whose blocks may be deflated in the background: records are then indexed by provisional
+    // file pointers, and wait in pendingIndexFeatures until the addresses of their blocks are known
+    private BlockCompressedOutputStream blockCompressedOutputStream = null;
+    private final Deque<PendingIndexFeature> pendingIndexFeatures = new ArrayDeque<>();
 
     private IndexingVariantContextWriter(final String name, final Path location, final OutputStream output, final SAMSequenceDictionary refDict) {
         this.name = name;
@@ -133,7 +140,10 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
     private void initIndexingWriter(final IndexCreator idxCreator) {
         indexer = idxCreator;
-        if (outputStream instanceof LocationAware) {
+        if (outputStream instanceof BlockCompressedOutputStream) {
+            blockCompressedOutputStream = (BlockCompressedOutputStream) outputStream;
+            locationSource = blockCompressedOutputStream;
+        } else if (outputStream instanceof LocationAware) {
             locationSource = (LocationAware)outputStream;
         } else {
             final PositionalOutputStream positionalOutputStream = new PositionalOutputStream(outputStream);
@@ -173,6 +183,8 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
 
             // close the index stream (keep it separate to help debugging efforts)
             if (indexer != null) {
+                // all blocks have been written by now, so every pending file pointer can be resolved
+                addPendingIndexFeatures();
                 indexer.setIndexSequenceDictionary(refDict);
                 final Index index = indexer.finalizeIndex(locationSource.getPosition());
                 index.writeBasedOnFeaturePath(location);
@@ -199,8 +211,41 @@ abstract class IndexingVariantContextWriter implements VariantContextWriter {
     @Override
     public void add(final VariantContext vc) {
         // if we are doing on the fly indexing, add the record ***before*** we write any bytes
-        if ( indexer != null )
-            indexer.addFeature(vc, locationSource.getPosition());
+        if ( indexer != null ) {
+            if (blockCompressedOutputStream != null) {
+                // use a provisional file pointer so that indexing doesn't wait on blocks being deflated in the background
+                pendingIndexFeatures.add(new PendingIndexFeature(vc, blockCompressedOutputStream.getProvisionalFilePointer()));
+                addPendingIndexFeatures();
+            } else {
+                indexer.addFeature(vc, locationSource.getPosition());
+            }
+        }
+    }
+
+    /**
+     * Adds to the index every pending record whose file pointer is now known, in the order the records were written.
+     */
+    private void addPendingIndexFeatures() {
+        while (!pendingIndexFeatures.isEmpty()) {
+            final PendingIndexFeature pending = pendingIndexFeatures.peek();
+            final long filePointer = blockCompressedOutputStream.resolveProvisionalFilePointer(pending.filePointer);
+            if (filePointer == -1) {
+                return;
+            }
+            pendingIndexFeatures.poll();
+            indexer.addFeature(pending.vc, filePointer);
+        }
+    }
+
+    private static final class PendingIndexFeature {
+        // VariantContext is immutable, so the record can be held until it is indexed
+        private final VariantContext vc;
+        private final long filePointer;
+
+        private PendingIndexFeature(final VariantContext vc, final long filePointer) {
+            this.vc = vc;
+            this.filePointer = filePointer;
+        }
     }
 
     /**
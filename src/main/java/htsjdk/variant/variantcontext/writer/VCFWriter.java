@@ -73,7 +73,7 @@ class VCFWriter extends IndexingVariantContextWriter {
 
     /*
      * The VCF writer uses an internal Writer, based by the ByteArrayOutputStream lineBuffer,
-     * to temp. buffer the header and per-site output before flushing the per line output
+     * to temp. buffer the header output before flushing it
      * in one go to the super.getOutputStream.  This results in high-performance, proper encoding,
      * and allows us to avoid flushing explicitly the output stream getOutputStream, which
      * allows us to properly compress vcfs in gz format without breaking indexing on the fly
@@ -126,18 +126,6 @@ class VCFWriter extends IndexingVariantContextWriter {
     //
     // --------------------------------------------------------------------------------
 
-    /*
-     * Write String s to the internal buffered writer.
-     *
-     * writeAndResetBuffer() must be called to actually write the data to the true output stream.
-     *
-     * @param s the string to write
-     * @throws IOException
-     */
-    private void write(final String s) throws IOException {
-        writer.write(s);
-    }
-
     /*
      * Actually write the line buffer contents to the destination output stream. After calling this function
      * the line buffer is reset so the contents of the buffer can be reused
@@ -244,14 +232,12 @@ class VCFWriter extends IndexingVariantContextWriter {
                 throw new IllegalStateException("Unable to write the VCF: header is missing, " +
                                                    "try to call writeHeader or setHeader first.");
             }
+            // the encoder buffers the line itself, and writes it to the output stream in one go
             if (this.doNotWriteGenotypes) {
-                this.vcfEncoder.write(this.writer, new VariantContextBuilder(context).noGenotypes().make());
+                this.vcfEncoder.writeLine(getOutputStream(), new VariantContextBuilder(context).noGenotypes().make());
             } else {
-                this.vcfEncoder.write(this.writer, context);
+                this.vcfEncoder.writeLine(getOutputStream(), context);
             }
-            write("\n");
-
-            writeAndResetBuffer();
             outputHasBeenWritten = true;
         } catch (IOException e) {
             throw new RuntimeIOException("Unable to write the VCF object to " + getStreamName(), e);
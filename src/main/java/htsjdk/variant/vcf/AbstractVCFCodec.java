@@ -25,6 +25,7 @@
 
 package htsjdk.variant.vcf;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.util.BlockCompressedInputStream;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.tribble.AsciiFeatureCodec;
@@ -61,12 +62,24 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
     // a mapping of the allele
     protected Map<String, List<Allele>> alleleMap = new HashMap<String, List<Allele>>(3);
+    // the same mapping, to allele indices, when decoding genotypes into columns
+    private final Map<String, int[]> alleleIndexMap = new HashMap<>(3);
+    // AD and PL values of one sample, when decoding genotypes into columns
+    private int[] intBuffer = new int[16];
     
     // for performance testing purposes
     public static boolean validate = true;
 
-    // a key optimization -- we need a per thread string parts array, so we don't allocate a big array over and over
+    // a key optimization -- rather than splitting each line into Strings, we record where each column starts and ends
+    // in the line and only create Strings for the columns (and INFO entries) that need them
     // todo: make this thread safe?
+    private final int[] fieldStarts = new int[NUM_STANDARD_FIELDS + 1];
+    private final int[] fieldEnds = new int[NUM_STANDARD_FIELDS + 1];
+    /**
+     * @deprecated the codec no longer splits each line into this array, so it is not filled in; it is kept only so
+     * that subclasses which refer to it still compile
+     */
+    @Deprecated
     protected String[] parts = null;
     protected String[] genotypeParts = null;
     protected final String[] locParts = new String[6];
@@ -79,8 +92,16 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
     protected int lineNo = 0;
 
+    /**
+     * @deprecated CHROM, FILTER and INFO key values are no longer cached here. This only holds the strings
+     * passed to {@link #getCachedString(String)}, which are taken from the same interner as those values.
+     */
+    @Deprecated
     protected Map<String, String> stringCache = new HashMap<String, String>();
 
+    // shared instances of CHROM, FILTER and INFO key values, seeded with the IDs declared in the header
+    private VCFStringInterner stringInterner = new VCFStringInterner();
+
     protected boolean warnedAboutNoEqualsForNonFlag = false;
 
     /**
@@ -94,6 +115,11 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
      */
     protected String remappedSampleName = null;
 
+    /**
+     * If true, genotypes are decoded into {@link GenotypeColumns} rather than a {@link Genotype} object per sample
+     */
+    private boolean columnarGenotypes = Defaults.COLUMNAR_GENOTYPES;
+
     protected AbstractVCFCodec() {
         super(VariantContext.class);
     }
@@ -118,7 +144,9 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         @Override
         public LazyGenotypesContext.LazyData parse(final Object data) {
             //System.out.printf("Loading genotypes... %s:%d%n", contig, start);
-            return createGenotypeMap((String) data, alleles, contig, start);
+            return columnarGenotypes ?
+                    createGenotypeColumns((String) data, alleles, contig, start) :
+                    createGenotypeMap((String) data, alleles, contig, start);
         }
     }
 
@@ -262,9 +290,40 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         this.version = newVersion;
         this.vcfTextTransformer = getTextTransformerForVCFVersion(newVersion);
 
+        for (final VCFContigHeaderLine contig : this.header.getContigLines()) {
+            stringInterner.intern(contig.getID());
+        }
+        for (final VCFFilterHeaderLine filter : this.header.getFilterLines()) {
+            stringInterner.intern(filter.getID());
+        }
+        for (final VCFInfoHeaderLine info : this.header.getInfoHeaderLines()) {
+            stringInterner.intern(info.getID());
+        }
+
         return this.header;
     }
 
+    /**
+     * Set up this codec to decode records with the same header and settings as {@code codec}, but with its own
+     * working state, so that the two codecs can decode records on different threads. Line numbers reported in
+     * errors continue from those of {@code codec}.
+     *
+     * @param codec a codec that has already read or been given its header
+     */
+    void copyDecodingStateFrom(final AbstractVCFCodec codec) {
+        this.header = codec.header;
+        this.version = codec.version;
+        this.vcfTextTransformer = codec.vcfTextTransformer;
+        this.name = codec.name;
+        this.lineNo = codec.lineNo;
+        this.doOnTheFlyModifications = codec.doOnTheFlyModifications;
+        this.remappedSampleName = codec.remappedSampleName;
+        this.warnedAboutNoEqualsForNonFlag = codec.warnedAboutNoEqualsForNonFlag;
+        this.columnarGenotypes = codec.columnarGenotypes;
+        this.stringCache = new HashMap<>(codec.stringCache);
+        this.stringInterner = new VCFStringInterner(codec.stringInterner);
+    }
+
     /**
      * Create and return a VCFAltHeaderLine object from a header line string that conforms to the {@code sourceVersion}
      * @param headerLineString VCF header line being parsed without the leading "##ALT="
@@ -369,10 +428,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         // our header cannot be null, we need the genotype sample names and counts
         if (header == null) throw new TribbleException("VCF Header cannot be null when decoding a record");
 
-        if (parts == null)
-            parts = new String[Math.min(header.getColumnCount(), NUM_STANDARD_FIELDS+1)];
-
-        final int nParts = ParsingUtils.split(line, parts, VCFConstants.FIELD_SEPARATOR_CHAR, true);
+        final int nParts = splitFields(line, Math.min(header.getColumnCount(), NUM_STANDARD_FIELDS + 1));
 
         // if we have don't have a header, or we have a header with no genotyping data check that we
         // have eight columns.  Otherwise check that we have nine (normal columns + genotyping data)
@@ -381,16 +437,61 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
             throw new TribbleException("Line " + lineNo + ": there aren't enough columns for line " + line + " (we expected " + (header == null ? NUM_STANDARD_FIELDS : NUM_STANDARD_FIELDS + 1) +
                     " tokens, and saw " + nParts + " )");
 
-        return parseVCFLine(parts, includeGenotypes);
+        return parseVCFLine(line, nParts, includeGenotypes);
+    }
+
+    /**
+     * Find the tab separated columns of the line, recording the bounds of each in fieldStarts and fieldEnds.
+     * This follows {@link ParsingUtils#split(String, String[], char, boolean)} with condensed trailing tokens, so
+     * the last column runs to the end of the line, but does not create a String for any of the columns.
+     *
+     * Only the split is avoided: the columns are still parsed from the line once it has been decoded to a String.
+     * CHROM and FILTER are interned and POS and INFO are parsed in place, but ID, REF, ALT, QUAL and the genotype
+     * columns are still substrings of the line.
+     *
+     * @param line the line of text for the record
+     * @param maxFields the maximum number of columns to find
+     * @return the number of columns found
+     */
+    private int splitFields(final String line, final int maxFields) {
+        int nFields = 0;
+        int start = 0;
+        int end = line.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR);
+
+        if (end == 0) {
+            if (line.length() > 1) {
+                start = 1;
+                end = line.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR, start);
+            } else {
+                return 0;
+            }
+        }
+
+        while (end > 0 && nFields < maxFields) {
+            fieldStarts[nFields] = start;
+            fieldEnds[nFields++] = end;
+            start = end + 1;
+            end = line.indexOf(VCFConstants.FIELD_SEPARATOR_CHAR, start);
+        }
+
+        if (nFields == maxFields) {
+            // condense the rest of the line into the last column
+            fieldEnds[nFields - 1] = line.length();
+        } else {
+            fieldStarts[nFields] = start;
+            fieldEnds[nFields++] = line.length();
+        }
+        return nFields;
     }
 
     /**
      * parse out the VCF line
      *
-     * @param parts the parts split up
+     * @param line the line of text for the record
+     * @param nParts the number of columns found by {@link #splitFields}
      * @return a variant context object
      */
-    private VariantContext parseVCFLine(final String[] parts, final boolean includeGenotypes) {
+    private VariantContext parseVCFLine(final String line, final int nParts, final boolean includeGenotypes) {
         VariantContextBuilder builder = new VariantContextBuilder();
         builder.source(getName());
 
@@ -400,32 +501,33 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         lineNo++;
 
         // parse out the required fields
-        final String chr = getCachedString(parts[0]);
+        final String chr = stringInterner.intern(line, fieldStarts[0], fieldEnds[0]);
         builder.chr(chr);
         int pos = -1;
         try {
-            pos = Integer.parseInt(parts[1]);
+            pos = parseInt(line, fieldStarts[1], fieldEnds[1]);
         } catch (NumberFormatException e) {
-            generateException(parts[1] + " is not a valid start position in the VCF format");
+            generateException(line.substring(fieldStarts[1], fieldEnds[1]) + " is not a valid start position in the VCF format");
         }
         builder.start(pos);
 
-        if ( parts[2].isEmpty() )
+        if ( fieldStarts[2] == fieldEnds[2] )
             generateException("The VCF specification requires a valid ID field");
-        else if ( parts[2].equals(VCFConstants.EMPTY_ID_FIELD) )
+        else if ( fieldEquals(line, 2, VCFConstants.EMPTY_ID_FIELD) )
             builder.noID();
         else
-            builder.id(parts[2]);
+            builder.id(line.substring(fieldStarts[2], fieldEnds[2]));
 
-        final String ref = parts[3].toUpperCase();
-        final String alts = parts[4];
-        builder.log10PError(parseQual(parts[5]));
+        final String ref = line.substring(fieldStarts[3], fieldEnds[3]).toUpperCase();
+        final String alts = line.substring(fieldStarts[4], fieldEnds[4]);
+        builder.log10PError(parseQual(fieldEquals(line, 5, VCFConstants.MISSING_VALUE_v4) ?
+                VCFConstants.MISSING_VALUE_v4 : line.substring(fieldStarts[5], fieldEnds[5])));
 
-        final List<String> filters = parseFilters(getCachedString(parts[6]));
+        final List<String> filters = parseFilters(stringInterner.intern(line, fieldStarts[6], fieldEnds[6]));
         if ( filters != null ) {
             builder.filters(new HashSet<>(filters));
         }
-        final Map<String, Object> attrs = parseInfo(parts[7]);
+        final Map<String, Object> attrs = parseInfo(line, fieldStarts[7], fieldEnds[7]);
         builder.attributes(attrs);
 
         if ( attrs.containsKey(VCFConstants.END_KEY) ) {
@@ -444,10 +546,10 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         builder.alleles(alleles);
 
         // do we have genotyping data
-        if (parts.length > NUM_STANDARD_FIELDS && includeGenotypes) {
+        if (nParts > NUM_STANDARD_FIELDS && includeGenotypes) {
             final LazyGenotypesContext.LazyParser lazyParser = new LazyVCFGenotypesParser(alleles, chr, pos);
             final int nGenotypes = header.getNGenotypeSamples();
-            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, parts[8], nGenotypes);
+            LazyGenotypesContext lazy = new LazyGenotypesContext(lazyParser, line.substring(fieldStarts[8]), nGenotypes);
 
             // did we resort the sample names?  If so, we need to load the genotype data
             if ( !header.samplesWereAlreadySorted() )
@@ -466,6 +568,44 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return vc;
     }
 
+    /**
+     * @return true if the column at index {@code field} of the line is exactly {@code value}
+     */
+    private boolean fieldEquals(final String line, final int field, final String value) {
+        final int length = fieldEnds[field] - fieldStarts[field];
+        return length == value.length() && line.regionMatches(fieldStarts[field], value, 0, length);
+    }
+
+    /**
+     * Parse a decimal int from a region of the line without creating a String for it, accepting exactly what
+     * {@link Integer#parseInt(String)} accepts.
+     *
+     * @throws NumberFormatException if the region is not a valid int
+     */
+    private static int parseInt(final String line, final int start, final int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line.charAt(i) == '-' || line.charAt(i) == '+')) {
+            negative = line.charAt(i) == '-';
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException(line.substring(start, end));
+        }
+
+        // accumulate negatively so that Integer.MIN_VALUE can be represented
+        final long limit = negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE;
+        long result = 0;
+        for (; i < end; i++) {
+            final int digit = Character.digit(line.charAt(i), 10);
+            result = result * 10 - digit;
+            if (digit < 0 || result < limit) {
+                throw new NumberFormatException(line.substring(start, end));
+            }
+        }
+        return (int) (negative ? result : -result);
+    }
+
     /**
      * get the name of this codec
      * @return our set name
@@ -493,7 +633,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
     protected String getCachedString(String str) {
         String internedString = stringCache.get(str);
         if ( internedString == null ) {
-            internedString = new String(str);
+            internedString = stringInterner.intern(str);
             stringCache.put(internedString, internedString);
         }
         return internedString;
@@ -501,43 +641,46 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
     /**
      * parse out the info fields
-     * @param infoField the fields
+     * @param line the line of text for the record
+     * @param start the start of the info field in the line
+     * @param end the end of the info field in the line
      * @return a mapping of keys to objects
      */
-    private Map<String, Object> parseInfo(String infoField) {
+    private Map<String, Object> parseInfo(final String line, final int start, final int end) {
         Map<String, Object> attributes = new HashMap<String, Object>();
 
-        if ( infoField.isEmpty() )
+        if ( start == end )
             generateException("The VCF specification requires a valid (non-zero length) info field");
 
-        if ( !infoField.equals(VCFConstants.EMPTY_INFO_FIELD) ) {
-            if ( infoField.indexOf('\t') != -1 || infoField.indexOf(' ') != -1 )
-                generateException("The VCF specification does not allow for whitespace in the INFO field. Offending field value was \"" + infoField + "\"");
+        if ( end - start != 1 || line.charAt(start) != VCFConstants.EMPTY_INFO_FIELD.charAt(0) ) {
+            if ( indexOf(line, '\t', start, end) != -1 || indexOf(line, ' ', start, end) != -1 )
+                generateException("The VCF specification does not allow for whitespace in the INFO field. Offending field value was \"" + line.substring(start, end) + "\"");
+
+            int fieldEnd;
+            for (int fieldStart = start; fieldStart <= end; fieldStart = fieldEnd + 1) {
+                fieldEnd = indexOf(line, VCFConstants.INFO_FIELD_SEPARATOR_CHAR, fieldStart, end);
+                if ( fieldEnd == -1 ) fieldEnd = end;
 
-            List<String> infoFields = ParsingUtils.split(infoField, VCFConstants.INFO_FIELD_SEPARATOR_CHAR);
-            for (int i = 0; i < infoFields.size(); i++) {
                 String key;
                 Object value;
 
-                int eqI = infoFields.get(i).indexOf("=");
+                int eqI = indexOf(line, '=', fieldStart, fieldEnd);
                 if ( eqI != -1 ) {
-                    key = infoFields.get(i).substring(0, eqI);
-                    String valueString = infoFields.get(i).substring(eqI + 1);
+                    key = stringInterner.intern(line, fieldStart, eqI);
 
                     // split on the INFO field separator
-                    List<String> infoValueSplit = ParsingUtils.split(valueString, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR);
-                    if ( infoValueSplit.size() == 1 ) {
-                        value = vcfTextTransformer.decodeText(infoValueSplit.get(0));
+                    if ( indexOf(line, VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR, eqI + 1, fieldEnd) == -1 ) {
+                        value = vcfTextTransformer.decodeText(line.substring(eqI + 1, fieldEnd));
                         final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
                         if ( headerLine != null && headerLine.getType() == VCFHeaderLineType.Flag && value.equals("0") ) {
                             // deal with the case where a flag field has =0, such as DB=0, by skipping the add
                             continue;
                         }
                     } else {
-                        value = vcfTextTransformer.decodeText(infoValueSplit);
+                        value = vcfTextTransformer.decodeText(ParsingUtils.split(line.substring(eqI + 1, fieldEnd), VCFConstants.INFO_FIELD_ARRAY_SEPARATOR_CHAR));
                     }
                 } else {
-                    key = infoFields.get(i);
+                    key = stringInterner.intern(line, fieldStart, fieldEnd);
                     final VCFInfoHeaderLine headerLine = header.getInfoHeaderLine(key);
                     if ( headerLine != null && headerLine.getType() != VCFHeaderLineType.Flag ) {
                         if ( GeneralUtils.DEBUG_MODE_ENABLED && ! warnedAboutNoEqualsForNonFlag ) {
@@ -562,6 +705,15 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return attributes;
     }
 
+    /**
+     * @return the index of the first {@code ch} in {@code line} between {@code start} (inclusive) and {@code end}
+     * (exclusive), or -1 if there is none
+     */
+    private static int indexOf(final String line, final char ch, final int start, final int end) {
+        final int i = line.indexOf(ch, start);
+        return i < end ? i : -1;
+    }
+
     /**
      * create a an allele from an index and an array of alleles
      * @param index the index
@@ -770,7 +922,7 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         alleleMap.clear();
 
         // cycle through the genotype strings
-        boolean PlIsSet = false;
+        final GenotypeBuilderFields fields = new GenotypeBuilderFields();
         for (int genotypeOffset = 1; genotypeOffset < nParts; genotypeOffset++) {
             List<String> genotypeValues = ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
             genotypeValues = vcfTextTransformer.decodeText(genotypeValues);
@@ -780,49 +932,13 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
 
             // check to see if the value list is longer than the key list, which is a problem
             if (genotypeKeys.size() < genotypeValues.size())
-                generateException("There are too many keys for the sample " + sampleName + ", keys = " + parts[8] + ", values = " + parts[genotypeOffset]);
+                generateException("There are too many keys for the sample " + sampleName + ", keys = " + genotypeParts[0] + ", values = " + genotypeParts[genotypeOffset]);
 
             int genotypeAlleleLocation = -1;
             if (!genotypeKeys.isEmpty()) {
                 gb.maxAttributes(genotypeKeys.size() - 1);
-
-                for (int i = 0; i < genotypeKeys.size(); i++) {
-                    final String gtKey = genotypeKeys.get(i);
-                    boolean missing = i >= genotypeValues.size();
-
-                    // todo -- all of these on the fly parsing of the missing value should be static constants
-                    if (gtKey.equals(VCFConstants.GENOTYPE_KEY)) {
-                        genotypeAlleleLocation = i;
-                    } else if ( missing ) {
-                        // if its truly missing (there no provided value) skip adding it to the attributes
-                    } else if (gtKey.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
-                        final List<String> filters = parseFilters(getCachedString(genotypeValues.get(i)));
-                        if ( filters != null ) gb.filters(filters);
-                    } else if ( genotypeValues.get(i).equals(VCFConstants.MISSING_VALUE_v4) ) {
-                        // don't add missing values to the map
-                    } else {
-                        if (gtKey.equals(VCFConstants.GENOTYPE_QUALITY_KEY)) {
-                            if ( genotypeValues.get(i).equals(VCFConstants.MISSING_GENOTYPE_QUALITY_v3) )
-                                gb.noGQ();
-                            else
-                                gb.GQ((int)Math.round(VCFUtils.parseVcfDouble(genotypeValues.get(i))));
-                        } else if (gtKey.equals(VCFConstants.GENOTYPE_ALLELE_DEPTHS)) {
-                            gb.AD(decodeInts(genotypeValues.get(i)));
-                        } else if (gtKey.equals(VCFConstants.GENOTYPE_PL_KEY)) {
-                            gb.PL(decodeInts(genotypeValues.get(i)));
-                            PlIsSet = true;
-                        } else if (gtKey.equals(VCFConstants.GENOTYPE_LIKELIHOODS_KEY)) {
-                            // Do not overwrite PL with data from GL
-                            if (!PlIsSet) {
-                                gb.PL(GenotypeLikelihoods.fromGLField(genotypeValues.get(i)).getAsPLs());
-                            }
-                        } else if (gtKey.equals(VCFConstants.DEPTH_KEY)) {
-                            gb.DP(Integer.parseInt(genotypeValues.get(i)));
-                        } else {
-                            gb.attribute(gtKey, genotypeValues.get(i));
-                        }
-                    }
-                }
+                fields.gb = gb;
+                genotypeAlleleLocation = parseGenotypeFields(genotypeKeys, genotypeValues, fields);
             }
 
             // check to make sure we found a genotype field if our version is less than 4.1 file
@@ -846,6 +962,231 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return new LazyGenotypesContext.LazyData(genotypes, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
     }
 
+    /**
+     * create the genotypes of a record as columns, in the same way as {@link #createGenotypeMap} creates a genotype
+     * object for each sample
+     *
+     * @param str the string
+     * @param alleles the list of alleles
+     * @return the genotypes, stored in a {@link GenotypeColumns}
+     */
+    public LazyGenotypesContext.LazyData createGenotypeColumns(final String str,
+                                                                 final List<Allele> alleles,
+                                                                 final String chr,
+                                                                 final int pos) {
+        if (genotypeParts == null)
+            genotypeParts = new String[header.getColumnCount() - NUM_STANDARD_FIELDS];
+
+        int nParts = ParsingUtils.split(str, genotypeParts, VCFConstants.FIELD_SEPARATOR_CHAR);
+        if ( nParts != genotypeParts.length )
+            generateException("there are " + (nParts-1) + " genotypes while the header requires that " + (genotypeParts.length-1) + " genotypes be present for all records at " + chr + ":" + pos, lineNo);
+
+        final GenotypeColumns columns = new GenotypeColumns(header.getGenotypeSamples(), alleles);
+
+        // get the format keys
+        List<String> genotypeKeys = ParsingUtils.split(genotypeParts[0], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+
+        // clear out our allele mapping
+        alleleIndexMap.clear();
+
+        // cycle through the genotype strings
+        final GenotypeColumnFields fields = new GenotypeColumnFields(columns);
+        for (int genotypeOffset = 1; genotypeOffset < nParts; genotypeOffset++) {
+            final int sample = genotypeOffset - 1;
+            List<String> genotypeValues = ParsingUtils.split(genotypeParts[genotypeOffset], VCFConstants.GENOTYPE_FIELD_SEPARATOR_CHAR);
+            genotypeValues = vcfTextTransformer.decodeText(genotypeValues);
+
+            // check to see if the value list is longer than the key list, which is a problem
+            if (genotypeKeys.size() < genotypeValues.size())
+                generateException("There are too many keys for the sample " + columns.getSampleNames().get(sample) + ", keys = " + genotypeParts[0] + ", values = " + genotypeParts[genotypeOffset]);
+
+            fields.sample = sample;
+            final int genotypeAlleleLocation = parseGenotypeFields(genotypeKeys, genotypeValues, fields);
+
+            // check to make sure we found a genotype field if our version is less than 4.1 file
+            if ( ! version.isAtLeastAsRecentAs(VCFHeaderVersion.VCF4_1) && genotypeAlleleLocation == -1 )
+                generateException("Unable to find the GT field for the record; the GT field is required before VCF4.1");
+            if ( genotypeAlleleLocation > 0 )
+                generateException("Saw GT field at position " + genotypeAlleleLocation + ", but it must be at the first position for genotypes when present");
+
+            if ( genotypeAlleleLocation != -1 ) {
+                final String GT = genotypeValues.get(genotypeAlleleLocation);
+                final int[] alleleIndices = parseGenotypeAlleleIndices(GT, alleles, alleleIndexMap);
+                // the counterpart of making the genotype in createGenotypeMap
+                try {
+                    columns.setGenotype(sample, alleleIndices, alleleIndices.length, GT.indexOf(VCFConstants.PHASED) != -1);
+                } catch (TribbleException e) {
+                    throw new TribbleException.InternalCodecException(e.getMessage() + ", at position " + chr+":"+pos);
+                }
+            }
+        }
+
+        return new LazyGenotypesContext.LazyData(columns, header.getSampleNamesInOrder(), header.getSampleNameToOffset());
+    }
+
+    /**
+     * parse the FORMAT fields of one sample other than GT, handing each value to fields
+     *
+     * @param genotypeKeys the FORMAT keys of the record
+     * @param genotypeValues the values of the sample, which may be fewer than the keys
+     * @param fields where to store the values
+     * @return the index of the GT key, or -1 if there is none
+     */
+    private int parseGenotypeFields(final List<String> genotypeKeys, final List<String> genotypeValues, final GenotypeFields fields) {
+        int genotypeAlleleLocation = -1;
+        for (int i = 0; i < genotypeKeys.size(); i++) {
+            final String gtKey = genotypeKeys.get(i);
+            boolean missing = i >= genotypeValues.size();
+
+            // todo -- all of these on the fly parsing of the missing value should be static constants
+            if (gtKey.equals(VCFConstants.GENOTYPE_KEY)) {
+                genotypeAlleleLocation = i;
+            } else if ( missing ) {
+                // if its truly missing (there no provided value) skip adding it to the attributes
+            } else if (gtKey.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
+                final List<String> filters = parseFilters(getCachedString(genotypeValues.get(i)));
+                if ( filters != null ) fields.filters(filters);
+            } else if ( genotypeValues.get(i).equals(VCFConstants.MISSING_VALUE_v4) ) {
+                // don't add missing values to the map
+            } else {
+                if (gtKey.equals(VCFConstants.GENOTYPE_QUALITY_KEY)) {
+                    if ( genotypeValues.get(i).equals(VCFConstants.MISSING_GENOTYPE_QUALITY_v3) )
+                        fields.noGQ();
+                    else
+                        fields.GQ((int)Math.round(VCFUtils.parseVcfDouble(genotypeValues.get(i))));
+                } else if (gtKey.equals(VCFConstants.GENOTYPE_ALLELE_DEPTHS)) {
+                    fields.AD(genotypeValues.get(i));
+                } else if (gtKey.equals(VCFConstants.GENOTYPE_PL_KEY)) {
+                    fields.PL(genotypeValues.get(i));
+                    fields.PlIsSet = true;
+                } else if (gtKey.equals(VCFConstants.GENOTYPE_LIKELIHOODS_KEY)) {
+                    // Do not overwrite PL with data from GL
+                    if (!fields.PlIsSet) {
+                        fields.PL(GenotypeLikelihoods.fromGLField(genotypeValues.get(i)).getAsPLs());
+                    }
+                } else if (gtKey.equals(VCFConstants.DEPTH_KEY)) {
+                    fields.DP(Integer.parseInt(genotypeValues.get(i)));
+                } else {
+                    fields.attribute(gtKey, genotypeValues.get(i));
+                }
+            }
+        }
+        return genotypeAlleleLocation;
+    }
+
+    /**
+     * Where {@link #parseGenotypeFields} stores the values of a sample, for the genotypes of one record
+     */
+    private static abstract class GenotypeFields {
+        /** whether PL has been seen in the record, in which case GL is ignored */
+        boolean PlIsSet = false;
+
+        abstract void filters(List<String> filters);
+        abstract void noGQ();
+        abstract void GQ(int GQ);
+        abstract void AD(String value);
+        abstract void PL(String value);
+        abstract void PL(int[] values);
+        abstract void DP(int DP);
+        abstract void attribute(String key, String value);
+    }
+
+    /**
+     * Stores the values of a sample in a {@link GenotypeBuilder}
+     */
+    private static final class GenotypeBuilderFields extends GenotypeFields {
+        GenotypeBuilder gb;
+
+        @Override void filters(final List<String> filters) { gb.filters(filters); }
+        @Override void noGQ() { gb.noGQ(); }
+        @Override void GQ(final int GQ) { gb.GQ(GQ); }
+        @Override void AD(final String value) { gb.AD(decodeInts(value)); }
+        @Override void PL(final String value) { gb.PL(decodeInts(value)); }
+        @Override void PL(final int[] values) { gb.PL(values); }
+        @Override void DP(final int DP) { gb.DP(DP); }
+        @Override void attribute(final String key, final String value) { gb.attribute(key, value); }
+    }
+
+    /**
+     * Stores the values of a sample in {@link GenotypeColumns}, parsing lists of ints through intBuffer
+     */
+    private final class GenotypeColumnFields extends GenotypeFields {
+        private final GenotypeColumns columns;
+        int sample;
+
+        GenotypeColumnFields(final GenotypeColumns columns) {
+            this.columns = columns;
+        }
+
+        @Override void filters(final List<String> filters) { columns.setFilters(sample, filters); }
+        @Override void noGQ() { columns.setGQ(sample, -1); }
+        @Override void GQ(final int GQ) { columns.setGQ(sample, GQ); }
+        @Override void AD(final String value) {
+            final int count = decodeIntsIntoBuffer(value);
+            if ( count != -1 ) columns.setAD(sample, intBuffer, count);
+        }
+        @Override void PL(final String value) {
+            final int count = decodeIntsIntoBuffer(value);
+            if ( count != -1 ) columns.setPL(sample, intBuffer, count);
+        }
+        @Override void PL(final int[] values) { columns.setPL(sample, values, values.length); }
+        @Override void DP(final int DP) { columns.setDP(sample, DP); }
+        @Override void attribute(final String key, final String value) { columns.setAttribute(sample, key, value); }
+    }
+
+    /**
+     * parse the GT field of a genotype into the indices of its alleles in the site alleles, -1 for a no-call,
+     * in the same way as {@link #parseGenotypeAlleles}
+     */
+    private static int[] parseGenotypeAlleleIndices(final String GT, final List<Allele> alleles, final Map<String, int[]> cache) {
+        int[] indices = cache.get(GT);
+
+        if ( indices == null ) {
+            StringTokenizer st = new StringTokenizer(GT, VCFConstants.PHASING_TOKENS);
+            indices = new int[st.countTokens()];
+            for (int i = 0; i < indices.length; i++) {
+                final String index = st.nextToken();
+                if ( index.equals(VCFConstants.EMPTY_ALLELE) ) {
+                    indices[i] = -1;
+                } else {
+                    // validates the index in the same way
+                    oneAllele(index, alleles);
+                    indices[i] = Integer.parseInt(index);
+                }
+            }
+            cache.put(GT, indices);
+        }
+
+        return indices;
+    }
+
+    /**
+     * Parse a comma separated list of ints into intBuffer, in the same way as {@link #decodeInts(String)}
+     *
+     * @return the number of ints, or -1 if any of them is not a valid int
+     */
+    private int decodeIntsIntoBuffer(final String string) {
+        int count = 1;
+        for (int i = string.indexOf(','); i != -1; i = string.indexOf(',', i + 1)) {
+            count++;
+        }
+        if (count > intBuffer.length) {
+            intBuffer = new int[Math.max(count, 2 * intBuffer.length)];
+        }
+        try {
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                int end = string.indexOf(',', start);
+                if (end == -1) end = string.length();
+                intBuffer[i] = parseInt(string, start, end);
+                start = end + 1;
+            }
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+        return count;
+    }
+
     private static final int[] decodeInts(final String string) {
         List<String> split = ParsingUtils.split(string, ',');
         int [] values = new int[split.size()];
@@ -859,6 +1200,18 @@ public abstract class AbstractVCFCodec extends AsciiFeatureCodec<VariantContext>
         return values;
     }
 
+    /**
+     * Decode genotypes into {@link GenotypeColumns}, presented as one lightweight {@link Genotype} view per sample, rather
+     * than into a {@link Genotype} object with its own attribute map and allele list per sample. The columns can be read
+     * directly through {@link LazyGenotypesContext#getGenotypeColumns()}. The default is taken from
+     * {@link Defaults#COLUMNAR_GENOTYPES}.
+     *
+     * @param columnarGenotypes whether to decode genotypes into columns
+     */
+    public void setColumnarGenotypes(final boolean columnarGenotypes) {
+        this.columnarGenotypes = columnarGenotypes;
+    }
+
     /**
      * Forces all VCFCodecs to not perform any on the fly modifications to the VCF header
      * of VCF records.  Useful primarily for raw comparisons such as when comparing
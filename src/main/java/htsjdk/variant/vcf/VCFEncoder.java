@@ -1,6 +1,5 @@
 package htsjdk.variant.vcf;
 
-import htsjdk.samtools.util.RuntimeIOException;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.variant.variantcontext.Allele;
 import htsjdk.variant.variantcontext.Genotype;
@@ -11,15 +10,17 @@ import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.variantcontext.writer.IntGenotypeFieldAccessors;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.SortedMap;
 
 /**
  * Functions specific to encoding VCF records.
@@ -33,6 +34,20 @@ public class VCFEncoder {
     private static final String QUAL_FORMAT_STRING = "%.2f";
     private static final String QUAL_FORMAT_EXTENSION_TO_TRIM = ".00";
 
+    /**
+     * How close to one half the digits of a double after the last decimal place printed may be for it to be formatted
+     * without String.format, which rounds the shortest decimal representation of the double rather than its exact
+     * value; well above the error of scaling any double formatted that way.
+     */
+    private static final double ROUNDING_MARGIN = 1e-6;
+
+    /**
+     * The powers of ten that are exactly representable as doubles.
+     */
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
     private final IntGenotypeFieldAccessors GENOTYPE_FIELD_ACCESSORS = new IntGenotypeFieldAccessors();
 
     private VCFHeader header;
@@ -41,6 +56,12 @@ public class VCFEncoder {
 
     private boolean outputTrailingFormatFields = false;
 
+    // state reused from one record to the next, which makes encoders unsafe to share between threads
+    private final VCFLineBuffer lineBuffer = new VCFLineBuffer(1024);
+    private final Map<String, byte[]> keyBytes = new HashMap<>();
+    private final List<String> infoKeys = new ArrayList<>();
+    private int[] attributeStarts = new int[16];
+
     /**
      * Prepare a VCFEncoder that will encode records appropriate to the given VCF header, optionally
      * allowing missing fields in the header.
@@ -79,13 +100,8 @@ public class VCFEncoder {
      * @return the VCF line
      */
     public String encode(final VariantContext context) {
-        try {
-            final StringBuilder stringBuilder = new StringBuilder(1000);
-            write(stringBuilder, context);
-            return stringBuilder.toString();
-        } catch (final IOException error) {
-            throw new RuntimeIOException("Cannot encode variant", error);
-        }
+        encodeLine(context);
+        return lineBuffer.toString();
     }
 
 
@@ -101,65 +117,83 @@ public class VCFEncoder {
      * @throws IOException
      */
     public void write(final Appendable vcfOutput, final VariantContext context) throws IOException {
+        encodeLine(context);
+        vcfOutput.append(lineBuffer.toString());
+    }
+
+    /**
+     * encodes a {@link VariantContext} as a VCF line, terminated by a newline, and writes its bytes in
+     * {@link #VCF_CHARSET} to an {@link OutputStream} with a single write
+     *
+     * This is the most efficient way to write records, as the line is encoded straight into a buffer of bytes that is
+     * reused from one record to the next, with no intermediate strings.
+     *
+     * @param vcfOutput the {@link OutputStream} to write to
+     * @param context the variant
+     * @throws IOException
+     */
+    public void writeLine(final OutputStream vcfOutput, final VariantContext context) throws IOException {
+        encodeLine(context);
+        lineBuffer.append('\n');
+        lineBuffer.writeTo(vcfOutput);
+    }
+
+    /**
+     * encode the line for context, without a newline, into lineBuffer
+     */
+    private void encodeLine(final VariantContext context) {
         if (this.header == null) {
             throw new NullPointerException("The header field must be set on the VCFEncoder before encoding records.");
         }
+        final VCFLineBuffer out = lineBuffer;
+        out.reset();
+
         // CHROM
-        vcfOutput.append(context.getContig()).append(VCFConstants.FIELD_SEPARATOR)
-                // POS
-                .append(String.valueOf(context.getStart())).append(VCFConstants.FIELD_SEPARATOR)
-                // ID
-                .append(context.getID()).append(VCFConstants.FIELD_SEPARATOR)
-                // REF
-                .append(context.getReference().getDisplayString()).append(VCFConstants.FIELD_SEPARATOR);
+        out.append(context.getContig());
+        out.append('\t');
+        // POS
+        out.appendInt(context.getStart());
+        out.append('\t');
+        // ID
+        out.append(context.getID());
+        out.append('\t');
+        // REF
+        out.append(context.getReference().getDisplayString());
+        out.append('\t');
 
         // ALT
         if ( context.isVariant() ) {
-            Allele altAllele = context.getAlternateAllele(0);
-            String alt = altAllele.getDisplayString();
-            vcfOutput.append(alt);
-
-            for (int i = 1; i < context.getAlternateAlleles().size(); i++) {
-                altAllele = context.getAlternateAllele(i);
-                alt = altAllele.getDisplayString();
-                vcfOutput.append(',');
-                vcfOutput.append(alt);
+            final List<Allele> altAlleles = context.getAlternateAlleles();
+            out.append(altAlleles.get(0).getDisplayString());
+            for (int i = 1; i < altAlleles.size(); i++) {
+                out.append(',');
+                out.append(altAlleles.get(i).getDisplayString());
             }
         } else {
-            vcfOutput.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
+            out.append(VCFConstants.EMPTY_ALTERNATE_ALLELE_FIELD);
         }
 
-        vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
+        out.append('\t');
 
         // QUAL
         if ( !context.hasLog10PError()) {
-            vcfOutput.append(VCFConstants.MISSING_VALUE_v4);
+            out.append(VCFConstants.MISSING_VALUE_v4);
         } else {
-            vcfOutput.append(formatQualValue(context.getPhredScaledQual()));
+            appendQualValue(context.getPhredScaledQual(), out);
         }
-        vcfOutput.append(VCFConstants.FIELD_SEPARATOR)
-                // FILTER
-                .append(getFilterString(context)).append(VCFConstants.FIELD_SEPARATOR);
+        out.append('\t');
+        // FILTER
+        out.append(getFilterString(context));
+        out.append('\t');
 
         // INFO
-        final Map<String, String> infoFields = new TreeMap<>();
-        for (final Map.Entry<String, Object> field : context.getAttributes().entrySet()) {
-            if (!this.header.hasInfoLine(field.getKey())) {
-                fieldIsMissingFromHeaderError(context, field.getKey(), "INFO");
-            }
-
-            final String outputValue = formatVCFField(field.getValue());
-            if (outputValue != null) {
-                infoFields.put(field.getKey(), outputValue);
-            }
-        }
-        writeInfoString(infoFields, vcfOutput);
+        appendInfo(context, out);
 
         // FORMAT
         final GenotypesContext gc = context.getGenotypes();
         if (gc.isLazyWithData() && ((LazyGenotypesContext) gc).getUnparsedGenotypeData() instanceof String) {
-            vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
-            vcfOutput.append(((LazyGenotypesContext) gc).getUnparsedGenotypeData().toString());
+            out.append('\t');
+            out.append(((LazyGenotypesContext) gc).getUnparsedGenotypeData().toString());
         } else {
             final List<String> genotypeAttributeKeys = context.calcVCFGenotypeKeys(this.header);
             if ( !genotypeAttributeKeys.isEmpty()) {
@@ -168,13 +202,16 @@ public class VCFEncoder {
                         fieldIsMissingFromHeaderError(context, format, "FORMAT");
                     }
                 }
-                final String genotypeFormatString = ParsingUtils.join(VCFConstants.GENOTYPE_FIELD_SEPARATOR, genotypeAttributeKeys);
 
-                vcfOutput.append(VCFConstants.FIELD_SEPARATOR);
-                vcfOutput.append(genotypeFormatString);
+                out.append('\t');
+                for (int i = 0; i < genotypeAttributeKeys.size(); i++) {
+                    if (i > 0) {
+                        out.append(':');
+                    }
+                    out.append(getKeyBytes(genotypeAttributeKeys.get(i)));
+                }
 
-                final Map<Allele, String> alleleStrings = buildAlleleStrings(context);
-                appendGenotypeData(context, alleleStrings, genotypeAttributeKeys, vcfOutput);
+                appendGenotypeData(context, null, genotypeAttributeKeys, out);
             }
         }
     }
@@ -209,6 +246,19 @@ public class VCFEncoder {
         return s;
     }
 
+    private static void appendQualValue(final double qual, final VCFLineBuffer out) {
+        final int start = out.length();
+        if (appendFixed(qual, 2, out)) {
+            final int end = out.length();
+            if (out.byteAt(end - 3) == '.' && out.byteAt(end - 2) == '0' && out.byteAt(end - 1) == '0') {
+                out.setLength(end - QUAL_FORMAT_EXTENSION_TO_TRIM.length());
+            }
+        } else {
+            out.setLength(start);
+            out.append(formatQualValue(qual));
+        }
+    }
+
     private void fieldIsMissingFromHeaderError(final VariantContext vc, final String id, final String field) {
         if (!allowMissingFieldsInHeader) {
             throw new IllegalStateException("Key " + id + " found in VariantContext field " + field
@@ -248,6 +298,72 @@ public class VCFEncoder {
         return result;
     }
 
+    /**
+     * Append val to out as {@link #formatVCFField(Object)} formats it, without creating intermediate strings for the
+     * common types of values.
+     *
+     * @return false if nothing was appended because val is {@link Boolean#FALSE}, for which formatVCFField returns null
+     */
+    @SuppressWarnings("rawtypes")
+    private boolean appendVCFField(final Object val, final VCFLineBuffer out) {
+        if (val == null) {
+            out.append(VCFConstants.MISSING_VALUE_v4);
+        } else if (val instanceof String) {
+            out.append((String) val);
+        } else if (val instanceof Integer) {
+            out.appendInt((Integer) val);
+        } else if (val instanceof Double) {
+            appendVCFDouble((Double) val, out);
+        } else if (val instanceof Boolean) {
+            return (Boolean) val;
+        } else if (val instanceof int[]) {
+            final int[] values = (int[]) val;
+            if (values.length == 0) {
+                out.append(VCFConstants.MISSING_VALUE_v4);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.appendInt(values[i]);
+            }
+        } else if (val instanceof double[]) {
+            final double[] values = (double[]) val;
+            if (values.length == 0) {
+                out.append(VCFConstants.MISSING_VALUE_v4);
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendVCFDouble(values[i], out);
+            }
+        } else if (val instanceof List || val.getClass().isArray()) {
+            final Object[] values = val instanceof List ? ((List) val).toArray() : null;
+            final int length = values != null ? values.length : Array.getLength(val);
+            if (length == 0) {
+                out.append(VCFConstants.MISSING_VALUE_v4);
+                return true;
+            }
+            for (int i = 0; i < length; i++) {
+                // Booleans in lists are formatted in ways that aren't worth reproducing here
+                if ((values != null ? values[i] : Array.get(val, i)) instanceof Boolean) {
+                    out.append(formatVCFField(val));
+                    return true;
+                }
+            }
+            for (int i = 0; i < length; i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                appendVCFField(values != null ? values[i] : Array.get(val, i), out);
+            }
+        } else {
+            out.append(val.toString());
+        }
+        return true;
+    }
+
     /**
      * Takes a double value and pretty prints it to a String for display
      * <p>
@@ -278,6 +394,117 @@ public class VCFEncoder {
         return String.format(Locale.US, format, d);
     }
 
+    /**
+     * Append d formatted exactly as by {@link #formatVCFDouble(double)}, without the use of String.format in the
+     * common cases.
+     */
+    static void appendVCFDouble(final double d, final VCFLineBuffer out) {
+        final int start = out.length();
+        final boolean formatted;
+        if (d < 1) {
+            if (d < 0.01) {
+                if (Math.abs(d) >= 1e-20) {
+                    formatted = appendScientific(d, out);
+                } else {
+                    out.append("0.00");
+                    return;
+                }
+            } else {
+                formatted = appendFixed(d, 3, out);
+            }
+        } else {
+            formatted = appendFixed(d, 2, out);
+        }
+
+        if (!formatted) {
+            out.setLength(start);
+            out.append(formatVCFDouble(d));
+        }
+    }
+
+    /**
+     * Append d as by String.format with "%.2f" or "%.3f", for values of d that can be rounded reliably with
+     * double arithmetic: non-negative values well below 2^53 / 1000 whose digits after the last decimal place are
+     * not too close to one half, where the rounding of d itself and of its shortest decimal representation, which
+     * is what String.format rounds, might differ.
+     *
+     * @return whether d was appended; if not, the buffer may contain partial output
+     */
+    private static boolean appendFixed(final double d, final int decimals, final VCFLineBuffer out) {
+        // the sign bit is clear for positive values and positive zero only, and comparisons are false for NaN
+        if (Double.doubleToRawLongBits(d) < 0 || !(d < 1e7)) {
+            return false;
+        }
+        final long scale = decimals == 2 ? 100 : 1000;
+        final double scaled = d * scale;
+        final long floor = (long) scaled;
+        final double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < ROUNDING_MARGIN) {
+            return false;
+        }
+        final long rounded = fraction > 0.5 ? floor + 1 : floor;
+        out.appendDigits(rounded / scale, 1);
+        out.append('.');
+        out.appendDigits(rounded % scale, decimals);
+        return true;
+    }
+
+    /**
+     * Append d as by String.format with "%.3e", under the same conditions as {@link #appendFixed}.
+     *
+     * @return whether d was appended; if not, the buffer may contain partial output
+     */
+    private static boolean appendScientific(final double d, final VCFLineBuffer out) {
+        final double magnitude = Math.abs(d);
+        if (!(magnitude > 0) || Double.isInfinite(magnitude)) {
+            return false;
+        }
+        int exponent = (int) Math.floor(Math.log10(magnitude));
+        double scaled = scaleToFourDigits(magnitude, exponent);
+        // log10 can be off by one around powers of ten
+        if (scaled < 1000) {
+            scaled = scaleToFourDigits(magnitude, --exponent);
+        } else if (scaled >= 10000) {
+            scaled = scaleToFourDigits(magnitude, ++exponent);
+        }
+        if (!(scaled >= 1000 && scaled < 10000)) {
+            return false;
+        }
+
+        final long floor = (long) scaled;
+        final double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) < ROUNDING_MARGIN) {
+            return false;
+        }
+        long rounded = fraction > 0.5 ? floor + 1 : floor;
+        if (rounded == 10000) {
+            rounded = 1000;
+            exponent++;
+        }
+
+        if (d < 0) {
+            out.append('-');
+        }
+        out.appendDigits(rounded / 1000, 1);
+        out.append('.');
+        out.appendDigits(rounded % 1000, 3);
+        out.append('e');
+        out.append(exponent < 0 ? '-' : '+');
+        out.appendDigits(Math.abs(exponent), 2);
+        return true;
+    }
+
+    /**
+     * @return magnitude * 10^(3 - exponent), or NaN if that can't be computed with a single exact power of ten
+     */
+    private static double scaleToFourDigits(final double magnitude, final int exponent) {
+        final int power = 3 - exponent;
+        if (Math.abs(power) >= POWERS_OF_TEN.length) {
+            return Double.NaN;
+        }
+        return power >= 0 ? magnitude * POWERS_OF_TEN[power] : magnitude / POWERS_OF_TEN[-power];
+    }
+
     static int countOccurrences(final char c, final String s) {
         int count = 0;
         for (int i = 0; i < s.length(); i++) {
@@ -295,125 +522,171 @@ public class VCFEncoder {
      * Add the genotype data
      */
     public void addGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final StringBuilder builder) {
-        try {
-            appendGenotypeData(vc,alleleMap,genotypeFormatKeys,builder);
-        } catch (final IOException err) {
-            throw new RuntimeIOException("addGenotypeData failed",err);
-        }
+        final VCFLineBuffer out = new VCFLineBuffer(256);
+        appendGenotypeData(vc, alleleMap, genotypeFormatKeys, out);
+        builder.append(out.toString());
     }
 
     /**
-     * Add the genotype Data to a java.lang.Appendable
+     * Add the genotype data to a line buffer
      * @param vc the variant
-     * @param alleleMap
+     * @param alleleMap encoding of each allele, or null to look up the index of each allele in vc
      * @param genotypeFormatKeys
-     * @param vcfoutput VCF output
-     * @throws IOException
+     * @param out the line buffer
      */
-    private void appendGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final Appendable vcfoutput) throws IOException {final int ploidy = vc.getMaxPloidy(2);
+    private void appendGenotypeData(final VariantContext vc, final Map<Allele, String> alleleMap, final List<String> genotypeFormatKeys, final VCFLineBuffer out) {
+        final int ploidy = vc.getMaxPloidy(2);
+        final GenotypesContext genotypes = vc.getGenotypes();
+        final List<String> samples = this.header.getGenotypeSamples();
+        final boolean hasGT = genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY);
+        if (attributeStarts.length < 2 * genotypeFormatKeys.size()) {
+            attributeStarts = new int[2 * genotypeFormatKeys.size()];
+        }
 
-        for (final String sample : this.header.getGenotypeSamples()) {
-            vcfoutput.append(VCFConstants.FIELD_SEPARATOR);
+        for (int sampleIndex = 0; sampleIndex < samples.size(); sampleIndex++) {
+            final String sample = samples.get(sampleIndex);
+            out.append('\t');
 
-            Genotype g = vc.getGenotype(sample);
+            // the genotypes are usually in the order of the header samples, which saves a lookup by name
+            Genotype g = sampleIndex < genotypes.size() ? genotypes.get(sampleIndex) : null;
+            if (g == null || !g.getSampleName().equals(sample)) {
+                g = vc.getGenotype(sample);
+            }
             if (g == null) {
                 g = GenotypeBuilder.createMissing(sample, ploidy);
             }
 
-            final List<String> attrs = new ArrayList<>(genotypeFormatKeys.size());
+            // the offsets of the separator and of the value of each attribute written, so that trailing missing
+            // values can be removed
+            int nAttributes = 0;
             for (final String field : genotypeFormatKeys) {
                 if (field.equals(VCFConstants.GENOTYPE_KEY)) {
                     if (!g.isAvailable()) {
                         throw new IllegalStateException("GTs cannot be missing for some samples if they are available for others in the record");
                     }
 
-                    writeAllele(g.getAllele(0), alleleMap, vcfoutput);
+                    writeAllele(g.getAllele(0), vc, alleleMap, out);
                     for (int i = 1; i < g.getPloidy(); i++) {
-                        vcfoutput.append(g.isPhased() ? VCFConstants.PHASED : VCFConstants.UNPHASED);
-                        writeAllele(g.getAllele(i), alleleMap, vcfoutput);
+                        out.append(g.isPhased() ? '|' : '/');
+                        writeAllele(g.getAllele(i), vc, alleleMap, out);
                     }
                     continue;
+                }
+
+                final int start = out.length();
+                if (nAttributes > 0 || hasGT) {
+                    out.append(':');
+                }
+                final int valueStart = out.length();
 
+                final boolean written;
+                if (field.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
+                    out.append(g.isFiltered() ? g.getFilters() : VCFConstants.PASSES_FILTERS_v4);
+                    written = true;
                 } else {
-                    final String outputValue;
-                    if (field.equals(VCFConstants.GENOTYPE_FILTER_KEY)) {
-                        outputValue = g.isFiltered() ? g.getFilters() : VCFConstants.PASSES_FILTERS_v4;
-                    } else {
-                        final IntGenotypeFieldAccessors.Accessor accessor = GENOTYPE_FIELD_ACCESSORS.getAccessor(field);
-                        if (accessor != null) {
-                            final int[] intValues = accessor.getValues(g);
-                            if (intValues == null) {
-                                outputValue = VCFConstants.MISSING_VALUE_v4;
-                            } else if (intValues.length == 1) { // fast path
-                                outputValue = Integer.toString(intValues[0]);
-                            } else {
-                                final StringBuilder sb = new StringBuilder();
-                                sb.append(intValues[0]);
-                                for (int i = 1; i < intValues.length; i++) {
-                                    sb.append(',');
-                                    sb.append(intValues[i]);
-                                }
-                                outputValue = sb.toString();
-                            }
+                    final IntGenotypeFieldAccessors.Accessor accessor = GENOTYPE_FIELD_ACCESSORS.getAccessor(field);
+                    if (accessor != null) {
+                        final int[] intValues = accessor.getValues(g);
+                        if (intValues == null) {
+                            out.append(VCFConstants.MISSING_VALUE_v4);
                         } else {
-                            Object val = g.hasExtendedAttribute(field) ? g.getExtendedAttribute(field) : VCFConstants.MISSING_VALUE_v4;
-                            outputValue = formatVCFField(val);
+                            out.appendInt(intValues[0]);
+                            for (int i = 1; i < intValues.length; i++) {
+                                out.append(',');
+                                out.appendInt(intValues[i]);
+                            }
                         }
+                        written = true;
+                    } else {
+                        written = appendVCFField(g.hasExtendedAttribute(field) ? g.getExtendedAttribute(field) : VCFConstants.MISSING_VALUE_v4, out);
                     }
+                }
 
-                    if (outputValue != null) {
-                        attrs.add(outputValue);
-                    }
+                if (written) {
+                    attributeStarts[2 * nAttributes] = start;
+                    attributeStarts[2 * nAttributes + 1] = valueStart;
+                    nAttributes++;
+                } else {
+                    out.setLength(start);
                 }
             }
 
             // strip off trailing missing values
             if (!outputTrailingFormatFields) {
-                for (int i = attrs.size() - 1; i >= 0; i--) {
-                    if (isMissingValue(attrs.get(i))) {
-                        attrs.remove(i);
-                    } else {
-                        break;
-                    }
+                for (int i = nAttributes - 1; i >= 0 && isMissingValue(out, attributeStarts[2 * i + 1]); i--) {
+                    out.setLength(attributeStarts[2 * i]);
                 }
             }
+        }
+    }
 
-            for (int i = 0; i < attrs.size(); i++) {
-                if ( i > 0 || genotypeFormatKeys.contains(VCFConstants.GENOTYPE_KEY)) {
-                    vcfoutput.append(VCFConstants.GENOTYPE_FIELD_SEPARATOR);
-                }
-                vcfoutput.append(attrs.get(i));
+    /**
+     * @return whether the bytes in out from start on are a missing value, as by {@link #isMissingValue(String)}
+     */
+    private static boolean isMissingValue(final VCFLineBuffer out, final int start) {
+        for (int i = start; i < out.length(); i++) {
+            final byte b = out.byteAt(i);
+            if (b != VCFConstants.MISSING_VALUE_v4.charAt(0) && b != ',') {
+                return false;
             }
         }
+        return true;
     }
 
     /*
-     * Create the info string; assumes that no values are null
+     * Create the info string
      */
-    private void writeInfoString(final Map<String, String> infoFields, final Appendable vcfoutput) throws IOException {
-        if ( infoFields.isEmpty() ) {
-            vcfoutput.append(VCFConstants.EMPTY_INFO_FIELD);
-            return;
+    @SuppressWarnings("rawtypes")
+    private void appendInfo(final VariantContext vc, final VCFLineBuffer out) {
+        final Map<String, Object> attributes = vc.getAttributes();
+        infoKeys.clear();
+        for (final String key : attributes.keySet()) {
+            if (!this.header.hasInfoLine(key)) {
+                fieldIsMissingFromHeaderError(vc, key, "INFO");
+            }
+            infoKeys.add(key);
+        }
+        if (!(attributes instanceof SortedMap && ((SortedMap) attributes).comparator() == null)) {
+            Collections.sort(infoKeys);
         }
 
-        boolean isFirst = true;
-        for (final Map.Entry<String, String> entry : infoFields.entrySet()) {
-            if (isFirst) {
-                isFirst = false;
+        final int infoStart = out.length();
+        for (final String key : infoKeys) {
+            final int start = out.length();
+            if (start > infoStart) {
+                out.append(';');
+            }
+            out.append(getKeyBytes(key));
+            out.append('=');
+            final int valueStart = out.length();
+
+            if (!appendVCFField(attributes.get(key), out)) {
+                out.setLength(start);
+            } else if (out.length() == valueStart) {
+                out.setLength(valueStart - 1);
             } else {
-                vcfoutput.append(VCFConstants.INFO_FIELD_SEPARATOR);
+                final VCFInfoHeaderLine metaData = this.header.getInfoHeaderLine(key);
+                if (metaData != null && metaData.getCountType() == VCFHeaderLineCount.INTEGER && metaData.getCount() == 0) {
+                    out.setLength(valueStart - 1);
+                }
             }
+        }
 
-            vcfoutput.append(entry.getKey());
+        if (out.length() == infoStart) {
+            out.append(VCFConstants.EMPTY_INFO_FIELD);
+        }
+    }
 
-            if ( ! entry.getValue().isEmpty()) {
-                final VCFInfoHeaderLine metaData = this.header.getInfoHeaderLine(entry.getKey());
-                if ( metaData == null || metaData.getCountType() != VCFHeaderLineCount.INTEGER || metaData.getCount() != 0 ) {
-                    vcfoutput.append('=');
-                    vcfoutput.append(entry.getValue());
-                }
-            }
+    /**
+     * @return key encoded for the line buffer, cached as the same keys are written for every record
+     */
+    private byte[] getKeyBytes(final String key) {
+        byte[] bytes = keyBytes.get(key);
+        if (bytes == null) {
+            bytes = VCFLineBuffer.encode(key);
+            keyBytes.put(key, bytes);
         }
+        return bytes;
     }
 
     public Map<Allele, String> buildAlleleStrings(final VariantContext vc) {
@@ -428,11 +701,33 @@ public class VCFEncoder {
         return alleleMap;
     }
 
-    private static void writeAllele(final Allele allele, final Map<Allele, String> alleleMap, final Appendable vcfOutput) throws IOException {
-        final String encoding = alleleMap.get(allele);
-        if (encoding == null) {
-            throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
+    private static void writeAllele(final Allele allele, final VariantContext vc, final Map<Allele, String> alleleMap, final VCFLineBuffer out) {
+        if (alleleMap != null) {
+            final String encoding = alleleMap.get(allele);
+            if (encoding == null) {
+                throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
+            }
+            out.append(encoding);
+            return;
+        }
+
+        final List<Allele> alleles = vc.getAlleles();
+        for (int i = 0; i < alleles.size(); i++) {
+            if (alleles.get(i) == allele) {
+                out.appendInt(i);
+                return;
+            }
+        }
+        for (int i = 0; i < alleles.size(); i++) {
+            if (alleles.get(i).equals(allele)) {
+                out.appendInt(i);
+                return;
+            }
+        }
+        if (allele.equals(Allele.NO_CALL)) {
+            out.append(VCFConstants.EMPTY_ALLELE);
+            return;
         }
-        vcfOutput.append(encoding);
+        throw new RuntimeException("Allele " + allele + " is not an allele in the variant context");
     }
 }
@@ -29,18 +29,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import java.util.function.Function;
 import java.util.zip.GZIPInputStream;
 
+import htsjdk.samtools.Defaults;
 import htsjdk.samtools.seekablestream.SeekablePathStream;
 import htsjdk.samtools.util.AbstractIterator;
 import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.ThreadPoolUtil;
 import htsjdk.tribble.readers.LineIterator;
 import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.tribble.util.ParsingUtils;
 import htsjdk.variant.bcf2.BCF2Codec;
 import htsjdk.variant.bcf2.BCFVersion;
+import htsjdk.variant.variantcontext.LazyGenotypesContext;
 import htsjdk.variant.variantcontext.VariantContext;
 
 /**
@@ -62,6 +73,42 @@ import htsjdk.variant.variantcontext.VariantContext;
  */
 
 public class VCFIteratorBuilder {
+    /**
+     * Approximate number of characters of VCF lines handed to a decoding thread at a time.
+     */
+    private static final int DECODE_BATCH_CHARS = 512 * 1024;
+
+    private static final ExecutorService decodePool = ThreadPoolUtil.newProcessorDaemonThreadPool();
+
+    private int decodeThreads = Defaults.DECODE_THREADS;
+    private boolean decodeGenotypes = false;
+
+    /**
+     * Set the number of threads used to decode VCF records for iterators opened after this call.
+     * If greater than 1, lines are read ahead in batches on the calling thread and parsed into
+     * {@link VariantContext}s on a shared pool of background threads. Records are still returned in file order.
+     * BCF input is always decoded on the calling thread.
+     * @param decodeThreads number of batches of records to decode concurrently; 0 or 1 to decode on the calling thread.
+     * @return this builder
+     */
+    public VCFIteratorBuilder setDecodeThreads(final int decodeThreads) {
+        if (decodeThreads < 0) {
+            throw new IllegalArgumentException("Invalid number of decode threads: " + decodeThreads);
+        }
+        this.decodeThreads = decodeThreads;
+        return this;
+    }
+
+    /**
+     * If true, the genotypes of each record are fully decoded before the record is returned, rather than when they
+     * are first accessed. When decoding on background threads, this moves genotype decoding onto those threads.
+     * @param decodeGenotypes whether to decode genotypes eagerly
+     * @return this builder
+     */
+    public VCFIteratorBuilder setDecodeGenotypes(final boolean decodeGenotypes) {
+        this.decodeGenotypes = decodeGenotypes;
+        return this;
+    }
 
     /**
      * creates a VCF iterator from an input stream It detects if the stream is a
@@ -71,7 +118,6 @@ public class VCFIteratorBuilder {
      * @return the VCFIterator
      * @throws IOException
      */
-    @SuppressWarnings("static-method")
     public VCFIterator open(final InputStream in) throws IOException {
         if (in == null) {
             throw new IllegalArgumentException("input stream is null");
@@ -91,10 +137,10 @@ public class VCFIteratorBuilder {
 
         if (bcfVersion != null) {
             //this is BCF
-            return new BCFInputStreamIterator(bufferedinput);
+            return new BCFInputStreamIterator(bufferedinput, decodeGenotypes);
         } else {
             //this is VCF
-            return new VCFReaderIterator(bufferedinput);
+            return new VCFReaderIterator(bufferedinput, decodeThreads, decodeGenotypes);
         }
     }
 
@@ -158,6 +204,16 @@ public class VCFIteratorBuilder {
         return this.open(file.toPath());
     }
 
+    /**
+     * Fully decode the genotypes of a record if they are still encoded.
+     */
+    private static VariantContext decodeGenotypes(final VariantContext vc) {
+        if (vc != null && vc.getGenotypes() instanceof LazyGenotypesContext) {
+            ((LazyGenotypesContext) vc.getGenotypes()).decode();
+        }
+        return vc;
+    }
+
     /** implementation of VCFIterator, reading VCF */
     private static class VCFReaderIterator
             extends AbstractIterator<VariantContext>
@@ -170,11 +226,31 @@ public class VCFIteratorBuilder {
         private final VCFHeader vcfHeader;
         /** Iterator over the lines of the VCF */
         private final LineIterator lineIterator;
+        /** whether to decode genotypes before returning each record */
+        private final boolean decodeGenotypes;
+
+        // Batches of lines (in file order) being decoded on background threads. Null if decoding on this thread.
+        private final Deque<Future<LineBatch>> pendingBatches;
+        private final int maxPendingBatches;
+        private LineBatch currentBatch = null;
+        /** number of lines read, including the header, which is also the codec's line number for the next batch */
+        private int linesRead;
 
-        VCFReaderIterator(final InputStream inputStream) {
+        VCFReaderIterator(final InputStream inputStream, final int decodeThreads, final boolean decodeGenotypes) {
             this.inputStream = inputStream;
             this.lineIterator = this.codec.makeSourceFromStream(this.inputStream);
             this.vcfHeader = (VCFHeader) this.codec.readActualHeader(this.lineIterator);
+            this.decodeGenotypes = decodeGenotypes;
+            this.linesRead = this.codec.lineNo;
+            if (decodeThreads > 1) {
+                this.pendingBatches = new ArrayDeque<>();
+                // read twice as many batches as can be decoded at once, so that the decoding threads stay busy
+                // while the consumer works through the batches that are already decoded
+                this.maxPendingBatches = 2 * decodeThreads;
+            } else {
+                this.pendingBatches = null;
+                this.maxPendingBatches = 0;
+            }
         }
 
         @Override
@@ -184,16 +260,133 @@ public class VCFIteratorBuilder {
 
         @Override
         protected VariantContext advance() {
-            return this.lineIterator.hasNext() ? this.codec.decode(this.lineIterator.next()) : null;
+            if (this.pendingBatches != null) {
+                return advanceDecoded();
+            }
+            if (!this.lineIterator.hasNext()) {
+                return null;
+            }
+            final VariantContext vc = this.codec.decode(this.lineIterator.next());
+            return this.decodeGenotypes ? decodeGenotypes(vc) : vc;
+        }
+
+        /**
+         * Take the next record from the batches decoded on background threads, reading more batches as required.
+         */
+        private VariantContext advanceDecoded() {
+            while (this.currentBatch == null || this.currentBatch.nextIndex == this.currentBatch.size) {
+                while (this.lineIterator.hasNext() && this.pendingBatches.size() < this.maxPendingBatches) {
+                    this.pendingBatches.add(decodePool.submit(readBatch()));
+                }
+                if (this.pendingBatches.isEmpty()) {
+                    return null;
+                }
+                this.currentBatch = waitFor(this.pendingBatches.poll());
+            }
+            final int i = this.currentBatch.nextIndex++;
+            if (this.currentBatch.errors != null && this.currentBatch.errors[i] != null) {
+                // as when decoding on the calling thread, the next call carries on with the line after this one
+                final RuntimeException error = this.currentBatch.errors[i];
+                this.currentBatch.errors[i] = null;
+                throw error;
+            }
+            final VariantContext vc = this.currentBatch.records[i];
+            this.currentBatch.records[i] = null;
+            return vc;
+        }
+
+        /**
+         * Read the next batch of lines, and give them a codec of their own to be decoded with.
+         */
+        private LineBatch readBatch() {
+            final VCFCodec batchCodec = new VCFCodec();
+            batchCodec.copyDecodingStateFrom(this.codec);
+            batchCodec.lineNo = this.linesRead;
+            final LineBatch batch = new LineBatch(batchCodec, this.decodeGenotypes);
+            int chars = 0;
+            while (chars < DECODE_BATCH_CHARS && this.lineIterator.hasNext()) {
+                final String line = this.lineIterator.next();
+                batch.lines.add(line);
+                chars += line.length();
+            }
+            this.linesRead += batch.lines.size();
+            return batch;
         }
 
         @Override
         public void close() {
+            if (this.pendingBatches != null) {
+                // decoding threads do not use the stream, so there is no need to wait for them
+                this.pendingBatches.forEach(batch -> batch.cancel(false));
+                this.pendingBatches.clear();
+            }
             CloserUtil.close(this.lineIterator);
             CloserUtil.close(this.inputStream);
         }
     }
 
+    private static LineBatch waitFor(final Future<LineBatch> future) {
+        try {
+            return future.get();
+        } catch (final InterruptedException e) {
+            throw new RuntimeException("Interrupted waiting for decoding thread", e);
+        } catch (final ExecutionException e) {
+            throw new RuntimeException("Exception decoding records", e.getCause());
+        }
+    }
+
+    /**
+     * Lines read from a VCF, to be decoded on a background thread with a codec used by no other thread.
+     * Genotypes that are not decoded eagerly are decoded later with the same codec, on the thread that
+     * first accesses them.
+     */
+    private static class LineBatch implements Callable<LineBatch> {
+        private final VCFCodec codec;
+        /** line number of the line before this batch, as the codec counts lines */
+        private final int firstLineNo;
+        private final boolean decodeGenotypes;
+        private final List<String> lines = new ArrayList<>();
+        private VariantContext[] records;
+        private int size = 0;
+        private int nextIndex = 0;
+        /**
+         * Exceptions decoding each line, to be thrown in place of its record. Null if every line was decoded.
+         */
+        private RuntimeException[] errors;
+
+        private LineBatch(final VCFCodec codec, final boolean decodeGenotypes) {
+            this.codec = codec;
+            this.firstLineNo = codec.lineNo;
+            this.decodeGenotypes = decodeGenotypes;
+        }
+
+        @Override
+        public LineBatch call() {
+            records = new VariantContext[lines.size()];
+            for (int i = 0; i < lines.size(); i++) {
+                // a line that fails part way through may not have been counted by the codec
+                codec.lineNo = firstLineNo + i;
+                final String line = lines.set(i, null);
+                size = i + 1;
+                try {
+                    final VariantContext vc = codec.decode(line);
+                    records[i] = decodeGenotypes ? decodeGenotypes(vc) : vc;
+                    if (vc == null) {
+                        // as when decoding on the calling thread, iteration stops at a line that is not a record
+                        break;
+                    }
+                } catch (final RuntimeException e) {
+                    // record the error in place of this line's record, and go on to decode the rest of the batch
+                    if (errors == null) {
+                        errors = new RuntimeException[lines.size()];
+                    }
+                    errors[i] = e;
+                }
+            }
+            return this;
+        }
+    }
+
     /** implementation of VCFIterator, reading BCF */
     private static class BCFInputStreamIterator
             extends AbstractIterator<VariantContext>
@@ -204,10 +397,13 @@ public class VCFIteratorBuilder {
         private final BCF2Codec codec = new BCF2Codec();
         /** the VCF header */
         private final VCFHeader vcfHeader;
+        /** whether to decode genotypes before returning each record */
+        private final boolean decodeGenotypes;
 
-        BCFInputStreamIterator(final InputStream inputStream) {
+        BCFInputStreamIterator(final InputStream inputStream, final boolean decodeGenotypes) {
             this.inputStream = this.codec.makeSourceFromStream(inputStream);
             this.vcfHeader = (VCFHeader) this.codec.readHeader(this.inputStream).getHeaderValue();
+            this.decodeGenotypes = decodeGenotypes;
         }
 
         @Override
@@ -217,7 +413,11 @@ public class VCFIteratorBuilder {
 
         @Override
         protected VariantContext advance() {
-            return this.codec.isDone(this.inputStream) ? null : this.codec.decode(this.inputStream);
+            if (this.codec.isDone(this.inputStream)) {
+                return null;
+            }
+            final VariantContext vc = this.codec.decode(this.inputStream);
+            return this.decodeGenotypes ? decodeGenotypes(vc) : vc;
         }
 
         @Override
@@ -0,0 +1,157 @@
+package htsjdk.variant.vcf;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * A reusable, growable byte buffer that {@link VCFEncoder} encodes a record into, with direct formatting of ints.
+ *
+ * Text is stored as UTF-8, so that it can be decoded again without loss; since VCF lines are almost always pure
+ * ASCII, which is the same in UTF-8 and in {@link VCFEncoder#VCF_CHARSET}, the buffer tracks whether any non-ASCII
+ * character was written so that the bytes can then be written out as they are.
+ *
+ * Not thread safe.
+ */
+final class VCFLineBuffer {
+    private byte[] bytes;
+    private int length = 0;
+    private boolean isAscii = true;
+
+    VCFLineBuffer(final int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    void reset() {
+        length = 0;
+        isAscii = true;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /**
+     * Discard everything written after the first newLength bytes.
+     */
+    void setLength(final int newLength) {
+        length = newLength;
+    }
+
+    byte byteAt(final int index) {
+        return bytes[index];
+    }
+
+    /**
+     * Append an ASCII character.
+     */
+    void append(final char c) {
+        ensureCapacity(1);
+        bytes[length++] = (byte) c;
+    }
+
+    void append(final String s) {
+        final int n = s.length();
+        ensureCapacity(n);
+        int i = 0;
+        // fast path for the ASCII prefix, which is usually all of it
+        while (i < n) {
+            final char c = s.charAt(i);
+            if (c >= 0x80) {
+                break;
+            }
+            bytes[length++] = (byte) c;
+            i++;
+        }
+        if (i < n) {
+            isAscii = false;
+            appendUTF8(s, i);
+        }
+    }
+
+    /**
+     * Append bytes encoded by {@link #encode(String)}.
+     */
+    void append(final byte[] encoded) {
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+        if (isAscii) {
+            for (final byte b : encoded) {
+                if (b < 0) {
+                    isAscii = false;
+                    break;
+                }
+            }
+        }
+    }
+
+    void appendInt(final int value) {
+        if (value == Integer.MIN_VALUE) {
+            append(Integer.toString(value));
+            return;
+        }
+        ensureCapacity(11);
+        int v = value;
+        if (v < 0) {
+            bytes[length++] = '-';
+            v = -v;
+        }
+        appendDigits(v, 1);
+    }
+
+    /**
+     * Append a non-negative value in decimal, left padded with zeros to at least minDigits digits.
+     */
+    void appendDigits(final long value, final int minDigits) {
+        int nDigits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            nDigits++;
+        }
+        nDigits = Math.max(nDigits, minDigits);
+        ensureCapacity(nDigits);
+        long v = value;
+        for (int i = length + nDigits - 1; i >= length; i--) {
+            bytes[i] = (byte) ('0' + v % 10);
+            v /= 10;
+        }
+        length += nDigits;
+    }
+
+    /**
+     * Write the contents of the buffer to out, encoded as {@link VCFEncoder#VCF_CHARSET}.
+     */
+    void writeTo(final OutputStream out) throws IOException {
+        if (isAscii) {
+            out.write(bytes, 0, length);
+        } else {
+            out.write(toString().getBytes(VCFEncoder.VCF_CHARSET));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, 0, length, isAscii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return s encoded as this buffer stores it, for appending with {@link #append(byte[])}
+     */
+    static byte[] encode(final String s) {
+        return s.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void appendUTF8(final String s, final int start) {
+        final byte[] encoded = encode(s.substring(start));
+        ensureCapacity(encoded.length);
+        System.arraycopy(encoded, 0, bytes, length, encoded.length);
+        length += encoded.length;
+    }
+
+    private void ensureCapacity(final int extra) {
+        if (length + extra > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package htsjdk.variant.vcf;
+
+/**
+ * A table of shared String instances that can be probed with a region of a longer line. This lets the VCF codec
+ * map the CHROM, FILTER and INFO key columns of a record to one shared instance per distinct value without first
+ * allocating a substring just to perform the lookup; a String is only created the first time a value is seen.
+ *
+ * Not thread safe; each codec owns its own instance.
+ */
+final class VCFStringInterner {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private String[] table;
+    private int size;
+
+    VCFStringInterner() {
+        this.table = new String[INITIAL_CAPACITY];
+        this.size = 0;
+    }
+
+    /**
+     * Create an interner holding the same instances as {@code other}, which can then be used independently of it.
+     */
+    VCFStringInterner(final VCFStringInterner other) {
+        this.table = other.table.clone();
+        this.size = other.size;
+    }
+
+    /**
+     * @return the shared instance equal to {@code str}, adding {@code str} itself if there is none yet
+     */
+    String intern(final String str) {
+        return intern(str, 0, str.length());
+    }
+
+    /**
+     * @param line the text containing the value
+     * @param start the start of the value in {@code line}, inclusive
+     * @param end the end of the value in {@code line}, exclusive
+     * @return the shared instance equal to {@code line.substring(start, end)}
+     */
+    String intern(final String line, final int start, final int end) {
+        final int length = end - start;
+        // same hash as String.hashCode, so the (cached) hash of each entry can be used to reject mismatches cheaply
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + line.charAt(i);
+        }
+
+        final int mask = table.length - 1;
+        int slot = spread(hash) & mask;
+        String entry;
+        while ((entry = table[slot]) != null) {
+            if (entry.hashCode() == hash && entry.length() == length && line.regionMatches(start, entry, 0, length)) {
+                return entry;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        entry = line.substring(start, end);
+        table[slot] = entry;
+        if (++size * 2 > table.length) {
+            resize();
+        }
+        return entry;
+    }
+
+    /**
+     * @return the number of distinct values held
+     */
+    int size() {
+        return size;
+    }
+
+    private void resize() {
+        final String[] old = table;
+        table = new String[old.length * 2];
+        final int mask = table.length - 1;
+        for (final String entry : old) {
+            if (entry != null) {
+                int slot = spread(entry.hashCode()) & mask;
+                while (table[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = entry;
+            }
+        }
+    }
+
+    private static int spread(final int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -35,6 +35,8 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -555,6 +557,78 @@ public class BAMFileWriterTest extends HtsjdkTest {
             Assert.assertEquals(samFileHeader, builder.getHeader());
         }
     }
-}
 
+    private static void writeIndexedBAM(final SAMRecordSetBuilder builder, final Path bamFile, final int compressionThreads) {
+        try (final SAMFileWriter writer = new SAMFileWriterFactory()
+                .setCreateIndex(true)
+                .setCompressionThreads(compressionThreads)
+                .makeBAMWriter(builder.getHeader(), true, bamFile)) {
+            builder.forEach(writer::addAlignment);
+        }
+    }
+
+    @Test
+    public void testParallelCompressionWithIndex() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        builder.setReadLength(150);
+        for (int i = 0; i < 10000; i++) {
+            builder.addPair("read" + i, i % 3, 1 + i * 7, 200 + i * 7);
+        }
+        builder.addUnmappedFragment("unmapped");
+
+        final Path serialBam = Files.createTempFile("serial.", FileExtensions.BAM);
+        final Path parallelBam = Files.createTempFile("parallel.", FileExtensions.BAM);
+        final Path serialBai = serialBam.resolveSibling(serialBam.getFileName().toString().replaceAll(FileExtensions.BAM + "$", FileExtensions.BAI_INDEX));
+        final Path parallelBai = parallelBam.resolveSibling(parallelBam.getFileName().toString().replaceAll(FileExtensions.BAM + "$", FileExtensions.BAI_INDEX));
+        try {
+            writeIndexedBAM(builder, serialBam, 0);
+            writeIndexedBAM(builder, parallelBam, 4);
+
+            Assert.assertEquals(Files.readAllBytes(parallelBam), Files.readAllBytes(serialBam));
+            Assert.assertEquals(Files.readAllBytes(parallelBai), Files.readAllBytes(serialBai));
+        } finally {
+            Files.deleteIfExists(serialBam);
+            Files.deleteIfExists(parallelBam);
+            Files.deleteIfExists(serialBai);
+            Files.deleteIfExists(parallelBai);
+        }
+    }
 
+    @Test
+    public void testParallelCompressionWithIndexOfReusedRecord() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(true, SAMFileHeader.SortOrder.coordinate);
+        builder.setReadLength(150);
+        for (int i = 0; i < 10000; i++) {
+            builder.addPair("read" + i, i % 3, 1 + i * 7, 200 + i * 7);
+        }
+        builder.addUnmappedFragment("unmapped");
+
+        final Path serialBam = Files.createTempFile("serial.", FileExtensions.BAM);
+        final Path reusedBam = Files.createTempFile("reused.", FileExtensions.BAM);
+        final Path serialBai = serialBam.resolveSibling(serialBam.getFileName().toString().replaceAll(FileExtensions.BAM + "$", FileExtensions.BAI_INDEX));
+        final Path reusedBai = reusedBam.resolveSibling(reusedBam.getFileName().toString().replaceAll(FileExtensions.BAM + "$", FileExtensions.BAI_INDEX));
+        try {
+            writeIndexedBAM(builder, serialBam, 0);
+            // a caller may reuse a record once addAlignment returns, while its blocks are still being deflated; the
+            // record is changed to one that sorts first, so that the writer's sort order check still passes
+            try (final SAMFileWriter writer = new SAMFileWriterFactory()
+                    .setCreateIndex(true)
+                    .setCompressionThreads(4)
+                    .makeBAMWriter(builder.getHeader(), true, reusedBam)) {
+                for (final SAMRecord rec : builder) {
+                    final SAMRecord reused = rec.deepCopy();
+                    writer.addAlignment(reused);
+                    reused.setReferenceIndex(0);
+                    reused.setAlignmentStart(1);
+                    reused.setReadUnmappedFlag(!reused.getReadUnmappedFlag());
+                }
+            }
+            Assert.assertEquals(Files.readAllBytes(reusedBai), Files.readAllBytes(serialBai));
+        } finally {
+            Files.deleteIfExists(serialBam);
+            Files.deleteIfExists(reusedBam);
+            Files.deleteIfExists(serialBai);
+            Files.deleteIfExists(reusedBai);
+        }
+    }
+}
@@ -29,4 +29,21 @@ public class BAMIndexValidatorTest extends HtsjdkTest {
         Assert.assertEquals(baiCount, csiCount);
     }
 
+    @Test
+    public void testIndexWrappedInCompactIndex() throws IOException {
+        for (final File indexFile : new File[] {BAI_FILE, CSI_FILE}) {
+            final BAMFileReader bamFileReader = new BAMFileReader(BAM_FILE, indexFile, true, false, ValidationStringency.DEFAULT_STRINGENCY, new DefaultSAMRecordFactory());
+            bamFileReader.enableIndexCaching(true);
+            final SamReader samFileReader = new SamReader.PrimitiveSamReaderToSamReaderAdapter(bamFileReader, null);
+            final int expectedCount = BamIndexValidator.exhaustivelyTestIndex(samFileReader);
+
+            // the index a reader queries when samjdk.compact_bam_index is set
+            bamFileReader.getCompactIndex();
+            Assert.assertTrue(samFileReader.indexing().getBrowseableIndex() instanceof CompactBAMFileIndex);
+            Assert.assertEquals(BamIndexValidator.exhaustivelyTestIndex(samFileReader), expectedCount);
+            Assert.assertTrue(expectedCount > 0);
+            samFileReader.close();
+        }
+    }
+
 }
@@ -0,0 +1,127 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class BAMQueryPlannerTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File INDEX_FILE = new File(BAM_FILE.getPath() + ".bai");
+
+    private static QueryInterval[] makeIntervals(final SAMSequenceDictionary dictionary, final int count, final int maxLength, final long seed) {
+        final Random random = new Random(seed);
+        final QueryInterval[] intervals = new QueryInterval[count];
+        for (int i = 0; i < count; i++) {
+            final int reference = random.nextInt(dictionary.size());
+            final int sequenceLength = dictionary.getSequence(reference).getSequenceLength();
+            final int start = 1 + random.nextInt(sequenceLength);
+            final int end = random.nextInt(10) == 0 ? -1 : start + random.nextInt(maxLength);
+            intervals[i] = new QueryInterval(reference, start, end);
+        }
+        return intervals;
+    }
+
+    /**
+     * The spans of the intervals one by one, merged, which is what the planner must match.
+     */
+    private static BAMFileSpan getMergedSpan(final QueryInterval[] intervals, final BAMIndex index) {
+        final BAMFileSpan[] spans = new BAMFileSpan[intervals.length];
+        for (int i = 0; i < intervals.length; i++) {
+            spans[i] = index.getSpanOverlapping(intervals[i].referenceIndex, intervals[i].start, intervals[i].end);
+        }
+        return BAMFileSpan.merge(spans);
+    }
+
+    @DataProvider(name = "intervals")
+    public Object[][] intervals() {
+        return new Object[][] {
+                {1, 1_000, true},
+                {10, 100, false},
+                {1_000, 200, true},
+                {1_000, 200, false},
+                {5_000, 20_000, true},
+                {200, 1_000_000, false},
+        };
+    }
+
+    @Test(dataProvider = "intervals")
+    public void testPlanMatchesMergedSpans(final int count, final int maxLength, final boolean optimize) throws IOException {
+        try (SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            final SAMSequenceDictionary dictionary = reader.getFileHeader().getSequenceDictionary();
+            QueryInterval[] intervals = makeIntervals(dictionary, count, maxLength, TestUtil.RANDOM_SEED + count);
+            if (optimize) {
+                intervals = QueryInterval.optimizeIntervals(intervals);
+            }
+            final DiskBasedBAMFileIndex diskIndex = new DiskBasedBAMFileIndex(INDEX_FILE, dictionary);
+            final CachingBAMFileIndex cachingIndex = new CachingBAMFileIndex(INDEX_FILE, dictionary);
+            try {
+                final BAMFileSpan expected = getMergedSpan(intervals, diskIndex);
+                Assert.assertEquals(getMergedSpan(intervals, cachingIndex).getChunks(), expected.getChunks());
+                Assert.assertEquals(BAMFileReader.getFileSpan(intervals, diskIndex).getChunks(), expected.getChunks());
+                Assert.assertEquals(BAMFileReader.getFileSpan(intervals, cachingIndex).getChunks(), expected.getChunks());
+            } finally {
+                diskIndex.close();
+                cachingIndex.close();
+            }
+        }
+    }
+
+    @Test
+    public void testNoIntervals() {
+        final CachingBAMFileIndex index = new CachingBAMFileIndex(INDEX_FILE, null);
+        Assert.assertNull(BAMFileReader.getFileSpan(new QueryInterval[0], index));
+        index.close();
+    }
+
+    @DataProvider(name = "gaps")
+    public Object[][] gaps() {
+        return new Object[][] {{0}, {1}, {1_000}, {100_000}, {Integer.MAX_VALUE}};
+    }
+
+    @Test(dataProvider = "gaps")
+    public void testCoalescedChunksReadTheSameRecords(final int maxGap) throws IOException {
+        final BAMFileReader reader = new BAMFileReader(BAM_FILE, INDEX_FILE, false, false,
+                ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance());
+        try {
+            reader.enableIndexCaching(true);
+            final QueryInterval[] intervals = QueryInterval.optimizeIntervals(
+                    makeIntervals(reader.getFileHeader().getSequenceDictionary(), 500, 300, TestUtil.RANDOM_SEED));
+            final BAMFileSpan span = BAMFileReader.getFileSpan(intervals, reader.getIndex());
+            final BAMFileSpan coalesced = BAMFileReader.getFileSpan(intervals, reader.getIndex(), maxGap);
+            Assert.assertTrue(coalesced.getChunks().size() <= span.getChunks().size());
+            if (maxGap == 0) {
+                Assert.assertEquals(coalesced.getChunks(), span.getChunks());
+            } else if (maxGap == Integer.MAX_VALUE) {
+                Assert.assertEquals(coalesced.getChunks().size(), 1);
+            }
+
+            for (final boolean contained : new boolean[] {false, true}) {
+                final List<String> expected = readAll(reader.createIndexIterator(intervals, contained, span.toCoordinateArray()));
+                final List<String> actual = readAll(reader.createIndexIterator(intervals, contained, coalesced.toCoordinateArray()));
+                Assert.assertFalse(expected.isEmpty());
+                Assert.assertEquals(actual, expected);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static List<String> readAll(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        try {
+            iterator.forEachRemaining(record -> records.add(record.getSAMString()));
+        } finally {
+            iterator.close();
+        }
+        return records;
+    }
+}
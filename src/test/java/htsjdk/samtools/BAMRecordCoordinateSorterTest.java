@@ -0,0 +1,179 @@
+/*
+ * The MIT License
+ *
+ * Copyright (c) 2018 The Broad Institute
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+public class BAMRecordCoordinateSorterTest extends HtsjdkTest {
+    private Path tmpDir;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        tmpDir = Files.createTempDirectory("BAMRecordCoordinateSorterTest");
+    }
+
+    @AfterMethod
+    public void tearDown() {
+        IOUtil.deleteDirectoryTree(tmpDir.toFile());
+    }
+
+    /**
+     * Records with many ties on coordinate, including pairs, duplicates with the same name, and unmapped reads
+     * with and without a placed position, added in a random order.
+     */
+    private static SAMRecordSetBuilder makeRecords(final int numRecords) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.coordinate);
+        final Random random = new Random(42);
+        while (builder.size() < numRecords) {
+            final int contig = random.nextInt(3);
+            final int start = 1 + random.nextInt(50);
+            switch (random.nextInt(5)) {
+                case 0:
+                    builder.addPair("pair" + random.nextInt(20), contig, start, start + random.nextInt(20));
+                    break;
+                case 1:
+                    builder.addUnmappedFragment("unmapped" + random.nextInt(20));
+                    break;
+                case 2:
+                    builder.addFrag("placed" + random.nextInt(20), contig, start, random.nextBoolean(), true, null, null, -1);
+                    break;
+                default:
+                    builder.addFrag("frag" + random.nextInt(20), contig, start, random.nextBoolean());
+            }
+        }
+        return builder;
+    }
+
+    private static List<String> sortWithComparator(final SAMRecordSetBuilder builder) {
+        final List<SAMRecord> records = new ArrayList<>(builder.getRecords());
+        // List.sort is stable, like SortingCollection
+        records.sort(new SAMRecordCoordinateComparator());
+        return records.stream().map(SAMRecord::getSAMString).collect(Collectors.toList());
+    }
+
+    @DataProvider(name = "maxRecordsInRam")
+    public Object[][] maxRecordsInRam() {
+        return new Object[][] {
+                {0, 10},
+                {1, 10},
+                {500, 10000},
+                {500, 500},
+                {500, 37},
+                {500, 1},
+        };
+    }
+
+    @Test(dataProvider = "maxRecordsInRam")
+    public void testMatchesCoordinateComparator(final int numRecords, final int maxRecordsInRam) {
+        final SAMRecordSetBuilder builder = makeRecords(numRecords);
+        final BAMRecordCoordinateSorter sorter = new BAMRecordCoordinateSorter(builder.getHeader(), maxRecordsInRam, tmpDir);
+        builder.getRecords().forEach(sorter::add);
+
+        final List<String> expected = sortWithComparator(builder);
+        for (int i = 0; i < 2; i++) {
+            final List<String> actual = new ArrayList<>();
+            try (CloseableIterator<SAMRecord> it = sorter.iterator()) {
+                it.forEachRemaining(rec -> actual.add(rec.getSAMString()));
+            }
+            Assert.assertEquals(actual, expected);
+        }
+        final int numAdded = builder.size();
+        Assert.assertEquals(tmpDir.toFile().list().length, numAdded > maxRecordsInRam ? (numAdded + maxRecordsInRam - 1) / maxRecordsInRam : 0);
+
+        sorter.cleanup();
+        Assert.assertEquals(tmpDir.toFile().list().length, 0);
+    }
+
+    @Test
+    public void testCoordinateKeyOrder() {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.coordinate);
+        final SAMRecord unmapped = builder.addFrag("a", -1, 0, false, true, null, null, -1);
+        final SAMRecord noStart = builder.addFrag("a", 0, 0, false, true, null, null, -1);
+        final SAMRecord forward = builder.addFrag("a", 0, 100, false);
+        final SAMRecord reverse = builder.addFrag("a", 0, 100, true);
+        final SAMRecord nextPosition = builder.addFrag("a", 0, 101, false);
+        final SAMRecord nextContig = builder.addFrag("a", 1, 1, false);
+        final List<Long> keys = new ArrayList<>();
+        for (final SAMRecord rec : new SAMRecord[] {noStart, forward, reverse, nextPosition, nextContig, unmapped}) {
+            final BAMRecordCodec codec = new BAMRecordCodec(builder.getHeader());
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            codec.setOutputStream(os);
+            codec.encode(rec);
+            keys.add(BAMRecordCoordinateSorter.coordinateKey(os.toByteArray(), 4));
+        }
+        for (int i = 1; i < keys.size(); i++) {
+            Assert.assertTrue(Long.compareUnsigned(keys.get(i - 1), keys.get(i)) < 0, "key " + i);
+        }
+    }
+
+    @Test
+    public void testWriterUsesSerializedSort() throws IOException {
+        final SAMRecordSetBuilder builder = makeRecords(1000);
+        final File output = tmpDir.resolve("sorted.bam").toFile();
+        final SAMFileWriterFactory factory = new SAMFileWriterFactory()
+                .setSerializedCoordinateSort(true)
+                .setMaxRecordsInRam(100)
+                .setTempDirectory(tmpDir.toFile());
+        try (SAMFileWriter writer = factory.makeBAMWriter(builder.getHeader(), false, output)) {
+            builder.getRecords().forEach(writer::addAlignment);
+        }
+
+        final List<String> actual = new ArrayList<>();
+        try (SamReader reader = SamReaderFactory.makeDefault().open(output)) {
+            reader.forEach(rec -> actual.add(rec.getSAMString()));
+        }
+        Assert.assertEquals(actual, sortWithComparator(builder));
+        Assert.assertEquals(tmpDir.toFile().list(), new String[] {output.getName()});
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRejectAddAfterIterator() {
+        final SAMRecordSetBuilder builder = makeRecords(10);
+        final BAMRecordCoordinateSorter sorter = new BAMRecordCoordinateSorter(builder.getHeader(), 100, tmpDir);
+        sorter.iterator();
+        sorter.add(builder.getRecords().iterator().next());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectZeroMaxRecordsInRam() {
+        new BAMRecordCoordinateSorter(new SAMFileHeader(), 0, tmpDir);
+    }
+}
@@ -1,6 +1,8 @@
 package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.build.CramIO;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.compression.*;
 import htsjdk.samtools.cram.encoding.ByteArrayLenEncoding;
 import htsjdk.samtools.cram.encoding.external.*;
@@ -10,6 +12,7 @@ import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import htsjdk.samtools.util.Tuple;
 import htsjdk.utils.SamtoolsTestUtils;
 import org.testng.Assert;
+import org.testng.SkipException;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
@@ -39,6 +42,67 @@ public class CRAMAllEncodingStrategiesTest extends HtsjdkTest {
         assertRoundtripFidelityWithSamtools(tempOutCRAM, referenceFile);
     }
 
+    @DataProvider(name = "cram31EncodingStrategies")
+    public Object[][] getCRAM31EncodingStrategies() {
+        return new Object[][] {
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1) },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseArithmeticCoder(true) },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseFQZComp(true) },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseNameTokeniser(true) },
+                { new CRAMEncodingStrategy()
+                        .setCRAMVersion(CramVersions.CRAM_v3_1)
+                        .setUseArithmeticCoder(true)
+                        .setUseFQZComp(true)
+                        .setUseNameTokeniser(true) },
+        };
+    }
+
+    @Test(dataProvider = "cram31EncodingStrategies")
+    public final void testRoundTripCRAM31EncodingStrategy(final CRAMEncodingStrategy testStrategy) throws IOException {
+        final File sourceFile = new File(TEST_DATA_DIR, "NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram");
+        final File referenceFile = new File(TEST_DATA_DIR, "human_g1k_v37.20.21.1-100.fasta");
+        final File tempOutCRAM = File.createTempFile("testRoundTripCRAM31", ".cram");
+        tempOutCRAM.deleteOnExit();
+        CRAMTestUtils.writeToCRAMWithEncodingStrategy(testStrategy, sourceFile, tempOutCRAM, referenceFile);
+
+        try (final InputStream is = new BufferedInputStream(new FileInputStream(tempOutCRAM))) {
+            Assert.assertEquals(CramIO.readCramHeader(is).getCRAMVersion(), CramVersions.CRAM_v3_1);
+        }
+        assertRoundTripFidelity(sourceFile, tempOutCRAM, referenceFile, false);
+        // check that htslib decodes the CRAM 3.1 codecs as htsjdk does
+        assertRoundtripFidelityWithSamtools(tempOutCRAM, referenceFile);
+    }
+
+    @DataProvider(name = "samtoolsCRAM31Options")
+    public Object[][] getSamtoolsCRAM31Options() {
+        final String version = "--output-fmt-option version=3.1";
+        return new Object[][] {
+                { version },
+                { version + " --output-fmt-option use_arith=1" },
+                { version + " --output-fmt-option use_fqz=1" },
+                { version + " --output-fmt-option use_tok=1" },
+                { version + " --output-fmt-option use_arith=1 --output-fmt-option use_fqz=1 --output-fmt-option use_tok=1" },
+        };
+    }
+
+    @Test(dataProvider = "samtoolsCRAM31Options")
+    public final void testReadCRAM31WrittenBySamtools(final String samtoolsOptions) throws IOException {
+        if (!SamtoolsTestUtils.isSamtoolsAvailable()) {
+            throw new SkipException("Samtools not available on local device");
+        }
+        final File sourceFile = new File(TEST_DATA_DIR, "NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram");
+        final File referenceFile = new File(TEST_DATA_DIR, "human_g1k_v37.20.21.1-100.fasta");
+        // check that htsjdk decodes the CRAM 3.1 codecs as htslib encodes them
+        final File samtoolsOutFile = SamtoolsTestUtils.convertToCRAM(
+                sourceFile,
+                referenceFile,
+                "--input-fmt-option decode_md=0 --output-fmt-option store_md=0 --output-fmt-option store_nm=0 " + samtoolsOptions);
+        try (final InputStream is = new BufferedInputStream(new FileInputStream(samtoolsOutFile))) {
+            Assert.assertEquals(CramIO.readCramHeader(is).getCRAMVersion(), CramVersions.CRAM_v3_1);
+        }
+        assertRoundTripFidelity(sourceFile, samtoolsOutFile, referenceFile, false);
+    }
+
     @Test(dataProvider = "roundTripTestFiles")
     public final void testAllEncodingStrategyCombinations(final File cramSourceFile, final File referenceFile) throws IOException {
         for (final Tuple<String, CRAMEncodingStrategy> testStrategy : getAllEncodingStrategies()) {
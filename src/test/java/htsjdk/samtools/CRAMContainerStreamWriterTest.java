@@ -2,9 +2,11 @@ package htsjdk.samtools;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.ref.ReferenceSource;
+import htsjdk.samtools.cram.structure.CRAMEncodingStrategy;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
 import htsjdk.samtools.util.CloseableIterator;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayInputStream;
@@ -171,6 +173,66 @@ public class CRAMContainerStreamWriterTest extends HtsjdkTest {
         }
     }
 
+    private void writeWithCompressionThreads(
+            final List<SAMRecord> samRecords,
+            final int compressionThreads,
+            final OutputStream outStream,
+            final CRAMIndexer indexer) {
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+        // small slices and containers, so that many containers are built at once
+        final CRAMEncodingStrategy encodingStrategy = new CRAMEncodingStrategy()
+                .setMinimumSingleReferenceSliceSize(20)
+                .setReadsPerSlice(50)
+                .setSlicesPerContainer(2);
+        final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(
+                encodingStrategy, createReferenceSource(), header, outStream, indexer, "test");
+        containerStream.setCompressionThreads(compressionThreads);
+        Assert.assertEquals(containerStream.getCompressionThreads(), compressionThreads);
+        containerStream.writeHeader();
+        for (final SAMRecord record : samRecords) {
+            containerStream.writeAlignment(record);
+        }
+        containerStream.finish(true);
+    }
+
+    @DataProvider(name = "compressionThreads")
+    public Object[][] compressionThreads() {
+        return new Object[][]{{2}, {4}, {16}};
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testCompressionThreads(final int compressionThreads) throws IOException {
+        final List<SAMRecord> samRecords = createRecords(2000);
+        final SAMFileHeader header = createSAMHeader(SAMFileHeader.SortOrder.coordinate);
+
+        final ByteArrayOutputStream expectedCRAM = new ByteArrayOutputStream();
+        final ByteArrayOutputStream expectedBAI = new ByteArrayOutputStream();
+        writeWithCompressionThreads(samRecords, 0, expectedCRAM, new CRAMBAIIndexer(expectedBAI, header));
+        final ByteArrayOutputStream expectedCRAI = new ByteArrayOutputStream();
+        writeWithCompressionThreads(samRecords, 0, new ByteArrayOutputStream(), new CRAMCRAIIndexer(expectedCRAI, header));
+
+        // containers built in parallel are identical to, and indexed the same as, containers built serially
+        final ByteArrayOutputStream cram = new ByteArrayOutputStream();
+        final ByteArrayOutputStream bai = new ByteArrayOutputStream();
+        writeWithCompressionThreads(samRecords, compressionThreads, cram, new CRAMBAIIndexer(bai, header));
+        Assert.assertEquals(cram.toByteArray(), expectedCRAM.toByteArray());
+        Assert.assertEquals(bai.toByteArray(), expectedBAI.toByteArray());
+
+        final ByteArrayOutputStream crai = new ByteArrayOutputStream();
+        writeWithCompressionThreads(samRecords, compressionThreads, new ByteArrayOutputStream(), new CRAMCRAIIndexer(crai, header));
+        Assert.assertEquals(crai.toByteArray(), expectedCRAI.toByteArray());
+
+        // and the index can be used to query the output
+        checkCRAMContainerStream(cram, bai, ".bai");
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidCompressionThreads() {
+        final CRAMContainerStreamWriter containerStream = new CRAMContainerStreamWriter(
+                new ByteArrayOutputStream(), null, createReferenceSource(), createSAMHeader(SAMFileHeader.SortOrder.coordinate), "test");
+        containerStream.setCompressionThreads(-1);
+    }
+
     private void checkCRAMContainerStream(ByteArrayOutputStream outStream, ByteArrayOutputStream indexStream, String indexExtension) throws IOException {
         // write the file out
         final File cramTempFile = File.createTempFile("cramContainerStreamTest", ".cram");
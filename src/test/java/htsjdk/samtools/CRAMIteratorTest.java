@@ -3,10 +3,15 @@ package htsjdk.samtools;
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.ref.ReferenceSource;
 import htsjdk.samtools.seekablestream.SeekableStream;
+import htsjdk.samtools.util.CloseableIterator;
 import org.testng.Assert;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -42,4 +47,65 @@ public class CRAMIteratorTest extends HtsjdkTest {
         cramFileReader.setValidationStringency(valStringency);
         return cramFileReader.getIterator();
     }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void throwOnRecordValidationFailureWithDecodeThreads() {
+        try (SAMRecordIterator cramIteratorOverInvalidRecords = getCramFileIterator(ValidationStringency.STRICT)) {
+            ((CRAMIterator) cramIteratorOverInvalidRecords).setDecodeThreads(4);
+            while (cramIteratorOverInvalidRecords.hasNext()) {
+                cramIteratorOverInvalidRecords.next();
+            }
+        }
+    }
+
+    @DataProvider(name = "decodeThreadsInputs")
+    public Object[][] decodeThreadsInputs() {
+        final File testDir = new File("src/test/resources/htsjdk/samtools/cram");
+        final File ceReference = new File(testDir, "ce.fa");
+        final File humanReference = new File(testDir, "human_g1k_v37.20.21.1-100.fasta");
+        return new Object[][] {
+                // cram file, reference, query interval
+                {new File(testDir, "mitoAlignmentStartTest.cram"), new File(testDir, "mitoAlignmentStartTest.fa"), new QueryInterval(0, 600, 700)},
+                {new File(testDir, "NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram"), humanReference, new QueryInterval(1, 1, 100)},
+                {new File(testDir, "referenceEmbedded.NA12878.20.21.1-100.100-SeqsPerSlice.500-unMapped.cram"), humanReference, null},
+                {new File(testDir, "ce#1000.2.1.cram"), ceReference, null},
+                {new File(testDir, "ce#large_seq.3.0.cram"), ceReference, null},
+        };
+    }
+
+    @Test(dataProvider = "decodeThreadsInputs")
+    public void testDecodeThreads(final File cramFile, final File referenceFile, final QueryInterval query) {
+        final SamReaderFactory serialFactory = SamReaderFactory.makeDefault()
+                .referenceSequence(referenceFile)
+                .validationStringency(ValidationStringency.SILENT);
+        final List<String> expected = readAll(serialFactory, cramFile, null);
+        Assert.assertFalse(expected.isEmpty());
+        final List<String> expectedInQuery = query == null ? null : readAll(serialFactory, cramFile, query);
+
+        for (final int decodeThreads : new int[]{2, 4}) {
+            final SamReaderFactory parallelFactory = SamReaderFactory.makeDefault()
+                    .referenceSequence(referenceFile)
+                    .validationStringency(ValidationStringency.SILENT)
+                    .setDecodeThreads(decodeThreads);
+            Assert.assertEquals(readAll(parallelFactory, cramFile, null), expected);
+            if (query != null) {
+                Assert.assertEquals(readAll(parallelFactory, cramFile, query), expectedInQuery);
+            }
+        }
+    }
+
+    private static List<String> readAll(final SamReaderFactory factory, final File cramFile, final QueryInterval query) {
+        final List<String> records = new ArrayList<>();
+        try (final SamReader reader = factory.open(cramFile);
+             final CloseableIterator<SAMRecord> iterator = query == null ?
+                     reader.iterator() :
+                     reader.query(new QueryInterval[]{query}, false)) {
+            while (iterator.hasNext()) {
+                records.add(iterator.next().getSAMString());
+            }
+        } catch (final IOException e) {
+            throw new RuntimeException(e);
+        }
+        return records;
+    }
 }
@@ -27,6 +27,10 @@ import htsjdk.HtsjdkTest;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class ChunkTest extends HtsjdkTest {
     @Test
     public void testOverlaps() {
@@ -76,4 +80,16 @@ public class ChunkTest extends HtsjdkTest {
         Assert.assertFalse(new Chunk(1,5).isAdjacentTo(new Chunk(11,15)),"Disjoint block should not be adjacent");
         Assert.assertFalse(new Chunk(1,5).isAdjacentTo(new Chunk(2,3)),"Contained offset should not be adjacent");
     }
+
+    @Test
+    public void testCoalesceChunkList() {
+        final List<Chunk> chunks = new ArrayList<>(Arrays.asList(
+                new Chunk(1<<16, 2<<16|0x10), new Chunk(2<<16|0x20, 3<<16), new Chunk(10<<16, 11<<16), new Chunk(13<<16|0x5, 20<<16)));
+
+        // a gap of 0 leaves the chunks as they are, even within one block
+        Assert.assertEquals(Chunk.coalesceChunkList(chunks, 0), chunks);
+
+        final List<Chunk> coalesced = Chunk.coalesceChunkList(chunks, 2);
+        Assert.assertEquals(coalesced, Arrays.asList(new Chunk(1<<16, 3<<16), new Chunk(10<<16, 20<<16)));
+    }
 }
@@ -0,0 +1,217 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class CompactBAMFileIndexTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest");
+    private static final File BAM_FILE = new File(TEST_DATA_DIR, "index_test.bam");
+    private static final File LONG_REFERENCES_BAM_FILE = new File(TEST_DATA_DIR, "long_references.bam");
+
+    private static SAMSequenceDictionary readDictionary(final File bam) throws IOException {
+        try (SamReader reader = SamReaderFactory.makeDefault().open(bam)) {
+            return reader.getFileHeader().getSequenceDictionary();
+        }
+    }
+
+    private static AbstractBAMFileIndex openFileIndex(final File bam, final String extension, final SAMSequenceDictionary dictionary) {
+        final File indexFile = new File(bam.getPath() + extension);
+        return extension.equals(".csi") ?
+                new CSIIndex(indexFile, false, dictionary) : new DiskBasedBAMFileIndex(indexFile, dictionary);
+    }
+
+    private static List<Chunk> getChunks(final BAMFileSpan span) {
+        return span == null ? Collections.emptyList() : span.getChunks();
+    }
+
+    private static List<QueryInterval> makeIntervals(final SAMSequenceDictionary dictionary, final int count, final long seed) {
+        final Random random = new Random(seed);
+        final List<QueryInterval> intervals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final int reference = random.nextInt(dictionary.size());
+            final int length = dictionary.getSequence(reference).getSequenceLength();
+            final int start = 1 + random.nextInt(length);
+            final int end = random.nextInt(10) == 0 ? 0 : (int) Math.min(length, start + (long) random.nextInt(1_000_000));
+            intervals.add(new QueryInterval(reference, start, end));
+        }
+        return intervals;
+    }
+
+    @DataProvider(name = "indexes")
+    public Object[][] indexes() {
+        return new Object[][] {
+                {BAM_FILE, ".bai"},
+                {BAM_FILE, ".csi"},
+                {LONG_REFERENCES_BAM_FILE, ".csi"},
+        };
+    }
+
+    @Test(dataProvider = "indexes")
+    public void testSameSpansAsFileIndex(final File bam, final String extension) throws IOException {
+        final SAMSequenceDictionary dictionary = readDictionary(bam);
+        final AbstractBAMFileIndex fileIndex = openFileIndex(bam, extension, dictionary);
+        try (CompactBAMFileIndex compactIndex = new CompactBAMFileIndex(openFileIndex(bam, extension, dictionary))) {
+            Assert.assertEquals(compactIndex.getNumberOfLoadedReferences(), 0);
+            final List<QueryInterval> intervals = makeIntervals(dictionary, 1_000, TestUtil.RANDOM_SEED);
+            // whole references, and the edges of the binning scheme
+            for (int reference = 0; reference < dictionary.size(); reference++) {
+                intervals.add(new QueryInterval(reference, 0, 0));
+                intervals.add(new QueryInterval(reference, 1, 1));
+                intervals.add(new QueryInterval(reference, 16_384, 16_385));
+            }
+            int nonEmpty = 0;
+            for (final QueryInterval interval : intervals) {
+                final List<Chunk> expected = getChunks(fileIndex.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end));
+                final List<Chunk> actual = getChunks(compactIndex.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end));
+                Assert.assertEquals(actual, expected, interval.toString());
+                if (!expected.isEmpty()) {
+                    nonEmpty++;
+                }
+            }
+            Assert.assertTrue(nonEmpty > 0);
+            Assert.assertNull(compactIndex.getSpanOverlapping(dictionary.size(), 1, 1000));
+
+            final QueryInterval[] optimized = QueryInterval.optimizeIntervals(intervals.toArray(new QueryInterval[0]));
+            Assert.assertEquals(BAMFileReader.getFileSpan(optimized, compactIndex).getChunks(),
+                    BAMFileReader.getFileSpan(optimized, fileIndex).getChunks());
+
+            for (int reference = 0; reference < dictionary.size(); reference++) {
+                final BAMIndexMetaData expected = fileIndex.getMetaData(reference);
+                final BAMIndexMetaData actual = compactIndex.getMetaData(reference);
+                Assert.assertEquals(actual.getAlignedRecordCount(), expected.getAlignedRecordCount());
+                Assert.assertEquals(actual.getUnalignedRecordCount(), expected.getUnalignedRecordCount());
+            }
+            Assert.assertEquals(compactIndex.getStartOfLastLinearBin(), fileIndex.getStartOfLastLinearBin());
+            Assert.assertEquals(compactIndex.getNoCoordinateCount(), fileIndex.getNoCoordinateCount());
+            Assert.assertEquals(compactIndex.getNumberOfReferences(), fileIndex.getNumberOfReferences());
+        } finally {
+            fileIndex.close();
+        }
+    }
+
+    // CSIIndex cannot locate the bins of indexes with a span longer than an int, such as that of long_references.bam
+    @DataProvider(name = "browseableIndexes")
+    public Object[][] browseableIndexes() {
+        return new Object[][] {
+                {BAM_FILE, ".bai"},
+                {BAM_FILE, ".csi"},
+        };
+    }
+
+    @Test(dataProvider = "browseableIndexes")
+    public void testSameBinsAsBrowseableIndex(final File bam, final String extension) throws IOException {
+        final SAMSequenceDictionary dictionary = readDictionary(bam);
+        final File indexFile = new File(bam.getPath() + extension);
+        final AbstractBAMFileIndex fileIndex = extension.equals(".csi") ?
+                new CSIIndex(indexFile, false, dictionary) : new CachingBAMFileIndex(indexFile, dictionary);
+        final BrowseableBAMIndex browseableIndex = (BrowseableBAMIndex) fileIndex;
+        try (CompactBAMFileIndex compactIndex = new CompactBAMFileIndex(openFileIndex(bam, extension, dictionary))) {
+            int bins = 0;
+            for (final QueryInterval interval : makeIntervals(dictionary, 200, TestUtil.RANDOM_SEED + 2)) {
+                if (interval.end == 0) {
+                    continue;
+                }
+                final BinList expected = browseableIndex.getBinsOverlapping(interval.referenceIndex, interval.start, interval.end);
+                final BinList actual = compactIndex.getBinsOverlapping(interval.referenceIndex, interval.start, interval.end);
+                Assert.assertEquals(actual.getBins(), expected.getBins(), interval.toString());
+                for (final Bin bin : expected) {
+                    Assert.assertEquals(compactIndex.getLevelForBin(bin), browseableIndex.getLevelForBin(bin));
+                    Assert.assertEquals(compactIndex.getFirstLocusInBin(bin), browseableIndex.getFirstLocusInBin(bin));
+                    Assert.assertEquals(compactIndex.getLastLocusInBin(bin), browseableIndex.getLastLocusInBin(bin));
+                    Assert.assertEquals(getChunks(compactIndex.getSpanOverlapping(bin)),
+                            getChunks(browseableIndex.getSpanOverlapping(bin)), bin.toString());
+                    bins++;
+                }
+            }
+            Assert.assertTrue(bins > 0);
+            for (int level = 0; level < 5; level++) {
+                Assert.assertEquals(compactIndex.getLevelSize(level), browseableIndex.getLevelSize(level));
+            }
+            Assert.assertNull(compactIndex.getSpanOverlapping((Bin) null));
+        } finally {
+            fileIndex.close();
+        }
+    }
+
+    @Test
+    public void testReferencesAreLoadedWhenFirstQueried() throws IOException {
+        final SAMSequenceDictionary dictionary = readDictionary(BAM_FILE);
+        try (CompactBAMFileIndex index = new CompactBAMFileIndex(openFileIndex(BAM_FILE, ".bai", dictionary))) {
+            index.getSpanOverlapping(1, 1, 100_000);
+            index.getSpanOverlapping(1, 200_000, 300_000);
+            Assert.assertEquals(index.getNumberOfLoadedReferences(), 1);
+            index.getSpanOverlapping(3, 1, 100_000);
+            Assert.assertEquals(index.getNumberOfLoadedReferences(), 2);
+        }
+    }
+
+    @Test(dataProvider = "indexes")
+    public void testConcurrentQueries(final File bam, final String extension) throws Exception {
+        final SAMSequenceDictionary dictionary = readDictionary(bam);
+        final List<QueryInterval> intervals = makeIntervals(dictionary, 2_000, TestUtil.RANDOM_SEED + 1);
+        final List<List<Chunk>> expected = new ArrayList<>();
+        try (AbstractBAMFileIndex fileIndex = openFileIndex(bam, extension, dictionary)) {
+            for (final QueryInterval interval : intervals) {
+                expected.add(getChunks(fileIndex.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end)));
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (CompactBAMFileIndex index = new CompactBAMFileIndex(openFileIndex(bam, extension, dictionary))) {
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                final int offset = thread * 97;
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < intervals.size(); i++) {
+                        final int j = (i + offset) % intervals.size();
+                        final QueryInterval interval = intervals.get(j);
+                        if (!getChunks(index.getSpanOverlapping(interval.referenceIndex, interval.start, interval.end)).equals(expected.get(j))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testQueriesWithCompactIndex() throws IOException {
+        final QueryInterval[] intervals = {new QueryInterval(0, 1, 1_000_000), new QueryInterval(2, 1, 0)};
+        final List<String> expected = new ArrayList<>();
+        try (SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            reader.query(intervals, false).forEachRemaining(r -> expected.add(r.getSAMString()));
+        }
+        Assert.assertFalse(expected.isEmpty());
+
+        final BAMFileReader reader = new BAMFileReader(BAM_FILE, new File(BAM_FILE.getPath() + ".bai"), false, false,
+                ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance());
+        try (CompactBAMFileIndex index = new CompactBAMFileIndex(
+                new DiskBasedBAMFileIndex(new File(BAM_FILE.getPath() + ".bai"), reader.getFileHeader().getSequenceDictionary()))) {
+            final BAMFileSpan span = BAMFileReader.getFileSpan(intervals, index);
+            final List<String> actual = new ArrayList<>();
+            reader.createIndexIterator(intervals, false, span.toCoordinateArray()).forEachRemaining(r -> actual.add(r.getSAMString()));
+            Assert.assertEquals(actual, expected);
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,188 @@
+package htsjdk.samtools;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests concurrent downloads of htsget data blocks and tickets against a local stand-in for an htsget server, which
+ * answers every request with the whole of a BAM file, split into several blocks, the first of them a data URI.
+ * The reader's own filtering then selects the records of each query.
+ */
+public class HtsgetBAMFileReaderConcurrentTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+    private static final int BLOCKS = 6;
+    private static final int BLOCK_DELAY_MS = 20;
+
+    private byte[] bam;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+    private final AtomicInteger maxActiveDownloads = new AtomicInteger();
+    private final AtomicInteger tickets = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        bam = Files.readAllBytes(BAM_FILE.toPath());
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/reads/test", this::serveTicket);
+        server.createContext("/data/test.bam", this::serveData);
+        // handle requests concurrently, as a real server would
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private URI endpoint() {
+        return URI.create("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/reads/test");
+    }
+
+    private void serveTicket(final HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("GET")) {
+            // the reader falls back to a GET request for each interval
+            exchange.sendResponseHeaders(405, -1);
+            exchange.close();
+            return;
+        }
+        tickets.incrementAndGet();
+        final String dataUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/data/test.bam";
+        final int blockSize = bam.length / BLOCKS + 1;
+        final List<String> urls = new ArrayList<>();
+        for (int start = 0; start < bam.length; start += blockSize) {
+            final int end = Math.min(start + blockSize, bam.length) - 1;
+            if (start == 0) {
+                final String encoded = Base64.getEncoder().encodeToString(Arrays.copyOfRange(bam, start, end + 1));
+                urls.add("{\"url\":\"data:application/vnd.ga4gh.bam;base64," + encoded + "\"}");
+            } else {
+                urls.add("{\"url\":\"" + dataUrl + "\",\"headers\":{\"Range\":\"bytes=" + start + "-" + end + "\"}}");
+            }
+        }
+        final byte[] json = ("{\"htsget\":{\"format\":\"BAM\",\"urls\":[" + String.join(",", urls) + "]}}").getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, json.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(json);
+        }
+    }
+
+    private void serveData(final HttpExchange exchange) throws IOException {
+        final int active = activeDownloads.incrementAndGet();
+        maxActiveDownloads.accumulateAndGet(active, Math::max);
+        try {
+            Thread.sleep(BLOCK_DELAY_MS);
+            final Matcher matcher = RANGE.matcher(exchange.getRequestHeaders().getFirst("Range"));
+            Assert.assertTrue(matcher.matches());
+            final int start = Integer.parseInt(matcher.group(1));
+            final int end = Integer.parseInt(matcher.group(2));
+            exchange.sendResponseHeaders(206, end - start + 1);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bam, start, end - start + 1);
+            }
+        } catch (final InterruptedException e) {
+            throw new IOException(e);
+        } finally {
+            activeDownloads.decrementAndGet();
+        }
+    }
+
+    @DataProvider(name = "concurrentBlocks")
+    public Object[][] concurrentBlocks() {
+        return new Object[][]{{1}, {3}, {BLOCKS}};
+    }
+
+    @DataProvider(name = "invalidConcurrentBlocks")
+    public Object[][] invalidConcurrentBlocks() {
+        return new Object[][]{{0}, {-1}};
+    }
+
+    @Test(dataProvider = "invalidConcurrentBlocks", expectedExceptions = IllegalArgumentException.class)
+    public void testRejectInvalidConcurrentBlocks(final int concurrentBlocks) throws IOException {
+        final HtsgetBAMFileReader htsgetReader = new HtsgetBAMFileReader(endpoint(), true,
+            ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance(), false);
+        try {
+            htsgetReader.setConcurrentBlocks(concurrentBlocks);
+        } finally {
+            htsgetReader.close();
+        }
+    }
+
+    @Test(dataProvider = "concurrentBlocks")
+    public void testQueryIntervals(final int concurrentBlocks) throws IOException {
+        final QueryInterval[] query = {
+            new QueryInterval(0, 1, 100_000),
+            new QueryInterval(0, 200_000, 300_000),
+            new QueryInterval(1, 1, 500_000),
+            new QueryInterval(2, 1, 10_000)};
+
+        final HtsgetBAMFileReader htsgetReader = new HtsgetBAMFileReader(endpoint(), true,
+            ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance(), false);
+        htsgetReader.setConcurrentBlocks(concurrentBlocks);
+        Assert.assertFalse(htsgetReader.isUsingPOST());
+        maxActiveDownloads.set(0);
+        tickets.set(0);
+
+        final List<String> expected = new ArrayList<>();
+        final List<String> actual = new ArrayList<>();
+        try (final SamReader fileReader = SamReaderFactory.makeDefault().open(BAM_FILE);
+             final CloseableIterator<SAMRecord> fileIterator = fileReader.query(query, false);
+             final CloseableIterator<SAMRecord> htsgetIterator = htsgetReader.query(query, false)) {
+            fileIterator.forEachRemaining(r -> expected.add(r.getSAMString()));
+            htsgetIterator.forEachRemaining(r -> actual.add(r.getSAMString()));
+        } finally {
+            htsgetReader.close();
+        }
+
+        Assert.assertFalse(expected.isEmpty());
+        Assert.assertEquals(actual, expected);
+        Assert.assertEquals(tickets.get(), query.length);
+        if (concurrentBlocks > 1) {
+            Assert.assertTrue(maxActiveDownloads.get() > 1, "max concurrent downloads: " + maxActiveDownloads.get());
+        } else {
+            Assert.assertEquals(maxActiveDownloads.get(), 1);
+        }
+    }
+
+    @Test
+    public void testCloseBeforeTheEnd() throws IOException {
+        final QueryInterval[] query = {new QueryInterval(0, 1, 100_000), new QueryInterval(1, 1, 500_000)};
+        final HtsgetBAMFileReader htsgetReader = new HtsgetBAMFileReader(endpoint(), true,
+            ValidationStringency.DEFAULT_STRINGENCY, DefaultSAMRecordFactory.getInstance(), false);
+        htsgetReader.setConcurrentBlocks(BLOCKS);
+        try (final CloseableIterator<SAMRecord> htsgetIterator = htsgetReader.query(query, false)) {
+            Assert.assertTrue(htsgetIterator.hasNext());
+            htsgetIterator.next();
+        } finally {
+            htsgetReader.close();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import htsjdk.samtools.util.IOUtil;
+import htsjdk.samtools.util.SortingCollection;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+public class SAMRecordSizeEstimatorTest extends HtsjdkTest {
+
+    private static final SAMRecordSizeEstimator ESTIMATOR = new SAMRecordSizeEstimator();
+
+    private static SAMRecord makeRecord(final int readLength) {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder();
+        builder.setReadLength(readLength);
+        return builder.addFrag("read", 0, 100, false);
+    }
+
+    private static SAMRecord encodeAndDecode(final SAMRecord record) {
+        final BAMRecordCodec codec = new BAMRecordCodec(record.getHeader());
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        codec.setOutputStream(os);
+        codec.encode(record);
+        codec.setInputStream(new ByteArrayInputStream(os.toByteArray()));
+        return codec.decode();
+    }
+
+    @Test
+    public void testEstimateGrowsWithReadLength() {
+        final long shortEstimate = ESTIMATOR.estimateSize(makeRecord(100));
+        final long longEstimate = ESTIMATOR.estimateSize(makeRecord(10000));
+        Assert.assertTrue(shortEstimate > 200);
+        // at least one byte each for the additional bases and qualities
+        Assert.assertTrue(longEstimate - shortEstimate >= 2 * 9900);
+    }
+
+    @Test
+    public void testEstimateGrowsWithAttributes() {
+        final SAMRecord record = makeRecord(100);
+        final long estimate = ESTIMATOR.estimateSize(record);
+        record.setAttribute("XS", "ACGTACGTACGT");
+        record.setAttribute("XI", new int[100]);
+        Assert.assertTrue(ESTIMATOR.estimateSize(record) - estimate >= "ACGTACGTACGT".length() + 400);
+    }
+
+    @Test
+    public void testUndecodedBAMRecordIsEstimatedFromBinary() {
+        final SAMRecord record = makeRecord(150);
+        record.setAttribute("XS", "ACGTACGTACGT");
+        final SAMRecord bamRecord = encodeAndDecode(record);
+        Assert.assertTrue(bamRecord instanceof BAMRecord);
+
+        final byte[] binary = bamRecord.getVariableBinaryRepresentation();
+        Assert.assertNotNull(binary);
+        final long bamEstimate = ESTIMATOR.estimateSize(bamRecord);
+        Assert.assertEquals(bamEstimate, SAMRecordSizeEstimator.RECORD_OVERHEAD + SAMRecordSizeEstimator.ARRAY_OVERHEAD + binary.length);
+        // the encoded record packs bases two to a byte, so is smaller than the decoded record
+        Assert.assertTrue(bamEstimate < ESTIMATOR.estimateSize(record));
+
+        // once decoded the binary is discarded, and the estimate is that of the decoded record
+        bamRecord.eagerDecode();
+        Assert.assertEquals(ESTIMATOR.estimateSize(bamRecord), ESTIMATOR.estimateSize(record));
+    }
+
+    @Test
+    public void testDecodedFieldsOfBAMRecordAreCounted() {
+        final SAMRecord record = makeRecord(150);
+        record.setAttribute("XS", "ACGTACGTACGT");
+        final SAMRecord bamRecord = encodeAndDecode(record);
+        final byte[] binary = bamRecord.getVariableBinaryRepresentation();
+        long previousEstimate = ESTIMATOR.estimateSize(bamRecord);
+
+        // decoded fields are held as well as the binary, so each adds to the estimate
+        bamRecord.getReadBases();
+        Assert.assertEquals(ESTIMATOR.estimateSize(bamRecord), previousEstimate + SAMRecordSizeEstimator.ARRAY_OVERHEAD + 150);
+        previousEstimate = ESTIMATOR.estimateSize(bamRecord);
+        bamRecord.getCigar();
+        Assert.assertEquals(ESTIMATOR.estimateSize(bamRecord),
+                previousEstimate + SAMRecordSizeEstimator.CIGAR_OVERHEAD + SAMRecordSizeEstimator.CIGAR_ELEMENT_SIZE);
+        previousEstimate = ESTIMATOR.estimateSize(bamRecord);
+        bamRecord.getAttribute("XS");
+        Assert.assertTrue(ESTIMATOR.estimateSize(bamRecord) >= previousEstimate + "ACGTACGTACGT".length());
+
+        // a change makes the binary stale, but it is still held, so is still counted
+        previousEstimate = ESTIMATOR.estimateSize(bamRecord);
+        bamRecord.setMappingQuality(10);
+        bamRecord.setBaseQualities(new byte[150]);
+        Assert.assertNull(bamRecord.getVariableBinaryRepresentation());
+        Assert.assertEquals(ESTIMATOR.estimateSize(bamRecord), previousEstimate + SAMRecordSizeEstimator.ARRAY_OVERHEAD + 150);
+        // everything but the read name has been decoded
+        Assert.assertEquals(ESTIMATOR.estimateSize(bamRecord),
+                ESTIMATOR.estimateSize(record) - (SAMRecordSizeEstimator.STRING_OVERHEAD + 2 * "read".length()) +
+                        SAMRecordSizeEstimator.ARRAY_OVERHEAD + binary.length);
+    }
+
+    @Test
+    public void testSortWithByteBudget() throws IOException {
+        final SAMRecordSetBuilder builder = new SAMRecordSetBuilder(false, SAMFileHeader.SortOrder.coordinate);
+        builder.setReadLength(100);
+        for (int i = 0; i < 500; i++) {
+            builder.addFrag("read" + i, i % 3, 1 + (i * 7919) % 10000, i % 2 == 0);
+        }
+        final SAMRecordCoordinateComparator comparator = new SAMRecordCoordinateComparator();
+        final List<SAMRecord> expected = new ArrayList<>(builder.getRecords());
+        expected.sort(comparator);
+
+        final Path tmpDir = Files.createTempDirectory("SAMRecordSizeEstimatorTest");
+        try {
+            final long maxBytesInRam = 50 * ESTIMATOR.estimateSize(expected.get(0));
+            final SortingCollection<SAMRecord> sorter = SortingCollection.newInstance(SAMRecord.class,
+                    new BAMRecordCodec(builder.getHeader()), comparator, maxBytesInRam, ESTIMATOR, tmpDir);
+            for (final SAMRecord record : builder.getRecords()) {
+                sorter.add(record);
+            }
+            // each spill holds about 50 records
+            Assert.assertTrue(Files.list(tmpDir).count() >= 9);
+
+            final List<SAMRecord> actual = new ArrayList<>();
+            try (final CloseableIterator<SAMRecord> iterator = sorter.iterator()) {
+                iterator.forEachRemaining(actual::add);
+            }
+            Assert.assertEquals(actual.size(), expected.size());
+            for (int i = 0; i < expected.size(); i++) {
+                Assert.assertEquals(actual.get(i).getSAMString(), expected.get(i).getSAMString());
+            }
+            sorter.cleanup();
+        } finally {
+            IOUtil.deleteDirectoryTree(tmpDir.toFile());
+        }
+    }
+}
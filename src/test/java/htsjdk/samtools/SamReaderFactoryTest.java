@@ -79,6 +79,92 @@ public class SamReaderFactoryTest extends HtsjdkTest {
         Assert.assertNotEquals(inflateCalls[0], 0, "Not using Inflater from InflateFactory on file : " + inputFile);
     }
 
+    @Test
+    public void testInflateThreads() throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final List<String> expected = new ArrayList<>();
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            for (final SAMRecord rec : reader) {
+                expected.add(rec.getSAMString());
+            }
+        }
+        final QueryInterval query = new QueryInterval(0, 1, 100000000);
+        final int expectedInQuery;
+        try (final SamReader reader = SamReaderFactory.makeDefault().open(input)) {
+            expectedInQuery = countRecordsInQueryInterval(reader, query);
+        }
+
+        try (final SamReader reader = SamReaderFactory.makeDefault().setInflateThreads(4).open(input)) {
+            final List<String> actual = new ArrayList<>();
+            try (final SAMRecordIterator iter = reader.iterator()) {
+                while (iter.hasNext()) {
+                    actual.add(iter.next().getSAMString());
+                }
+            }
+            Assert.assertEquals(actual, expected);
+            Assert.assertEquals(countRecordsInQueryInterval(reader, query), expectedInQuery);
+        }
+    }
+
+    @DataProvider(name = "parallelReadingThreads")
+    public Object[][] parallelReadingThreads() {
+        return new Object[][]{
+                // inflate threads, decode threads
+                {0, 2},
+                {0, 8},
+                {4, 4}
+        };
+    }
+
+    private static List<String> readAll(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        try (final CloseableIterator<SAMRecord> iter = iterator) {
+            while (iter.hasNext()) {
+                final SAMRecord rec = iter.next();
+                records.add(rec.getSAMString() + rec.getFileSource().getFilePointer());
+            }
+        }
+        return records;
+    }
+
+    @Test(dataProvider = "parallelReadingThreads")
+    public void testParallelReading(final int inflateThreads, final int decodeThreads) throws IOException {
+        final File input = new File(TEST_DATA_DIR, "BAMFileIndexTest/index_test.bam");
+        final SamReaderFactory serialFactory = SamReaderFactory.makeDefault()
+                .enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS, SamReaderFactory.Option.EAGERLY_DECODE)
+                .validationStringency(ValidationStringency.STRICT);
+        final SamReaderFactory parallelFactory = SamReaderFactory.makeDefault()
+                .enable(SamReaderFactory.Option.INCLUDE_SOURCE_IN_RECORDS, SamReaderFactory.Option.EAGERLY_DECODE)
+                .validationStringency(ValidationStringency.STRICT)
+                .setInflateThreads(inflateThreads)
+                .setDecodeThreads(decodeThreads);
+        final QueryInterval[] query = {new QueryInterval(0, 1, 100000), new QueryInterval(1, 1, 100000000)};
+
+        try (final SamReader serial = serialFactory.open(input);
+             final SamReader parallel = parallelFactory.open(input)) {
+            final List<String> expected = readAll(serial.iterator());
+            Assert.assertEquals(expected.size(), 10000);
+            Assert.assertEquals(readAll(parallel.iterator()), expected);
+            Assert.assertEquals(readAll(parallel.query(query, false)), readAll(serial.query(query, false)));
+            Assert.assertEquals(readAll(parallel.queryUnmapped()), readAll(serial.queryUnmapped()));
+            // a second iteration, after closing a partially consumed one, starts again from the beginning
+            try (final SAMRecordIterator iter = parallel.iterator()) {
+                iter.next();
+            }
+            Assert.assertEquals(readAll(parallel.iterator()), expected);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidInflateThreads() {
+        SamReaderFactory.makeDefault().setInflateThreads(-1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidDecodeThreads() {
+        SamReaderFactory.makeDefault().setDecodeThreads(-1);
+    }
+
     private int countRecordsInQueryInterval(final SamReader reader, final QueryInterval query) {
         final SAMRecordIterator iter = reader.queryOverlapping(new QueryInterval[]{query});
         int count = 0;
@@ -0,0 +1,215 @@
+package htsjdk.samtools;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.CloseableIterator;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class SamReaderPoolTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File CSI_INDEX_FILE = new File(BAM_FILE.getPath() + ".csi");
+    private static final File SAM_FILE = new File("src/test/resources/htsjdk/samtools/noheader.sam");
+
+    private static final QueryInterval[][] QUERIES = {
+            {new QueryInterval(0, 1, 1_000_000)},
+            {new QueryInterval(1, 500_000, 2_000_000), new QueryInterval(3, 1, 0)},
+            {new QueryInterval(10, 1, 0)},
+            {new QueryInterval(22, 1, 50_000_000)},
+    };
+
+    private static List<String> read(final CloseableIterator<SAMRecord> iterator) {
+        final List<String> records = new ArrayList<>();
+        try {
+            iterator.forEachRemaining(r -> records.add(r.getSAMString()));
+        } finally {
+            iterator.close();
+        }
+        return records;
+    }
+
+    private static List<List<String>> readQueries(final SamReader reader) {
+        final List<List<String>> results = new ArrayList<>();
+        for (final QueryInterval[] query : QUERIES) {
+            results.add(read(reader.query(query, false)));
+        }
+        return results;
+    }
+
+    @Test
+    public void testReadersAreReused() throws IOException {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault())) {
+            final SamReader first = pool.acquire(SamInputResource.of(BAM_FILE));
+            final SamReader second = pool.acquire(SamInputResource.of(BAM_FILE));
+            Assert.assertNotSame(first, second);
+            Assert.assertEquals(pool.getLeasedReaderCount(), 2);
+            // the readers of a file share its index
+            Assert.assertSame(first.indexing().getIndex(), second.indexing().getIndex());
+            Assert.assertTrue(first.indexing().getIndex() instanceof CompactBAMFileIndex);
+            // the pool keeps a copy of the header
+            Assert.assertEquals(pool.getFileHeader(SamInputResource.of(BAM_FILE)), first.getFileHeader());
+            Assert.assertNotSame(pool.getFileHeader(SamInputResource.of(BAM_FILE)), first.getFileHeader());
+            Assert.assertEquals(pool.getLeasedReaderCount(), 2);
+            final SAMFileHeader secondHeader = second.getFileHeader();
+
+            first.close();
+            second.close();
+            Assert.assertEquals(pool.getLeasedReaderCount(), 0);
+            Assert.assertEquals(pool.getIdleReaderCount(), 2);
+
+            // the reader returned last is leased first, in a new lease
+            final SamReader third = pool.acquire(SamInputResource.of(BAM_FILE));
+            Assert.assertNotSame(third, second);
+            Assert.assertSame(third.getFileHeader(), secondHeader);
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+            third.close();
+        }
+    }
+
+    @Test
+    public void testQueriesMatchAReaderOfTheirOwn() throws IOException {
+        final List<List<String>> expected;
+        try (SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            expected = readQueries(reader);
+        }
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault())) {
+            for (int i = 0; i < 3; i++) {
+                try (SamReader reader = pool.acquire(SamInputResource.of(BAM_FILE))) {
+                    Assert.assertEquals(readQueries(reader), expected);
+                }
+            }
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+
+            // with a CSI index
+            try (SamReader reader = pool.acquire(SamInputResource.of(BAM_FILE).index(CSI_INDEX_FILE))) {
+                Assert.assertEquals(readQueries(reader), expected);
+            }
+            Assert.assertEquals(pool.getIdleReaderCount(), 2);
+        }
+    }
+
+    @Test
+    public void testConcurrentLeases() throws Exception {
+        final List<List<String>> expected;
+        try (SamReader reader = SamReaderFactory.makeDefault().open(BAM_FILE)) {
+            expected = readQueries(reader);
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault(), 4, 60_000)) {
+            final List<Future<List<List<String>>>> results = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> {
+                    try (SamReader reader = pool.acquire(SamInputResource.of(BAM_FILE))) {
+                        return readQueries(reader);
+                    }
+                }));
+            }
+            for (final Future<List<List<String>>> result : results) {
+                Assert.assertEquals(result.get(), expected);
+            }
+            Assert.assertEquals(pool.getLeasedReaderCount(), 0);
+            Assert.assertTrue(pool.getIdleReaderCount() <= 4);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIdleReadersAreEvicted() throws Exception {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault(), 1, 50)) {
+            final SamReader bam = pool.acquire(SamInputResource.of(BAM_FILE));
+            final SamReader sam = pool.acquire(SamInputResource.of(SAM_FILE));
+            bam.close();
+            sam.close();
+            // least recently used first, so the BAM is opened again, and the SAM reader is still idle
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+            pool.acquire(SamInputResource.of(BAM_FILE));
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+
+            Thread.sleep(100);
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+            pool.acquire(SamInputResource.of(SAM_FILE)).close();
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+        }
+    }
+
+    @Test
+    public void testEvictIdleReadersOfUnusedPool() throws Exception {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault(), 4, 50)) {
+            pool.acquire(SamInputResource.of(BAM_FILE)).close();
+            pool.evictIdle();
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+
+            // readers are only evicted when the pool is used, or asked to evict them
+            Thread.sleep(100);
+            Assert.assertEquals(pool.getIdleReaderCount(), 1);
+            pool.evictIdle();
+            Assert.assertEquals(pool.getIdleReaderCount(), 0);
+        }
+    }
+
+    @Test
+    public void testReturnedReaderCannotBeUsed() throws IOException {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault())) {
+            final SamReader reader = pool.acquire(SamInputResource.of(BAM_FILE));
+            // an iterator left open is closed when the reader is returned
+            final CloseableIterator<SAMRecord> iterator = reader.query(QUERIES[0], false);
+            Assert.assertTrue(iterator.hasNext());
+            reader.close();
+            reader.close();
+            Assert.assertThrows(IllegalStateException.class, reader::getFileHeader);
+
+            try (SamReader again = pool.acquire(SamInputResource.of(BAM_FILE))) {
+                Assert.assertEquals(pool.getIdleReaderCount(), 0);
+                // the old lease cannot be used, or return the reader again, while the reader is leased again
+                Assert.assertThrows(IllegalStateException.class, reader::getFileHeader);
+                Assert.assertThrows(IllegalStateException.class, () -> reader.query(QUERIES[0], false));
+                reader.close();
+                Assert.assertEquals(pool.getLeasedReaderCount(), 1);
+                Assert.assertFalse(read(again.query(QUERIES[0], false)).isEmpty());
+            }
+        }
+    }
+
+    @Test
+    public void testHeaderIsNotSharedWithLeases() throws IOException {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault())) {
+            final List<String> comments;
+            try (SamReader reader = pool.acquire(SamInputResource.of(BAM_FILE))) {
+                comments = new ArrayList<>(reader.getFileHeader().getComments());
+                reader.getFileHeader().addComment("added by the holder of a lease");
+            }
+            Assert.assertEquals(pool.getFileHeader(SamInputResource.of(BAM_FILE)).getComments(), comments);
+        }
+    }
+
+    @Test
+    public void testClosedPool() throws IOException {
+        final SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault());
+        final SamReader leased = pool.acquire(SamInputResource.of(BAM_FILE));
+        pool.acquire(SamInputResource.of(SAM_FILE)).close();
+        pool.close();
+        Assert.assertEquals(pool.getIdleReaderCount(), 0);
+        // a reader leased before the pool was closed can still be used, and is closed when returned
+        Assert.assertFalse(read(leased.query(QUERIES[0], false)).isEmpty());
+        leased.close();
+        Assert.assertEquals(pool.getLeasedReaderCount(), 0);
+        Assert.assertThrows(IllegalStateException.class, () -> pool.acquire(SamInputResource.of(BAM_FILE)));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectStreams() throws IOException {
+        try (SamReaderPool pool = new SamReaderPool(SamReaderFactory.makeDefault());
+             FileInputStream stream = new FileInputStream(BAM_FILE)) {
+            pool.acquire(SamInputResource.of(stream));
+        }
+    }
+}
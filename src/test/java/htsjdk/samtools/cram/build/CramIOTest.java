@@ -24,7 +24,8 @@ public class CramIOTest extends HtsjdkTest {
     private Object[] getCRAMHeaderAndEOF() {
         return new Object[] {
                 CramVersions.CRAM_v2_1,
-                CramVersions.CRAM_v3
+                CramVersions.CRAM_v3,
+                CramVersions.CRAM_v3_1
         };
     }
 
@@ -45,7 +46,7 @@ public class CramIOTest extends HtsjdkTest {
         return new Object[] {
                 new CRAMVersion(1, 0),
                 new CRAMVersion(2, 0),
-                new CRAMVersion(3, 1),
+                new CRAMVersion(3, 2),
                 new CRAMVersion(4, 0),
         };
     }
@@ -2,6 +2,8 @@ package htsjdk.samtools.cram.compression;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.Defaults;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
 import htsjdk.samtools.cram.structure.CompressorCache;
 import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import org.testng.Assert;
@@ -30,6 +32,13 @@ public class CompressorCacheTest extends HtsjdkTest {
                 {BlockCompressionMethod.RANS, 1, RANSExternalCompressor.class},
                 {BlockCompressionMethod.RANS, 0, RANSExternalCompressor.class},
                 {BlockCompressionMethod.RANS, ExternalCompressor.NO_COMPRESSION_ARG, RANSExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, ExternalCompressor.NO_COMPRESSION_ARG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, RANSNx16.ORDER_FLAG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, ExternalCompressor.NO_COMPRESSION_ARG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, RangeCodec.ORDER_FLAG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.FQZCOMP, ExternalCompressor.NO_COMPRESSION_ARG, FQZCompExternalCompressor.class},
+                {BlockCompressionMethod.NAME_TOKENISER, ExternalCompressor.NO_COMPRESSION_ARG, NameTokeniserExternalCompressor.class},
+                {BlockCompressionMethod.NAME_TOKENISER, NameTokeniserExternalCompressor.ARITHMETIC_STREAMS, NameTokeniserExternalCompressor.class},
         };
     }
 
@@ -54,6 +63,10 @@ public class CompressorCacheTest extends HtsjdkTest {
                 {BlockCompressionMethod.LZMA, -2},
                 {BlockCompressionMethod.LZMA, 99},
                 {BlockCompressionMethod.RANS, 2},
+                {BlockCompressionMethod.RANSNx16, 256},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, 256},
+                {BlockCompressionMethod.FQZCOMP, 0},
+                {BlockCompressionMethod.NAME_TOKENISER, 2},
         };
     }
 
@@ -2,6 +2,8 @@ package htsjdk.samtools.cram.compression;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.Defaults;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
 import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
@@ -29,6 +31,17 @@ public class ExternalCompressionTest extends HtsjdkTest {
                 {BlockCompressionMethod.RANS, 1, RANSExternalCompressor.class},
                 {BlockCompressionMethod.RANS, 0, RANSExternalCompressor.class},
                 {BlockCompressionMethod.RANS, ExternalCompressor.NO_COMPRESSION_ARG, RANSExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, ExternalCompressor.NO_COMPRESSION_ARG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, 0, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, RANSNx16.ORDER_FLAG | RANSNx16.N32_FLAG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG | RANSNx16.ORDER_FLAG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.RANSNx16, RANSNx16.STRIPE_FLAG, RANSNx16ExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, ExternalCompressor.NO_COMPRESSION_ARG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, 0, RangeExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, RangeCodec.ORDER_FLAG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, RangeCodec.PACK_FLAG | RangeCodec.RLE_FLAG | RangeCodec.ORDER_FLAG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, RangeCodec.EXT_FLAG, RangeExternalCompressor.class},
+                {BlockCompressionMethod.FQZCOMP, ExternalCompressor.NO_COMPRESSION_ARG, FQZCompExternalCompressor.class},
         };
     }
 
@@ -53,6 +66,15 @@ public class ExternalCompressionTest extends HtsjdkTest {
                 {BlockCompressionMethod.LZMA, -2},
                 {BlockCompressionMethod.LZMA, 99},
                 {BlockCompressionMethod.RANS, 2},
+                {BlockCompressionMethod.RANSNx16, -2},
+                {BlockCompressionMethod.RANSNx16, 256},
+                {BlockCompressionMethod.RANSNx16, RANSNx16.NOSZ_FLAG},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, -2},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, 256},
+                {BlockCompressionMethod.ADAPTIVE_ARITHMETIC, RangeCodec.NOSZ_FLAG},
+                {BlockCompressionMethod.FQZCOMP, 0},
+                {BlockCompressionMethod.NAME_TOKENISER, -2},
+                {BlockCompressionMethod.NAME_TOKENISER, 2},
         };
     }
 
@@ -0,0 +1,119 @@
+package htsjdk.samtools.cram.compression;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.compression.fqzcomp.FQZComp;
+import htsjdk.samtools.cram.compression.nametokenisation.NameTokeniser;
+import htsjdk.samtools.cram.compression.range.RangeCodec;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Decode streams written by the htscodecs library, which htslib uses for CRAM 3.1, with the htsjdk CRAM 3.1
+ * codecs, and compare the result with the original data. This checks the codecs against the reference
+ * implementation, rather than only against themselves.
+ *
+ * The streams are read from {@link #TEST_DATA_DIR}, which holds a directory per codec (r4x16 for rANS Nx16, arith
+ * for the adaptive arithmetic coder, fqzcomp and tok3 for the name tokeniser), and a directory "raw" with the
+ * uncompressed inputs. Each stream is named after its input, plus an extension for the flags or parameters it was
+ * written with: r4x16/q4.193 is q4 compressed with rANS Nx16 flags 193. Inputs for fqzcomp and tok3 hold one
+ * record per line; records are concatenated for fqzcomp, and nul-terminated for tok3.
+ *
+ * The streams have to be generated with htscodecs, and none are in the tree yet, so until they are added this
+ * test is skipped. Until then the codecs are checked against htslib through samtools, by
+ * {@link htsjdk.samtools.CRAMAllEncodingStrategiesTest}, when a samtools executable is available.
+ */
+public class HtscodecsReferenceStreamTest extends HtsjdkTest {
+    private static final File TEST_DATA_DIR = new File("src/test/resources/htsjdk/samtools/cram/htscodecs");
+    private static final File RAW_DATA_DIR = new File(TEST_DATA_DIR, "raw");
+
+    private enum Codec {
+        r4x16(in -> toArray(new RANSNx16().uncompress(in))),
+        arith(in -> toArray(new RangeCodec().uncompress(in))),
+        fqzcomp(in -> toArray(new FQZComp().uncompress(in))),
+        tok3(in -> new NameTokeniser().uncompress(in));
+
+        private final Function<ByteBuffer, byte[]> decoder;
+
+        Codec(final Function<ByteBuffer, byte[]> decoder) {
+            this.decoder = decoder;
+        }
+
+        // convert an input file with one record per line into the form the codec decodes to
+        private byte[] toDecodedForm(final byte[] raw) {
+            switch (this) {
+                case fqzcomp:
+                    return removeNewlines(raw);
+                case tok3:
+                    final byte[] names = raw.clone();
+                    for (int i = 0; i < names.length; i++) {
+                        if (names[i] == '\n') {
+                            names[i] = 0;
+                        }
+                    }
+                    return names;
+                default:
+                    return raw;
+            }
+        }
+    }
+
+    @DataProvider(name = "referenceStreams")
+    public Object[][] getReferenceStreams() {
+        final List<Object[]> testCases = new ArrayList<>();
+        for (final Codec codec : Codec.values()) {
+            final File[] streams = new File(TEST_DATA_DIR, codec.name()).listFiles(File::isFile);
+            if (streams != null) {
+                Arrays.sort(streams);
+                for (final File stream : streams) {
+                    testCases.add(new Object[]{codec, stream});
+                }
+            }
+        }
+        if (testCases.isEmpty()) {
+            // a single case, so that the missing streams are reported as a skipped test rather than passed over
+            testCases.add(new Object[]{null, null});
+        }
+        return testCases.toArray(new Object[0][]);
+    }
+
+    @Test(dataProvider = "referenceStreams")
+    public void testDecodeReferenceStream(final Codec codec, final File stream) throws IOException {
+        if (codec == null) {
+            throw new SkipException("No htscodecs reference streams in " + TEST_DATA_DIR);
+        }
+        final String streamName = stream.getName();
+        final File raw = new File(RAW_DATA_DIR, streamName.substring(0, streamName.lastIndexOf('.')));
+        final byte[] expected = codec.toDecodedForm(Files.readAllBytes(raw.toPath()));
+        final byte[] actual = codec.decoder.apply(ByteBuffer.wrap(Files.readAllBytes(stream.toPath())));
+        Assert.assertEquals(actual, expected, String.format("%s decoded with %s", stream, codec));
+    }
+
+    private static byte[] toArray(final ByteBuffer buffer) {
+        final byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static byte[] removeNewlines(final byte[] bytes) {
+        final byte[] out = new byte[bytes.length];
+        int n = 0;
+        for (final byte b : bytes) {
+            if (b != '\n') {
+                out[n++] = b;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+}
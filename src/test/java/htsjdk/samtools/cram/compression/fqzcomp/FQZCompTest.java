@@ -0,0 +1,131 @@
+package htsjdk.samtools.cram.compression.fqzcomp;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.compression.rans.RANSNx16;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+public class FQZCompTest extends HtsjdkTest {
+    private final Random random = new Random(TestUtil.RANDOM_SEED);
+
+    // enclose large arrays in a wrapper class so that they aren't rendered as strings in the test output
+    private static class TestCase {
+        public final byte[] qualities;
+        public final int[] recordLengths;
+        private final String description;
+
+        public TestCase(final String description, final byte[] qualities, final int[] recordLengths) {
+            this.description = description;
+            this.qualities = qualities;
+            this.recordLengths = recordLengths;
+        }
+
+        public String toString() {
+            return String.format("%s (%d qualities)", description, qualities.length);
+        }
+    }
+
+    @DataProvider(name = "fqzcompData")
+    public Object[][] getFQZCompTestData() {
+        final int[] fixedLengths = new int[200];
+        java.util.Arrays.fill(fixedLengths, 100);
+        final byte[] fixedQualities = simulateQualities(fixedLengths, 40);
+
+        final int[] variableLengths = new int[200];
+        for (int i = 0; i < variableLengths.length; i++) {
+            variableLengths[i] = 1 + random.nextInt(300);
+        }
+        final byte[] variableQualities = simulateQualities(variableLengths, 60);
+
+        // every other record is a copy of its predecessor
+        final ByteArrayOutputStream duplicated = new ByteArrayOutputStream();
+        for (int record = 0; record < fixedLengths.length; record++) {
+            duplicated.write(fixedQualities, (record / 2) * 100, 100);
+        }
+
+        // binned qualities use only a handful of distinct values
+        final byte[] binned = fixedQualities.clone();
+        for (int i = 0; i < binned.length; i++) {
+            binned[i] = (byte) (binned[i] < 10 ? 2 : binned[i] < 20 ? 12 : binned[i] < 30 ? 23 : 37);
+        }
+
+        final int[] withEmptyRecords = {0, 100, 0, 0, 100, 0};
+        return new Object[][] {
+                { new TestCase("empty", new byte[0], null) },
+                { new TestCase("empty records", new byte[0], new int[] {0, 0}) },
+                { new TestCase("single value", new byte[] {30}, null) },
+                { new TestCase("single value record", new byte[] {30}, new int[] {1}) },
+                { new TestCase("fixed length, no lengths", fixedQualities, null) },
+                { new TestCase("fixed length", fixedQualities, fixedLengths) },
+                { new TestCase("variable length", variableQualities, variableLengths) },
+                { new TestCase("duplicates", duplicated.toByteArray(), fixedLengths) },
+                { new TestCase("binned", binned, fixedLengths) },
+                { new TestCase("with empty records", simulateQualities(new int[] {200}, 40), withEmptyRecords) },
+                { new TestCase("mismatched lengths", fixedQualities, new int[] {1, 2, 3}) },
+                { new TestCase("high values", simulateQualities(fixedLengths, 255), fixedLengths) },
+                { new TestCase("constant", new byte[10000], new int[] {5000, 5000}) },
+        };
+    }
+
+    @Test(dataProvider = "fqzcompData")
+    public void testRoundTrip(final TestCase tc) {
+        final FQZComp fqzComp = new FQZComp();
+        final byte[] compressed = fqzComp.compress(tc.qualities, tc.recordLengths);
+        final ByteBuffer uncompressed = fqzComp.uncompress(ByteBuffer.wrap(compressed));
+        Assert.assertEquals(uncompressed.array(), tc.qualities);
+    }
+
+    @Test
+    public void testRecordLengthsImproveCompression() {
+        final int[] lengths = new int[1000];
+        java.util.Arrays.fill(lengths, 150);
+        final byte[] qualities = simulateQualities(lengths, 40);
+
+        final FQZComp fqzComp = new FQZComp();
+        final int withLengths = fqzComp.compress(qualities, lengths).length;
+        final int withoutLengths = fqzComp.compress(qualities, null).length;
+        final int ransOrder1 = new RANSNx16().compress(ByteBuffer.wrap(qualities), RANSNx16.ORDER_FLAG).limit();
+        Assert.assertTrue(withLengths < withoutLengths,
+                String.format("with lengths %d, without %d", withLengths, withoutLengths));
+        Assert.assertTrue(withLengths < ransOrder1,
+                String.format("fqzcomp %d, rANS order-1 %d", withLengths, ransOrder1));
+    }
+
+    @Test
+    public void testDuplicatesAreCheap() {
+        final int[] lengths = new int[1000];
+        java.util.Arrays.fill(lengths, 100);
+        final byte[] record = simulateQualities(new int[] {100}, 40);
+        final byte[] qualities = new byte[100 * lengths.length];
+        for (int i = 0; i < lengths.length; i++) {
+            System.arraycopy(record, 0, qualities, i * 100, 100);
+        }
+        Assert.assertTrue(new FQZComp().compress(qualities, lengths).length < 300);
+    }
+
+    /**
+     * Simulate quality values that drift downwards along each record, with occasional dips.
+     */
+    private byte[] simulateQualities(final int[] recordLengths, final int maxQuality) {
+        int total = 0;
+        for (final int length : recordLengths) {
+            total += length;
+        }
+        final byte[] qualities = new byte[total];
+        int offset = 0;
+        for (final int length : recordLengths) {
+            for (int i = 0; i < length; i++) {
+                final int expected = maxQuality - (maxQuality / 2) * i / Math.max(1, length);
+                final int q = random.nextInt(20) == 0 ? random.nextInt(maxQuality / 4 + 1) : expected - random.nextInt(3);
+                qualities[offset++] = (byte) Math.max(0, Math.min(maxQuality, q));
+            }
+        }
+        return qualities;
+    }
+}
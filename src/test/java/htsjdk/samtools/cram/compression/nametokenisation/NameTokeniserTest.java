@@ -0,0 +1,125 @@
+package htsjdk.samtools.cram.compression.nametokenisation;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.cram.CRAMException;
+import htsjdk.samtools.cram.compression.GZIPExternalCompressor;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+public class NameTokeniserTest extends HtsjdkTest {
+    private final Random random = new Random(TestUtil.RANDOM_SEED);
+
+    // enclose the names in a wrapper class so that long lists aren't rendered in the test output
+    private static class TestCase {
+        public final List<String> names;
+        private final String description;
+
+        public TestCase(final String description, final List<String> names) {
+            this.description = description;
+            this.names = names;
+        }
+
+        public String toString() {
+            return String.format("%s (%d names)", description, names.size());
+        }
+    }
+
+    @DataProvider(name = "names")
+    public Object[][] getNames() {
+        final List<String> illumina = getIlluminaNames(1000);
+        final List<String> pairedAndShuffled = new ArrayList<>(illumina);
+        pairedAndShuffled.addAll(illumina);
+        Collections.shuffle(pairedAndShuffled, random);
+
+        return new Object[][] {
+                { new TestCase("none", Collections.emptyList()) },
+                { new TestCase("one", Collections.singletonList("read1")) },
+                { new TestCase("empty", Arrays.asList("", "", "a", "")) },
+                { new TestCase("duplicates", Arrays.asList("a:1", "a:1", "a:1", "b:1", "a:1")) },
+                { new TestCase("leading zeros", Arrays.asList("r001", "r002", "r010", "r0100", "r0", "r00", "r1", "r007")) },
+                { new TestCase("decreasing numbers", Arrays.asList("x:100", "x:99", "x:355", "x:2", "x:2000000")) },
+                { new TestCase("long numbers", Arrays.asList("12345678901234567890", "12345678901234567891", "0000000000001")) },
+                { new TestCase("varying token types", Arrays.asList("a1b2", "1ab2", "a-b-", "ab12", "12", "ab")) },
+                { new TestCase("punctuation", Arrays.asList("a b\tc", "~!@#$%^&*()_+", "a.b.c", "a.b.d")) },
+                { new TestCase("many tokens", Collections.nCopies(3, String.join(":", Collections.nCopies(300, "a1")))) },
+                { new TestCase("illumina", illumina) },
+                { new TestCase("illumina pairs, shuffled", pairedAndShuffled) },
+        };
+    }
+
+    @Test(dataProvider = "names")
+    public void testRoundTrip(final TestCase tc) {
+        final byte[] data = toNulTerminated(tc.names);
+        final NameTokeniser nameTokeniser = new NameTokeniser();
+        for (final boolean useArithmeticCoder : new boolean[] {false, true}) {
+            final byte[] compressed = nameTokeniser.compress(data, useArithmeticCoder);
+            Assert.assertEquals(nameTokeniser.uncompress(ByteBuffer.wrap(compressed)), data);
+        }
+    }
+
+    @Test
+    public void testCompressesBetterThanGzip() {
+        final byte[] data = toNulTerminated(getIlluminaNames(10000));
+        final int gzipSize = new GZIPExternalCompressor().compress(data).length;
+        final int tokeniserSize = new NameTokeniser().compress(data, false).length;
+        Assert.assertTrue(tokeniserSize < gzipSize / 2, String.format("gzip %d, name tokeniser %d", gzipSize, tokeniserSize));
+    }
+
+    @Test
+    public void testHeader() {
+        final byte[] data = toNulTerminated(Arrays.asList("a", "b"));
+        final ByteBuffer compressed = ByteBuffer.wrap(new NameTokeniser().compress(data, true))
+                .order(java.nio.ByteOrder.LITTLE_ENDIAN);
+        Assert.assertEquals(compressed.getInt(), data.length);
+        Assert.assertEquals(compressed.getInt(), 2);
+        Assert.assertEquals(compressed.get(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectUnterminatedNames() {
+        new NameTokeniser().compress("read1".getBytes(StandardCharsets.US_ASCII), false);
+    }
+
+    @Test(expectedExceptions = CRAMException.class)
+    public void testRejectTruncatedStream() {
+        final byte[] compressed = new NameTokeniser().compress(toNulTerminated(getIlluminaNames(100)), false);
+        // the header is intact, but a stream is missing
+        new NameTokeniser().uncompress(ByteBuffer.wrap(Arrays.copyOf(compressed, compressed.length / 2)));
+    }
+
+    private List<String> getIlluminaNames(final int count) {
+        final List<String> names = new ArrayList<>();
+        int tile = 1101;
+        int y = 1000;
+        for (int i = 0; i < count; i++) {
+            if (random.nextInt(500) == 0) {
+                tile++;
+                y = 1000;
+            }
+            y += random.nextInt(50);
+            names.add(String.format("HSQ1004:134:C0D8DACXX:1:%d:%d:%d", tile, random.nextInt(20000), y));
+        }
+        return names;
+    }
+
+    private static byte[] toNulTerminated(final List<String> names) {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        for (final String name : names) {
+            final byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+            baos.write(bytes, 0, bytes.length);
+            baos.write(0);
+        }
+        return baos.toByteArray();
+    }
+}
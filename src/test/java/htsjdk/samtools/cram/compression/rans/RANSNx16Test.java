@@ -0,0 +1,194 @@
+package htsjdk.samtools.cram.compression.rans;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+public class RANSNx16Test extends HtsjdkTest {
+    private final Random random = new Random(TestUtil.RANDOM_SEED);
+
+    private static final int[] FLAG_COMBINATIONS = {
+            0,
+            RANSNx16.ORDER_FLAG,
+            RANSNx16.N32_FLAG,
+            RANSNx16.ORDER_FLAG | RANSNx16.N32_FLAG,
+            RANSNx16.STRIPE_FLAG,
+            RANSNx16.STRIPE_FLAG | RANSNx16.ORDER_FLAG | RANSNx16.N32_FLAG,
+            RANSNx16.CAT_FLAG,
+            RANSNx16.RLE_FLAG,
+            RANSNx16.RLE_FLAG | RANSNx16.ORDER_FLAG,
+            RANSNx16.PACK_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.ORDER_FLAG | RANSNx16.N32_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG,
+            RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG | RANSNx16.ORDER_FLAG | RANSNx16.N32_FLAG,
+            RANSNx16.STRIPE_FLAG | RANSNx16.PACK_FLAG | RANSNx16.RLE_FLAG,
+    };
+
+    // Since some of our test cases use very large byte arrays, so enclose them in a wrapper class since
+    // otherwise IntelliJ serializes them to strings for display in the test output, which is *super*-slow.
+    private static class TestCaseWrapper {
+        public final byte[] testArray;
+        public TestCaseWrapper(final byte[] testdata) {
+            this.testArray = testdata;
+        }
+        public String toString() {
+            return String.format("Array of size %d", testArray.length);
+        }
+    }
+
+    @DataProvider(name="ransData")
+    public Object[][] getRansTestData() {
+        return new Object[][] {
+                { new TestCaseWrapper(new byte[]{}) },
+                { new TestCaseWrapper(new byte[] {0}) },
+                { new TestCaseWrapper(new byte[] {0, 1}) },
+                { new TestCaseWrapper(new byte[] {0, 1, 2}) },
+                { new TestCaseWrapper(new byte[] {0, 1, 2, 3}) },
+                { new TestCaseWrapper(new byte[1000]) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> (byte) 1)) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> Byte.MIN_VALUE)) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> Byte.MAX_VALUE)) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> (byte) index.intValue())) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> index < n / 2 ? (byte) 0 : (byte) 1)) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> index < n % 2 ? (byte) 0 : (byte) 1)) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> (byte) "ACGT".charAt(index % 4))) },
+                { new TestCaseWrapper(getNBytesWithValues(1000, (n, index) -> (byte) (index / 10 % 3))) },
+                { new TestCaseWrapper(randomBytesFromGeometricDistribution(1000, 0.1)) },
+                { new TestCaseWrapper(randomBytesFromGeometricDistribution(1000, 0.01)) },
+                { new TestCaseWrapper(randomBytesFromGeometricDistribution(1000, 0.5)) },
+                { new TestCaseWrapper(randomBytesFromGeometricDistribution(1000 * 1000 + 1, 0.01)) },
+        };
+    }
+
+    @Test(dataProvider="ransData")
+    public void testRANSNx16(final TestCaseWrapper tc) {
+        roundTripForEachFlags(tc.testArray);
+    }
+
+    @Test
+    public void testSizeRangeTiny() {
+        for (int i = 0; i < 5; i++) {
+            final byte[] data = randomBytesFromGeometricDistribution(100, 0.1);
+            for (int size = 1; size < data.length; size++) {
+                roundTripForEachFlags(Arrays.copyOf(data, size));
+            }
+        }
+    }
+
+    @Test
+    public void testSizeRangeSmall() {
+        final byte[] data = randomBytesFromGeometricDistribution(1000, 0.01);
+        for (int size = 4; size < data.length; size += 7) {
+            roundTripForEachFlags(Arrays.copyOf(data, size));
+        }
+    }
+
+    @Test
+    public void testCompresses() {
+        final byte[] data = randomBytesFromGeometricDistribution(100 * 1000, 0.1);
+        final RANSNx16 rans = new RANSNx16();
+        for (final int flags : FLAG_COMBINATIONS) {
+            if ((flags & RANSNx16.CAT_FLAG) == 0) {
+                Assert.assertTrue(rans.compress(ByteBuffer.wrap(data), flags).limit() < data.length * 3 / 4);
+            }
+        }
+
+        // a long run of a single symbol reduces to almost nothing with either transform
+        final byte[] run = new byte[100 * 1000];
+        Assert.assertTrue(rans.compress(ByteBuffer.wrap(run), RANSNx16.RLE_FLAG).limit() < 20);
+        Assert.assertTrue(rans.compress(ByteBuffer.wrap(run), RANSNx16.PACK_FLAG).limit() < 20);
+    }
+
+    @Test
+    public void testBuffersMeetBoundaryExpectations() {
+        final int size = 1001;
+        final ByteBuffer raw = ByteBuffer.wrap(randomBytesFromGeometricDistribution(size, 0.01));
+        final RANSNx16 rans = new RANSNx16();
+        for (final int flags : FLAG_COMBINATIONS) {
+            final ByteBuffer compressed = rans.compress(raw, flags);
+            Assert.assertFalse(raw.hasRemaining());
+            Assert.assertEquals(raw.limit(), size);
+            Assert.assertEquals(compressed.position(), 0);
+
+            final ByteBuffer uncompressed = rans.uncompress(compressed);
+            Assert.assertEquals(uncompressed.limit(), size);
+            Assert.assertEquals(uncompressed.position(), 0);
+
+            raw.rewind();
+        }
+    }
+
+    @Test
+    public void testUncompressedStream() {
+        // flags, uncompressed size, data
+        final byte[] stream = {RANSNx16.CAT_FLAG, 3, 'a', 'b', 'c'};
+        final ByteBuffer uncompressed = new RANSNx16().uncompress(ByteBuffer.wrap(stream));
+        Assert.assertEquals(uncompressed.array(), new byte[] {'a', 'b', 'c'});
+
+        // data that doesn't compress is stored that way
+        final ByteBuffer compressed = new RANSNx16().compress(ByteBuffer.wrap(new byte[] {'a', 'b', 'c'}), 0);
+        Assert.assertEquals(compressed.array(), stream);
+    }
+
+    @Test
+    public void testMultiByteSize() {
+        final byte[] data = new byte[200];
+        final ByteBuffer compressed = new RANSNx16().compress(ByteBuffer.wrap(data), RANSNx16.CAT_FLAG);
+        // 200 requires two 7-bit groups, most significant first
+        Assert.assertEquals(compressed.get(1), (byte) 0x81);
+        Assert.assertEquals(compressed.get(2), (byte) 0x48);
+        Assert.assertEquals(compressed.limit(), 3 + data.length);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testNoSizeFlagRejected() {
+        new RANSNx16().compress(ByteBuffer.wrap(new byte[10]), RANSNx16.NOSZ_FLAG);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidFlagsRejected() {
+        new RANSNx16().compress(ByteBuffer.wrap(new byte[10]), 0x100);
+    }
+
+    private byte[] getNBytesWithValues(final int n, final BiFunction<Integer, Integer, Byte> valueForIndex) {
+        final byte[] data = new byte[n];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = valueForIndex.apply(n, i);
+        }
+        return data;
+    }
+
+    private static void roundTripForEachFlags(final byte[] data) {
+        // use a single instance, to check that working memory is reset between calls
+        final RANSNx16 rans = new RANSNx16();
+        for (final int flags : FLAG_COMBINATIONS) {
+            final ByteBuffer compressed = rans.compress(ByteBuffer.wrap(data), flags);
+            final ByteBuffer uncompressed = rans.uncompress(compressed);
+            Assert.assertEquals(uncompressed.remaining(), data.length, "flags " + flags);
+            final byte[] actual = new byte[uncompressed.remaining()];
+            uncompressed.get(actual);
+            Assert.assertEquals(actual, data, "flags " + flags);
+        }
+    }
+
+    private byte[] randomBytesFromGeometricDistribution(final int size, final double p) {
+        final byte[] data = new byte[size];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = drawByteFromGeometricDistribution(p);
+        }
+        return data;
+    }
+
+    private byte drawByteFromGeometricDistribution(final double probability) {
+        final double rand = random.nextDouble();
+        final double g = Math.ceil(Math.log(1 - rand) / Math.log(1 - probability)) - 1;
+        return (byte) g;
+    }
+}
@@ -0,0 +1,240 @@
+package htsjdk.samtools.cram.ref;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class CRAMReferenceCacheTest extends HtsjdkTest {
+    private static final int REGION_SIZE = 10;
+
+    private static byte[] getBases(final int length) {
+        final byte[] bases = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bases[i] = (byte) "ACGT".charAt(i % 4);
+        }
+        return bases;
+    }
+
+    @Test
+    public void testSequenceIsCached() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        final byte[] bases = getBases(95);
+        final AtomicInteger loads = new AtomicInteger();
+
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(cache.getSequence("1", () -> { loads.incrementAndGet(); return bases.clone(); }), bases);
+        }
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(cache.getSequenceIfCached("1"), bases);
+        // the cached sequence is shared rather than copied
+        Assert.assertSame(cache.getSequenceIfCached("1"), cache.getSequence("1", () -> null));
+        Assert.assertEquals(cache.getCachedBytes(), bases.length);
+
+        cache.clear();
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+    }
+
+    @Test
+    public void testMissingSequenceIsNotCached() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        Assert.assertNull(cache.getSequence("1", () -> null));
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+    }
+
+    @DataProvider(name = "regions")
+    public Object[][] getRegions() {
+        return new Object[][] {
+                // start, length
+                { 0, 0 },
+                { 0, 1 },
+                { 0, 95 },
+                { 3, 7 },
+                { 9, 2 },
+                { 10, 10 },
+                { 15, 30 },
+                { 90, 5 },
+                { 90, 100 },
+                { 95, 10 },
+                { 200, 10 },
+        };
+    }
+
+    @Test(dataProvider = "regions")
+    public void testRegionsAreLoadedAndCached(final int start, final int length) {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        final byte[] bases = getBases(95);
+        final AtomicInteger loadedBytes = new AtomicInteger();
+        final CRAMReferenceCache.RegionLoader loader = (regionStart, regionLength) -> {
+            loadedBytes.addAndGet(regionLength);
+            return Arrays.copyOfRange(bases, regionStart, regionStart + regionLength);
+        };
+        final byte[] expected = Arrays.copyOfRange(
+                bases, Math.min(start, bases.length), Math.min(start + length, bases.length));
+
+        Assert.assertEquals(cache.getRegion("1", bases.length, start, length, loader), expected);
+        // only the regions overlapping the requested bases are loaded
+        Assert.assertTrue(loadedBytes.get() < expected.length + 2 * REGION_SIZE);
+        Assert.assertEquals(cache.getCachedBytes(), loadedBytes.get());
+
+        final int firstLoad = loadedBytes.get();
+        Assert.assertEquals(cache.getRegion("1", bases.length, start, length, loader), expected);
+        Assert.assertEquals(loadedBytes.get(), firstLoad);
+    }
+
+    @Test
+    public void testRegionsAreServedFromCachedSequence() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        final byte[] bases = getBases(95);
+        cache.putSequence("1", bases);
+        final byte[] region = cache.getRegion("1", bases.length, 12, 40, (start, length) -> {
+            throw new IllegalStateException("cached regions should not be loaded");
+        });
+        Assert.assertEquals(region, Arrays.copyOfRange(bases, 12, 52));
+    }
+
+    @Test
+    public void testSequenceIsAssembledFromRegions() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        final byte[] bases = getBases(25);
+        final CRAMReferenceCache.RegionLoader loader =
+                (start, length) -> Arrays.copyOfRange(bases, start, start + length);
+
+        cache.getRegion("1", bases.length, 0, 5, loader);
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        cache.getRegion("1", bases.length, 5, 20, loader);
+        final byte[] assembled = cache.getSequenceIfCached("1");
+        Assert.assertEquals(assembled, bases);
+        // the assembled sequence replaces the regions
+        Assert.assertSame(cache.getSequenceIfCached("1"), assembled);
+        Assert.assertEquals(cache.getCachedBytes(), bases.length);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedRegionsAreEvicted() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(3 * REGION_SIZE, REGION_SIZE);
+        final byte[] bases = getBases(50);
+        final CRAMReferenceCache.RegionLoader loader =
+                (start, length) -> Arrays.copyOfRange(bases, start, start + length);
+
+        cache.getRegion("1", bases.length, 0, 1, loader);
+        cache.getRegion("2", bases.length, 0, 1, loader);
+        cache.getRegion("3", bases.length, 0, 1, loader);
+        // use "1" so that "2" is the least recently used
+        cache.getRegion("1", bases.length, 0, 1, loader);
+        cache.getRegion("4", bases.length, 0, 1, loader);
+        Assert.assertEquals(cache.getCachedBytes(), 3 * REGION_SIZE);
+
+        final CRAMReferenceCache.RegionLoader failingLoader = (start, length) -> {
+            throw new IllegalStateException("cached regions should not be loaded");
+        };
+        for (final String key : new String[] { "1", "2", "3", "4" }) {
+            // "2" is held softly until the garbage collector needs the memory
+            Assert.assertEquals(cache.getRegion(key, bases.length, 0, 1, failingLoader), new byte[] { 'A' });
+        }
+        cache.clearSoftReferences();
+        for (final String key : new String[] { "1", "3", "4" }) {
+            Assert.assertEquals(cache.getRegion(key, bases.length, 0, 1, failingLoader), new byte[] { 'A' });
+        }
+        Assert.assertNull(cache.getRegion("2", bases.length, 0, 1, (start, length) -> null));
+    }
+
+    @Test
+    public void testSequenceLargerThanBudget() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(2 * REGION_SIZE, REGION_SIZE);
+        final byte[] bases = getBases(95);
+        final AtomicInteger loads = new AtomicInteger();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertEquals(cache.getSequence("1", () -> { loads.incrementAndGet(); return bases.clone(); }), bases);
+        }
+        // the sequence is held softly, so isn't reloaded for every request, but doesn't count against the budget
+        Assert.assertEquals(loads.get(), 1);
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+
+        cache.getSequence("2", () -> getBases(5));
+        Assert.assertEquals(cache.getSequenceIfCached("1"), bases);
+        Assert.assertEquals(cache.getCachedBytes(), 5);
+
+        // until the garbage collector clears it
+        cache.clearSoftReferences();
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        Assert.assertEquals(cache.getSequenceIfCached("2"), getBases(5));
+    }
+
+    @Test
+    public void testZeroBudgetHoldsEverythingSoftly() {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(0, REGION_SIZE);
+        final byte[] bases = getBases(25);
+        final CRAMReferenceCache.RegionLoader loader =
+                (start, length) -> Arrays.copyOfRange(bases, start, start + length);
+
+        Assert.assertEquals(cache.getRegion("1", bases.length, 0, 25, loader), bases);
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+        // the softly held regions can still be assembled into the whole sequence
+        final byte[] assembled = cache.getSequenceIfCached("1");
+        Assert.assertEquals(assembled, bases);
+        Assert.assertSame(cache.getSequenceIfCached("1"), assembled);
+        Assert.assertEquals(cache.getCachedBytes(), 0);
+
+        cache.clearSoftReferences();
+        Assert.assertNull(cache.getSequenceIfCached("1"));
+        Assert.assertNull(cache.getRegion("1", bases.length, 0, 1, (start, length) -> null));
+    }
+
+    @Test
+    public void testConcurrentRequestsShareOneLoad() throws Exception {
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000, REGION_SIZE);
+        final byte[] bases = getBases(95);
+        final AtomicInteger loads = new AtomicInteger();
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final Future<byte[]> first = executor.submit(() -> cache.getSequence("1", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                try {
+                    release.await();
+                } catch (final InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+                return bases.clone();
+            }));
+            Assert.assertTrue(loading.await(10, TimeUnit.SECONDS));
+            final Future<byte[]> second = executor.submit(() -> cache.getSequence("1", () -> {
+                loads.incrementAndGet();
+                return bases.clone();
+            }));
+            release.countDown();
+
+            Assert.assertEquals(first.get(10, TimeUnit.SECONDS), bases);
+            Assert.assertEquals(second.get(10, TimeUnit.SECONDS), bases);
+        } finally {
+            executor.shutdownNow();
+        }
+        // the second request either waited for the first load, or ran after it completed and found it cached
+        Assert.assertEquals(loads.get(), 1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectNegativeBudget() {
+        new CRAMReferenceCache(-1, REGION_SIZE);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectZeroRegionSize() {
+        new CRAMReferenceCache(1000, 0);
+    }
+}
@@ -3,10 +3,14 @@ package htsjdk.samtools.cram.ref;
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.SAMSequenceRecord;
 import htsjdk.samtools.reference.InMemoryReferenceSequenceFile;
+import htsjdk.samtools.reference.ReferenceSequenceFileFactory;
 import htsjdk.samtools.util.SequenceUtil;
+import htsjdk.samtools.util.Tuple;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.Arrays;
 
 /**
@@ -31,4 +35,93 @@ public class ReferenceSourceTest extends HtsjdkTest{
         Assert.assertNotEquals(refBasesFromSource, originalRefBases);
         Assert.assertEquals(refBasesFromSource, SequenceUtil.upperCase(originalRefBases));
     }
+
+    @Test
+    public void testReferenceSourceRegionsMatchWholeSequence() {
+        final Path fasta = Paths.get("src/test/resources/htsjdk/samtools/reference/Homo_sapiens_assembly18.trimmed.fasta");
+        final CRAMReferenceCache cache = new CRAMReferenceCache(1000000, 1000);
+        final ReferenceSource referenceSource = new ReferenceSource(
+                ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta), cache);
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chrM", 16571);
+
+        final byte[] regionBases = referenceSource.getReferenceBasesByRegion(sequenceRecord, 1500, 2000);
+        // only the regions of the file covering the requested bases are read
+        Assert.assertEquals(cache.getCachedBytes(), 3000);
+
+        final byte[] wholeSequence = referenceSource.getReferenceBases(sequenceRecord, false);
+        Assert.assertEquals(wholeSequence.length, 16571);
+        Assert.assertEquals(regionBases, Arrays.copyOfRange(wholeSequence, 1500, 3500));
+        Assert.assertEquals(
+                referenceSource.getReferenceBasesByRegion(sequenceRecord, 16000, 2000),
+                Arrays.copyOfRange(wholeSequence, 16000, 16571));
+
+        // the name variant "M" resolves to chrM
+        Assert.assertEquals(
+                referenceSource.getReferenceBasesByRegion(new SAMSequenceRecord("M", 16571), 0, 100),
+                Arrays.copyOf(wholeSequence, 100));
+    }
+
+    @Test
+    public void testReferenceSourcesForSameFileShareCache() {
+        final Path fasta = Paths.get("src/test/resources/htsjdk/samtools/reference/Homo_sapiens_assembly18.trimmed.fasta");
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chr20", 1000000);
+        final byte[] bases = new ReferenceSource(fasta).getReferenceBases(sequenceRecord, false);
+
+        // a source for the same file finds the sequence in the shared cache, rather than reading it again
+        final byte[] sharedBases = CRAMReferenceCache.getSharedCache().getSequenceIfCached(
+                new Tuple<>(fasta.toAbsolutePath().toUri(), "chr20"));
+        Assert.assertEquals(sharedBases, bases);
+        Assert.assertEquals(new ReferenceSource(fasta).getReferenceBases(sequenceRecord, false), bases);
+    }
+
+    @Test
+    public void testLazyReferenceSourceUsesSharedCache() {
+        final String md5 = "0123456789ABCDEF0123456789abcdef";
+        final byte[] bases = "ACGTNACGTN".getBytes();
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("1", bases.length);
+        sequenceRecord.setAttribute(SAMSequenceRecord.MD5_TAG, md5);
+
+        final CRAMLazyReferenceSource lazyReferenceSource = new CRAMLazyReferenceSource();
+        Assert.assertThrows(IllegalArgumentException.class, () -> lazyReferenceSource.getReferenceBases(sequenceRecord, false));
+
+        CRAMReferenceCache.getSharedCache().putSequence(md5.toLowerCase(), bases);
+        Assert.assertEquals(lazyReferenceSource.getReferenceBases(sequenceRecord, false), bases);
+        Assert.assertEquals(lazyReferenceSource.getReferenceBasesByRegion(sequenceRecord, 2, 3), "GTN".getBytes());
+    }
+
+    @Test
+    public void testLazyReferenceSourceFindsSequenceReadFromFile() {
+        final Path fasta = Paths.get("src/test/resources/htsjdk/samtools/reference/Homo_sapiens_assembly18.trimmed.fasta");
+        final byte[] expectedBases = SequenceUtil.upperCase(
+                ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta).getSequence("chrM").getBases());
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chrM", expectedBases.length);
+        sequenceRecord.setAttribute(SAMSequenceRecord.MD5_TAG, SequenceUtil.calculateMD5String(expectedBases));
+        // a record with the same MD5, but a name that the lazy source can't resolve in any file
+        final SAMSequenceRecord lazyRecord = new SAMSequenceRecord("mitochondrion", expectedBases.length);
+        lazyRecord.setAttribute(SAMSequenceRecord.MD5_TAG, sequenceRecord.getAttribute(SAMSequenceRecord.MD5_TAG).toUpperCase());
+
+        final byte[] bases = new ReferenceSource(fasta).getReferenceBases(sequenceRecord, false);
+        Assert.assertEquals(bases, expectedBases);
+        Assert.assertSame(new CRAMLazyReferenceSource().getReferenceBases(lazyRecord, false), bases);
+        Assert.assertEquals(
+                new CRAMLazyReferenceSource().getReferenceBasesByRegion(lazyRecord, 100, 50),
+                Arrays.copyOfRange(expectedBases, 100, 150));
+    }
+
+    @Test
+    public void testLazyReferenceSourceFindsRegionsReadFromFile() {
+        final Path fasta = Paths.get("src/test/resources/htsjdk/samtools/reference/Homo_sapiens_assembly18.trimmed.fasta");
+        final byte[] expectedBases = SequenceUtil.upperCase(
+                ReferenceSequenceFileFactory.getReferenceSequenceFile(fasta).getSequence("chr20").getBases());
+        final SAMSequenceRecord sequenceRecord = new SAMSequenceRecord("chr20", expectedBases.length);
+        // the MD5 of the bases with one changed, so that the key isn't shared with other tests
+        final byte[] otherBases = expectedBases.clone();
+        otherBases[0] = 'X';
+        sequenceRecord.setAttribute(SAMSequenceRecord.MD5_TAG, SequenceUtil.calculateMD5String(otherBases));
+
+        final byte[] regionBases = new ReferenceSource(fasta).getReferenceBasesByRegion(sequenceRecord, 10, 20);
+        Assert.assertEquals(regionBases, Arrays.copyOfRange(expectedBases, 10, 30));
+        Assert.assertEquals(new CRAMLazyReferenceSource().getReferenceBasesByRegion(sequenceRecord, 15, 10),
+                Arrays.copyOfRange(expectedBases, 15, 25));
+    }
 }
@@ -2,8 +2,11 @@ package htsjdk.samtools.cram.structure;
 
 import htsjdk.HtsjdkTest;
 import htsjdk.samtools.cram.build.CramContainerIterator;
+import htsjdk.samtools.cram.common.CramVersions;
 import htsjdk.samtools.cram.compression.GZIPExternalCompressor;
 import htsjdk.samtools.cram.io.CountingInputStream;
+import htsjdk.samtools.cram.structure.block.Block;
+import htsjdk.samtools.cram.structure.block.BlockCompressionMethod;
 import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
@@ -22,6 +25,84 @@ public class CompressionHeaderEncodingMapTest extends HtsjdkTest {
                 StructureTestUtils.DATASERIES_NOT_WRITTEN_BY_HTSJDK);
     }
 
+    @DataProvider(name = "compressionMethodsForStrategy")
+    public Object[][] getCompressionMethodsForStrategy() {
+        return new Object[][] {
+                // strategy, expected compression method for BA, expected compression method for QS
+                { new CRAMEncodingStrategy(), BlockCompressionMethod.RANS, BlockCompressionMethod.RANS },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1),
+                        BlockCompressionMethod.RANSNx16, BlockCompressionMethod.RANSNx16 },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseArithmeticCoder(true),
+                        BlockCompressionMethod.ADAPTIVE_ARITHMETIC, BlockCompressionMethod.ADAPTIVE_ARITHMETIC },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseFQZComp(true),
+                        BlockCompressionMethod.RANSNx16, BlockCompressionMethod.FQZCOMP },
+                { new CRAMEncodingStrategy()
+                        .setCRAMVersion(CramVersions.CRAM_v3_1)
+                        .setUseArithmeticCoder(true)
+                        .setUseFQZComp(true),
+                        BlockCompressionMethod.ADAPTIVE_ARITHMETIC, BlockCompressionMethod.FQZCOMP },
+                // the CRAM 3.1 codec options have no effect on CRAM 3.0
+                { new CRAMEncodingStrategy().setUseArithmeticCoder(true).setUseFQZComp(true),
+                        BlockCompressionMethod.RANS, BlockCompressionMethod.RANS },
+        };
+    }
+
+    @Test(dataProvider = "compressionMethodsForStrategy")
+    public void testCompressionMethodsForStrategy(
+            final CRAMEncodingStrategy encodingStrategy,
+            final BlockCompressionMethod expectedBaseMethod,
+            final BlockCompressionMethod expectedQualityMethod) {
+        final CompressionHeaderEncodingMap encodingMap = new CompressionHeaderEncodingMap(encodingStrategy);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        baos.write(new byte[] {30, 30, 31, 32}, 0, 4);
+        Assert.assertEquals(
+                encodingMap.createCompressedBlockForStream(
+                        DataSeries.BA_Base.getExternalBlockContentId(), baos).getCompressionMethod(),
+                expectedBaseMethod);
+        Assert.assertEquals(
+                encodingMap.createCompressedBlockForStream(
+                        DataSeries.QS_QualityScore.getExternalBlockContentId(), baos).getCompressionMethod(),
+                expectedQualityMethod);
+    }
+
+    @DataProvider(name = "readNameEncodingsForStrategy")
+    public Object[][] getReadNameEncodingsForStrategy() {
+        return new Object[][] {
+                // strategy, expected stop byte, expected compression method
+                { new CRAMEncodingStrategy(), (byte) '\t', BlockCompressionMethod.GZIP },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1),
+                        (byte) '\t', BlockCompressionMethod.GZIP },
+                { new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v3_1).setUseNameTokeniser(true),
+                        (byte) 0, BlockCompressionMethod.NAME_TOKENISER },
+                // the name tokeniser has no effect on CRAM 3.0
+                { new CRAMEncodingStrategy().setUseNameTokeniser(true), (byte) '\t', BlockCompressionMethod.GZIP },
+        };
+    }
+
+    @Test(dataProvider = "readNameEncodingsForStrategy")
+    public void testReadNameEncodingForStrategy(
+            final CRAMEncodingStrategy encodingStrategy,
+            final byte expectedStopByte,
+            final BlockCompressionMethod expectedMethod) {
+        final CompressionHeaderEncodingMap encodingMap = new CompressionHeaderEncodingMap(encodingStrategy);
+        final EncodingDescriptor descriptor = encodingMap.getEncodingDescriptorForDataSeries(DataSeries.RN_ReadName);
+        Assert.assertEquals(descriptor.getEncodingID(), EncodingID.BYTE_ARRAY_STOP);
+        Assert.assertEquals(descriptor.getEncodingParameters()[0], expectedStopByte);
+
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final byte[] names = {'r', '1', expectedStopByte, 'r', '2', expectedStopByte};
+        baos.write(names, 0, names.length);
+        final Block block = encodingMap.createCompressedBlockForStream(
+                DataSeries.RN_ReadName.getExternalBlockContentId(), baos);
+        Assert.assertEquals(block.getCompressionMethod(), expectedMethod);
+        Assert.assertEquals(block.getUncompressedContent(new CompressorCache()), names);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectUnwritableCRAMVersion() {
+        new CRAMEncodingStrategy().setCRAMVersion(CramVersions.CRAM_v2_1);
+    }
+
     @Test
     public void testAllHTSJDKWriteEncodingsRoundTripThroughStream() throws IOException {
         // make sure all of the default encodings that HTSJDK writes can be round tripped
@@ -69,7 +69,9 @@ public class AbstractIndexedFastaSequenceFileTest extends HtsjdkTest {
                 { new IndexedFastaSequenceFile(SEQUENCE_FILE_NODICT) },
                 { new IndexedFastaSequenceFile(SEQUENCE_FILE.toPath()) },
                 { new IndexedFastaSequenceFile(SEQUENCE_FILE_NODICT.toPath()) },
-                { new BlockCompressedIndexedFastaSequenceFile(SEQUENCE_FILE_BGZ.toPath())}};
+                { new BlockCompressedIndexedFastaSequenceFile(SEQUENCE_FILE_BGZ.toPath())},
+                { new MemoryMappedFastaSequenceFile(SEQUENCE_FILE.toPath()) },
+                { new MemoryMappedFastaSequenceFile(SEQUENCE_FILE_NODICT.toPath()) }};
     }
 
     @DataProvider(name="comparative")
@@ -0,0 +1,165 @@
+package htsjdk.samtools.reference;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMException;
+import htsjdk.samtools.util.TestUtil;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class MemoryMappedFastaSequenceFileTest extends HtsjdkTest {
+    private static final Path TEST_DATA_DIR = Paths.get("src/test/resources/htsjdk/samtools/reference");
+    private static final Path SEQUENCE_FILE = TEST_DATA_DIR.resolve("Homo_sapiens_assembly18.trimmed.fasta");
+    private static final Path CRLF_FILE = TEST_DATA_DIR.resolve("crlf.fasta");
+
+    @DataProvider(name = "segmentSizes")
+    public Object[][] getSegmentSizes() {
+        return new Object[][] {
+                { MemoryMappedFastaSequenceFile.DEFAULT_SEGMENT_SIZE },
+                // small segments, so that some lines and regions straddle segment boundaries
+                { 4093 },
+                { 65536 },
+        };
+    }
+
+    @Test(dataProvider = "segmentSizes")
+    public void testRegionsMatchIndexedFastaSequenceFile(final int segmentSize) throws IOException {
+        final Random random = new Random(TestUtil.RANDOM_SEED);
+        try (final IndexedFastaSequenceFile expectedFile = new IndexedFastaSequenceFile(SEQUENCE_FILE);
+             final MemoryMappedFastaSequenceFile mappedFile = openMapped(SEQUENCE_FILE, segmentSize)) {
+            for (final FastaSequenceIndexEntry entry : mappedFile.getIndex()) {
+                final String contig = entry.getContig();
+                Assert.assertEquals(mappedFile.getSequence(contig).getBases(), expectedFile.getSequence(contig).getBases());
+                for (int i = 0; i < 200; i++) {
+                    final long start = 1 + random.nextInt((int) entry.getSize());
+                    final long stop = Math.min(entry.getSize(), start - 1 + random.nextInt(500));
+                    final ReferenceSequence expected = expectedFile.getSubsequenceAt(contig, start, stop);
+                    final ReferenceSequence actual = mappedFile.getSubsequenceAt(contig, start, stop);
+                    Assert.assertEquals(actual.getName(), expected.getName());
+                    Assert.assertEquals(actual.getContigIndex(), expected.getContigIndex());
+                    Assert.assertEquals(actual.getBases(), expected.getBases());
+                    Assert.assertEquals(mappedFile.getSubsequenceView(contig, start, stop).getBases(), expected.getBases());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCRLFLineTerminators() throws IOException {
+        try (final MemoryMappedFastaSequenceFile mappedFile = new MemoryMappedFastaSequenceFile(CRLF_FILE)) {
+            Assert.assertEquals(mappedFile.getSequence("a").getBaseString(), "ACTG");
+            Assert.assertEquals(mappedFile.getSubsequenceAt("b", 2, 3).getBaseString(), "CT");
+        }
+    }
+
+    @Test
+    public void testSubsequenceView() throws IOException {
+        try (final IndexedFastaSequenceFile expectedFile = new IndexedFastaSequenceFile(SEQUENCE_FILE);
+             final MemoryMappedFastaSequenceFile mappedFile = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            final byte[] expected = expectedFile.getSubsequenceAt("chr20", 55, 300).getBases();
+            final MemoryMappedFastaSequenceFile.SubsequenceView view = mappedFile.getSubsequenceView("chr20", 55, 300);
+            Assert.assertEquals(view.getContig(), "chr20");
+            Assert.assertEquals(view.getStart(), 55);
+            Assert.assertEquals(view.length(), expected.length);
+            for (int i = 0; i < view.length(); i++) {
+                Assert.assertEquals(view.byteAt(i), expected[i]);
+            }
+
+            final byte[] copied = new byte[expected.length + 2];
+            view.copyTo(10, copied, 2, 100);
+            for (int i = 0; i < 100; i++) {
+                Assert.assertEquals(copied[i + 2], expected[i + 10]);
+            }
+
+            Assert.assertEquals(mappedFile.getSubsequenceView("chr20", 55, 54).length(), 0);
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> view.byteAt(view.length()));
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> view.byteAt(-1));
+            Assert.assertThrows(IndexOutOfBoundsException.class, () -> view.copyTo(view.length() - 1, copied, 0, 2));
+        }
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final int threads = 4;
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try (final IndexedFastaSequenceFile expectedFile = new IndexedFastaSequenceFile(SEQUENCE_FILE);
+             final MemoryMappedFastaSequenceFile mappedFile = openMapped(SEQUENCE_FILE, 4096)) {
+            final byte[] chr20 = expectedFile.getSequence("chr20").getBases();
+            final List<Future<Boolean>> results = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                final Random random = new Random(TestUtil.RANDOM_SEED + t);
+                results.add(executor.submit(() -> {
+                    for (int i = 0; i < 2000; i++) {
+                        final int start = 1 + random.nextInt(chr20.length - 1000);
+                        final byte[] bases = mappedFile.getSubsequenceAt("chr20", start, start + 999).getBases();
+                        for (int j = 0; j < bases.length; j++) {
+                            if (bases[j] != chr20[start - 1 + j]) {
+                                return false;
+                            }
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for (final Future<Boolean> result : results) {
+                Assert.assertTrue(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testRejectRegionPastEndOfContig() throws IOException {
+        try (final MemoryMappedFastaSequenceFile mappedFile = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            mappedFile.getSubsequenceView("chrM", 16000, 17000);
+        }
+    }
+
+    @DataProvider(name = "startsBeforeContig")
+    public Object[][] getStartsBeforeContig() {
+        return new Object[][] { { 0L }, { -5L } };
+    }
+
+    @Test(dataProvider = "startsBeforeContig", expectedExceptions = SAMException.class)
+    public void testRejectSubsequenceStartingBeforeContig(final long start) throws IOException {
+        try (final MemoryMappedFastaSequenceFile mappedFile = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            mappedFile.getSubsequenceAt("chrM", start, 100);
+        }
+    }
+
+    @Test(dataProvider = "startsBeforeContig", expectedExceptions = SAMException.class)
+    public void testRejectViewStartingBeforeContig(final long start) throws IOException {
+        try (final MemoryMappedFastaSequenceFile mappedFile = new MemoryMappedFastaSequenceFile(SEQUENCE_FILE)) {
+            mappedFile.getSubsequenceView("chrM", start, 100);
+        }
+    }
+
+    @Test(expectedExceptions = SAMException.class)
+    public void testRejectBlockCompressedFile() throws IOException {
+        new MemoryMappedFastaSequenceFile(TEST_DATA_DIR.resolve("Homo_sapiens_assembly18.trimmed.fasta.gz"));
+    }
+
+    @Test(expectedExceptions = FileNotFoundException.class)
+    public void testRequireIndex() throws IOException {
+        new MemoryMappedFastaSequenceFile(TEST_DATA_DIR.resolve("Homo_sapiens_assembly18.trimmed.noindex.fasta"));
+    }
+
+    private static MemoryMappedFastaSequenceFile openMapped(final Path path, final int segmentSize) throws FileNotFoundException {
+        return new MemoryMappedFastaSequenceFile(
+                path,
+                new FastaSequenceIndex(AbstractIndexedFastaSequenceFile.findRequiredFastaIndexFile(path)),
+                segmentSize);
+    }
+}
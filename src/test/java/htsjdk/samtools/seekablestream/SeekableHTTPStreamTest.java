@@ -0,0 +1,197 @@
+package htsjdk.samtools.seekablestream;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Tests SeekableHTTPStream against a local server that serves one file, with and without support for ranged requests.
+ */
+public class SeekableHTTPStreamTest extends HtsjdkTest {
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d+)-(\\d+)");
+
+    private final byte[] content = new byte[100_000];
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<Integer> clientPorts = Collections.synchronizedSet(new HashSet<>());
+    private HttpServer server;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        new Random(42).nextBytes(content);
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ranges", exchange -> serve(exchange, true));
+        server.createContext("/noranges", exchange -> serve(exchange, false));
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private void serve(final HttpExchange exchange, final boolean supportRanges) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.getResponseHeaders().set("Accept-Ranges", supportRanges ? "bytes" : "none");
+        if (exchange.getRequestMethod().equals("HEAD")) {
+            exchange.getResponseHeaders().set("Content-Length", Integer.toString(content.length));
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+
+        requests.incrementAndGet();
+        int start = 0;
+        int end = content.length - 1;
+        final String range = exchange.getRequestHeaders().getFirst("Range");
+        if (supportRanges && range != null) {
+            final Matcher matcher = RANGE.matcher(range);
+            Assert.assertTrue(matcher.matches(), range);
+            start = Integer.parseInt(matcher.group(1));
+            end = Math.min(Integer.parseInt(matcher.group(2)), content.length - 1);
+            if (start >= content.length) {
+                exchange.sendResponseHeaders(416, -1);
+                exchange.close();
+                return;
+            }
+        }
+        exchange.sendResponseHeaders(start == 0 && end == content.length - 1 ? 200 : 206, end - start + 1);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(content, start, end - start + 1);
+        }
+    }
+
+    private SeekableHTTPStream open(final String path, final int cacheBlocks, final int prefetchBlocks) throws IOException {
+        final URL url = new URL("http", server.getAddress().getHostString(), server.getAddress().getPort(), path);
+        return new SeekableHTTPStream(url, null, 4096, cacheBlocks, prefetchBlocks);
+    }
+
+    @DataProvider(name = "streams")
+    public Object[][] streams() {
+        return new Object[][] {
+                {"/ranges", 0, 0},
+                {"/ranges", 8, 0},
+                {"/ranges", 8, 3},
+                {"/ranges", 1, 0},
+                {"/noranges", 8, 0},
+                {"/noranges", 8, 3},
+                {"/noranges", 1, 0},
+        };
+    }
+
+    @Test(dataProvider = "streams")
+    public void testRandomReads(final String path, final int cacheBlocks, final int prefetchBlocks) throws IOException {
+        final Random random = new Random(1);
+        try (SeekableHTTPStream stream = open(path, cacheBlocks, prefetchBlocks)) {
+            Assert.assertEquals(stream.length(), content.length);
+            for (int i = 0; i < 200; i++) {
+                final int start = random.nextInt(content.length);
+                final int len = 1 + random.nextInt(10_000);
+                final byte[] buffer = new byte[len];
+                stream.seek(start);
+                final int n = stream.read(buffer, 0, len);
+                Assert.assertEquals(n, Math.min(len, content.length - start));
+                Assert.assertEquals(Arrays.copyOf(buffer, n), Arrays.copyOfRange(content, start, start + n));
+                Assert.assertEquals(stream.position(), start + n);
+            }
+            stream.seek(content.length);
+            Assert.assertEquals(stream.read(new byte[10], 0, 10), -1);
+            Assert.assertTrue(stream.eof());
+        }
+    }
+
+    @Test(dataProvider = "streams")
+    public void testSequentialReads(final String path, final int cacheBlocks, final int prefetchBlocks) throws IOException {
+        final byte[] read = new byte[content.length];
+        try (SeekableHTTPStream stream = open(path, cacheBlocks, prefetchBlocks)) {
+            int n = 0;
+            while (n < read.length) {
+                final int count = stream.read(read, n, Math.min(1000, read.length - n));
+                Assert.assertTrue(count > 0);
+                n += count;
+            }
+            Assert.assertEquals(stream.read(new byte[10], 0, 10), -1);
+        }
+        Assert.assertEquals(read, content);
+    }
+
+    @Test
+    public void testCachedReadsShareRequestsAndConnections() throws IOException {
+        try (SeekableHTTPStream stream = open("/ranges", 4, 0)) {
+            requests.set(0);
+            clientPorts.clear();
+            // many small reads within two blocks
+            for (int i = 0; i < 100; i++) {
+                stream.seek(i * 80);
+                final byte[] buffer = new byte[10];
+                Assert.assertEquals(stream.read(buffer, 0, buffer.length), buffer.length);
+                Assert.assertEquals(buffer, Arrays.copyOfRange(content, i * 80, i * 80 + 10));
+            }
+            Assert.assertEquals(requests.get(), 2);
+
+            // blocks evicted from the cache are fetched again, over the connection that was kept alive
+            for (int i = 0; i < 3; i++) {
+                for (int block = 0; block < 6; block++) {
+                    stream.seek(block * 4096L);
+                    stream.read(new byte[1], 0, 1);
+                }
+            }
+            Assert.assertTrue(requests.get() > clientPorts.size(), requests.get() + " requests over " + clientPorts.size() + " connections");
+        }
+    }
+
+    @Test
+    public void testUncachedReadsMakeARequestEach() throws IOException {
+        try (SeekableHTTPStream stream = open("/ranges", 0, 0)) {
+            requests.set(0);
+            for (int i = 0; i < 10; i++) {
+                stream.seek(i);
+                stream.read(new byte[1], 0, 1);
+            }
+            Assert.assertEquals(requests.get(), 10);
+        }
+    }
+
+    @DataProvider(name = "prefetchBlocks")
+    public Object[][] prefetchBlocks() {
+        return new Object[][] {{0}, {3}};
+    }
+
+    @Test(dataProvider = "prefetchBlocks")
+    public void testSequentialReadsIgnoringRangesRequestTheFileOnce(final int prefetchBlocks) throws IOException {
+        try (SeekableHTTPStream stream = open("/noranges", 4, prefetchBlocks)) {
+            requests.set(0);
+            final byte[] read = new byte[content.length];
+            int n = 0;
+            while (n < read.length) {
+                n += stream.read(read, n, Math.min(1000, read.length - n));
+            }
+            Assert.assertEquals(read, content);
+            // blocks prefetched before the server is known to ignore ranges may have requested the file too
+            Assert.assertTrue(requests.get() <= 1 + prefetchBlocks, requests.get() + " requests");
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectNegativePrefetch() throws IOException {
+        open("/ranges", 4, -1);
+    }
+}
@@ -31,10 +31,12 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -253,4 +255,83 @@ public class BlockCompressedOutputStreamTest extends HtsjdkTest {
         Assert.assertEquals(deflateCalls[0], 3, "deflate calls");
         Assert.assertEquals(reader.readLine(), null);
     }
+
+    @DataProvider(name = "compressionThreads")
+    public Object[][] compressionThreads() {
+        return new Object[][]{{2}, {4}, {16}};
+    }
+
+    /**
+     * Writes random records of varying length, returning the file pointer at the start of each one and the GZI index
+     */
+    private static List<Long> writeRecords(final BlockCompressedOutputStream bcos, final ByteArrayOutputStream gzi) throws IOException {
+        bcos.addIndexer(gzi);
+        final Random random = new Random(42);
+        final List<Long> filePointers = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            filePointers.add(bcos.getFilePointer());
+            final byte[] record = new byte[random.nextInt(1000)];
+            for (int j = 0; j < record.length; j++) {
+                // mostly compressible, with some noise so that block sizes vary
+                record[j] = (byte) (random.nextInt(10) == 0 ? random.nextInt() : 'A' + j % 4);
+            }
+            bcos.write(record);
+            if (i % 500 == 0) {
+                bcos.flush();
+            }
+        }
+        bcos.close();
+        return filePointers;
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testParallelCompressionMatchesSerial(final int compressionThreads) throws IOException {
+        final ByteArrayOutputStream serialOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream serialGzi = new ByteArrayOutputStream();
+        final List<Long> serialPointers = writeRecords(
+                new BlockCompressedOutputStream(serialOutput, (Path) null, 5, new DeflaterFactory(), 0), serialGzi);
+
+        final ByteArrayOutputStream parallelOutput = new ByteArrayOutputStream();
+        final ByteArrayOutputStream parallelGzi = new ByteArrayOutputStream();
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(parallelOutput, (Path) null, 5, new DeflaterFactory(), compressionThreads);
+        Assert.assertEquals(bcos.getCompressionThreads(), compressionThreads);
+        final List<Long> parallelPointers = writeRecords(bcos, parallelGzi);
+
+        Assert.assertEquals(parallelPointers, serialPointers);
+        Assert.assertEquals(parallelOutput.toByteArray(), serialOutput.toByteArray());
+        Assert.assertEquals(parallelGzi.toByteArray(), serialGzi.toByteArray());
+    }
+
+    @Test(dataProvider = "compressionThreads")
+    public void testProvisionalFilePointers(final int compressionThreads) throws IOException {
+        final ByteArrayOutputStream output = new ByteArrayOutputStream();
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(output, (Path) null, 5, new DeflaterFactory(), compressionThreads);
+        final Random random = new Random(7);
+        final List<Long> provisionalPointers = new ArrayList<>();
+        final List<Long> expectedPointers = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            provisionalPointers.add(bcos.getProvisionalFilePointer());
+            expectedPointers.add(bcos.getFilePointer());
+            final byte[] record = new byte[random.nextInt(2000)];
+            random.nextBytes(record);
+            bcos.write(record);
+        }
+        bcos.close();
+        for (int i = 0; i < provisionalPointers.size(); i++) {
+            Assert.assertEquals(bcos.resolveProvisionalFilePointer(provisionalPointers.get(i)), (long) expectedPointers.get(i));
+        }
+        Assert.assertThrows(IllegalArgumentException.class, () -> bcos.resolveProvisionalFilePointer(provisionalPointers.get(0)));
+    }
+
+    @Test
+    public void testProvisionalFilePointerNotYetResolvable() throws IOException {
+        final BlockCompressedOutputStream bcos = new BlockCompressedOutputStream(new ByteArrayOutputStream(), (Path) null, 5, new DeflaterFactory(), 4);
+        bcos.write(new byte[BlockCompressedStreamConstants.DEFAULT_UNCOMPRESSED_BLOCK_SIZE * 2]);
+        final long provisional = bcos.getProvisionalFilePointer();
+        Assert.assertEquals(BlockCompressedFilePointerUtil.getBlockAddress(provisional), 2);
+        // the previous blocks may still be deflating, but once they are written the pointer can be resolved
+        final long filePointer = bcos.getFilePointer();
+        Assert.assertEquals(bcos.resolveProvisionalFilePointer(provisional), filePointer);
+        bcos.close();
+    }
 }
@@ -83,4 +83,16 @@ public class HtsgetResponseUnitTest extends HtsjdkTest {
         final String actual = out.toString();
         Assert.assertEquals(actual, "encoded test data");
     }
+
+    @Test
+    public void testConcurrentBlocksDecodeInOrder() throws IOException {
+        final String respJson = "{\"htsget\":{\"format\":\"BAM\",\"urls\":[{\"url\":\"data:application/vnd.ga4gh.bam;base64,ZW5jb2RlZCA=\",\"class\":\"header\"},{\"url\":\"data:application/vnd.ga4gh.bam;base64,dGVzdCA=\",\"class\":\"body\"},{\"url\":\"data:application/vnd.ga4gh.bam;base64,ZGF0YQ==\",\"class\":\"body\"}]}}";
+        final HtsgetResponse resp = HtsgetResponse.parse(respJson);
+
+        for (final int concurrentBlocks : new int[]{2, 3, 10}) {
+            final BufferedReader reader = new BufferedReader(new InputStreamReader(resp.getDataStream(concurrentBlocks)));
+            Assert.assertEquals(reader.readLine(), "encoded test data");
+            Assert.assertNull(reader.readLine());
+        }
+    }
 }
@@ -0,0 +1,130 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import htsjdk.samtools.FileTruncatedException;
+import htsjdk.samtools.SAMFormatException;
+import htsjdk.samtools.seekablestream.SeekableFileStream;
+import htsjdk.samtools.util.zip.InflaterFactory;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ParallelBlockCompressedInputStreamTest extends HtsjdkTest {
+    private static final File BAM_FILE = new File("src/test/resources/htsjdk/samtools/BAMFileIndexTest/index_test.bam");
+    private static final File TRUNCATED_FILE = new File("src/test/resources/htsjdk/tribble/vcfexample.vcf.truncated.gz");
+
+    @DataProvider(name = "inflateThreads")
+    public Object[][] inflateThreads() {
+        return new Object[][]{{1}, {2}, {4}, {16}};
+    }
+
+    /**
+     * Reads the whole stream in chunks, recording the virtual file pointer after each read
+     */
+    private static List<Long> readAll(final BlockCompressedInputStream stream, final List<byte[]> chunks) throws IOException {
+        final List<Long> filePointers = new ArrayList<>();
+        final byte[] buffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE / 3];
+        int len;
+        filePointers.add(stream.getFilePointer());
+        while ((len = stream.read(buffer)) > 0) {
+            chunks.add(Arrays.copyOf(buffer, len));
+            filePointers.add(stream.getFilePointer());
+        }
+        return filePointers;
+    }
+
+    @Test(dataProvider = "inflateThreads")
+    public void testSequentialRead(final int inflateThreads) throws IOException {
+        final List<byte[]> expectedChunks = new ArrayList<>();
+        final List<Long> expectedPointers;
+        try (final BlockCompressedInputStream sync = new BlockCompressedInputStream(BAM_FILE)) {
+            expectedPointers = readAll(sync, expectedChunks);
+        }
+
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(
+                new SeekableFileStream(BAM_FILE), new InflaterFactory(), inflateThreads)) {
+            final List<byte[]> chunks = new ArrayList<>();
+            Assert.assertEquals(readAll(parallel, chunks), expectedPointers);
+            Assert.assertEquals(chunks.size(), expectedChunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                Assert.assertEquals(chunks.get(i), expectedChunks.get(i));
+            }
+            // reading past the end keeps returning end of file
+            Assert.assertEquals(parallel.read(), -1);
+        }
+
+        // non-seekable streams read ahead the same way
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(
+                new FileInputStream(BAM_FILE), new InflaterFactory(), inflateThreads)) {
+            final List<byte[]> chunks = new ArrayList<>();
+            Assert.assertEquals(readAll(parallel, chunks), expectedPointers);
+        }
+    }
+
+    @Test(dataProvider = "inflateThreads")
+    public void testSeek(final int inflateThreads) throws IOException {
+        final List<byte[]> expectedChunks = new ArrayList<>();
+        final List<Long> pointers;
+        try (final BlockCompressedInputStream sync = new BlockCompressedInputStream(BAM_FILE)) {
+            pointers = readAll(sync, expectedChunks);
+        }
+
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(
+                new SeekableFileStream(BAM_FILE), new InflaterFactory(), inflateThreads)) {
+            final byte[] buffer = new byte[BlockCompressedStreamConstants.MAX_COMPRESSED_BLOCK_SIZE / 3];
+            // seek backwards through the file, reading a couple of chunks at each position
+            for (int i = expectedChunks.size() - 1; i >= 0; i -= 3) {
+                parallel.seek(pointers.get(i));
+                for (int j = i; j < Math.min(i + 2, expectedChunks.size()); j++) {
+                    final int len = parallel.read(buffer);
+                    Assert.assertEquals(Arrays.copyOf(buffer, len), expectedChunks.get(j));
+                    Assert.assertEquals(parallel.getFilePointer(), (long) pointers.get(j + 1));
+                }
+            }
+        }
+    }
+
+    @Test(expectedExceptions = FileTruncatedException.class)
+    public void testTruncatedFile() throws IOException {
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(TRUNCATED_FILE, new InflaterFactory(), 4)) {
+            final byte[] buffer = new byte[1024];
+            while (parallel.read(buffer) > 0) {
+                // keep reading until the truncated block is reached
+            }
+        }
+    }
+
+    @Test(expectedExceptions = SAMFormatException.class)
+    public void testCheckCrcsOfBlocksReadAhead() throws IOException {
+        // corrupt the CRC of the last block with data, which is read ahead only once most of the file has been read
+        final byte[] bytes = Files.readAllBytes(BAM_FILE.toPath());
+        final int eofBlock = bytes.length - BlockCompressedStreamConstants.EMPTY_GZIP_BLOCK.length;
+        bytes[eofBlock - BlockCompressedStreamConstants.BLOCK_FOOTER_LENGTH] ^= 0xff;
+        final File corrupt = File.createTempFile("corruptCrc.", ".bam");
+        corrupt.deleteOnExit();
+        Files.write(corrupt.toPath(), bytes);
+
+        try (final BlockCompressedInputStream parallel = new ParallelBlockCompressedInputStream(corrupt, new InflaterFactory(), 1)) {
+            // start reading ahead before checking CRCs
+            Assert.assertTrue(parallel.read() >= 0);
+            parallel.setCheckCrcs(true);
+            final byte[] buffer = new byte[1024];
+            while (parallel.read(buffer) > 0) {
+                // keep reading until the corrupt block is reached
+            }
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testInvalidThreads() throws IOException {
+        new ParallelBlockCompressedInputStream(BAM_FILE, new InflaterFactory(), 0);
+    }
+}
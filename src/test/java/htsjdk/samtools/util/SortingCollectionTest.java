@@ -38,6 +38,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.Random;
@@ -103,6 +104,226 @@ public class SortingCollectionTest extends HtsjdkTest {
         Assert.assertEquals(tmpDir().list().length, 0);
     }
 
+    @DataProvider(name = "spillBuffers")
+    public Object[][] createSpillBuffersTestData() {
+        final Object[][] testData = createTestData();
+        final int[] spillBuffers = {1, 3};
+        final Object[][] result = new Object[testData.length * spillBuffers.length][];
+        for (int i = 0; i < testData.length; i++) {
+            for (int j = 0; j < spillBuffers.length; j++) {
+                final Object[] row = Arrays.copyOf(testData[i], testData[i].length + 1);
+                row[testData[i].length] = spillBuffers[j];
+                result[i * spillBuffers.length + j] = row;
+            }
+        }
+        return result;
+    }
+
+    @Test(dataProvider = "spillBuffers")
+    public void testPositiveWithSpillBuffers(final String testName, final int numStringsToGenerate, final int maxRecordsInRam, final int spillBuffers) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = makeSortingCollection(maxRecordsInRam);
+        sortingCollection.setSpillBuffers(spillBuffers);
+        Assert.assertEquals(sortingCollection.getSpillBuffers(), spillBuffers);
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testSpillBuffersPreserveOrderOfEqualRecords() {
+        // compare only the first character, so that records with the same first character must be returned in
+        // the order they were added
+        final SortingCollection<String> sortingCollection = SortingCollection.newInstance(
+                String.class, new StringCodec(), Comparator.comparing(s -> s.charAt(0)), 10, tmpDir());
+        sortingCollection.setSpillBuffers(2);
+        final String[] strings = new String[500];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = (char) ('a' + (i * 7) % 5) + Integer.toString(i);
+            sortingCollection.add(strings[i]);
+        }
+        final String[] expected = strings.clone();
+        Arrays.sort(expected, Comparator.comparing(s -> s.charAt(0)));
+
+        assertIteratorEqualsList(expected, sortingCollection.iterator());
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testCleanupWithPendingSpills() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.setSpillBuffers(4);
+        for (final String s : new RandomStringGenerator(1000)) {
+            sortingCollection.add(s);
+        }
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRejectSettingSpillBuffersAfterAdd() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.add("1");
+        sortingCollection.setSpillBuffers(1);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectNegativeSpillBuffers() {
+        makeSortingCollection(10).setSpillBuffers(-1);
+    }
+
+    @DataProvider(name = "byteBudget")
+    public Object[][] createByteBudgetTestData() {
+        return new Object[][] {
+                {"empty", 0, 1000, 0},
+                {"less than budget", 10, 1000, 0},
+                {"more than budget", 550, 1000, 0},
+                {"more than initial buffer size", 5000, 1_000_000, 0},
+                {"more than budget with spill buffers", 550, 1000, 2},
+                {"smaller budget than a record", 50, 1, 0},
+        };
+    }
+
+    @Test(dataProvider = "byteBudget")
+    public void testPositiveWithByteBudget(final String testName, final int numStringsToGenerate, final long maxBytesInRam, final int spillBuffers) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        long totalBytes = 0;
+        final SortingCollection<String> sortingCollection = makeByteBudgetSortingCollection(maxBytesInRam);
+        sortingCollection.setSpillBuffers(spillBuffers);
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+            totalBytes += s.length();
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        Assert.assertEquals(tmpDirIsEmpty(), totalBytes <= maxBytesInRam);
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testByteBudgetSpillsBeforeExceedingBudget() {
+        final SortingCollection<String> sortingCollection = makeByteBudgetSortingCollection(100);
+        // exactly fills the budget
+        for (int i = 0; i < 10; i++) {
+            sortingCollection.add("abcdefghi" + i);
+        }
+        Assert.assertEquals(tmpDir().list().length, 0);
+        sortingCollection.add("a");
+        Assert.assertEquals(tmpDir().list().length, 1);
+        // a record larger than the whole budget is spilled on its own
+        sortingCollection.add(String.join("", Collections.nCopies(200, "b")));
+        Assert.assertEquals(tmpDir().list().length, 2);
+        sortingCollection.add("c");
+        Assert.assertEquals(tmpDir().list().length, 3);
+        sortingCollection.cleanup();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectZeroByteBudget() {
+        makeByteBudgetSortingCollection(0);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectNullSizeEstimator() {
+        SortingCollection.newInstance(String.class, new StringCodec(), new StringComparator(), 100L, null, tmpDir().toPath());
+    }
+
+    @DataProvider(name = "mergeFanIn")
+    public Object[][] createMergeFanInTestData() {
+        return new Object[][] {
+                {"fewer files than fan-in", 300, 100, 4, 0},
+                {"exactly fan-in files", 400, 100, 4, 0},
+                {"one level of merges", 1000, 100, 4, 0},
+                {"several levels of merges", 5000, 10, 3, 0},
+                {"minimum fan-in", 1000, 10, 2, 0},
+                {"with spill buffers", 5000, 10, 4, 2},
+        };
+    }
+
+    @Test(dataProvider = "mergeFanIn")
+    public void testPositiveWithMergeFanIn(final String testName, final int numStringsToGenerate, final int maxRecordsInRam,
+                                           final int mergeFanIn, final int spillBuffers) {
+        final String[] strings = new String[numStringsToGenerate];
+        int numStringsGenerated = 0;
+        final SortingCollection<String> sortingCollection = makeSortingCollection(maxRecordsInRam);
+        sortingCollection.setMergeFanIn(mergeFanIn);
+        sortingCollection.setSpillBuffers(spillBuffers);
+        Assert.assertEquals(sortingCollection.getMergeFanIn(), mergeFanIn);
+        for (final String s : new RandomStringGenerator(numStringsToGenerate)) {
+            sortingCollection.add(s);
+            strings[numStringsGenerated++] = s;
+        }
+        Arrays.sort(strings, new StringComparator());
+
+        sortingCollection.doneAdding();
+        Assert.assertTrue(tmpDir().list().length <= mergeFanIn);
+        sortingCollection.setDestructiveIteration(false);
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+        assertIteratorEqualsList(strings, sortingCollection.iterator());
+
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testMergeFanInPreservesOrderOfEqualRecords() {
+        final SortingCollection<String> sortingCollection = SortingCollection.newInstance(
+                String.class, new StringCodec(), Comparator.comparing(s -> s.charAt(0)), 10, tmpDir());
+        sortingCollection.setMergeFanIn(3);
+        final String[] strings = new String[1000];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = (char) ('a' + (i * 7) % 5) + Integer.toString(i);
+            sortingCollection.add(strings[i]);
+        }
+        final String[] expected = strings.clone();
+        Arrays.sort(expected, Comparator.comparing(s -> s.charAt(0)));
+
+        assertIteratorEqualsList(expected, sortingCollection.iterator());
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test
+    public void testCleanupWithPendingMerges() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.setMergeFanIn(2);
+        for (final String s : new RandomStringGenerator(1000)) {
+            sortingCollection.add(s);
+        }
+        sortingCollection.cleanup();
+        Assert.assertEquals(tmpDir().list().length, 0);
+    }
+
+    @Test(expectedExceptions = IllegalStateException.class)
+    public void testRejectSettingMergeFanInAfterAdd() {
+        final SortingCollection<String> sortingCollection = makeSortingCollection(10);
+        sortingCollection.add("1");
+        sortingCollection.setMergeFanIn(4);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectMergeFanInOfOne() {
+        makeSortingCollection(10).setMergeFanIn(1);
+    }
+
     @Test
     public void spillToDiskTest() {
         final SortingCollection<String> sortingCollection = makeSortingCollection(10);
@@ -137,6 +358,10 @@ public class SortingCollectionTest extends HtsjdkTest {
         return SortingCollection.newInstance(String.class, new StringCodec(), new StringComparator(), maxRecordsInRam, tmpDir());
     }
 
+    private SortingCollection<String> makeByteBudgetSortingCollection(final long maxBytesInRam) {
+        return SortingCollection.newInstance(String.class, new StringCodec(), new StringComparator(), maxBytesInRam, String::length, tmpDir().toPath());
+    }
+
     /**
      * Generate pseudo-random Strings for testing
      */
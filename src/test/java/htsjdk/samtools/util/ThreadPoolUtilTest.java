@@ -0,0 +1,32 @@
+package htsjdk.samtools.util;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+
+public class ThreadPoolUtilTest extends HtsjdkTest {
+
+    @DataProvider(name = "pools")
+    public Object[][] pools() {
+        return new Object[][]{
+                {(Supplier<ExecutorService>) () -> ThreadPoolUtil.newFixedDaemonThreadPool(2)},
+                {(Supplier<ExecutorService>) ThreadPoolUtil::newProcessorDaemonThreadPool},
+                {(Supplier<ExecutorService>) ThreadPoolUtil::newCachedDaemonThreadPool}
+        };
+    }
+
+    @Test(dataProvider = "pools")
+    public void testThreadsAreDaemons(final Supplier<ExecutorService> poolSupplier) throws ExecutionException, InterruptedException {
+        final ExecutorService pool = poolSupplier.get();
+        try {
+            Assert.assertTrue(pool.submit(() -> Thread.currentThread().isDaemon()).get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
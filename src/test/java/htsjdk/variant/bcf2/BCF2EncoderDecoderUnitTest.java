@@ -26,6 +26,7 @@
 package htsjdk.variant.bcf2;
 
 // the imports for unit testing.
+import htsjdk.tribble.TribbleException;
 import htsjdk.variant.VariantBaseTest;
 import htsjdk.variant.variantcontext.writer.BCF2Encoder;
 import org.testng.Assert;
@@ -514,6 +515,48 @@ public class BCF2EncoderDecoderUnitTest extends VariantBaseTest {
         }
     }
 
+    @DataProvider(name = "IntVectorTypes")
+    public Object[][] makeIntVectorTypes() {
+        return new Object[][]{
+                {BCF2Type.INT8, Arrays.asList(0, -1, 127, -127, 5, null)},
+                {BCF2Type.INT16, Arrays.asList(0, -1, 32767, -32767, 300, null)},
+                {BCF2Type.INT32, Arrays.asList(0, -1, Integer.MAX_VALUE, -Integer.MAX_VALUE, 70000, null)},
+                {BCF2Type.FLOAT, Arrays.asList(0.0, -1.5, 1e10, Double.NaN, 3.25, null)},
+        };
+    }
+
+    @Test(dataProvider = "IntVectorTypes")
+    public void testIntVectorsMatchDecodeInt(final BCF2Type type, final List<Object> values) throws IOException {
+        final BCF2Encoder encoder = new BCF2Encoder();
+        encoder.encodeTypedInt(42);
+        encoder.encodeRawValues(values, type);
+        encoder.encodeTypedInt(43);
+        final byte[] record = encoder.getRecordBytes();
+
+        final BCF2Decoder expected = new BCF2Decoder(record);
+        expected.decodeTypedValue();
+        final BCF2Decoder decoder = new BCF2Decoder(record);
+        decoder.decodeTypedValue();
+
+        // three samples with two values each
+        final int[] dest = new int[10];
+        final int[] decoded = decoder.decodeIntVectors(type, 2, 3, dest);
+        Assert.assertSame(decoded, dest);
+        for ( int i = 0; i < values.size(); i++ )
+            Assert.assertEquals(decoded[i], expected.decodeInt(type), "value " + i);
+        Assert.assertEquals(decoded[values.size() - 1], type.getMissingBytes());
+        Assert.assertEquals(decoder.decodeTypedValue(), 43);
+
+        Assert.assertNotSame(new BCF2Decoder(record).decodeIntVectors(type, 1, 1, new int[0]), dest);
+    }
+
+    @Test(expectedExceptions = TribbleException.class)
+    public void testIntVectorsPastEndOfRecord() throws IOException {
+        final BCF2Encoder encoder = new BCF2Encoder();
+        encoder.encodeRawValues(Arrays.asList(1, 2, 3), BCF2Type.INT16);
+        new BCF2Decoder(encoder.getRecordBytes()).decodeIntVectors(BCF2Type.INT16, 2, 2, null);
+    }
+
     // -----------------------------------------------------------------
     //
     // Helper routines
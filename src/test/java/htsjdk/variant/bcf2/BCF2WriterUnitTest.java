@@ -27,6 +27,8 @@ package htsjdk.variant.bcf2;
 
 import htsjdk.samtools.SAMSequenceDictionary;
 import htsjdk.samtools.util.TestUtil;
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureReader;
 import htsjdk.tribble.Tribble;
 import htsjdk.tribble.readers.PositionalBufferedStream;
 import htsjdk.variant.VariantBaseTest;
@@ -298,6 +300,89 @@ public class BCF2WriterUnitTest extends VariantBaseTest {
         }
     }
 
+    private static List<VariantContext> readBCF(final File file, final boolean retainRawRecords) throws IOException {
+        final BCF2Codec codec = new BCF2Codec();
+        codec.setRetainRawRecords(retainRawRecords);
+        try (FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(file.getAbsolutePath(), codec, false)) {
+            return reader.iterator().toList();
+        }
+    }
+
+    private static VCFHeader readBCFHeader(final File file) throws IOException {
+        try (FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(file.getAbsolutePath(), new BCF2Codec(), false)) {
+            return (VCFHeader) reader.getHeader();
+        }
+    }
+
+    private File writeBCF(final VCFHeader header, final List<VariantContext> vcs, final boolean sitesOnly) throws IOException {
+        final File bcfOutputFile = File.createTempFile("testRawRecords.", ".bcf", tempDir);
+        bcfOutputFile.deleteOnExit();
+        final VariantContextWriterBuilder builder = new VariantContextWriterBuilder()
+                .setOutputFile(bcfOutputFile).setReferenceDictionary(header.getSequenceDictionary())
+                .unsetOption(Options.INDEX_ON_THE_FLY);
+        if (sitesOnly) {
+            builder.setOption(Options.DO_NOT_WRITE_GENOTYPES);
+        }
+        try (final VariantContextWriter writer = builder.build()) {
+            writer.writeHeader(header);
+            vcs.forEach(writer::add);
+        }
+        return bcfOutputFile;
+    }
+
+    private static void assertSameRecords(final List<VariantContext> actual, final List<VariantContext> expected) {
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < actual.size(); i++) {
+            Assert.assertEquals(actual.get(i).toStringDecodeGenotypes(), expected.get(i).toStringDecodeGenotypes());
+        }
+    }
+
+    @Test
+    public void testWriteRawRecords() throws IOException {
+        final File input = new File(variantTestDataRoot, "serialization_test.bcf");
+        final List<VariantContext> expected = readBCF(input, false);
+        final List<VariantContext> raw = readBCF(input, true);
+        Assert.assertTrue(raw.size() > 2);
+        raw.forEach(vc -> Assert.assertTrue(vc instanceof BCF2VariantContext));
+        assertSameRecords(raw, expected);
+
+        final List<VariantContext> toWrite = new ArrayList<>(raw);
+        // the blocks of the record, rather than its fields, are what gets written
+        final BCF2VariantContext first = (BCF2VariantContext) raw.get(0);
+        final BCF2VariantContext second = (BCF2VariantContext) raw.get(1);
+        toWrite.set(0, new BCF2VariantContext(first, first.getSourceHeader(), first.getSourceDictionary(),
+                first.getSourceContigs(), second.getSitesBlock(), second.getGenotypesBlock()));
+        // a modified record is encoded again
+        toWrite.set(2, new VariantContextBuilder(raw.get(2)).id("rsModified").make());
+
+        final List<VariantContext> written = readBCF(writeBCF(readBCFHeader(input), toWrite, false), false);
+        Assert.assertEquals(written.size(), raw.size());
+        Assert.assertEquals(written.get(0).toStringDecodeGenotypes(), expected.get(1).toStringDecodeGenotypes());
+        Assert.assertEquals(written.get(2).getID(), "rsModified");
+        Assert.assertEquals(written.get(2).getGenotypes().toString(), expected.get(2).getGenotypes().toString());
+        assertSameRecords(written.subList(3, written.size()), expected.subList(3, expected.size()));
+    }
+
+    @Test
+    public void testWriteRawRecordsToDifferentHeader() throws IOException {
+        final File input = new File(variantTestDataRoot, "serialization_test.bcf");
+        final List<VariantContext> expected = readBCF(input, false);
+        final List<VariantContext> raw = readBCF(input, true);
+
+        // an extra INFO line at the start of the dictionary shifts the offsets of all the others
+        final VCFHeader header = readBCFHeader(input);
+        header.addMetaDataLine(new VCFInfoHeaderLine("AAAA", 1, VCFHeaderLineType.Integer, "x"));
+        assertSameRecords(readBCF(writeBCF(header, raw, false), false), expected);
+
+        // without genotypes, the sites block has to be encoded again for the new number of samples
+        final List<VariantContext> sitesOnly = readBCF(writeBCF(readBCFHeader(input), raw, true), false);
+        Assert.assertEquals(sitesOnly.size(), expected.size());
+        for (int i = 0; i < sitesOnly.size(); i++) {
+            Assert.assertFalse(sitesOnly.get(i).hasGenotypes());
+            Assert.assertEquals(sitesOnly.get(i).getAttributes(), expected.get(i).getAttributes());
+        }
+    }
+
     /**
      * create a fake VCF record
      *
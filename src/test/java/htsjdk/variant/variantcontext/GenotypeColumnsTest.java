@@ -0,0 +1,237 @@
+package htsjdk.variant.variantcontext;
+
+import htsjdk.tribble.AbstractFeatureReader;
+import htsjdk.tribble.FeatureCodec;
+import htsjdk.tribble.FeatureReader;
+import htsjdk.variant.VariantBaseTest;
+import htsjdk.variant.bcf2.BCF2Codec;
+import htsjdk.variant.variantcontext.writer.Options;
+import htsjdk.variant.variantcontext.writer.VariantContextWriter;
+import htsjdk.variant.variantcontext.writer.VariantContextWriterBuilder;
+import htsjdk.variant.vcf.VCFCodec;
+import htsjdk.variant.vcf.VCFFormatHeaderLine;
+import htsjdk.variant.vcf.VCFHeader;
+import htsjdk.variant.vcf.VCFHeaderLineCount;
+import htsjdk.variant.vcf.VCFHeaderLineType;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+public class GenotypeColumnsTest extends VariantBaseTest {
+
+    private static final Allele REF = Allele.create("A", true);
+    private static final Allele ALT = Allele.create("C");
+    private static final Allele ALT2 = Allele.create("G");
+
+    private static GenotypeColumns makeColumns() {
+        return new GenotypeColumns(Arrays.asList("s1", "s2", "s3"), Arrays.asList(REF, ALT, ALT2));
+    }
+
+    @Test
+    public void testMissingValues() {
+        final GenotypeColumns columns = makeColumns();
+        final Genotype g = columns.toGenotypes().get(1);
+        Assert.assertEquals(g.getSampleName(), "s2");
+        Assert.assertEquals(g.getPloidy(), 0);
+        Assert.assertTrue(g.getAlleles().isEmpty());
+        Assert.assertFalse(g.hasGQ());
+        Assert.assertFalse(g.hasDP());
+        Assert.assertFalse(g.hasAD());
+        Assert.assertFalse(g.hasPL());
+        Assert.assertNull(g.getAD());
+        Assert.assertNull(g.getPL());
+        Assert.assertFalse(g.isFiltered());
+        Assert.assertTrue(g.getExtendedAttributes().isEmpty());
+        Assert.assertEquals(g.getExtendedAttribute("XX", "default"), "default");
+    }
+
+    @Test
+    public void testEmptyValues() {
+        final GenotypeColumns columns = makeColumns();
+        // before anything wider has been set
+        columns.setAD(0, new int[0], 0);
+        columns.setPL(1, new int[] {1, 2, 3}, 0);
+        columns.setPL(2, new int[] {10, 0, 20}, 3);
+        columns.setGenotype(2, new int[0], 0, false);
+        Assert.assertEquals(columns.getADCount(0), 0);
+        Assert.assertEquals(columns.getAD(0), new int[0]);
+        Assert.assertEquals(columns.getPLCount(1), 0);
+        Assert.assertEquals(columns.getPL(1), new int[0]);
+        Assert.assertEquals(columns.getPL(2), new int[] {10, 0, 20});
+        Assert.assertEquals(columns.getPloidy(2), 0);
+        Assert.assertFalse(columns.toGenotypes().get(1).hasAD());
+    }
+
+    @Test
+    public void testGenotypeViews() {
+        final GenotypeColumns columns = makeColumns();
+        columns.setGenotype(0, new int[] {0, 1}, 2, true);
+        columns.setGenotype(1, new int[] {-1, -1}, 2, false);
+        columns.setGenotype(2, new int[] {2, 1, 0}, 3, false);
+        columns.setGQ(0, 50);
+        columns.setDP(2, 12);
+        columns.setAD(0, new int[] {3, 4}, 2);
+        // a longer vector widens the column without disturbing the values already set
+        columns.setAD(2, new int[] {1, 2, 3, 4, 5}, 5);
+        columns.setPL(1, new int[] {0, 10, 100, 99}, 3);
+        columns.setFilters(2, Arrays.asList("f1", "f2"));
+        columns.setAttribute(0, "XX", "value");
+
+        final List<Genotype> genotypes = columns.toGenotypes();
+        final Genotype g0 = genotypes.get(0);
+        Assert.assertEquals(g0.getAlleles(), Arrays.asList(REF, ALT));
+        Assert.assertTrue(g0.isPhased());
+        Assert.assertTrue(g0.isHet());
+        Assert.assertEquals(g0.getGQ(), 50);
+        Assert.assertEquals(g0.getAD(), new int[] {3, 4});
+        Assert.assertEquals(g0.getExtendedAttribute("XX"), "value");
+        Assert.assertEquals(g0.getExtendedAttributes().size(), 1);
+
+        final Genotype g1 = genotypes.get(1);
+        Assert.assertTrue(g1.isNoCall());
+        Assert.assertEquals(g1.getPL(), new int[] {0, 10, 100});
+        Assert.assertFalse(g1.hasExtendedAttribute("XX"));
+
+        final Genotype g2 = genotypes.get(2);
+        Assert.assertEquals(g2.getAlleles(), Arrays.asList(ALT2, ALT, REF));
+        Assert.assertEquals(g2.getAllele(0), ALT2);
+        Assert.assertEquals(g2.getDP(), 12);
+        Assert.assertEquals(g2.getAD(), new int[] {1, 2, 3, 4, 5});
+        Assert.assertEquals(g2.getFilters(), "f1;f2");
+        Assert.assertEquals(columns.getAD(0), new int[] {3, 4});
+        Assert.assertEquals(columns.getAD(2, 4), 5);
+
+        // same genotype as the one built from a GenotypeBuilder
+        final Genotype built = new GenotypeBuilder("s1", Arrays.asList(REF, ALT)).phased(true).GQ(50).AD(new int[] {3, 4}).attribute("XX", "value").make();
+        Assert.assertEquals(g0.toString(), built.toString());
+        Assert.assertEquals(g0.getType(), built.getType());
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectAlleleIndexOutOfRange() {
+        makeColumns().setGenotype(0, new int[] {0, 3}, 2, false);
+    }
+
+    @DataProvider(name = "files")
+    public Object[][] files() {
+        return new Object[][] {
+                {"ex2.vcf"},
+                {"test_withGLandPL.vcf"},
+                {"phased.vcf"},
+                {"HiSeq.10000.vcf"},
+                {"ILLUMINA.wex.broad_phase2_baseline.20111114.both.exome.genotypes.1000.vcf"},
+                {"serialization_test.bcf"},
+                {"VcfThatLacksAnIndex.bcf"},
+        };
+    }
+
+    @Test(dataProvider = "files")
+    public void testColumnarDecodingMatchesGenotypes(final String fileName) throws IOException {
+        final String path = variantTestDataRoot + fileName;
+        final boolean isBCF = fileName.endsWith(".bcf");
+        final List<VariantContext> expected = read(path, makeCodec(isBCF, false));
+        final List<VariantContext> actual = read(path, makeCodec(isBCF, true));
+
+        Assert.assertEquals(actual.size(), expected.size());
+        Assert.assertFalse(actual.isEmpty());
+        for (int i = 0; i < actual.size(); i++) {
+            final VariantContext vc = actual.get(i);
+            if (vc.hasGenotypes()) {
+                Assert.assertNotNull(((LazyGenotypesContext) vc.getGenotypes()).getGenotypeColumns());
+            }
+            final Iterator<Genotype> expectedGenotypes = expected.get(i).getGenotypes().iterator();
+            for (final Genotype g : vc.getGenotypes()) {
+                final Genotype e = expectedGenotypes.next();
+                Assert.assertEquals(g.toString(), e.toString());
+                Assert.assertEquals(g.isPhased(), e.isPhased(), g.toString());
+                Assert.assertEquals(g.getType(), e.getType(), g.toString());
+                Assert.assertEquals(g.getExtendedAttributes(), e.getExtendedAttributes(), g.toString());
+            }
+            Assert.assertFalse(expectedGenotypes.hasNext());
+        }
+    }
+
+    @Test
+    public void testBCFNumericColumns() throws IOException {
+        final File bcf = File.createTempFile("GenotypeColumnsTest.", ".bcf");
+        bcf.deleteOnExit();
+        final VCFHeader header = new VCFHeader(new HashSet<>(), Arrays.asList("s1", "s2", "s3"));
+        header.addMetaDataLine(new VCFFormatHeaderLine("GT", 1, VCFHeaderLineType.String, "x"));
+        header.addMetaDataLine(new VCFFormatHeaderLine("PL", VCFHeaderLineCount.G, VCFHeaderLineType.Integer, "x"));
+        header.addMetaDataLine(new VCFFormatHeaderLine("XI", VCFHeaderLineCount.UNBOUNDED, VCFHeaderLineType.Integer, "x"));
+        header.addMetaDataLine(new VCFFormatHeaderLine("XF", 1, VCFHeaderLineType.Float, "x"));
+        header.addMetaDataLine(new VCFFormatHeaderLine("XS", 1, VCFHeaderLineType.String, "x"));
+        header.setSequenceDictionary(createArtificialSequenceDictionary());
+
+        final List<Allele> alleles = Arrays.asList(REF, ALT, ALT2);
+        final List<Genotype> genotypes = Arrays.asList(
+                new GenotypeBuilder("s1", Arrays.asList(REF, ALT2)).phased(true).PL(new int[] {0, 10, 20, 30, 40, 50})
+                        .attribute("XI", Arrays.asList(1, 1000)).attribute("XF", 0.5).attribute("XS", "a").make(),
+                new GenotypeBuilder("s2", Collections.singletonList(ALT)).attribute("XI", 7).make(),
+                new GenotypeBuilder("s3", Arrays.asList(ALT, ALT, Allele.NO_CALL)).attribute("XF", Double.NaN).make());
+        try (VariantContextWriter writer = new VariantContextWriterBuilder().setOutputFile(bcf)
+                .setReferenceDictionary(header.getSequenceDictionary()).unsetOption(Options.INDEX_ON_THE_FLY).build()) {
+            writer.writeHeader(header);
+            writer.add(new VariantContextBuilder("test", "1", 10, 10, alleles).genotypes(genotypes).make());
+        }
+
+        final VariantContext expected = read(bcf.getAbsolutePath(), makeCodec(true, false)).get(0);
+        final VariantContext actual = read(bcf.getAbsolutePath(), makeCodec(true, true)).get(0);
+        for (int i = 0; i < genotypes.size(); i++) {
+            final Genotype g = actual.getGenotype(i);
+            Assert.assertEquals(g.toString(), expected.getGenotype(i).toString());
+            Assert.assertEquals(g.isPhased(), expected.getGenotype(i).isPhased());
+            Assert.assertEquals(g.getExtendedAttributes(), expected.getGenotype(i).getExtendedAttributes());
+        }
+
+        final GenotypeColumns columns = ((LazyGenotypesContext) actual.getGenotypes()).getGenotypeColumns();
+        Assert.assertEquals(columns.getPLCount(0), 6);
+        Assert.assertEquals(columns.getPL(0, 5), 50);
+        Assert.assertEquals(columns.getPLCount(1), -1);
+        Assert.assertEquals(columns.getIntAttributeCount(0, "XI"), 2);
+        Assert.assertEquals(columns.getIntAttribute(0, "XI", 1), 1000);
+        Assert.assertEquals(columns.getIntAttributeCount(1, "XI"), 1);
+        Assert.assertEquals(columns.getIntAttribute(1, "XI", 0), 7);
+        Assert.assertEquals(columns.getIntAttributeCount(2, "XI"), -1);
+        Assert.assertEquals(columns.getFloatAttributeCount(0, "XF"), 1);
+        Assert.assertEquals(columns.getFloatAttribute(0, "XF", 0), 0.5f);
+        Assert.assertTrue(Float.isNaN(columns.getFloatAttribute(2, "XF", 0)));
+        Assert.assertEquals(columns.getFloatAttributeCount(1, "XF"), -1);
+        Assert.assertEquals(columns.getIntAttributeCount(0, "XS"), -1);
+        Assert.assertEquals(columns.getAttribute(0, "XS"), "a");
+        Assert.assertEquals(columns.getPloidy(2), 3);
+        Assert.assertEquals(columns.getAlleleIndex(2, 2), -1);
+    }
+
+    private static FeatureCodec<VariantContext, ?> makeCodec(final boolean isBCF, final boolean columnarGenotypes) {
+        if (isBCF) {
+            final BCF2Codec codec = new BCF2Codec();
+            codec.setColumnarGenotypes(columnarGenotypes);
+            return codec;
+        } else {
+            final VCFCodec codec = new VCFCodec();
+            codec.setColumnarGenotypes(columnarGenotypes);
+            return codec;
+        }
+    }
+
+    private static List<VariantContext> read(final String path, final FeatureCodec<VariantContext, ?> codec) throws IOException {
+        final List<VariantContext> records = new ArrayList<>();
+        try (FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(path, codec, false)) {
+            for (final VariantContext vc : reader.iterator()) {
+                vc.getGenotypes().size(); // decode while the codec is still open
+                records.add(vc);
+            }
+        }
+        return records;
+    }
+}
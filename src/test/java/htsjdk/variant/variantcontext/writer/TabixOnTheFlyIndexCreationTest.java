@@ -24,6 +24,9 @@
 package htsjdk.variant.variantcontext.writer;
 
 import htsjdk.HtsjdkTest;
+import htsjdk.samtools.SAMSequenceDictionary;
+import htsjdk.samtools.SAMSequenceRecord;
+import htsjdk.samtools.util.BlockCompressedOutputStream;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.tribble.AbstractFeatureReader;
 import htsjdk.tribble.CloseableTribbleIterator;
@@ -31,11 +34,16 @@ import htsjdk.tribble.FeatureReader;
 import htsjdk.tribble.index.tabix.TabixIndex;
 import htsjdk.variant.variantcontext.VariantContext;
 import htsjdk.variant.vcf.VCF3Codec;
+import htsjdk.variant.vcf.VCFCodec;
 import htsjdk.variant.vcf.VCFHeader;
+import org.testng.Assert;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.EnumSet;
+import java.util.List;
 
 public class TabixOnTheFlyIndexCreationTest extends HtsjdkTest {
     private static final File SMALL_VCF = new File("src/test/resources/htsjdk/tribble/tabix/trioDup.vcf.gz");
@@ -64,4 +72,48 @@ public class TabixOnTheFlyIndexCreationTest extends HtsjdkTest {
         // Hard to validate, so just confirm that index can be read.
         new TabixIndex(tabix);
     }
+
+    private static File writeIndexedVCF(final VCFHeader header, final List<VariantContext> variants, final int compressionThreads) throws Exception {
+        final File vcf = File.createTempFile("TabixOnTheFlyIndexCreationTest.", FileExtensions.COMPRESSED_VCF);
+        vcf.deleteOnExit();
+        new File(vcf.getAbsolutePath() + FileExtensions.TABIX_INDEX).deleteOnExit();
+        final int defaultCompressionThreads = BlockCompressedOutputStream.getDefaultCompressionThreads();
+        BlockCompressedOutputStream.setDefaultCompressionThreads(compressionThreads);
+        try (final VariantContextWriter vcfWriter = new VariantContextWriterBuilder()
+                .setOutputFile(vcf)
+                .setReferenceDictionary(header.getSequenceDictionary())
+                .setOptions(EnumSet.of(Options.INDEX_ON_THE_FLY, Options.ALLOW_MISSING_FIELDS_IN_HEADER))
+                .build()) {
+            vcfWriter.writeHeader(header);
+            variants.forEach(vcfWriter::add);
+        } finally {
+            BlockCompressedOutputStream.setDefaultCompressionThreads(defaultCompressionThreads);
+        }
+        return vcf;
+    }
+
+    @Test
+    public void testParallelCompression() throws Exception {
+        final File input = new File("src/test/resources/htsjdk/variant/HiSeq.10000.vcf");
+        final VCFHeader header;
+        final List<VariantContext> variants = new ArrayList<>();
+        try (final FeatureReader<VariantContext> reader = AbstractFeatureReader.getFeatureReader(input.getAbsolutePath(), new VCFCodec(), false)) {
+            header = (VCFHeader) reader.getHeader();
+            reader.iterator().forEachRemaining(variants::add);
+        }
+        final SAMSequenceDictionary dictionary = new SAMSequenceDictionary();
+        for (final VariantContext vc : variants) {
+            if (dictionary.getSequence(vc.getContig()) == null) {
+                dictionary.addSequence(new SAMSequenceRecord(vc.getContig(), 300_000_000));
+            }
+        }
+        header.setSequenceDictionary(dictionary);
+
+        // the index of records written while blocks are deflated in the background is the same
+        final File serial = writeIndexedVCF(header, variants, 0);
+        final File parallel = writeIndexedVCF(header, variants, 4);
+        Assert.assertEquals(Files.readAllBytes(parallel.toPath()), Files.readAllBytes(serial.toPath()));
+        Assert.assertEquals(Files.readAllBytes(new File(parallel.getAbsolutePath() + FileExtensions.TABIX_INDEX).toPath()),
+                Files.readAllBytes(new File(serial.getAbsolutePath() + FileExtensions.TABIX_INDEX).toPath()));
+    }
 }
@@ -10,8 +10,12 @@ import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 
 public class AbstractVCFCodecTest extends VariantBaseTest {
 
@@ -93,4 +97,79 @@ public class AbstractVCFCodecTest extends VariantBaseTest {
             }
         }
     }
+
+    private static VCFCodec makeSitesOnlyCodec() {
+        final Set<VCFHeaderLine> lines = new LinkedHashSet<>();
+        lines.add(new VCFContigHeaderLine(Collections.singletonMap("ID", "chr1"), 0));
+        lines.add(new VCFInfoHeaderLine("DB", 0, VCFHeaderLineType.Flag, "dbSNP membership"));
+        lines.add(new VCFInfoHeaderLine("AC", VCFHeaderLineCount.A, VCFHeaderLineType.Integer, "Allele count"));
+        lines.add(new VCFFilterHeaderLine("LowQual"));
+        final VCFCodec codec = new VCFCodec();
+        codec.setVCFHeader(new VCFHeader(lines), VCFHeaderVersion.VCF4_2);
+        return codec;
+    }
+
+    @Test
+    public void testDecodeSharesColumnValues() {
+        final VCFCodec codec = makeSitesOnlyCodec();
+        final VariantContext first = codec.decode("chr1\t10\trs1\tac\tT\t.\tLowQual\tAC=1;DB;XX=a,b");
+        final VariantContext second = codec.decode("chr1\t+20\t.\tA\tT,G\t30\tPASS\tAC=1,2;DB=0;XX=;END=25");
+
+        Assert.assertEquals(first.getStart(), 10);
+        Assert.assertEquals(first.getEnd(), 11);
+        Assert.assertEquals(first.getID(), "rs1");
+        Assert.assertEquals(first.getReference().getBaseString(), "AC");
+        Assert.assertFalse(first.hasLog10PError());
+        Assert.assertEquals(first.getFilters(), Collections.singleton("LowQual"));
+        Assert.assertEquals(first.getAttribute("AC"), "1");
+        Assert.assertEquals(first.getAttribute("DB"), true);
+        Assert.assertEquals(first.getAttribute("XX"), Arrays.asList("a", "b"));
+
+        Assert.assertEquals(second.getStart(), 20);
+        Assert.assertEquals(second.getEnd(), 25);
+        Assert.assertFalse(second.hasID());
+        Assert.assertEquals(second.getPhredScaledQual(), 30.0);
+        Assert.assertTrue(second.filtersWereApplied());
+        Assert.assertTrue(second.getFilters().isEmpty());
+        Assert.assertEquals(second.getAttribute("AC"), Arrays.asList("1", "2"));
+        Assert.assertFalse(second.hasAttribute("DB"));
+        Assert.assertEquals(second.getAttribute("XX"), VCFConstants.MISSING_VALUE_v4);
+
+        // values repeated across records are shared rather than copied from each line
+        Assert.assertSame(first.getContig(), second.getContig());
+        Assert.assertSame(getKey(first, "XX"), getKey(second, "XX"));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testGetCachedStringSharesColumnValues() {
+        final VCFCodec codec = makeSitesOnlyCodec();
+        final VariantContext vc = codec.decode("chr1\t10\trs1\tA\tT\t.\tLowQual\tDB");
+        final String chr1 = codec.getCachedString(new String("chr1"));
+        Assert.assertSame(chr1, vc.getContig());
+        Assert.assertSame(codec.stringCache.get("chr1"), chr1);
+        Assert.assertSame(codec.getCachedString(new String("other")), codec.getCachedString(new String("other")));
+    }
+
+    private static String getKey(final VariantContext vc, final String key) {
+        return vc.getAttributes().keySet().stream().filter(key::equals).findFirst().get();
+    }
+
+    @DataProvider(name = "malformedSitesOnlyLines")
+    public Object[][] getMalformedSitesOnlyLines() {
+        return new Object[][]{
+                {"chr1\t10\trs1\tA\tT\t.\tPASS"},
+                {"chr1\t10x\trs1\tA\tT\t.\tPASS\tDB"},
+                {"chr1\t99999999999\trs1\tA\tT\t.\tPASS\tDB"},
+                {"chr1\t10\t\tA\tT\t.\tPASS\tDB"},
+                {"chr1\t10\trs1\tA\tT\t.\tPASS\t"},
+                {"chr1\t10\trs1\tA\tT\t.\tPASS\tDB\textra"},
+                {"chr1\t10\trs1\tA\tT\t.\tPASS\tEND=x"},
+        };
+    }
+
+    @Test(dataProvider = "malformedSitesOnlyLines", expectedExceptions = TribbleException.class)
+    public void testDecodeMalformedLine(final String line) {
+        makeSitesOnlyCodec().decode(line);
+    }
 }
@@ -10,6 +10,8 @@ import org.testng.Assert;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -17,6 +19,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
 
@@ -91,6 +94,89 @@ public class VCFEncoderTest extends HtsjdkTest {
         }
     }
 
+    @DataProvider(name = "DoublesToFormat")
+    public Object[][] makeDoublesToFormat() {
+        final List<Object[]> tests = new ArrayList<>();
+        for (final Object[] test : makeVCFWriterDoubleFormatTestData()) {
+            tests.add(new Object[]{test[0]});
+        }
+        // values whose shortest representation is a rounding tie, though the exact value isn't
+        for (final double d : new double[]{1.005, 2.675, 10.015, 0.0125, 0.1235, 0.9995, 1.2345e-3, 9.9995e-5, 0.00999951}) {
+            tests.add(new Object[]{d});
+            tests.add(new Object[]{-d});
+        }
+        for (final double d : new double[]{-0.0, 1e-20, 9.99e-21, 0.01, 0.0099999, 0.99999, 1, 9999999.994, 1e7, 1e300, Double.MIN_VALUE, -Double.MAX_VALUE}) {
+            tests.add(new Object[]{d});
+        }
+        final Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            tests.add(new Object[]{Math.pow(10, random.nextDouble() * 30 - 25) * (random.nextBoolean() ? 1 : -1)});
+        }
+        return tests.toArray(new Object[][]{});
+    }
+
+    @Test(dataProvider = "DoublesToFormat")
+    public void testAppendDoubleMatchesFormat(final double d) {
+        final VCFLineBuffer buffer = new VCFLineBuffer(4);
+        VCFEncoder.appendVCFDouble(d, buffer);
+        Assert.assertEquals(buffer.toString(), VCFEncoder.formatVCFDouble(d));
+    }
+
+    @Test
+    public void testInfoFieldTypes() {
+        final Set<VCFHeaderLine> metaData = createSyntheticMetadata();
+        metaData.add(new VCFInfoHeaderLine("FLAG", 0, VCFHeaderLineType.Flag, "x"));
+        final VCFEncoder encoder = new VCFEncoder(new VCFHeader(metaData, Collections.emptyList()), true, false);
+
+        final Map<String, Object> attributes = new HashMap<>();
+        attributes.put("Z", "last");
+        attributes.put("FLAG", true);
+        attributes.put("OFF", false);
+        attributes.put("EMPTY", "");
+        attributes.put("INT", -12);
+        attributes.put("LONG", 5000000000L);
+        attributes.put("DOUBLE", 0.5);
+        attributes.put("FLOAT", 0.5f);
+        attributes.put("INTS", new int[]{1, -2});
+        attributes.put("DOUBLES", new double[]{1, 0.001});
+        attributes.put("LIST", Arrays.asList("a", 2, 3.0, null));
+        attributes.put("NONE", Collections.emptyList());
+        attributes.put("MISSING", null);
+        final VariantContext vc = new VariantContextBuilder("test", "1", 100, 100, Arrays.asList(Allele.REF_A, Allele.ALT_C))
+                .log10PError(-1.234)
+                .attributes(attributes)
+                .make();
+
+        Assert.assertEquals(encoder.encode(vc), "1\t100\t.\tA\tC\t12.34\t.\t" +
+                "DOUBLE=0.500;DOUBLES=1.00,1.000e-03;EMPTY;FLAG;FLOAT=0.5;INT=-12;INTS=1,-2;LIST=a,2,3.00,.;LONG=5000000000;MISSING=.;NONE=.;Z=last");
+    }
+
+    @Test
+    public void testWriteLineMatchesEncode() throws IOException {
+        final VCFHeader header = createSyntheticHeader(Arrays.asList("Sample1", "Sample2"));
+        final VCFEncoder encoder = new VCFEncoder(header, true, false);
+        final List<Allele> alleles = Arrays.asList(Allele.REF_A, Allele.ALT_C);
+        // the second sample is out of order, and the last record has characters outside of ASCII and of the VCF charset
+        final List<VariantContext> records = Arrays.asList(
+                new VariantContextBuilder("test", "1", 100, 100, alleles)
+                        .genotypes(new GenotypeBuilder("Sample2", Arrays.asList(Allele.ALT_C, Allele.ALT_C)).attribute("AA", "a").make(),
+                                new GenotypeBuilder("Sample1", Arrays.asList(Allele.REF_A, Allele.create("C"))).phased(true).make())
+                        .make(),
+                new VariantContextBuilder("test", "1", 200, 200, alleles).id("rs1").filter("LowQual").make(),
+                new VariantContextBuilder("test", "1", 300, 300, alleles)
+                        .attribute("NAME", "Caf\u00e9 \u5b57")
+                        .genotypes(new GenotypeBuilder("Sample1", Arrays.asList(Allele.NO_CALL, Allele.ALT_C)).attribute("AA", "\u00e9").make())
+                        .make());
+
+        Assert.assertEquals(encoder.encode(records.get(0)), "1\t100\t.\tA\tC\t.\t.\t.\tGT:AA\t0|1\t1/1:a");
+        for (final VariantContext vc : records) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            encoder.writeLine(out, vc);
+            Assert.assertEquals(out.toByteArray(), (encoder.encode(vc) + "\n").getBytes(VCFEncoder.VCF_CHARSET));
+        }
+        Assert.assertEquals(encoder.encode(records.get(2)), "1\t300\t.\tA\tC\t.\t.\tNAME=Caf\u00e9 \u5b57\tGT:AA\t./1:\u00e9\t./.");
+    }
+
     @DataProvider(name = "MissingFormatTestData")
     public Object[][] makeMissingFormatTestData() {
         final VCFHeader header = createSyntheticHeader(Collections.singletonList("Sample1"));
@@ -29,8 +29,11 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PrintWriter;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.function.Function;
 import java.util.zip.GZIPOutputStream;
 
@@ -44,6 +47,7 @@ import htsjdk.samtools.util.CloserUtil;
 import htsjdk.samtools.util.FileExtensions;
 import htsjdk.samtools.util.IOUtil;
 import htsjdk.samtools.util.RuntimeIOException;
+import htsjdk.tribble.TribbleException;
 import htsjdk.variant.VariantBaseTest;
 
 public class VCFIteratorTest extends VariantBaseTest {
@@ -141,4 +145,124 @@ public class VCFIteratorTest extends VariantBaseTest {
         final VCFIterator r = new VCFIteratorBuilder().open(a_path);
         assertExpectedNumberOfVariants(r, nVariants);
     }
+
+    /**
+     * Write a VCF with enough multi-sample records to be split into several decoding batches, and optionally a
+     * malformed record.
+     */
+    private static File writeMultiSampleVcf(final int nRecords, final int malformedRecord) throws IOException {
+        final File vcf = File.createTempFile("multiSample", FileExtensions.VCF);
+        vcf.deleteOnExit();
+        try (PrintWriter out = new PrintWriter(vcf)) {
+            out.println("##fileformat=VCFv4.2");
+            out.println("##contig=<ID=1,length=100000000>");
+            out.println("##INFO=<ID=AC,Number=A,Type=Integer,Description=\"Allele count\">");
+            out.println("##FORMAT=<ID=GT,Number=1,Type=String,Description=\"Genotype\">");
+            out.println("##FORMAT=<ID=DP,Number=1,Type=Integer,Description=\"Depth\">");
+            out.println("##FORMAT=<ID=PL,Number=G,Type=Integer,Description=\"Likelihoods\">");
+            final StringBuilder columns = new StringBuilder("#CHROM\tPOS\tID\tREF\tALT\tQUAL\tFILTER\tINFO\tFORMAT");
+            for (int sample = 0; sample < 20; sample++) {
+                columns.append("\tS").append(sample);
+            }
+            out.println(columns);
+            for (int i = 0; i < nRecords; i++) {
+                final StringBuilder line = new StringBuilder();
+                line.append("1\t").append(i + 1).append("\trs").append(i).append("\tA\tC\t").append(i % 50)
+                        .append("\tPASS\tAC=").append(i % 40).append("\tGT:DP:PL");
+                for (int sample = 0; sample < 20; sample++) {
+                    line.append('\t').append((i + sample) % 3 == 0 ? "0/1" : "0|0").append(':').append(i % 60 + sample)
+                            .append(':').append(sample).append(",0,").append(i % 100);
+                }
+                out.println(i == malformedRecord ? "1\tnotAPosition" + line.substring(line.indexOf("\t", 2)) : line);
+            }
+        }
+        return vcf;
+    }
+
+    @DataProvider(name = "decodeThreads")
+    public Object[][] getDecodeThreads() {
+        return new Object[][] {
+                {0, false},
+                {2, false},
+                {2, true},
+                {8, true},
+        };
+    }
+
+    @Test(dataProvider = "decodeThreads")
+    public void testDecodeThreads(final int decodeThreads, final boolean decodeGenotypes) throws IOException {
+        final File vcf = writeMultiSampleVcf(5000, -1);
+        final List<String> expected = new ArrayList<>();
+        try (final VCFIterator r = new VCFIteratorBuilder().open(vcf)) {
+            r.forEachRemaining(vc -> expected.add(vc.toStringDecodeGenotypes()));
+        }
+        final List<String> actual = new ArrayList<>();
+        try (final VCFIterator r = new VCFIteratorBuilder().setDecodeThreads(decodeThreads).setDecodeGenotypes(decodeGenotypes).open(vcf)) {
+            Assert.assertEquals(r.getHeader().getGenotypeSamples().size(), 20);
+            r.forEachRemaining(vc -> actual.add(vc.toStringDecodeGenotypes()));
+        }
+        Assert.assertEquals(actual.size(), 5000);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test(dataProvider = "decodeThreads")
+    public void testDecodeThreadsReturnsRecordsBeforeError(final int decodeThreads, final boolean decodeGenotypes) throws IOException {
+        final File vcf = writeMultiSampleVcf(5000, 4000);
+        int nVariants = 0;
+        try (final VCFIterator r = new VCFIteratorBuilder().setDecodeThreads(decodeThreads).setDecodeGenotypes(decodeGenotypes).open(vcf)) {
+            while (r.hasNext()) {
+                r.next();
+                nVariants++;
+            }
+            Assert.fail("Expected the malformed record to be reported");
+        } catch (final TribbleException e) {
+            Assert.assertTrue(e.getMessage().contains("line number 4008"), e.getMessage());
+        }
+        // the iterator decodes one record ahead of the one it returns
+        Assert.assertEquals(nVariants, 3999);
+    }
+
+    /**
+     * Read every record of the VCF, carrying on past records that fail to decode, and return the start of each
+     * record, or -1 for each error.
+     */
+    private static List<Integer> readPastErrors(final File vcf, final int decodeThreads, final boolean decodeGenotypes) throws IOException {
+        final List<Integer> starts = new ArrayList<>();
+        try (final VCFIterator r = new VCFIteratorBuilder().setDecodeThreads(decodeThreads).setDecodeGenotypes(decodeGenotypes).open(vcf)) {
+            while (true) {
+                try {
+                    if (!r.hasNext()) {
+                        break;
+                    }
+                    starts.add(r.next().getStart());
+                } catch (final TribbleException e) {
+                    starts.add(-1);
+                }
+            }
+        }
+        return starts;
+    }
+
+    @Test(dataProvider = "decodeThreads")
+    public void testDecodeThreadsContinuesAfterError(final int decodeThreads, final boolean decodeGenotypes) throws IOException {
+        final File vcf = writeMultiSampleVcf(5000, 4000);
+        final List<Integer> expected = readPastErrors(vcf, 0, false);
+        Assert.assertTrue(expected.contains(-1));
+        Assert.assertEquals(expected.get(expected.size() - 1).intValue(), 5000);
+        Assert.assertEquals(readPastErrors(vcf, decodeThreads, decodeGenotypes), expected);
+    }
+
+    @Test
+    public void testDecodeThreadsCloseEarly() throws IOException {
+        final File vcf = writeMultiSampleVcf(5000, -1);
+        try (final VCFIterator r = new VCFIteratorBuilder().setDecodeThreads(4).open(vcf)) {
+            Assert.assertEquals(r.next().getStart(), 1);
+            Assert.assertEquals(r.next().getStart(), 2);
+        }
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void testRejectNegativeDecodeThreads() {
+        new VCFIteratorBuilder().setDecodeThreads(-1);
+    }
 }
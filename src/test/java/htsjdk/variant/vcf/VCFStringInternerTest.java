@@ -0,0 +1,36 @@
+package htsjdk.variant.vcf;
+
+import htsjdk.HtsjdkTest;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class VCFStringInternerTest extends HtsjdkTest {
+
+    @Test
+    public void testInternRegion() {
+        final VCFStringInterner interner = new VCFStringInterner();
+        final String chr1 = interner.intern("chr1");
+        Assert.assertSame(interner.intern("chr1\t100\tchr1", 9, 13), chr1);
+        Assert.assertSame(interner.intern(new String("chr1")), chr1);
+
+        final String chr10 = interner.intern("chr10\t100", 0, 5);
+        Assert.assertEquals(chr10, "chr10");
+        Assert.assertNotSame(chr10, chr1);
+        Assert.assertEquals(interner.intern("x", 0, 0), "");
+        Assert.assertEquals(interner.size(), 3);
+    }
+
+    @Test
+    public void testInternManyValues() {
+        final VCFStringInterner interner = new VCFStringInterner();
+        final String[] values = new String[10000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = interner.intern("key" + i + ";", 0, ("key" + i).length());
+        }
+        for (int i = 0; i < values.length; i++) {
+            Assert.assertEquals(values[i], "key" + i);
+            Assert.assertSame(interner.intern("key" + i), values[i]);
+        }
+        Assert.assertEquals(interner.size(), values.length);
+    }
+}